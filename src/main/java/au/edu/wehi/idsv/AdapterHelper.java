@@ -1,7 +1,6 @@
 package au.edu.wehi.idsv;
 
 import au.edu.wehi.idsv.debruijn.KmerEncodingHelper;
-import au.edu.wehi.idsv.debruijn.PackedSequence;
 import com.google.common.collect.ImmutableList;
 import htsjdk.samtools.SAMRecord;
 import htsjdk.samtools.util.SequenceUtil;
@@ -42,9 +41,11 @@ public class AdapterHelper {
 	public boolean containsAdapter(SAMRecord record) {
 		if (!hasAdapters()) return false;
 		if (record.getReadLength() < k) return false;
-		PackedSequence ps = new PackedSequence(record.getReadBases(), false, false);
-		for (int i = 0; i < ps.kmers(k); i++) {
-			long kmer = ps.getKmer(i, k);
+		byte[] bases = record.getReadBases();
+		long[] readKmers = new long[bases.length - k + 1];
+		int kmerCount = KmerEncodingHelper.kmers(k, bases, readKmers);
+		for (int i = 0; i < kmerCount; i++) {
+			long kmer = readKmers[i];
 			for (int j = 0; j < kmers.length; j++) {
 				if (kmer == kmers[j]) {
 					return true;
@@ -232,6 +232,10 @@ public class AssemblyAttributes {
 		}
 		return stream;
 	}
+	public Collection<AssemblyEvidenceSupport> getSupportingEvidence(Range<Integer> assemblyContigOffset, Set<Integer> supportingCategories, Set<AssemblyEvidenceSupport.SupportType> supportTypes, AssemblyEvidenceSource aes) {
+		return filterSupport(assemblyContigOffset, supportingCategories, supportTypes, aes)
+				.collect(Collectors.toList());
+	}
 	public Collection<String> getEvidenceIDs(Range<Integer> assemblyContigOffset, Set<Integer> supportingCategories, Set<AssemblyEvidenceSupport.SupportType> supportTypes, AssemblyEvidenceSource aes) {
 		return filterSupport(assemblyContigOffset, supportingCategories, supportTypes, aes)
 				.map(s -> s.getEvidenceID())
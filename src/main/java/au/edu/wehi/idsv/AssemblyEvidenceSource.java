@@ -10,6 +10,7 @@ import au.edu.wehi.idsv.sam.SamTags;
 import au.edu.wehi.idsv.util.DebugSpammingIterator;
 import au.edu.wehi.idsv.util.FileHelper;
 import au.edu.wehi.idsv.visualisation.AssemblyTelemetry;
+import au.edu.wehi.idsv.visualisation.BinaryTelemetry;
 import com.google.common.base.Stopwatch;
 import com.google.common.collect.Iterators;
 import com.google.common.util.concurrent.MoreExecutors;
@@ -21,8 +22,7 @@ import htsjdk.samtools.util.CloseableIterator;
 import htsjdk.samtools.util.Log;
 import htsjdk.samtools.util.RuntimeIOException;
 
-import java.io.File;
-import java.io.IOException;
+import java.io.*;
 import java.util.*;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
@@ -86,7 +86,13 @@ public class AssemblyEvidenceSource extends SAMEvidenceSource {
 		}
 		invalidateSummaryCache();
 		if (getContext().getConfig().getVisualisation().assemblyTelemetry) {
-			telemetry = new AssemblyTelemetry(getContext().getFileSystemContext().getAssemblyTelemetry(getFile(), jobNodeIndex), getContext().getDictionary());
+			File telemetryFile = getContext().getFileSystemContext().getAssemblyTelemetry(getFile(), jobNodeIndex);
+			BinaryTelemetry binaryTelemetry = getContext().getBinaryTelemetry();
+			if (binaryTelemetry != null) {
+				telemetry = new AssemblyTelemetry(binaryTelemetry, telemetryFile.getName(), getContext().getDictionary());
+			} else {
+				telemetry = new AssemblyTelemetry(telemetryFile, getContext().getDictionary());
+			}
 		}
 		List<QueryInterval[]> chunks = getContext().getReference().getIntervals(getContext().getConfig().chunkSize, getContext().getConfig().chunkSequenceChangePenalty);
 		List<File> assembledChunk = new ArrayList<>();
@@ -178,25 +184,125 @@ public class AssemblyEvidenceSource extends SAMEvidenceSource {
 		}
 		log.info("Breakend assembly complete.");
 	}
+	private static final String CHECKPOINT_LAST_ID_PROPERTY = "lastAssemblyId";
+	/**
+	 * Sorted assemblies for a completed direction pass of the given chunk
+	 */
+	static File getCheckpointBam(File output, BreakendDirection direction) {
+		return FileSystemContext.getWorkingFileFor(output, "gridss.checkpoint." + direction.name() + ".");
+	}
+	/**
+	 * Assembly state after the completion of the given direction pass.
+	 * The existence of this file indicates the checkpoint BAM is complete.
+	 */
+	static File getCheckpointState(File output, BreakendDirection direction) {
+		File bam = getCheckpointBam(output, direction);
+		return new File(bam.getParent(), bam.getName() + ".checkpoint");
+	}
+	/**
+	 * Regions of the given type flagged during the given direction pass
+	 */
+	static File getCheckpointRegions(File output, BreakendDirection direction, String regionType) {
+		File bam = getCheckpointBam(output, direction);
+		return new File(bam.getParent(), bam.getName() + "." + regionType + ".bed");
+	}
+	private static final String[] CHECKPOINT_REGION_TYPES = { "excluded", "safety", "downsampled" };
+	private static void addAll(IntervalBed to, IntervalBed from) {
+		for (QueryInterval qi : from.asQueryInterval()) {
+			to.addInterval(qi);
+		}
+	}
+	private static void writeCheckpointState(File file, SequentialIdGenerator assemblyNameGenerator) throws IOException {
+		Properties state = new Properties();
+		state.setProperty(CHECKPOINT_LAST_ID_PROPERTY, Integer.toString(assemblyNameGenerator.getLastId()));
+		File tmp = FileSystemContext.getWorkingFileFor(file);
+		try (OutputStream os = new FileOutputStream(tmp)) {
+			state.store(os, "GRIDSS assembly checkpoint");
+		}
+		FileHelper.move(tmp, file, false);
+	}
+	/**
+	 * Loads the assembly state of a completed direction pass 
+	 * @return true if the direction pass completed, false otherwise
+	 */
+	private boolean readCheckpointState(File output, BreakendDirection direction, SequentialIdGenerator assemblyNameGenerator, IntervalBed[] regions) {
+		File stateFile = getCheckpointState(output, direction);
+		if (!stateFile.exists() || !getCheckpointBam(output, direction).exists()) {
+			return false;
+		}
+		Properties state = new Properties();
+		try (InputStream is = new FileInputStream(stateFile)) {
+			state.load(is);
+			int lastId = Integer.parseInt(state.getProperty(CHECKPOINT_LAST_ID_PROPERTY));
+			IntervalBed[] passRegions = new IntervalBed[regions.length];
+			for (int i = 0; i < regions.length; i++) {
+				File bed = getCheckpointRegions(output, direction, CHECKPOINT_REGION_TYPES[i]);
+				passRegions[i] = bed.exists() ? new IntervalBed(getContext().getLinear(), bed) : new IntervalBed(getContext().getLinear());
+			}
+			assemblyNameGenerator.setLastId(lastId);
+			for (int i = 0; i < regions.length; i++) {
+				addAll(regions[i], passRegions[i]);
+			}
+			return true;
+		} catch (IOException | IllegalArgumentException | NullPointerException e) {
+			log.warn(e, "Ignoring unreadable assembly checkpoint ", stateFile);
+			return false;
+		}
+	}
+	/**
+	 * Assembles the given chunk.
+	 * 
+	 * Each direction pass is checkpointed on completion so an interrupted chunk
+	 * resumes from the last completed pass. The regions flagged during a pass are
+	 * checkpointed along with the assemblies so resumed passes still report them.
+	 */
 	private void assembleChunk(File output, int chunkNumber, QueryInterval[] qi, IntervalBed excludedRegions, IntervalBed safetyRegions, IntervalBed downsampledRegions) throws IOException {
-		AssemblyIdGenerator assemblyNameGenerator = new SequentialIdGenerator(String.format(getContext().getConfig().getAssembly().contigNamePrefix, chunkNumber));
+		IntervalBed[] regions = new IntervalBed[] { excludedRegions, safetyRegions, downsampledRegions };
+		SequentialIdGenerator assemblyNameGenerator = new SequentialIdGenerator(String.format(getContext().getConfig().getAssembly().contigNamePrefix, chunkNumber));
 		String chuckName = String.format("chunk %d (%s:%d-%s:%d)", chunkNumber,
 			getContext().getDictionary().getSequence(qi[0].referenceIndex).getSequenceName(), qi[0].start,
 			getContext().getDictionary().getSequence(qi[qi.length-1].referenceIndex).getSequenceName(), qi[qi.length-1].end);
 		log.info(String.format("Starting assembly on %s", chuckName));
 		Stopwatch timer = Stopwatch.createStarted();
-		File filteredout = FileSystemContext.getWorkingFileFor(output, "filtered.");
-		File tmpout = FileSystemContext.getWorkingFileFor(output, "gridss.tmp.");
-		try (SAMFileWriter writer = new SAMFileWriterFactory().makeSAMOrBAMWriter(getHeader(), false, tmpout)) {
-			if (getContext().getAssemblyParameters().writeFiltered) {
-				try (SAMFileWriter filteredWriter = new SAMFileWriterFactory().makeSAMOrBAMWriter(getHeader(), false, filteredout)) {
-					for (BreakendDirection direction : BreakendDirection.values()) {
-						assembleChunk(writer, filteredWriter, chunkNumber, qi, direction, assemblyNameGenerator, excludedRegions, safetyRegions, downsampledRegions);
+		List<File> checkpoints = new ArrayList<>();
+		// Passes must be resumed in order since they share the contig name generator
+		boolean resuming = true;
+		try {
+			for (BreakendDirection direction : BreakendDirection.values()) {
+				File checkpoint = getCheckpointBam(output, direction);
+				checkpoints.add(checkpoint);
+				if (resuming && readCheckpointState(output, direction, assemblyNameGenerator, regions)) {
+					log.info(String.format("Resuming %s assembly on %s from checkpoint", direction, chuckName));
+					continue;
+				}
+				resuming = false;
+				File stateFile = getCheckpointState(output, direction);
+				if (stateFile.exists()) {
+					FileHelper.delete(stateFile, false);
+				}
+				IntervalBed[] passRegions = new IntervalBed[regions.length];
+				for (int i = 0; i < regions.length; i++) {
+					passRegions[i] = new IntervalBed(getContext().getLinear());
+				}
+				File tmpout = FileSystemContext.getWorkingFileFor(output, "gridss.tmp." + direction.name() + ".");
+				try (SAMFileWriter writer = new SAMFileWriterFactory().makeSAMOrBAMWriter(getHeader(), false, tmpout)) {
+					if (getContext().getAssemblyParameters().writeFiltered) {
+						File filteredout = FileSystemContext.getWorkingFileFor(output, "filtered." + direction.name() + ".");
+						try (SAMFileWriter filteredWriter = new SAMFileWriterFactory().makeSAMOrBAMWriter(getHeader(), false, filteredout)) {
+							assembleChunk(writer, filteredWriter, chunkNumber, qi, direction, assemblyNameGenerator, passRegions[0], passRegions[1], passRegions[2]);
+						}
+					} else {
+						assembleChunk(writer, null, chunkNumber, qi, direction, assemblyNameGenerator, passRegions[0], passRegions[1], passRegions[2]);
 					}
 				}
-			} else {
-				for (BreakendDirection direction : BreakendDirection.values()) {
-					assembleChunk(writer, null, chunkNumber, qi, direction, assemblyNameGenerator, excludedRegions, safetyRegions, downsampledRegions);
+				SAMFileUtil.sort(getContext().getFileSystemContext(), tmpout, checkpoint, SortOrder.coordinate);
+				for (int i = 0; i < regions.length; i++) {
+					passRegions[i].write(getCheckpointRegions(output, direction, CHECKPOINT_REGION_TYPES[i]), CHECKPOINT_REGION_TYPES[i]);
+					addAll(regions[i], passRegions[i]);
+				}
+				writeCheckpointState(stateFile, assemblyNameGenerator);
+				if (gridss.Defaults.DELETE_TEMPORARY_FILES) {
+					tmpout.delete();
 				}
 			}
 		} catch (Exception e) {
@@ -209,10 +315,16 @@ public class AssemblyEvidenceSource extends SAMEvidenceSource {
 			timer.stop();
 			log.info(String.format("Completed assembly on %s in %ds (%s)", chuckName, timer.elapsed(TimeUnit.SECONDS), timer.toString()));
 		}
-		SAMFileUtil.sort(getContext().getFileSystemContext(), tmpout, output, SortOrder.coordinate);
+		SAMFileUtil.merge(checkpoints, output);
 		if (gridss.Defaults.DELETE_TEMPORARY_FILES) {
-			tmpout.delete();
-			filteredout.delete();
+			for (BreakendDirection direction : BreakendDirection.values()) {
+				FileHelper.delete(getCheckpointBam(output, direction), true);
+				FileHelper.delete(getCheckpointState(output, direction), false);
+				for (String regionType : CHECKPOINT_REGION_TYPES) {
+					FileHelper.delete(getCheckpointRegions(output, direction, regionType), false);
+				}
+				FileHelper.delete(FileSystemContext.getWorkingFileFor(output, "filtered." + direction.name() + "."), true);
+			}
 		}
 		if (gridss.Defaults.DEFENSIVE_GC) {
 			log.info("Requesting defensive GC to ensure OS file handles are closed");
@@ -364,7 +476,8 @@ public class AssemblyEvidenceSource extends SAMEvidenceSource {
 				ap.errorCorrection.kmerErrorCorrectionMultiple,
 				ap.errorCorrection.k,
 				ap.errorCorrection.maxCorrectionsInKmer,
-				ap.errorCorrection.deduplicateReadKmers);
+				ap.errorCorrection.deduplicateReadKmers,
+				getContext().getEvidenceThreadpool());
 		return out;
 	}
 	private Iterator<DirectedEvidence> throttled(Iterator<DirectedEvidence> it, IntervalBed downsampledRegions) {
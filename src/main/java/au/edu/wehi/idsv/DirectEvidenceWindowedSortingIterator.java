@@ -1,7 +1,6 @@
 package au.edu.wehi.idsv;
 
 import au.edu.wehi.idsv.util.WindowedSortingIterator;
-import com.google.common.base.Function;
 
 import java.util.Comparator;
 import java.util.Iterator;
@@ -22,10 +21,6 @@ import java.util.Iterator;
 public class DirectEvidenceWindowedSortingIterator<T extends DirectedEvidence> extends WindowedSortingIterator<T> {
 	@SuppressWarnings("unchecked")
 	public DirectEvidenceWindowedSortingIterator(final GenomicProcessingContext processContext, final int windowSize, final Iterator<T> it) {
-		super(it, new Function<T, Long>() {
-			public Long apply(T arg) {
-				return processContext.getLinear().getStartLinearCoordinate(arg.getBreakendSummary());
-			}
-		}, windowSize, (Comparator<T>)DirectedEvidenceOrder.ByNatural);
+		super(it, arg -> processContext.getLinear().getStartLinearCoordinate(arg.getBreakendSummary()), windowSize, (Comparator<T>)DirectedEvidenceOrder.ByNatural);
 	}
 }
@@ -2,23 +2,44 @@ package au.edu.wehi.idsv;
 
 import au.edu.wehi.idsv.debruijn.ReadErrorCorrector;
 import com.google.common.collect.Iterables;
-import htsjdk.samtools.SAMRecord;
+import com.google.common.collect.Iterators;
+import com.google.common.collect.PeekingIterator;
 
 import java.util.ArrayDeque;
 import java.util.Deque;
 import java.util.Iterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
+/**
+ * Error corrects the reads underlying the evidence stream.
+ *
+ * Evidence is partitioned into buckets based on the start position of the underlying read,
+ * and reads are error corrected in overlapping windows of two consecutive buckets.
+ *
+ * When a thread pool is supplied, each window is corrected in parallel and the following window
+ * is corrected in the background while the evidence of the current bucket is consumed.
+ * Windows are still corrected in stream order so the output is identical to single-threaded error correction.
+ */
 public class DirectedEvidenceErrorCorrectingIterator implements Iterator<DirectedEvidence> {
     private final LinearGenomicCoordinate linear;
     private final int k;
     private final float kmerErrorCorrectionMultiple;
     private final int bucketSize;
-    private final Iterator<DirectedEvidence> in;
+    private final PeekingIterator<DirectedEvidence> in;
     private final boolean deduplicateReadKmers;
     private final int maxCorrectionsInKmer;
     private Deque<DirectedEvidence> lastBucket = new ArrayDeque<>();
-    private Deque<DirectedEvidence> currentBucket = new ArrayDeque<>();
-    private long currentBucketStart;
+    private Deque<DirectedEvidence> currentBucket;
+    private final Executor threadpool;
+    /**
+     * Bucket following the current bucket. Only used when correcting on a thread pool.
+     */
+    private Deque<DirectedEvidence> nextBucket = null;
+    /**
+     * Error correction of the window consisting of the current and next buckets
+     */
+    private CompletableFuture<Void> pending = null;
 
     public DirectedEvidenceErrorCorrectingIterator(
             LinearGenomicCoordinate linear,
@@ -32,6 +53,26 @@ public class DirectedEvidenceErrorCorrectingIterator implements Iterator<Directe
             int k,
             int maxCorrectionsInKmer,
             boolean deduplicateReadKmers) {
+        this(linear, in, minConcordantFragmentSize, maxConcordantFragmentSize, maxReadLength, maxMappedReadLength, eso,
+                kmerErrorCorrectionMultiple, k, maxCorrectionsInKmer, deduplicateReadKmers, null);
+    }
+
+    /**
+     * @param threadpool thread pool to perform error correction on. If null, error correction is performed on the calling thread.
+     */
+    public DirectedEvidenceErrorCorrectingIterator(
+            LinearGenomicCoordinate linear,
+            Iterator<DirectedEvidence> in,
+            int minConcordantFragmentSize,
+            int maxConcordantFragmentSize,
+            int maxReadLength,
+            int maxMappedReadLength,
+            SAMEvidenceSource.EvidenceSortOrder eso,
+            float kmerErrorCorrectionMultiple,
+            int k,
+            int maxCorrectionsInKmer,
+            boolean deduplicateReadKmers,
+            Executor threadpool) {
         if (eso != SAMEvidenceSource.EvidenceSortOrder.SAMRecordStartPosition) throw new IllegalArgumentException("NYI");
         int maxErrorCorrectSamRecordStartDelta = maxConcordantFragmentSize - minConcordantFragmentSize + 2 * maxReadLength - k;
         this.bucketSize = Math.max(maxErrorCorrectSamRecordStartDelta, 2 * maxMappedReadLength); 
@@ -40,8 +81,9 @@ public class DirectedEvidenceErrorCorrectingIterator implements Iterator<Directe
         this.maxCorrectionsInKmer = maxCorrectionsInKmer;
         this.kmerErrorCorrectionMultiple = kmerErrorCorrectionMultiple;
         this.deduplicateReadKmers = deduplicateReadKmers;
-        this.in = in;
-        fillCurrentBucket();
+        this.in = Iterators.peekingIterator(in);
+        this.threadpool = threadpool;
+        this.currentBucket = nextBucket();
     }
 
     @Override
@@ -52,31 +94,56 @@ public class DirectedEvidenceErrorCorrectingIterator implements Iterator<Directe
 
     private void ensureLastBucket() {
         if (lastBucket.size() > 0) return;
-        lastBucket = currentBucket;
-        currentBucket = new ArrayDeque<>();
-        fillCurrentBucket();
-        // Error correct both buckets as since RPs could be spread across
-        // multiple buckets due to differences in actual fragment size
-        ReadErrorCorrector.errorCorrect(k, kmerErrorCorrectionMultiple, maxCorrectionsInKmer, deduplicateReadKmers, Iterables.concat(lastBucket, currentBucket));
+        if (pending == null) {
+            lastBucket = currentBucket;
+            currentBucket = nextBucket();
+            errorCorrect(lastBucket, currentBucket);
+            if (threadpool == null) return;
+        } else {
+            pending.join();
+            lastBucket = currentBucket;
+            currentBucket = nextBucket;
+        }
+        // Correct the next window in the background.
+        // This window does not include lastBucket so the evidence we return is not modified.
+        nextBucket = nextBucket();
+        if (currentBucket.isEmpty() && nextBucket.isEmpty()) {
+            pending = CompletableFuture.completedFuture(null);
+        } else {
+            pending = ReadErrorCorrector.errorCorrectAsync(k, kmerErrorCorrectionMultiple, maxCorrectionsInKmer, deduplicateReadKmers, Iterables.concat(currentBucket, nextBucket), threadpool);
+        }
     }
 
-    private void fillCurrentBucket() {
-        while (!addToCurrentBucket()) ;
+    private void errorCorrect(Deque<DirectedEvidence> bucket1, Deque<DirectedEvidence> bucket2) {
+        // Error correct both buckets as since RPs could be spread across
+        // multiple buckets due to differences in actual fragment size
+        ReadErrorCorrector.errorCorrect(k, kmerErrorCorrectionMultiple, maxCorrectionsInKmer, deduplicateReadKmers, Iterables.concat(bucket1, bucket2), threadpool);
     }
 
     /**
-     * Adds to the current bucket
-     * @return true if the current bucket is now full after adding, false otherwise
+     * Reads the next bucket of evidence.
+     *
+     * Evidence with the same underlying read start position is always placed in the same bucket
+     * so a read is never shared between the bucket being returned and a bucket being corrected.
      */
-    private boolean addToCurrentBucket() {
-        if (!in.hasNext()) return true;
-        DirectedEvidence de = in.next();
-        SAMRecord underlying = de.getUnderlyingSAMRecord();
-        if (currentBucket.isEmpty()) {
-            currentBucketStart = linear.getStartLinearCoordinate(underlying);
+    private Deque<DirectedEvidence> nextBucket() {
+        Deque<DirectedEvidence> bucket = new ArrayDeque<>();
+        long bucketStart = 0;
+        long closingStart = 0;
+        boolean full = false;
+        while (in.hasNext()) {
+            long start = linear.getStartLinearCoordinate(in.peek().getUnderlyingSAMRecord());
+            if (full && start != closingStart) break;
+            if (bucket.isEmpty()) {
+                bucketStart = start;
+            }
+            bucket.add(in.next());
+            if (start - bucketSize > bucketStart) {
+                full = true;
+                closingStart = start;
+            }
         }
-        currentBucket.add(de);
-        return linear.getStartLinearCoordinate(underlying) - bucketSize > currentBucketStart;
+        return bucket;
     }
 
     @Override
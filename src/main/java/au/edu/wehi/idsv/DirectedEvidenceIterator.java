@@ -7,6 +7,7 @@ import htsjdk.samtools.util.CloserUtil;
 import htsjdk.samtools.util.Log;
 
 import java.util.ArrayDeque;
+import java.util.Collection;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
 import java.util.Queue;
@@ -37,10 +38,20 @@ public class DirectedEvidenceIterator implements CloseableIterator<DirectedEvide
 		}
 	}
 	private void addToBuffer(SAMRecord record) {
+		addEvidence(source, minIndelSize, record, buffer);
+	}
+	/**
+	 * Adds the evidence supported by the given record to the given collection
+	 * @param source evidence source of the record
+	 * @param minIndelSize minimum indel size to consider as evidence
+	 * @param record record to convert
+	 * @param out evidence
+	 */
+	public static void addEvidence(SAMEvidenceSource source, int minIndelSize, SAMRecord record, Collection<DirectedEvidence> out) {
 		if (record == null || record.getReadUnmappedFlag() || record.getMappingQuality() < source.getContext().getConfig().minMapq) {
 			return;
 		}
-		buffer.addAll(SingleReadEvidence.createEvidence(source, minIndelSize, record));
+		out.addAll(SingleReadEvidence.createEvidence(source, minIndelSize, record));
 		if (!record.getSupplementaryAlignmentFlag()) {
 			if (record.getReadPairedFlag()) {
 				ReadPairConcordanceCalculator rpcc = source.getReadPairConcordanceCalculator();
@@ -53,7 +64,7 @@ public class DirectedEvidenceIterator implements CloseableIterator<DirectedEvide
 						&& !rpcc.isConcordant(record)) {
 					NonReferenceReadPair nrrp = NonReferenceReadPair.create(source, record);
 					if (nrrp != null) {
-						buffer.add(nrrp);
+						out.add(nrrp);
 					}
 				}
 			}
@@ -6,7 +6,9 @@ import au.edu.wehi.idsv.picard.TwoBitBufferedReferenceSequenceFile;
 import au.edu.wehi.idsv.util.AutoClosingIterator;
 import au.edu.wehi.idsv.vcf.GridssVcfConstants;
 import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import gridss.cmdline.ReferenceCommandLineProgram;
+import gridss.cmdline.ResidentResources;
 import htsjdk.samtools.*;
 import htsjdk.samtools.SAMFileHeader.SortOrder;
 import htsjdk.samtools.filter.*;
@@ -25,6 +27,8 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class GenomicProcessingContext implements Closeable {
 	private static final Log log = Log.getInstance(GenomicProcessingContext.class);
@@ -35,6 +39,10 @@ public class GenomicProcessingContext implements Closeable {
 	 */
 	public static final long LINEAR_COORDINATE_CHROMOSOME_BUFFER = 10000000000L;
 	private ReferenceLookup reference;
+	/**
+	 * Resident references are shared between command line program invocations and are not closed by this context
+	 */
+	private boolean residentReference = false;
 	private CommandLineProgram program;
 	private final File referenceFile;
 	private final SAMSequenceDictionary dictionary;
@@ -45,6 +53,8 @@ public class GenomicProcessingContext implements Closeable {
 	private IntervalBed blacklist;
 	private boolean filterDuplicates = true;
 	private int workerThreads = 1;
+	private ExecutorService evidenceThreadpool = null;
+	private ExecutorService prefetchThreadpool = null;
 	/**
 	 * Create a new genomic processing context
 	 * @param fileSystemContext file system context
@@ -58,7 +68,12 @@ public class GenomicProcessingContext implements Closeable {
 			ReferenceCommandLineProgram.ensureSequenceDictionary(referenceFile);
 		}
 		if (reference == null) {
-			this.reference = LoadSynchronizedReference(referenceFile);
+			if (ResidentResources.isEnabled()) {
+				this.reference = ResidentResources.getReference(referenceFile);
+				this.residentReference = true;
+			} else {
+				this.reference = LoadSynchronizedReference(referenceFile);
+			}
 			if (Defaults.ASYNC_CACHE_REFERENCE) {
 				BackgroundCacheReference(referenceFile);
 			}
@@ -93,7 +108,7 @@ public class GenomicProcessingContext implements Closeable {
 	 * @return reference genome 
 	 */
 	@SuppressWarnings("resource")
-	protected ReferenceLookup LoadSynchronizedReference(File referenceFile) {
+	public static ReferenceLookup LoadSynchronizedReference(File referenceFile) {
 		try {
 			ReferenceSequenceFile underlying = new IndexedFastaSequenceFile(referenceFile);
 			if (referenceFile.length() > Runtime.getRuntime().maxMemory()) {
@@ -271,7 +286,17 @@ public class GenomicProcessingContext implements Closeable {
 	@Override
 	public void close() throws IOException {
 		log.debug("close() called");
-		if (reference != null) reference.close();
+		if (reference != null && !residentReference) reference.close();
+		synchronized (this) {
+			if (evidenceThreadpool != null) {
+				evidenceThreadpool.shutdown();
+				evidenceThreadpool = null;
+			}
+			if (prefetchThreadpool != null) {
+				prefetchThreadpool.shutdown();
+				prefetchThreadpool = null;
+			}
+		}
 	}
 
 	public boolean isFilterDuplicates() {
@@ -290,6 +315,38 @@ public class GenomicProcessingContext implements Closeable {
 		this.workerThreads = workerThreads;
 	}
 
+	/**
+	 * Thread pool for converting input records to evidence and error correcting assembly evidence.
+	 * 
+	 * Tasks submitted to this pool must not wait on other tasks in the pool.
+	 * @return shared thread pool, or null if only a single worker thread is to be used
+	 */
+	public synchronized ExecutorService getEvidenceThreadpool() {
+		if (workerThreads <= 1) {
+			return null;
+		}
+		if (evidenceThreadpool == null) {
+			evidenceThreadpool = Executors.newFixedThreadPool(workerThreads, new ThreadFactoryBuilder().setDaemon(true).setNameFormat("Evidence-%d").build());
+		}
+		return evidenceThreadpool;
+	}
+
+	/**
+	 * Thread pool for reading ahead from input files.
+	 * 
+	 * Tasks submitted to this pool must not wait on other tasks in the pool.
+	 * @return shared thread pool, or null if only a single worker thread is to be used
+	 */
+	public synchronized ExecutorService getPrefetchThreadpool() {
+		if (workerThreads <= 1) {
+			return null;
+		}
+		if (prefetchThreadpool == null) {
+			prefetchThreadpool = Executors.newFixedThreadPool(workerThreads, new ThreadFactoryBuilder().setDaemon(true).setNameFormat("Prefetch-%d").build());
+		}
+		return prefetchThreadpool;
+	}
+
 	public IntervalBed getBlacklistedRegions() {
 		return blacklist;
 	}
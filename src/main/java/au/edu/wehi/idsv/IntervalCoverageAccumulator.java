@@ -20,55 +20,95 @@ import java.util.Iterator;
 public class IntervalCoverageAccumulator {
 	private final CoverageCalculationMethod method;
 	private final SAMSequenceDictionary dictionary;
-	private final IntervalAccumulator[] coverage;
+	private final int shardWidth;
+	/**
+	 * Coverage accumulators for each contig, split into independent shards.
+	 * Shard boundaries are aligned to bin boundaries so each bin is contained in exactly one shard.
+	 */
+	private final IntervalAccumulator[][] coverage;
 	public IntervalCoverageAccumulator(CoverageCalculationMethod method, SAMSequenceDictionary dictionary, int binWidth, Iterator<VariantContextDirectedEvidence> it) {
+		this(method, dictionary, binWidth, Integer.MAX_VALUE / binWidth, it);
+	}
+	/**
+	 * Creates a coverage accumulator whose bins are split into shards that can be updated concurrently.
+	 *
+	 * add() can be called concurrently from multiple threads.
+	 * @param binsPerShard number of bins in each shard
+	 */
+	public IntervalCoverageAccumulator(CoverageCalculationMethod method, SAMSequenceDictionary dictionary, int binWidth, int binsPerShard, Iterator<VariantContextDirectedEvidence> it) {
+		if (binsPerShard < 1) throw new IllegalArgumentException("binsPerShard must be positive");
 		this.method = method;
 		this.dictionary = dictionary;
-		this.coverage = initCoverage(dictionary, binWidth, it);
+		this.shardWidth = (int)Math.min(Integer.MAX_VALUE / binWidth * (long)binWidth, binsPerShard * (long)binWidth);
+		this.coverage = initCoverage(dictionary, binWidth, shardWidth, it);
 	}
-	private static IntervalAccumulator[] initCoverage(SAMSequenceDictionary dictionary, int binWidth, Iterator<VariantContextDirectedEvidence> it) {
-		IntervalAccumulator[] coverage = new IntervalAccumulator[dictionary.getSequences().size()];
+	private static IntervalAccumulator[][] initCoverage(SAMSequenceDictionary dictionary, int binWidth, int shardWidth, Iterator<VariantContextDirectedEvidence> it) {
+		IntervalAccumulator[][] coverage = new IntervalAccumulator[dictionary.getSequences().size()][];
 		for (int i = 0; i < coverage.length; i++) {
-			coverage[i] = new IntervalAccumulator(1, dictionary.getSequence(i).getSequenceLength(), binWidth);
+			int length = dictionary.getSequence(i).getSequenceLength();
+			coverage[i] = new IntervalAccumulator[Math.max(1, (length - 1) / shardWidth + 1)];
+			for (int j = 0; j < coverage[i].length; j++) {
+				int start = 1 + j * shardWidth;
+				int end = (int)Math.min(length, start + (long)shardWidth - 1);
+				coverage[i][j] = new IntervalAccumulator(start, end, binWidth);
+			}
 		}
-			if (it != null) {
+		if (it != null) {
 			while (it.hasNext()) {
 				VariantContextDirectedEvidence evidence = it.next();
 				BreakendSummary bs = evidence.getBreakendSummary();
 				// split bins at the break-end boundary
-				if (bs.direction == BreakendDirection.Forward) {
-					coverage[bs.referenceIndex].splitBin(bs.nominal + 1);
-				} else {
-					coverage[bs.referenceIndex].splitBin(bs.nominal);
+				int position = bs.direction == BreakendDirection.Forward ? bs.nominal + 1 : bs.nominal;
+				if (position >= 1 && position <= dictionary.getSequence(bs.referenceIndex).getSequenceLength()) {
+					coverage[bs.referenceIndex][(position - 1) / shardWidth].splitBin(position);
 				}
 			}
-			}
+		}
 		for (int i = 0; i < coverage.length; i++) {
-			coverage[i].finaliseBins();
+			for (int j = 0; j < coverage[i].length; j++) {
+				coverage[i][j].finaliseBins();
+			}
 		}
 		return coverage;
 	}
 	public void add(SAMRecord record, ReadGcSummary summary, double readWeight) {
 		switch (method) {
 		case FRAGMENT:
-			coverage[summary.referenceIndex].add(summary.fragmentStart, summary.fragmentEnd, readWeight);
+			add(summary.referenceIndex, summary.fragmentStart, summary.fragmentEnd, readWeight);
 			break;
 		case READ:
 			// TODO: use actual read alignment CIGAR
-			coverage[summary.referenceIndex].add(record.getAlignmentStart(), record.getAlignmentEnd(), readWeight);
+			add(summary.referenceIndex, record.getAlignmentStart(), record.getAlignmentEnd(), readWeight);
 			break;
 		}
 	}
+	private void add(int referenceIndex, int start, int end, double readWeight) {
+		IntervalAccumulator[] shards = coverage[referenceIndex];
+		start = Math.max(start, 1);
+		end = Math.min(end, dictionary.getSequence(referenceIndex).getSequenceLength());
+		if (end < start) return;
+		int lastShard = (end - 1) / shardWidth;
+		for (int i = (start - 1) / shardWidth; i <= lastShard; i++) {
+			IntervalAccumulator shard = shards[i];
+			int shardStart = 1 + i * shardWidth;
+			int shardEnd = shardStart + shardWidth - 1;
+			synchronized (shard) {
+				shard.add(Math.max(start, shardStart), Math.min(end, shardEnd), readWeight);
+			}
+		}
+	}
 	public void writeToBed(File bed) throws IOException {
 		try (BedWriter writer = new BedWriter(dictionary, bed)) {
 			for (int i = 0; i < coverage.length; i++) {
-				ObjectBidirectionalIterator<Entry> it = coverage[i].iterator();
-				while (it.hasNext()) {
-					Entry e = it.next();
-					int start = e.getIntKey();
-					int binWidth = coverage[i].getBinSize(start);
-					int end = start + binWidth - 1;
-					writer.write(i, start, end, coverage[i].getMeanValue(start));
+				for (IntervalAccumulator shard : coverage[i]) {
+					ObjectBidirectionalIterator<Entry> it = shard.iterator();
+					while (it.hasNext()) {
+						Entry e = it.next();
+						int start = e.getIntKey();
+						int binWidth = shard.getBinSize(start);
+						int end = start + binWidth - 1;
+						writer.write(i, start, end, shard.getMeanValue(start));
+					}
 				}
 			}
 		}
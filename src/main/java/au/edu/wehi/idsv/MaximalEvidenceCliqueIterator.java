@@ -9,7 +9,6 @@ import au.edu.wehi.idsv.util.WindowedSortingIterator;
 import au.edu.wehi.idsv.vcf.VcfInfoAttributes;
 import au.edu.wehi.idsv.vcf.VcfSvConstants;
 import au.edu.wehi.idsv.visualisation.TrackedState;
-import com.google.common.base.Function;
 import com.google.common.collect.AbstractIterator;
 import htsjdk.samtools.util.Log;
 
@@ -46,11 +45,7 @@ public class MaximalEvidenceCliqueIterator extends AbstractIterator<VariantConte
 
 	private class GraphNodeWindowedSortingIterator extends WindowedSortingIterator<RectangleGraphNode> {
 		public GraphNodeWindowedSortingIterator(final GenomicProcessingContext processContext, final int windowSize, final Iterator<RectangleGraphNode> it) {
-			super(it, new Function<RectangleGraphNode, Long>() {
-				public Long apply(RectangleGraphNode arg) {
-					return arg.startX;
-				}
-			}, windowSize, RectangleGraphNode.ByStartXYEndXY);
+			super(it, arg -> arg.startX, windowSize, RectangleGraphNode.ByStartXYEndXY);
 		}
 	}
 	private class EvidenceToGraphNodeIterator extends AbstractIterator<RectangleGraphNode> {
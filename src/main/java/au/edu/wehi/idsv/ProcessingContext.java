@@ -5,20 +5,26 @@ import au.edu.wehi.idsv.configuration.GridssConfiguration;
 import au.edu.wehi.idsv.configuration.SoftClipConfiguration;
 import au.edu.wehi.idsv.configuration.VariantCallingConfiguration;
 import au.edu.wehi.idsv.picard.ReferenceLookup;
+import au.edu.wehi.idsv.util.FilenameUtil;
 import au.edu.wehi.idsv.vcf.GridssVcfConstants;
+import au.edu.wehi.idsv.visualisation.BinaryTelemetry;
 import au.edu.wehi.idsv.visualisation.BufferTracker;
 import au.edu.wehi.idsv.visualisation.TrackedBuffer;
 import com.google.common.collect.Lists;
 import htsjdk.samtools.metrics.Header;
 import htsjdk.samtools.metrics.MetricBase;
 import htsjdk.samtools.metrics.MetricsFile;
+import htsjdk.samtools.util.Log;
 import htsjdk.variant.variantcontext.writer.VariantContextWriter;
 import htsjdk.variant.variantcontext.writer.VariantContextWriterBuilder;
 import htsjdk.variant.vcf.VCFHeader;
 
 import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Processing context for the given record
@@ -26,13 +32,16 @@ import java.util.List;
  *
  */
 public class ProcessingContext extends GenomicProcessingContext {
-	//private static final Log log = Log.getInstance(ProcessingContext.class);
+	private static final Log log = Log.getInstance(ProcessingContext.class);
+	private static final AtomicInteger binaryTelemetryCount = new AtomicInteger();
 	private final GridssConfiguration config;
 	private final List<Header> metricsHeaders;
 	private long calculateMetricsRecordCount = Long.MAX_VALUE; 
 	private final List<String> categories = Lists.newArrayList();
 	private EvidenceIdentifierGenerator eidgen;
 	private BufferTracker bufferTracker = null;
+	private BinaryTelemetry binaryTelemetry = null;
+	private boolean binaryTelemetryFailed = false;
 	
 	public ProcessingContext(
 			FileSystemContext fileSystemContext,  File ref, ReferenceLookup reference, List<Header> metricsHeaders,
@@ -41,7 +50,13 @@ public class ProcessingContext extends GenomicProcessingContext {
 		this.metricsHeaders = metricsHeaders;
 		this.config = config;
 		if (config.getVisualisation().buffers) {
-			bufferTracker = new BufferTracker(new File(config.getVisualisation().directory, "gridss.buffers.csv"), config.getVisualisation().bufferTrackingItervalInSeconds);
+			File bufferFile = new File(config.getVisualisation().directory, "gridss.buffers.csv");
+			BinaryTelemetry telemetry = getBinaryTelemetry();
+			if (telemetry != null) {
+				bufferTracker = new BufferTracker(telemetry, bufferFile.getName(), config.getVisualisation().bufferTrackingItervalInSeconds);
+			} else {
+				bufferTracker = new BufferTracker(bufferFile, config.getVisualisation().bufferTrackingItervalInSeconds);
+			}
 			bufferTracker.start();
 		}
 		this.eidgen = config.hashEvidenceID ? new HashedEvidenceIdentifierGenerator() : new StringEvidenceIdentifierGenerator();
@@ -75,6 +90,38 @@ public class ProcessingContext extends GenomicProcessingContext {
 	public void setCalculateMetricsRecordCount(long calculateMetricsRecordCount) {
 		this.calculateMetricsRecordCount = calculateMetricsRecordCount;
 	}
+	/**
+	 * Gets the binary telemetry sink for this context
+	 * @return binary telemetry sink, or null if binary telemetry is not enabled
+	 */
+	public synchronized BinaryTelemetry getBinaryTelemetry() {
+		if (binaryTelemetry == null && !binaryTelemetryFailed && getConfig().getVisualisation().binaryTelemetry) {
+			// multiple processes can share the same working directory, and a process can have multiple contexts
+			String filename = FilenameUtil.stripInvalidFilenameCharacters(String.format("gridss.telemetry.%s.%d.bin",
+					ManagementFactory.getRuntimeMXBean().getName(),
+					binaryTelemetryCount.incrementAndGet()));
+			try {
+				binaryTelemetry = new BinaryTelemetry(new File(getConfig().getVisualisation().directory, filename));
+			} catch (IOException e) {
+				log.warn(e, "Unable to create binary telemetry file. Telemetry disabled.");
+				binaryTelemetryFailed = true;
+			}
+		}
+		return binaryTelemetry;
+	}
+	@Override
+	public void close() throws IOException {
+		super.close();
+		if (bufferTracker != null) {
+			bufferTracker.stop();
+		}
+		synchronized (this) {
+			if (binaryTelemetry != null) {
+				binaryTelemetry.close();
+				binaryTelemetry = null;
+			}
+		}
+	}
 	public void registerBuffer(String context, TrackedBuffer obj) {
 		if (bufferTracker != null) {
 			bufferTracker.register(context, obj);
@@ -26,8 +26,10 @@ import htsjdk.samtools.util.Log;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
 import java.util.stream.Collectors;
 
 /**
@@ -37,6 +39,10 @@ import java.util.stream.Collectors;
  */
 public class SAMEvidenceSource extends EvidenceSource {
 	private static final Log log = Log.getInstance(SAMEvidenceSource.class);
+	/**
+	 * Number of records converted to evidence in each parallel task
+	 */
+	private static final int EVIDENCE_BATCH_SIZE = 256;
 	private final int sourceCategory;
 	private final Integer rpcMinFragmentSize;
 	private final Integer rpcMaxFragmentSize;
@@ -214,6 +220,7 @@ public class SAMEvidenceSource extends EvidenceSource {
 	}
 	public CloseableIterator<DirectedEvidence> iterator(final QueryInterval[] intervals, EvidenceSortOrder eso) {
 		SamReader reader = getReader();
+		SAMFileUtil.setRecordFilter(reader, getPreTransformRecordFilter());
 		// expand query bounds as the alignment for a discordant read pair could fall before or after the breakend interval we are extracting
 		QueryInterval[] expandedIntervals = QueryIntervalUtil.padIntervals(getContext().getDictionary(), intervals, getMaxConcordantFragmentSize() + 1);
 		// ignore blacklisted regions
@@ -256,6 +263,7 @@ public class SAMEvidenceSource extends EvidenceSource {
 	}
 	public CloseableIterator<DirectedEvidence> iterator(EvidenceSortOrder eso) {
 		SamReader reader = getReader();
+		SAMFileUtil.setRecordFilter(reader, getPreTransformRecordFilter());
 		SAMRecordIterator it = reader.iterator();
 		it.assertSorted(SortOrder.coordinate);
 		Iterator<DirectedEvidence> eit = asEvidence(it, eso);
@@ -284,6 +292,51 @@ public class SAMEvidenceSource extends EvidenceSource {
 	}
 	private Iterator<DirectedEvidence> asEvidence(Iterator<SAMRecord> it, EvidenceSortOrder eso) {
 		it = new BufferedIterator<>(it, 2); // TODO: remove when https://github.com/samtools/htsjdk/issues/760 is resolved
+		ExecutorService threadpool = getContext().getEvidenceThreadpool();
+		Iterator<DirectedEvidence> eit;
+		if (threadpool != null && !Defaults.SANITY_CHECK_DUMP_ITERATORS) {
+			// convert batches of records in parallel
+			final int minIndelSize = minIndelSize();
+			getBlacklistedRegions(); // lazily loaded so ensure we don't load it on every worker thread
+			eit = new UngroupingIterator<>(new ParallelTransformIterator<List<SAMRecord>, List<DirectedEvidence>>(
+					new BatchingIterator<>(it, EVIDENCE_BATCH_SIZE),
+					batch -> asEvidence(batch, minIndelSize),
+					2 * getContext().getWorkerThreadCount(),
+					threadpool));
+		} else {
+			eit = asEvidenceSequential(it);
+		}
+		return sorted(eit, eso);
+	}
+	/**
+	 * Converts the given records to evidence 
+	 */
+	private List<DirectedEvidence> asEvidence(List<SAMRecord> records, int minIndelSize) {
+		List<DirectedEvidence> evidence = new ArrayList<>(records.size());
+		List<DirectedEvidence> recordEvidence = new ArrayList<>(4);
+		for (SAMRecord r : records) {
+			if (shouldFilterPreTransform(r)) continue;
+			r = transform(r);
+			if (shouldFilter(r)) continue;
+			recordEvidence.clear();
+			DirectedEvidenceIterator.addEvidence(this, minIndelSize, r, recordEvidence);
+			for (DirectedEvidence e : recordEvidence) {
+				if (!shouldFilter(e)) {
+					evidence.add(e);
+				}
+			}
+		}
+		return evidence;
+	}
+	/**
+	 * Converts a record that has already been transformed and filtered to evidence
+	 */
+	public List<DirectedEvidence> asEvidence(SAMRecord record) {
+		List<DirectedEvidence> evidence = new ArrayList<>(4);
+		DirectedEvidenceIterator.addEvidence(this, minIndelSize(), record, evidence);
+		return evidence;
+	}
+	private Iterator<DirectedEvidence> asEvidenceSequential(Iterator<SAMRecord> it) {
 		it = Iterators.filter(it, r -> !shouldFilterPreTransform(r));
 		if (Defaults.SANITY_CHECK_DUMP_ITERATORS) {
 			it = new AutoClosingIterator<>(new DebugSpammingIterator<>(it, "SAMEvidenceSource.shouldFilterPreTransform"));
@@ -301,6 +354,9 @@ public class SAMEvidenceSource extends EvidenceSource {
 		if (Defaults.SANITY_CHECK_DUMP_ITERATORS) {
 			it = new AutoClosingIterator<>(new DebugSpammingIterator<>(it, "SAMEvidenceSource.shouldFilter(DirectedEvidence)"));
 		}
+		return eit;
+	}
+	private Iterator<DirectedEvidence> sorted(Iterator<DirectedEvidence> eit, EvidenceSortOrder eso) {
 		switch (eso) {
 			case SAMRecordStartPosition:
 				// already sorted by coordinate
@@ -399,6 +455,39 @@ public class SAMEvidenceSource extends EvidenceSource {
 		}
 		return false;
 	}
+	/**
+	 * Subset of the shouldFilterPreTransform() checks that can be performed
+	 * on the BAM encoding of a record before the SAMRecord is created.
+	 * Read pair concordance is not checked as that requires the record tags.
+	 */
+	private BAMRecordFilter getPreTransformRecordFilter() {
+		final double minMapq = getContext().getConfig().minMapq;
+		final boolean filterDuplicates = getContext().isFilterDuplicates();
+		return (record, recordLength) -> {
+			int flags = BAMRecordFilter.getFlags(record);
+			if ((flags & SAMFlag.READ_UNMAPPED.intValue()) != 0 || BAMRecordFilter.getMappingQuality(record) < minMapq) {
+				return true;
+			}
+			if (filterDuplicates && (flags & SAMFlag.DUPLICATE_READ.intValue()) != 0) {
+				return true;
+			}
+			return (flags & SAMFlag.READ_PAIRED.intValue()) == 0 && !isIndelOrClipped(record);
+		};
+	}
+	private static boolean isIndelOrClipped(byte[] record) {
+		int cigarLength = BAMRecordFilter.getCigarLength(record);
+		for (int i = 0; i < cigarLength; i++) {
+			switch (BAMRecordFilter.getCigarOperator(record, i)) {
+				case S:
+				case H:
+				case D:
+				case I:
+				case N:
+					return true;
+			}
+		}
+		return false;
+	}
 	private boolean isIndelOrClipped(SAMRecord r) {
 		for (CigarElement ce : r.getCigar()) {
 			switch (ce.getOperator()) {
@@ -583,8 +672,13 @@ public class SAMEvidenceSource extends EvidenceSource {
 	}
 	public static CloseableIterator<DirectedEvidence> mergedIterator(final List<SAMEvidenceSource> source, final QueryInterval[] intervals, EvidenceSortOrder eso) {
 		List<CloseableIterator<DirectedEvidence>> toMerge = Lists.newArrayList();
+		ExecutorService prefetchThreadpool = source.isEmpty() ? null : source.get(0).getContext().getPrefetchThreadpool();
 		for (SAMEvidenceSource bam : source) {
 			CloseableIterator<DirectedEvidence> it = bam.iterator(intervals, eso);
+			if (prefetchThreadpool != null) {
+				// read ahead from all inputs concurrently
+				it = new PrefetchingIterator<>(it, prefetchThreadpool, gridss.Defaults.ASYNC_BUFFERS, gridss.Defaults.ASYNC_BUFFER_SIZE);
+			}
 			toMerge.add(it);
 		}
 		CloseableIterator<DirectedEvidence> merged = new AutoClosingMergedIterator<DirectedEvidence>(toMerge,  eso == EvidenceSortOrder.EvidenceStartPosition ? DirectedEvidenceOrder.ByNatural : DirectedEvidenceOrder.BySAMStart);
@@ -1,7 +1,10 @@
 package au.edu.wehi.idsv;
 
+import au.edu.wehi.idsv.sam.SAMFileUtil;
 import au.edu.wehi.idsv.util.AsyncBufferedIterator;
+import htsjdk.samtools.BAMRecordFilter;
 import htsjdk.samtools.SAMFileHeader.SortOrder;
+import htsjdk.samtools.SAMFlag;
 import htsjdk.samtools.SAMRecord;
 import htsjdk.samtools.SAMRecordIterator;
 import htsjdk.samtools.SamReader;
@@ -48,6 +51,12 @@ public class SequentialCoverageAnnotator<T extends VariantContextDirectedEvidenc
 			assert(ses.getSourceCategory() < context.getCategoryCount());
 			// one read-ahead thread per input file
 			SamReader reader = SamReaderFactory.makeDefault().referenceSequence(context.getReferenceFile()).open(ses.getFile());
+			// unmapped and duplicate reads are ignored by the coverage lookup so don't bother decoding them
+			final boolean ignoreDuplicates = context.isFilterDuplicates();
+			SAMFileUtil.setRecordFilter(reader, (record, recordLength) -> {
+				int flags = BAMRecordFilter.getFlags(record);
+				return (flags & SAMFlag.READ_UNMAPPED.intValue()) != 0 || (ignoreDuplicates && (flags & SAMFlag.DUPLICATE_READ.intValue()) != 0);
+			});
 			SAMRecordIterator rawIterator = reader.iterator();
 			rawIterator.assertSorted(SortOrder.coordinate);
 			CloseableIterator<SAMRecord> sit = new AsyncBufferedIterator<SAMRecord>(rawIterator, ses.getFile().getName() + "-Coverage");
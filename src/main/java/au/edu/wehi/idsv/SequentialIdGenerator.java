@@ -3,15 +3,34 @@ package au.edu.wehi.idsv;
 import java.util.concurrent.atomic.AtomicInteger;
 
 public class SequentialIdGenerator implements VariantIdGenerator, AssemblyIdGenerator {
-	private final AtomicInteger id = new AtomicInteger(0);
+	private final AtomicInteger id;
 	private final String prefix;
 	private final String suffix;
 	public SequentialIdGenerator(String prefix) {
 		this(prefix, "");
 	}
 	public SequentialIdGenerator(String prefix, String suffix) {
+		this(prefix, suffix, 0);
+	}
+	/**
+	 * @param lastId last identifier generated. Generation resumes from the following identifier.
+	 */
+	public SequentialIdGenerator(String prefix, String suffix, int lastId) {
 		this.prefix = prefix;
 		this.suffix = suffix;
+		this.id = new AtomicInteger(lastId);
+	}
+	/**
+	 * Last identifier generated
+	 */
+	public int getLastId() {
+		return id.get();
+	}
+	/**
+	 * Resumes identifier generation from the identifier following the given identifier
+	 */
+	public void setLastId(int lastId) {
+		id.set(lastId);
 	}
 	public String generate() {
 		return String.format("%s%d%s", prefix, id.incrementAndGet(), suffix);
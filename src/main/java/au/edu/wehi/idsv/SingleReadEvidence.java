@@ -2,6 +2,7 @@ package au.edu.wehi.idsv;
 
 import au.edu.wehi.idsv.picard.ReferenceLookup;
 import au.edu.wehi.idsv.sam.ChimericAlignment;
+import au.edu.wehi.idsv.sam.ParsedSATag;
 import au.edu.wehi.idsv.sam.SAMRecordUtil;
 import au.edu.wehi.idsv.util.IntervalUtil;
 import au.edu.wehi.idsv.util.MessageThrottler;
@@ -75,15 +76,10 @@ public abstract class SingleReadEvidence implements DirectedEvidence {
 			if (!MessageThrottler.Current.shouldSupress(log, "SingleReadEvidence.createEvidence() failure")) {
 				boolean sa_error_message_written = false;
 				int readLength = record.getReadLength();
-				for (ChimericAlignment ca : ChimericAlignment.getChimericAlignments(record)) {
+				ParsedSATag sa = ParsedSATag.get(record);
+				for (int i = 0; i < sa.size(); i++) {
 					if (!sa_error_message_written) {
-						int len = 0;
-						for (CigarElement ce : ca.cigar) {
-							if (ce.getOperator().consumesReadBases() || ce.getOperator() == CigarOperator.H) {
-								len += ce.getLength();
-							}
-						}
-						if (len != readLength) {
+						if (sa.readLength(i) != readLength) {
 							String msg = String.format("Data sanity check failure: split read alignment of %s from %s have different read lengths. "
 									+ " This is typically caused by GATK indel realignment stripping hard clipping from read alignments. "
 									+ " Ignoring read", record.getReadName(), source == null ? null : source.getFile());
@@ -2,6 +2,7 @@ package au.edu.wehi.idsv;
 
 import au.edu.wehi.idsv.sam.ChimericAlignment;
 import au.edu.wehi.idsv.sam.CigarUtil;
+import au.edu.wehi.idsv.sam.ParsedSATag;
 import au.edu.wehi.idsv.sam.SAMRecordUtil;
 import com.google.common.collect.ImmutableSet;
 import htsjdk.samtools.CigarOperator;
@@ -35,7 +36,7 @@ public class SplitReadEvidence extends SingleReadEvidence implements DirectedBre
 	}
 	public static List<SplitReadEvidence> create(SAMEvidenceSource source, SAMRecord record) {
 		if (record.getReadUnmappedFlag() || record.getCigar() == null) return Collections.emptyList();
-		List<ChimericAlignment> aln = ChimericAlignment.getChimericAlignments(record);
+		ParsedSATag aln = ParsedSATag.get(record);
 		if (aln.isEmpty()) return Collections.emptyList();
 		if (record.getCigar().getFirstCigarElement().getOperator() == CigarOperator.HARD_CLIP
 				|| record.getCigar().getLastCigarElement().getOperator() == CigarOperator.HARD_CLIP) {
@@ -45,8 +46,10 @@ public class SplitReadEvidence extends SingleReadEvidence implements DirectedBre
 		List<SplitReadEvidence> list = new ArrayList<>(2);
 		ChimericAlignment chim = new ChimericAlignment(record);
 		int offset = SAMRecordUtil.getFirstAlignedBaseReadOffset(record);
-		ChimericAlignment pre = aln.stream().filter(ca -> ca.getFirstAlignedBaseReadOffset() < offset).max(ChimericAlignment.ByReadOffset).orElse(null);
-		ChimericAlignment post = aln.stream().filter(ca -> ca.getFirstAlignedBaseReadOffset() > offset).min(ChimericAlignment.ByReadOffset).orElse(null);
+		int preIndex = aln.predecessorByReadOffset(offset);
+		int postIndex = aln.successorByReadOffset(offset);
+		ChimericAlignment pre = preIndex < 0 ? null : aln.chimericAlignment(preIndex);
+		ChimericAlignment post = postIndex < 0 ? null : aln.chimericAlignment(postIndex);
 		SAMSequenceDictionary dict = source != null ? source.getContext().getDictionary() : record.getHeader().getSequenceDictionary();
 		// Read is AAAXBBBYCCC
 		// we are alignment B
@@ -138,12 +141,12 @@ public class SplitReadEvidence extends SingleReadEvidence implements DirectedBre
 		if (getSAMRecord().getSupplementaryAlignmentFlag()) {
 			ChimericAlignment caThis = new ChimericAlignment(getSAMRecord());
 			// The first record should be the primary
-			ChimericAlignment caPrimary = ChimericAlignment.getChimericAlignments(getSAMRecord().getStringAttribute(SAMTag.SA.name())).get(0);
+			ChimericAlignment caPrimary = ParsedSATag.get(getSAMRecord()).chimericAlignment(0);
 			ChimericAlignment osaPrimary = caPrimary;
 			String osa = (String)getSAMRecord().getTransientAttribute("OSA");
 			if (osa != null) {
 				// Use the original SA if it exists - the primary might be considered unmapped and not in the SA tag
-				osaPrimary = ChimericAlignment.getChimericAlignments(osa).get(0);
+				osaPrimary = ParsedSATag.parse(osa).chimericAlignment(0);
 			}
 			if (!caPrimary.equals(osaPrimary)) {
 				// We've stripped the primary alignment.
@@ -201,7 +204,7 @@ public class SplitReadEvidence extends SingleReadEvidence implements DirectedBre
 	public boolean involvesPrimaryReadAlignment() {
 		return super.involvesPrimaryReadAlignment()
 			// the first record in the SA tag should be the primary read alignment 
-			|| ChimericAlignment.getChimericAlignments(getSAMRecord()).get(0).equals(remoteAlignment);
+			|| ParsedSATag.get(getSAMRecord()).chimericAlignment(0).equals(remoteAlignment);
 	}
 
 	/**
@@ -17,7 +17,6 @@ import java.util.*;
 import java.util.function.ToDoubleFunction;
 import java.util.function.ToIntFunction;
 import java.util.stream.Collectors;
-import java.util.stream.DoubleStream;
 import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
@@ -30,15 +29,17 @@ public class StructuralVariationCallBuilder extends IdsvVariantContextBuilder {
 	private final List<DirectedBreakpoint> supportingBreakpoint = new ArrayList<>();
 	private final List<DirectedEvidence> supportingBreakend = new ArrayList<>();
 	// breakpoint support
-	private final List<List<SplitReadEvidence>> supportingSR = new ArrayList<>();
-	private final List<List<IndelEvidence>> supportingIndel = new ArrayList<>();
-	private final List<List<DiscordantReadPair>> supportingDP = new ArrayList<>();
+	// Read evidence is not split by category so the builder does not allocate
+	// per-category collections when joint calling large cohorts
+	private final List<SplitReadEvidence> supportingSR = new ArrayList<>();
+	private final List<IndelEvidence> supportingIndel = new ArrayList<>();
+	private final List<DiscordantReadPair> supportingDP = new ArrayList<>();
 	private final List<SingleReadEvidence> supportingAS = new ArrayList<>();
 	private final List<SingleReadEvidence> supportingRAS = new ArrayList<>();
 	private final List<SingleReadEvidence> supportingCAS = new ArrayList<>();
 	// breakend support
-	private final List<List<SoftClipEvidence>> supportingSC = new ArrayList<>();
-	private final List<List<UnmappedMateReadPair>> supportingOEA = new ArrayList<>();
+	private final List<SoftClipEvidence> supportingSC = new ArrayList<>();
+	private final List<UnmappedMateReadPair> supportingOEA = new ArrayList<>();
 	private final List<SoftClipEvidence> supportingBAS = new ArrayList<>();
 	private boolean updateReadInformation = true;
 	private boolean updateAssemblyInformation= true;
@@ -52,13 +53,76 @@ public class StructuralVariationCallBuilder extends IdsvVariantContextBuilder {
 		this.parent = parent;
 		this.encounteredEvidenceIDs = deduplicateEvidence ? new HashSet<String>() : null;
 		ensureGenotypeBuilders(processContext);
-		for (int i = 0; i < processContext.getCategoryCount(); i++) {
-			supportingSR.add(new ArrayList<>());
-			supportingIndel.add(new ArrayList<>());
-			supportingDP.add(new ArrayList<>());
-			supportingSC.add(new ArrayList<>());
-			supportingOEA.add(new ArrayList<>());
+	}
+	/**
+	 * Per-thread scratch space for per-category assembly support breakdowns.
+	 * Only categories with non-zero support are visited so the cost of
+	 * processing an assembly does not depend on the number of categories.
+	 */
+	private static class CategoryBreakdown {
+		private double[] value = new double[0];
+		private boolean[] isTouched = new boolean[0];
+		private int[] touched = new int[0];
+		private double[] touchedValue = new double[0];
+		private int touchedCount = 0;
+		private void reset(int categoryCount) {
+			if (value.length < categoryCount) {
+				value = new double[categoryCount];
+				isTouched = new boolean[categoryCount];
+				touched = new int[categoryCount];
+				touchedValue = new double[categoryCount];
+			} else {
+				for (int i = 0; i < touchedCount; i++) {
+					value[touched[i]] = 0;
+					isTouched[touched[i]] = false;
+				}
+			}
+			touchedCount = 0;
+		}
+		private void add(int category, double v) {
+			if (!isTouched[category]) {
+				isTouched[category] = true;
+				touched[touchedCount++] = category;
+			}
+			value[category] += v;
+		}
+	}
+	private static final ThreadLocal<CategoryBreakdown> categoryBreakdown = ThreadLocal.withInitial(CategoryBreakdown::new);
+	/**
+	 * Per-thread scratch space for gathering per-category values in evidence order.
+	 */
+	private static class CategoryValues {
+		private double[][] values = new double[0][];
+		private int[] count = new int[0];
+		private void reset(int categoryCount) {
+			if (values.length < categoryCount) {
+				values = Arrays.copyOf(values, categoryCount);
+				count = new int[categoryCount];
+				for (int i = 0; i < categoryCount; i++) {
+					if (values[i] == null) {
+						values[i] = new double[4];
+					}
+				}
+			} else {
+				Arrays.fill(count, 0);
+			}
 		}
+		private void add(int category, double v) {
+			if (count[category] == values[category].length) {
+				values[category] = Arrays.copyOf(values[category], 2 * values[category].length);
+			}
+			values[category][count[category]++] = v;
+		}
+		/**
+		 * DoubleStream.sum() uses compensated summation so we need to as well
+		 */
+		private double sum(int category) {
+			return Arrays.stream(values[category], 0, count[category]).sum();
+		}
+	}
+	private static final ThreadLocal<CategoryValues> categoryValues = ThreadLocal.withInitial(CategoryValues::new);
+	private static int getCategory(DirectedEvidence evidence) {
+		return ((SAMEvidenceSource)evidence.getEvidenceSource()).getSourceCategory();
 	}
 	private static int deduplicationMessageCount = 0;
 	public StructuralVariationCallBuilder addEvidence(DirectedEvidence evidence) {
@@ -95,12 +159,11 @@ public class StructuralVariationCallBuilder extends IdsvVariantContextBuilder {
 		} else {
 			supportingBreakend.add(evidence);
 		}
-		int category = ((SAMEvidenceSource)evidence.getEvidenceSource()).getSourceCategory();
-		assert(category < processContext.getCategoryCount());
+		assert(getCategory(evidence) < processContext.getCategoryCount());
 		if (evidence instanceof DiscordantReadPair) {
-			supportingDP.get(category).add((DiscordantReadPair)evidence);
+			supportingDP.add((DiscordantReadPair)evidence);
 		} else if (evidence instanceof UnmappedMateReadPair) {
-			supportingOEA.get(category).add((UnmappedMateReadPair)evidence);
+			supportingOEA.add((UnmappedMateReadPair)evidence);
 		} else if (evidence instanceof SingleReadEvidence) {
 			SingleReadEvidence sre = (SingleReadEvidence) evidence; 
 			if (AssemblyAttributes.isAssembly(sre)) {
@@ -115,11 +178,11 @@ public class StructuralVariationCallBuilder extends IdsvVariantContextBuilder {
 					supportingAS.add((SingleReadEvidence)sre);
 				}
 			} else if (sre instanceof SoftClipEvidence) {
-				supportingSC.get(category).add((SoftClipEvidence)sre);
+				supportingSC.add((SoftClipEvidence)sre);
 			} else if (sre instanceof SplitReadEvidence) {
-				supportingSR.get(category).add((SplitReadEvidence)sre);
+				supportingSR.add((SplitReadEvidence)sre);
 			} else if (sre instanceof IndelEvidence) {
-				supportingIndel.get(category).add((IndelEvidence) evidence);
+				supportingIndel.add((IndelEvidence) evidence);
 			} else {
 				throw new IllegalArgumentException("Unknown evidence type " + evidence.getClass().getName());
 			}
@@ -297,9 +360,9 @@ public class StructuralVariationCallBuilder extends IdsvVariantContextBuilder {
 		}
 		RangeSet<Integer> allAnchoredBases = TreeRangeSet.create();
 		// TODO: per sample support cigar
-		supportingSR.stream().flatMap(l -> l.stream()).forEach(e -> processAnchor(allAnchoredBases, e.getSAMRecord()));
-		supportingIndel.stream().flatMap(l -> l.stream()).forEach(e -> processAnchor(allAnchoredBases, e.getSAMRecord()));
-		supportingDP.stream().flatMap(l -> l.stream()).forEach(e -> processAnchor(allAnchoredBases, e.getLocalledMappedRead()));
+		supportingSR.stream().forEach(e -> processAnchor(allAnchoredBases, e.getSAMRecord()));
+		supportingIndel.stream().forEach(e -> processAnchor(allAnchoredBases, e.getSAMRecord()));
+		supportingDP.stream().forEach(e -> processAnchor(allAnchoredBases, e.getLocalledMappedRead()));
 		supportingAS.stream().filter(e -> !shouldfilterAssemblyFromSupportInterval(e)).forEach(e -> processAnchor(allAnchoredBases, e.getSAMRecord()));
 		supportingRAS.stream().filter(e -> !shouldfilterAssemblyFromSupportInterval(e)).forEach(e -> processAnchor(allAnchoredBases, e.getSAMRecord()));
 		supportingCAS.stream().filter(e -> !shouldfilterAssemblyFromSupportInterval(e)).forEach(e -> processAnchor(allAnchoredBases, e.getSAMRecord()));
@@ -332,13 +395,10 @@ public class StructuralVariationCallBuilder extends IdsvVariantContextBuilder {
 			suportingAssemblies.addAll(supportingBAS);
 			suportingAssemblies.sort(Comparator.comparing(o -> o.getSAMRecord().getReadName()));
 			// Track long read support as well
-			for (List<SplitReadEvidence> list : supportingSR) {
-				for (SingleReadEvidence read : list) {
-					if (read.getEvidenceSource().isLongReadLibrary()) {
-						suportingAssemblies.add(read);
-					}
-				}
-			}
+			supportingSR.stream()
+					.filter(read -> read.getEvidenceSource().isLongReadLibrary())
+					.sorted(Comparator.comparingInt(StructuralVariationCallBuilder::getCategory))
+					.forEach(suportingAssemblies::add);
 			if (suportingAssemblies.size() > 0) {
 				attribute(VcfInfoAttributes.BREAKEND_ASSEMBLY_ID, suportingAssemblies.stream()
 						.map(o -> o.getSAMRecord().getReadName())
@@ -361,15 +421,15 @@ public class StructuralVariationCallBuilder extends IdsvVariantContextBuilder {
 	private void updateSupportingReadNames() {
 		if (isUpdateAssemblyInformation() & isUpdateReadInformation()) {
 			List<String> supportingBreakpointNames = Streams.concat(
-					supportingIndel.stream().flatMap(l -> l.stream()).map(e -> e.getSAMRecord().getReadName()),
-					supportingSR.stream().flatMap(l -> l.stream()).map(e -> e.getSAMRecord().getReadName()),
-					supportingDP.stream().flatMap(l -> l.stream()).map(e -> e.getLocalledMappedRead().getReadName()))
+					supportingIndel.stream().map(e -> e.getSAMRecord().getReadName()),
+					supportingSR.stream().map(e -> e.getSAMRecord().getReadName()),
+					supportingDP.stream().map(e -> e.getLocalledMappedRead().getReadName()))
 					.distinct()
 					.sorted()
 					.collect(Collectors.toList());
 			List<String> supportingBreakendNames = Streams.concat(
-					supportingSC.stream().flatMap(l -> l.stream()).map(e -> e.getSAMRecord().getReadName()),
-					supportingOEA.stream().flatMap(l -> l.stream()).map(e -> e.getLocalledMappedRead().getReadName()))
+					supportingSC.stream().map(e -> e.getSAMRecord().getReadName()),
+					supportingOEA.stream().map(e -> e.getLocalledMappedRead().getReadName()))
 					.distinct()
 					.sorted()
 					.collect(Collectors.toList());
@@ -424,37 +484,10 @@ public class StructuralVariationCallBuilder extends IdsvVariantContextBuilder {
 			int[] asrp = new int[processContext.getCategoryCount()];
 			int[] basr = new int[processContext.getCategoryCount()];
 			int[] basrp = new int[processContext.getCategoryCount()];
-			for (int i = 0; i < processContext.getCategoryCount(); i++) {
-				final int category = i;
-				asr[category] = Stream.concat(Stream.concat(supportingAS.stream(), supportingRAS.stream()), supportingCAS.stream())
-						.mapToInt(ass -> aaLookup.get(ass).getSupportingReadCount(
-								ass.getBreakendAssemblyContigOffset(),
-								ImmutableSet.of(category),
-								ImmutableSet.of(AssemblyEvidenceSupport.SupportType.Read),
-								(AssemblyEvidenceSource)ass.getEvidenceSource()))
-						.sum();
-				asrp[category] = Stream.concat(Stream.concat(supportingAS.stream(), supportingRAS.stream()), supportingCAS.stream())
-						.mapToInt(ass -> aaLookup.get(ass).getSupportingReadCount(
-								ass.getBreakendAssemblyContigOffset(),
-								ImmutableSet.of(category),
-								ImmutableSet.of(AssemblyEvidenceSupport.SupportType.ReadPair),
-								(AssemblyEvidenceSource)ass.getEvidenceSource()))
-						.sum();
-				basr[category] = supportingBAS.stream()
-						.mapToInt(ass -> aaLookup.get(ass).getSupportingReadCount(
-								ass.getBreakendAssemblyContigOffset(),
-								ImmutableSet.of(category),
-								ImmutableSet.of(AssemblyEvidenceSupport.SupportType.Read),
-								(AssemblyEvidenceSource)ass.getEvidenceSource()))
-						.sum();
-				basrp[category] = supportingBAS.stream()
-						.mapToInt(ass -> aaLookup.get(ass).getSupportingReadCount(
-								ass.getBreakendAssemblyContigOffset(),
-								ImmutableSet.of(category),
-								ImmutableSet.of(AssemblyEvidenceSupport.SupportType.ReadPair),
-								(AssemblyEvidenceSource)ass.getEvidenceSource()))
-						.sum();
-
+			Stream.concat(Stream.concat(supportingAS.stream(), supportingRAS.stream()), supportingCAS.stream())
+					.forEach(ass -> countAssemblySupport(ass, aaLookup, asr, asrp));
+			supportingBAS.forEach(ass -> countAssemblySupport(ass, aaLookup, basr, basrp));
+			for (int category = 0; category < processContext.getCategoryCount(); category++) {
 				genotypeBuilder.get(category).attribute(VcfFormatAttributes.BREAKPOINT_ASSEMBLY_READ_COUNT.attribute(), asr[category]);
 				genotypeBuilder.get(category).attribute(VcfFormatAttributes.BREAKPOINT_ASSEMBLY_READPAIR_COUNT.attribute(), asrp[category]);
 				genotypeBuilder.get(category).attribute(VcfFormatAttributes.BREAKEND_ASSEMBLY_READ_COUNT.attribute(), basr[category]);
@@ -468,24 +501,18 @@ public class StructuralVariationCallBuilder extends IdsvVariantContextBuilder {
 		if (isUpdateAssemblyInformation() & isUpdateReadInformation()) {
 			int[] supportingBreakpointFragments = new int[processContext.getCategoryCount()];
 			int[] supportingBreakendFragments = new int[processContext.getCategoryCount()];
-			for (int i = 0; i < processContext.getCategoryCount(); i++) {
-				final int category = i;
-				Set<String> bpfrags = supportingBreakpoint.stream()
-						.map(e -> {
-							return getOriginatingFragmentIDs(aaLookup, category, e);
-						})
-						.flatMap(x -> x.stream())
-						.collect(Collectors.toSet());
-				supportingBreakpointFragments[category] = bpfrags.size();
-				Set<String> befrags = supportingBreakend.stream()
-						.map(e -> {
-							return getOriginatingFragmentIDs(aaLookup, category, e);
-						})
-						.flatMap(x -> x.stream())
-						.collect(Collectors.toSet());
-				befrags.removeAll(bpfrags);
-				supportingBreakendFragments[category] = befrags.size();
-
+			// only categories with support have fragment sets
+			Map<Integer, Set<String>> bpfrags = getOriginatingFragmentIDs(aaLookup, supportingBreakpoint);
+			Map<Integer, Set<String>> befrags = getOriginatingFragmentIDs(aaLookup, supportingBreakend);
+			for (Map.Entry<Integer, Set<String>> entry : bpfrags.entrySet()) {
+				supportingBreakpointFragments[entry.getKey()] = entry.getValue().size();
+			}
+			for (Map.Entry<Integer, Set<String>> entry : befrags.entrySet()) {
+				Set<String> frags = entry.getValue();
+				frags.removeAll(bpfrags.getOrDefault(entry.getKey(), ImmutableSet.of()));
+				supportingBreakendFragments[entry.getKey()] = frags.size();
+			}
+			for (int category = 0; category < processContext.getCategoryCount(); category++) {
 				genotypeBuilder.get(category).attribute(VcfFormatAttributes.BREAKPOINT_VARIANT_FRAGMENTS.attribute(), supportingBreakpointFragments[category]);
 				genotypeBuilder.get(category).attribute(VcfFormatAttributes.BREAKEND_VARIANT_FRAGMENTS.attribute(), supportingBreakendFragments[category]);
 			}
@@ -498,14 +525,14 @@ public class StructuralVariationCallBuilder extends IdsvVariantContextBuilder {
 		if (isUpdateAssemblyInformation() && isUpdateReadInformation()) {
 			attribute(VcfInfoAttributes.CALLED_QUAL.attribute(), parent.getPhredScaledQual());
 			double beQual = supportingBAS.stream().mapToDouble(e -> e.getBreakendQual()).sum()
-					+ supportingSC.stream().flatMap(l -> l.stream()).mapToDouble(e -> e.getBreakendQual()).sum()
-					+ supportingOEA.stream().flatMap(l -> l.stream()).mapToDouble(e -> e.getBreakendQual()).sum();
+					+ supportingSC.stream().mapToDouble(e -> e.getBreakendQual()).sum()
+					+ supportingOEA.stream().mapToDouble(e -> e.getBreakendQual()).sum();
 			double bpQual = supportingAS.stream().mapToDouble(e -> ((DirectedBreakpoint) e).getBreakpointQual()).sum()
 					+ supportingRAS.stream().mapToDouble(e -> ((DirectedBreakpoint) e).getBreakpointQual()).sum()
 					+ supportingCAS.stream().mapToDouble(e -> ((DirectedBreakpoint) e).getBreakpointQual()).sum()
-					+ supportingSR.stream().flatMap(l -> l.stream()).mapToDouble(e -> e.getBreakpointQual()).sum()
-					+ supportingIndel.stream().flatMap(l -> l.stream()).mapToDouble(e -> e.getBreakpointQual()).sum()
-					+ supportingDP.stream().flatMap(l -> l.stream()).mapToDouble(e -> e.getBreakpointQual()).sum();
+					+ supportingSR.stream().mapToDouble(e -> e.getBreakpointQual()).sum()
+					+ supportingIndel.stream().mapToDouble(e -> e.getBreakpointQual()).sum()
+					+ supportingDP.stream().mapToDouble(e -> e.getBreakpointQual()).sum();
 			attribute(VcfInfoAttributes.BREAKEND_QUAL.attribute(), beQual);
 			phredScore(isBreakend() ? beQual : bpQual);
 		}
@@ -562,12 +589,42 @@ public class StructuralVariationCallBuilder extends IdsvVariantContextBuilder {
 		}
 	}
 
-	private Collection<String> getOriginatingFragmentIDs(Map<SingleReadEvidence, AssemblyAttributes> aaLookup, int category, DirectedEvidence e) {
-		if (AssemblyAttributes.isAssembly(e)) {
-			SingleReadEvidence ass = (SingleReadEvidence)e;
-			return aaLookup.get(ass).getOriginatingFragmentID(Range.closed(ass.getBreakendAssemblyContigOffset(), ass.getBreakendAssemblyContigOffset()), ImmutableSet.of(category), null, (AssemblyEvidenceSource)e.getEvidenceSource());
+	/**
+	 * Counts the reads and read pairs supporting the breakend position of the given assembly
+	 */
+	private static void countAssemblySupport(SingleReadEvidence ass, Map<SingleReadEvidence, AssemblyAttributes> aaLookup, int[] reads, int[] readPairs) {
+		int offset = ass.getBreakendAssemblyContigOffset();
+		for (AssemblyEvidenceSupport s : aaLookup.get(ass).getSupportingEvidence(Range.closed(offset, offset), null, null, (AssemblyEvidenceSource)ass.getEvidenceSource())) {
+			switch (s.getSupportType()) {
+				case Read:
+					reads[s.getCategory()]++;
+					break;
+				case ReadPair:
+					readPairs[s.getCategory()]++;
+					break;
+			}
+		}
+	}
+
+	/**
+	 * Gets the originating fragments of the given evidence, grouped by category
+	 * @return fragment IDs of each category with at least one supporting fragment
+	 */
+	private static Map<Integer, Set<String>> getOriginatingFragmentIDs(Map<SingleReadEvidence, AssemblyAttributes> aaLookup, Collection<? extends DirectedEvidence> evidence) {
+		Map<Integer, Set<String>> fragments = new HashMap<>();
+		for (DirectedEvidence e : evidence) {
+			if (AssemblyAttributes.isAssembly(e)) {
+				SingleReadEvidence ass = (SingleReadEvidence)e;
+				int offset = ass.getBreakendAssemblyContigOffset();
+				for (AssemblyEvidenceSupport s : aaLookup.get(ass).getSupportingEvidence(Range.closed(offset, offset), null, null, (AssemblyEvidenceSource)e.getEvidenceSource())) {
+					fragments.computeIfAbsent(s.getCategory(), k -> new HashSet<>()).add(s.getFragmentID());
+				}
+			} else {
+				int category = getCategory(e);
+				fragments.computeIfAbsent(category, k -> new HashSet<>()).addAll(e.getOriginatingFragmentID(category));
+			}
 		}
-		return e.getOriginatingFragmentID(category);
+		return fragments;
 	}
 
 	/*
@@ -581,18 +638,28 @@ public class StructuralVariationCallBuilder extends IdsvVariantContextBuilder {
 			Map<SingleReadEvidence, AssemblyAttributes> aaLookup) {
 		double totalAssQual = 0;
 		double[] prorata = new double[processContext.getCategoryCount()];
+		CategoryBreakdown breakdown = categoryBreakdown.get();
 		for (SingleReadEvidence ass : assemblies) {
 			int offset = ass.getBreakendAssemblyContigOffset();
 			AssemblyAttributes aa = aaLookup.get(ass);
 			double assQual = (ass instanceof DirectedBreakpoint) ? ((DirectedBreakpoint)ass).getBreakpointQual() : ass.getBreakendQual();
-			double[] breakdownQual = new double[processContext.getCategoryCount()];
-			for (int i = 0; i < breakdownQual.length; i++) {
-				breakdownQual[i] = aa.getSupportingQualScore(offset, ImmutableSet.of(i), null, (AssemblyEvidenceSource)ass.getEvidenceSource());
+			breakdown.reset(prorata.length);
+			for (AssemblyEvidenceSupport s : aa.getSupportingEvidence(Range.closed(offset, offset), null, null, (AssemblyEvidenceSource)ass.getEvidenceSource())) {
+				breakdown.add(s.getCategory(), s.getQual());
 			}
-			double breakdownTotal = DoubleStream.of(breakdownQual).sum();
+			// match the float precision of AssemblyAttributes.getSupportingQualScore()
+			Arrays.sort(breakdown.touched, 0, breakdown.touchedCount);
+			for (int i = 0; i < breakdown.touchedCount; i++) {
+				int category = breakdown.touched[i];
+				breakdown.value[category] = (float)breakdown.value[category];
+				breakdown.touchedValue[i] = breakdown.value[category];
+			}
+			// DoubleStream.sum() uses compensated summation so we need to as well
+			double breakdownTotal = Arrays.stream(breakdown.touchedValue, 0, breakdown.touchedCount).sum();
 			if (breakdownTotal != 0) { // defensive check to mitigate impact of 0 qual assemblies (#156)
-				for (int i = 0; i < prorata.length; i++) {
-					prorata[i] += assQual * (breakdownQual[i] / breakdownTotal);
+				for (int i = 0; i < breakdown.touchedCount; i++) {
+					int category = breakdown.touched[i];
+					prorata[category] += assQual * (breakdown.value[category] / breakdownTotal);
 				}
 			}
 			totalAssQual += assQual;
@@ -603,33 +670,38 @@ public class StructuralVariationCallBuilder extends IdsvVariantContextBuilder {
 		attribute(infoAttr.attribute(), totalAssQual);
 		return prorata;
 	}
-	private <T> void sumIntAttr(
+	private <T extends DirectedEvidence> void sumIntAttr(
 			VcfInfoAttributes infoAttr,
 			VcfFormatAttributes formatAttr,
-			List<List<T>> support,
+			List<T> support,
 			ToIntFunction<T> f) {
-		assert(support.size() == processContext.getCategoryCount());
 		int sum = 0;
-		for (int i = 0; i < support.size(); i++) {
-			int value = support.get(i).stream().mapToInt(f).sum();
-			genotypeBuilder.get(i).attribute(formatAttr.attribute(), value);
-			sum += value;
+		int[] result = new int[processContext.getCategoryCount()];
+		for (T e : support) {
+			result[getCategory(e)] += f.applyAsInt(e);
+		}
+		for (int i = 0; i < result.length; i++) {
+			genotypeBuilder.get(i).attribute(formatAttr.attribute(), result[i]);
+			sum += result[i];
 		}
 		attribute(infoAttr, sum);
 	}
 	private <T extends DirectedEvidence> double[] sumDoubleAttr(
 			VcfInfoAttributes infoAttr,
 			VcfFormatAttributes formatAttr,
-			List<List<T>> support,
+			List<T> support,
 			ToDoubleFunction<T> f) {
-		assert(support.size() == processContext.getCategoryCount());
 		double sum = 0;
-		double[] result = new double[processContext.getCategoryCount()]; 
-		for (int i = 0; i < support.size(); i++) {
-			double value = support.get(i).stream().mapToDouble(f).sum();
-			genotypeBuilder.get(i).attribute(formatAttr.attribute(), value);
-			sum += value;
-			result[i] = value;
+		double[] result = new double[processContext.getCategoryCount()];
+		CategoryValues values = categoryValues.get();
+		values.reset(result.length);
+		for (T e : support) {
+			values.add(getCategory(e), f.applyAsDouble(e));
+		}
+		for (int i = 0; i < result.length; i++) {
+			result[i] = values.sum(i);
+			genotypeBuilder.get(i).attribute(formatAttr.attribute(), result[i]);
+			sum += result[i];
 		}
 		attribute(infoAttr, sum);
 		return result;
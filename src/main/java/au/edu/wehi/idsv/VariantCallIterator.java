@@ -1,8 +1,7 @@
 package au.edu.wehi.idsv;
 
-import au.edu.wehi.idsv.util.BatchingIterator;
-import au.edu.wehi.idsv.util.DuplicatingIterable;
-import au.edu.wehi.idsv.util.FlatMapIterator;
+import au.edu.wehi.idsv.util.PartitioningIterable;
+import au.edu.wehi.idsv.visualisation.BinaryTelemetry;
 import au.edu.wehi.idsv.visualisation.StateTracker;
 import au.edu.wehi.idsv.visualisation.TrackedState;
 import com.google.common.collect.ImmutableList;
@@ -30,7 +29,7 @@ public class VariantCallIterator implements CloseableIterator<VariantContextDire
 	private static final int ITERATOR_BUFFER_SIZE = 256;
 	private final VariantContextDirectedEvidence endOfStream;
 	private final ProcessingContext processContext;
-	private final DuplicatingIterable<List<DirectedEvidence>> iterable;
+	private final PartitioningIterable<DirectedEvidence> iterable;
 	private final QueryInterval[] filterInterval;
 	private final BlockingDeque<VariantContextDirectedEvidence> outBuffer = new LinkedBlockingDeque<>(ITERATOR_BUFFER_SIZE);
 	private VariantContextDirectedEvidence outBufferHeadNextValidRecord = null;
@@ -48,13 +47,14 @@ public class VariantCallIterator implements CloseableIterator<VariantContextDire
 		this.processContext = processContext;
 		boolean callBreakends = processContext.getVariantCallingParameters().callBreakends;
 		this.activeIterators = callBreakends ? 6 : 4;
-		this.iterable = new DuplicatingIterable<>(activeIterators, new BatchingIterator<>(evidence, ITERATOR_BUFFER_SIZE), 2);
+		this.iterable = new PartitioningIterable<>(activeIterators, evidence, e -> partition(e, callBreakends), ITERATOR_BUFFER_SIZE, 2);
 		this.filterInterval = interval;
+		// iterators must be requested in partition order
 		for (BreakendDirection localDir : BreakendDirection.values()) {
 			for (BreakendDirection remoteDir : BreakendDirection.values()) {
 				MaximalEvidenceCliqueIterator it = new MaximalEvidenceCliqueIterator(
 						processContext,
-						new FlatMapIterator<>(this.iterable.iterator()),
+						this.iterable.iterator(),
 						localDir,
 						remoteDir,
 						new SequentialIdGenerator(String.format("gridss%d%s%s_", Math.max(intervalNumber, 0), localDir.toChar(), remoteDir.toChar())));
@@ -63,13 +63,31 @@ public class VariantCallIterator implements CloseableIterator<VariantContextDire
 			if (callBreakends) {
 				BreakendMaximalEvidenceCliqueIterator it = new BreakendMaximalEvidenceCliqueIterator(
 						processContext,
-						new FlatMapIterator<>(this.iterable.iterator()),
+						this.iterable.iterator(),
 						localDir,
 						new SequentialIdGenerator(String.format("gridss%d%s_", Math.max(intervalNumber, 0), localDir.toChar())));
 				async.add(new AsyncDirectionalIterator(it, localDir, null));
 			}
 		}
 	}
+	/**
+	 * Determines which clique iterator the given evidence should be sent to.
+	 * Partitions are ordered by local direction then breakpoint remote direction
+	 * followed by the single breakend iterator of that local direction. 
+	 * @return partition index, or -1 if the evidence is not used by any iterator
+	 */
+	private static int partition(DirectedEvidence e, boolean callBreakends) {
+		BreakendSummary bs = e.getBreakendSummary();
+		int perDirection = callBreakends ? 3 : 2;
+		int offset = bs.direction == BreakendDirection.Forward ? 0 : perDirection;
+		if (bs instanceof BreakpointSummary) {
+			return offset + (((BreakpointSummary)bs).direction2 == BreakendDirection.Forward ? 0 : 1);
+		}
+		if (callBreakends && !(e instanceof DirectedBreakpoint)) {
+			return offset + 2;
+		}
+		return -1;
+	}
 	public VariantCallIterator(ProcessingContext processContext, Iterator<DirectedEvidence> evidence) {
 		this(processContext, evidence, null, -1);
 	}
@@ -99,7 +117,12 @@ public class VariantCallIterator implements CloseableIterator<VariantContextDire
 				String filename = String.format("maxclique%s_%s%s.csv", positionComponent, dir1.toChar(), dir2 == null ? "" : dir2.toChar());
 				File file = new File(processContext.getConfig().getVisualisation().directory, filename);
 				try {
-					this.currentTracker = new StateTracker(file);
+					BinaryTelemetry binaryTelemetry = processContext.getBinaryTelemetry();
+					if (binaryTelemetry != null) {
+						this.currentTracker = new StateTracker(binaryTelemetry, filename);
+					} else {
+						this.currentTracker = new StateTracker(file);
+					}
 					this.currentTrackedObjects = Lists.newArrayList(Iterables.concat(ts.trackedObjects(), this.trackedObjects()));
 					this.currentTracker.writeHeader(currentTrackedObjects);
 				} catch (IOException e) {
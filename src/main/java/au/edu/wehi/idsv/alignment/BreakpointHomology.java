@@ -5,10 +5,12 @@ import au.edu.wehi.idsv.picard.ReferenceLookup;
 import au.edu.wehi.idsv.sam.SAMRecordUtil;
 import au.edu.wehi.idsv.vcf.VcfInfoAttributes;
 import htsjdk.samtools.CigarElement;
+import htsjdk.samtools.SAMSequenceRecord;
 import htsjdk.samtools.TextCigarCodec;
 import htsjdk.samtools.util.SequenceUtil;
 
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -27,6 +29,100 @@ public class BreakpointHomology {
 	public String toString() {
 		return String.format("[%d, %d]", localHomologyLength, remoteHomologyLength);
 	}
+	/**
+	 * Per-thread alignment buffers.
+	 * Native aligners require exact length arrays so buffers are only reused
+	 * when the required length is unchanged.
+	 */
+	private static class Workspace {
+		private byte[] breakend = new byte[0];
+		private byte[] breakend(int length) {
+			if (breakend.length != length) breakend = new byte[length];
+			return breakend;
+		}
+	}
+	private static final ThreadLocal<Workspace> workspace = ThreadLocal.withInitial(Workspace::new);
+	/**
+	 * Reference bases around one side of a breakpoint
+	 */
+	private static class BreakendReference {
+		/**
+		 * Reference bases in breakend orientation (anchor bases followed by the bases past the breakend)
+		 */
+		private final byte[] bases;
+		/**
+		 * Number of anchoring bases of length refLength
+		 */
+		private final int refAnchorLength;
+		/**
+		 * Number of anchoring bases of length seqLength
+		 */
+		private final int seqAnchorLength;
+		/**
+		 * Loads the reference bases for the given breakend.
+		 *
+		 * Bases are identical to those returned by BreakendSummary.getAnchorSequence()
+		 * for anchors of length seqLength and refLength, and the refLength anchor past the breakend.
+		 */
+		public BreakendReference(ReferenceLookup lookup, BreakendSummary be, int seqLength, int refLength) {
+			SAMSequenceRecord refseq = lookup.getSequenceDictionary().getSequence(be.referenceIndex);
+			int contigLength = refseq.getSequenceLength();
+			int anchorStart, anchorEnd, seqAnchorStart, seqAnchorEnd, flankStart, flankEnd;
+			if (be.direction == BreakendDirection.Forward) {
+				anchorStart = be.start - refLength + 1;
+				anchorEnd = be.start;
+				seqAnchorStart = be.start - seqLength + 1;
+				seqAnchorEnd = be.start;
+				flankStart = be.start + 1;
+				flankEnd = be.start + refLength;
+			} else {
+				anchorStart = be.start;
+				anchorEnd = be.start + refLength - 1;
+				seqAnchorStart = be.start;
+				seqAnchorEnd = be.start + seqLength - 1;
+				flankStart = be.start - refLength;
+				flankEnd = be.start - 1;
+			}
+			this.refAnchorLength = clampedLength(anchorStart, anchorEnd, contigLength);
+			this.seqAnchorLength = clampedLength(seqAnchorStart, seqAnchorEnd, contigLength);
+			int flankLength = clampedLength(flankStart, flankEnd, contigLength);
+			// anchor and flanking bases are adjacent so we only need a single reference lookup
+			int windowStart = Math.max(1, Math.min(anchorStart, flankStart));
+			int windowEnd = Math.min(contigLength, Math.max(anchorEnd, flankEnd));
+			if (windowStart > windowEnd) {
+				this.bases = new byte[0];
+			} else {
+				byte[] window = lookup.getSubsequenceAt(refseq.getSequenceName(), windowStart, windowEnd).getBases();
+				if (be.direction == BreakendDirection.Forward) {
+					this.bases = window;
+				} else {
+					// RC(flank + anchor) = RC(anchor) + RC(flank)
+					this.bases = Arrays.copyOf(window, window.length);
+					SequenceUtil.reverseComplement(this.bases);
+				}
+			}
+			assert(bases.length == refAnchorLength + flankLength);
+		}
+		private static int clampedLength(int start, int end, int contigLength) {
+			return Math.max(0, Math.min(contigLength, end) - Math.max(1, start) + 1);
+		}
+		/**
+		 * Writes the anchor of length seqLength to the given array
+		 */
+		public int writeSeqAnchor(byte[] dest, int offset) {
+			System.arraycopy(bases, refAnchorLength - seqAnchorLength, dest, offset, seqAnchorLength);
+			return offset + seqAnchorLength;
+		}
+		/**
+		 * Writes the reverse complement of the anchor of length seqLength to the given array
+		 */
+		public int writeSeqAnchorReverseComplement(byte[] dest, int offset) {
+			for (int i = 0; i < seqAnchorLength; i++) {
+				dest[offset + i] = SequenceUtil.complement(bases[refAnchorLength - 1 - i]);
+			}
+			return offset + seqAnchorLength;
+		}
+	}
 	/**
 	 * Calculates the sequence homology length at the given breakpoint position 
 	 * @param lookup reference genome
@@ -39,14 +135,12 @@ public class BreakpointHomology {
 		if (bs.start - bs.end != 0 || bs.start2 - bs.end2 != 0) {
 			throw new IllegalArgumentException("Breakpoint position must be exact");
 		}
-		if (insertedSequence == null) {
-			insertedSequence = "";
-		}
+		byte[] localIns = insertedSequence == null ? new byte[0] : insertedSequence.getBytes(StandardCharsets.US_ASCII);
 		if (bs.direction == BreakendDirection.Backward) {
-			insertedSequence = SequenceUtil.reverseComplement(insertedSequence);
+			SequenceUtil.reverseComplement(localIns);
 		}
 		int seqLength = maxBreakendLength;
-		int refLength = maxBreakendLength + insertedSequence.length() + margin;
+		int refLength = maxBreakendLength + localIns.length + margin;
 		if (bs.getEventSize() != null) {
 			seqLength = Math.min(seqLength, bs.getEventSize());
 			refLength = Math.min(refLength, bs.getEventSize());
@@ -58,42 +152,42 @@ public class BreakpointHomology {
 		// localSeq           remoteSeq
 		//      >>>>       >>>>
 		//      localRef   remoteRef
-		String localSeq = bs.getAnchorSequence(lookup, refLength);
-		String localBsSeq = bs.getAnchorSequence(lookup, seqLength);
-		String localRef = bs.advance(refLength).getAnchorSequence(lookup, refLength);
-		String remoteSeq = SequenceUtil.reverseComplement(bs.remoteBreakend().getAnchorSequence(lookup, refLength));
-		String remoteBsSeq = SequenceUtil.reverseComplement(bs.remoteBreakend().getAnchorSequence(lookup, seqLength));
-		String remoteRef = SequenceUtil.reverseComplement(bs.remoteBreakend().advance(refLength).getAnchorSequence(lookup, refLength));
-		String strBreakend = localBsSeq + insertedSequence + remoteBsSeq;
-		String strLocal = localSeq + localRef;
-		String strRemote = remoteRef + remoteSeq;
-		byte[] breakend = strBreakend.getBytes(StandardCharsets.US_ASCII);
-		byte[] local = strLocal.getBytes(StandardCharsets.US_ASCII);
-		byte[] remote = strRemote.getBytes(StandardCharsets.US_ASCII);
-		Aligner aligner = AlignerFactory.create();
+		BreakendReference local = new BreakendReference(lookup, bs, seqLength, refLength);
+		BreakendReference remote = new BreakendReference(lookup, bs.remoteBreakend(), seqLength, refLength);
+		int breakendLength = local.seqAnchorLength + localIns.length + remote.seqAnchorLength;
 		int localHomologyBaseCount = 0;
 		int remoteHomologyBaseCount = 0;
-		if (breakend != null && breakend.length > 0) {
-			if (local != null && local.length > 0) {
-				Alignment localAlignment = aligner.align_smith_waterman(breakend, local);
+		if (breakendLength > 0) {
+			Workspace ws = workspace.get();
+			Aligner aligner = AlignerFactory.create();
+			if (local.bases.length > 0) {
+				byte[] breakend = ws.breakend(breakendLength);
+				int offset = local.writeSeqAnchor(breakend, 0);
+				System.arraycopy(localIns, 0, breakend, offset, localIns.length);
+				remote.writeSeqAnchorReverseComplement(breakend, offset + localIns.length);
+				Alignment localAlignment = aligner.align_smith_waterman(breakend, local.bases);
 				List<CigarElement> cigar = TextCigarCodec.decode(localAlignment.getCigar()).getCigarElements();
 				// We are defining a homology as the number of bases mapped on the other side
 				// inserted sequence means the number of bases consumed can be negative
-				remoteHomologyBaseCount = Math.max(0, remoteBsSeq.length() - SAMRecordUtil.getEndSoftClipLength(cigar));
+				remoteHomologyBaseCount = Math.max(0, remote.seqAnchorLength - SAMRecordUtil.getEndSoftClipLength(cigar));
 				if (SAMRecordUtil.getStartSoftClipLength(cigar) > 0) {
 					// anchor is not aligned - something went wrong
 					remoteHomologyBaseCount = 0;
 				}
 			}
-			if (remote != null && remote.length > 0) {
+			if (remote.bases.length > 0) {
 				// #344 rev-comp remote so we always have the anchor on the same side
 				// This ensures that we'll choose the same alignment on both sides if there
 				// are multiple equally good alignments
-				SequenceUtil.reverseComplement(breakend);
-				SequenceUtil.reverseComplement(remote);
-				Alignment remoteAlignment = aligner.align_smith_waterman(breakend, remote);
+				byte[] breakend = ws.breakend(breakendLength);
+				int offset = remote.writeSeqAnchor(breakend, 0);
+				for (int i = 0; i < localIns.length; i++) {
+					breakend[offset + i] = SequenceUtil.complement(localIns[localIns.length - 1 - i]);
+				}
+				local.writeSeqAnchorReverseComplement(breakend, offset + localIns.length);
+				Alignment remoteAlignment = aligner.align_smith_waterman(breakend, remote.bases);
 				List<CigarElement> cigar = TextCigarCodec.decode(remoteAlignment.getCigar()).getCigarElements();
-				localHomologyBaseCount = Math.max(0, localBsSeq.length() - SAMRecordUtil.getEndSoftClipLength(cigar));
+				localHomologyBaseCount = Math.max(0, local.seqAnchorLength - SAMRecordUtil.getEndSoftClipLength(cigar));
 				if (SAMRecordUtil.getStartSoftClipLength(cigar) > 0) {
 					// anchor is not aligned - something went wrong
 					localHomologyBaseCount = 0;
@@ -2,6 +2,7 @@ package au.edu.wehi.idsv.alignment;
 
 import au.edu.wehi.idsv.Defaults;
 import au.edu.wehi.idsv.sam.SAMRecordUtil;
+import gridss.cmdline.ResidentResources;
 import htsjdk.samtools.*;
 import htsjdk.samtools.fastq.FastqRecord;
 import htsjdk.samtools.fastq.FastqWriter;
@@ -102,6 +103,13 @@ public class BwaAligner implements Closeable {
 
     public static BwaMemIndex getBwaIndexFor(File reference) {
         File image = getBwaIndexFileFor(reference);
+        if (ResidentResources.isEnabled()) {
+            return ResidentResources.getBwaIndex(image, BwaAligner::loadBwaIndex);
+        }
+        return loadBwaIndex(image);
+    }
+
+    private static BwaMemIndex loadBwaIndex(File image) {
         log.info("Loading bwa mem index image from " + image);
         System.err.flush(); // ensure our warning error message gets to the console as we're possible about to die in C code
         BwaMemIndex index = new BwaMemIndex(image.getAbsolutePath());
@@ -0,0 +1,229 @@
+package au.edu.wehi.idsv.alignment;
+
+import htsjdk.samtools.CigarElement;
+import htsjdk.samtools.CigarOperator;
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.fastq.FastqRecord;
+import htsjdk.samtools.util.Log;
+
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Deduplicates alignment requests for identical sequences.
+ *
+ * Requests are keyed on read bases only. Read names and base qualities are not considered.
+ * A sequence identical to one already sent to the underlying aligner is not realigned:
+ * the alignment records of the original request are copied, renamed, and have their
+ * base qualities replaced with those of the new request.
+ *
+ * Alignments are returned in request order. This requires that the underlying aligner
+ * returns all records for a read contiguously and in request order.
+ *
+ * asyncAlign() and flush() should be called from a single thread, but results can be consumed
+ * from a different thread.
+ */
+public class CachingStreamingAligner implements StreamingAligner {
+	private static final Log log = Log.getInstance(CachingStreamingAligner.class);
+	private static final int POLL_INTERVAL = 100;
+	private final StreamingAligner underlying;
+	private final Map<String, CacheEntry> cache;
+	/**
+	 * Sequences sent to the underlying aligner for which not all alignment records have been received
+	 */
+	private final Queue<CacheEntry> inFlight = new ArrayDeque<>();
+	/**
+	 * Requests not yet returned to the caller, in request order
+	 */
+	private final Queue<Request> pending = new ArrayDeque<>();
+	private final Queue<SAMRecord> completed = new ArrayDeque<>();
+	private long nextAlignmentId = 0;
+	private long requestCount = 0;
+	private long cacheHitCount = 0;
+
+	/**
+	 * @param underlying aligner to perform the alignment with
+	 * @param maxCacheSize maximum number of distinct sequences to retain alignments for
+	 */
+	public CachingStreamingAligner(StreamingAligner underlying, int maxCacheSize) {
+		if (maxCacheSize <= 0) throw new IllegalArgumentException("Cache size must be positive");
+		this.underlying = underlying;
+		this.cache = new LinkedHashMap<String, CacheEntry>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, CacheEntry> eldest) {
+				return size() > maxCacheSize;
+			}
+		};
+	}
+
+	private static class CacheEntry {
+		private final String alignmentName;
+		private final List<SAMRecord> alignments = new ArrayList<>(1);
+		private boolean isComplete = false;
+		public CacheEntry(String alignmentName) {
+			this.alignmentName = alignmentName;
+		}
+	}
+
+	private static class Request {
+		private final FastqRecord fq;
+		private final CacheEntry entry;
+		public Request(FastqRecord fq, CacheEntry entry) {
+			this.fq = fq;
+			this.entry = entry;
+		}
+	}
+
+	@Override
+	public void asyncAlign(FastqRecord fq) throws IOException {
+		FastqRecord toAlign = null;
+		synchronized (this) {
+			requestCount++;
+			String key = fq.getReadString();
+			CacheEntry entry = cache.get(key);
+			if (entry == null) {
+				entry = new CacheEntry(Long.toString(nextAlignmentId++));
+				cache.put(key, entry);
+				inFlight.add(entry);
+				toAlign = new FastqRecord(entry.alignmentName, fq.getReadBases(), fq.getBaseQualityHeader(), fq.getBaseQualities());
+			} else {
+				cacheHitCount++;
+			}
+			pending.add(new Request(fq, entry));
+			releaseCompletedRequests();
+		}
+		if (toAlign != null) {
+			// Don't hold our lock when calling the underlying aligner as it can block
+			// until the alignment records have been consumed.
+			underlying.asyncAlign(toAlign);
+		}
+	}
+
+	private void drainUnderlying() {
+		while (underlying.processedAlignmentRecords() > 0) {
+			SAMRecord r = underlying.getAlignment();
+			while (!inFlight.isEmpty() && !inFlight.peek().alignmentName.equals(r.getReadName())) {
+				// aligners return all records for a read together so we know we've seen them all
+				inFlight.poll().isComplete = true;
+			}
+			if (inFlight.isEmpty()) {
+				throw new IllegalStateException(String.format("Aligner returned alignment for %s which is not awaiting alignment.", r.getReadName()));
+			}
+			inFlight.peek().alignments.add(r);
+		}
+		releaseCompletedRequests();
+	}
+
+	private void releaseCompletedRequests() {
+		while (!pending.isEmpty() && pending.peek().entry.isComplete) {
+			Request request = pending.poll();
+			for (SAMRecord r : request.entry.alignments) {
+				completed.add(copyFor(r, request.fq));
+			}
+		}
+	}
+
+	/**
+	 * Creates a copy of the given alignment record with the read name and qualities of the given request
+	 */
+	private static SAMRecord copyFor(SAMRecord alignment, FastqRecord fq) {
+		SAMRecord r = alignment.deepCopy();
+		r.setReadName(fq.getReadName());
+		byte[] fqQuals = fq.getBaseQualities();
+		byte[] quals = r.getBaseQualities();
+		if (quals != SAMRecord.NULL_QUALS && quals.length > 0 && fqQuals != null) {
+			int offset = 0;
+			if (r.getCigar().numCigarElements() > 0) {
+				CigarElement ce = r.getCigar().getFirstCigarElement();
+				if (ce.getOperator() == CigarOperator.HARD_CLIP) {
+					offset = ce.getLength();
+				}
+			}
+			if (offset + quals.length <= fqQuals.length) {
+				boolean reverse = r.getReadNegativeStrandFlag();
+				for (int i = 0; i < quals.length; i++) {
+					quals[i] = reverse ? fqQuals[fqQuals.length - 1 - offset - i] : fqQuals[offset + i];
+				}
+				r.setBaseQualities(quals);
+			}
+		}
+		return r;
+	}
+
+	/**
+	 * Flushes all outstanding requests.
+	 *
+	 * Once complete, alignments for all requests made prior to calling flush() will be available.
+	 */
+	@Override
+	public void flush() throws IOException {
+		underlying.flush();
+		while (true) {
+			synchronized (this) {
+				drainUnderlying();
+				if (underlying.outstandingAlignmentRecord() <= 0) {
+					drainUnderlying();
+					while (!inFlight.isEmpty()) {
+						inFlight.poll().isComplete = true;
+					}
+					releaseCompletedRequests();
+					return;
+				}
+			}
+			try {
+				Thread.sleep(POLL_INTERVAL);
+			} catch (InterruptedException e) {
+				log.warn(e);
+				return;
+			}
+		}
+	}
+
+	@Override
+	public synchronized int processedAlignmentRecords() {
+		drainUnderlying();
+		return completed.size();
+	}
+
+	@Override
+	public synchronized int outstandingAlignmentRecord() {
+		return pending.size();
+	}
+
+	@Override
+	public synchronized SAMRecord getAlignment() {
+		if (completed.isEmpty()) {
+			drainUnderlying();
+		}
+		SAMRecord r = completed.poll();
+		if (r == null) {
+			throw new IllegalStateException("Call flush() or check processedAlignmentRecords() to ensure records are available.");
+		}
+		return r;
+	}
+
+	/**
+	 * Number of alignment requests made
+	 */
+	public synchronized long getRequestCount() {
+		return requestCount;
+	}
+
+	/**
+	 * Number of alignment requests satisfied without invoking the underlying aligner
+	 */
+	public synchronized long getCacheHitCount() {
+		return cacheHitCount;
+	}
+
+	public synchronized double getCacheHitRate() {
+		return requestCount == 0 ? 0 : cacheHitCount / (double)requestCount;
+	}
+
+	@Override
+	public void close() throws IOException {
+		flush();
+		underlying.close();
+		log.info(String.format("Alignment cache: %d requests, %d cache hits (%.1f%%)", getRequestCount(), getCacheHitCount(), 100 * getCacheHitRate()));
+	}
+}
@@ -29,6 +29,7 @@ import java.util.stream.Collectors;
 public class ExternalProcessStreamingAligner implements Closeable, Flushable, StreamingAligner {
 	private static final int POLL_INTERVAL = 1000;
 	private static final int OUTPUT_BUFFER_SIZE = 1024;
+	private static final int INPUT_BUFFER_SIZE_IN_BYTES = 1 << 16;
 	private static final Log log = Log.getInstance(ExternalProcessStreamingAligner.class);
 	private final AtomicInteger outstandingReads = new AtomicInteger(0);
 	private final BlockingQueue<SAMRecord> buffer = new ArrayBlockingQueue<>(OUTPUT_BUFFER_SIZE);
@@ -54,8 +55,9 @@ public class ExternalProcessStreamingAligner implements Closeable, Flushable, St
 	public synchronized void asyncAlign(FastqRecord fq) throws IOException {
 		ensureAligner();
 		outstandingReads.incrementAndGet();
+		// Not flushing after every record as aligners process their input in batches anyway.
+		// Buffered records are sent to the aligner when the buffer fills, or on flush().
 		toExternalProgram.write(fq);
-		toExternalProgram.flush();
 	}
 	private void ensureAligner() throws IOException {
 		if (aligner == null) {
@@ -73,7 +75,7 @@ public class ExternalProcessStreamingAligner implements Closeable, Flushable, St
 					.redirectOutput(Redirect.PIPE)
 					.redirectError(Redirect.INHERIT)
 					.start();
-			toExternalProgram = new BasicFastqWriter(new PrintStream(new BufferedOutputStream(aligner.getOutputStream())));
+			toExternalProgram = new BasicFastqWriter(new PrintStream(new BufferedOutputStream(aligner.getOutputStream(), INPUT_BUFFER_SIZE_IN_BYTES)));
 			reader = new Thread(() -> readAllAlignments(readerFactory));
 			reader.setName("ExternalProcessStreamingAligner");
 			reader.start();
@@ -0,0 +1,212 @@
+package au.edu.wehi.idsv.alignment;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.SAMSequenceDictionary;
+import htsjdk.samtools.SamReaderFactory;
+import htsjdk.samtools.fastq.FastqRecord;
+import htsjdk.samtools.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Distributes alignment across multiple external aligner processes.
+ *
+ * Consecutive batches of reads are dispatched to each aligner process in round-robin order.
+ * Each process has its own reader thread, and alignments are reassembled so records are returned
+ * in the order in which the reads were requested.
+ *
+ * Reassembly requires that each aligner returns all records for a read contiguously and in input order,
+ * and that consecutive reads sent to the pool do not have the same read name.
+ */
+public class ExternalProcessStreamingAlignerPool implements StreamingAligner {
+	private static final int POLL_INTERVAL = 100;
+	private static final Log log = Log.getInstance(ExternalProcessStreamingAlignerPool.class);
+	/**
+	 * Number of consecutive reads to send to each aligner process.
+	 */
+	public static final int DEFAULT_BATCH_SIZE = 1024;
+	private final List<ExternalProcessStreamingAligner> aligners = new ArrayList<>();
+	/**
+	 * Alignment records returned by each aligner process that have not yet been reassembled
+	 */
+	private final List<Queue<SAMRecord>> alignerOutput = new ArrayList<>();
+	/**
+	 * Requested reads for which we might not yet have received all alignment records, in request order
+	 */
+	private final Queue<PendingRead> pending = new ArrayDeque<>();
+	private final Queue<SAMRecord> completed = new ArrayDeque<>();
+	private final ExecutorService flushExecutor;
+	private final int batchSize;
+	private int currentAligner = 0;
+	private int currentBatchCount = 0;
+
+	private static class PendingRead {
+		private final int alignerIndex;
+		private final String readName;
+		public PendingRead(int alignerIndex, String readName) {
+			this.alignerIndex = alignerIndex;
+			this.readName = readName;
+		}
+	}
+
+	/**
+	 * @param processes number of aligner processes to run
+	 * @param batchSize number of consecutive reads to send to an aligner process before moving to the next process
+	 */
+	public ExternalProcessStreamingAlignerPool(final SamReaderFactory readerFactory, final List<String> commandline, final File reference, final int threads, final SAMSequenceDictionary dict, final int processes, final int batchSize) {
+		if (processes < 1) throw new IllegalArgumentException("At least one aligner process is required.");
+		if (batchSize < 1) throw new IllegalArgumentException("Batch size must be positive.");
+		int threadsPerProcess = Math.max(1, threads / processes);
+		for (int i = 0; i < processes; i++) {
+			aligners.add(new ExternalProcessStreamingAligner(readerFactory, commandline, reference, threadsPerProcess, dict));
+			alignerOutput.add(new ArrayDeque<>());
+		}
+		this.batchSize = batchSize;
+		this.flushExecutor = Executors.newFixedThreadPool(processes, new ThreadFactoryBuilder().setDaemon(true).setNameFormat("alignerPoolFlush-%d").build());
+	}
+
+	@Override
+	public void asyncAlign(FastqRecord fq) throws IOException {
+		ExternalProcessStreamingAligner aligner;
+		synchronized (this) {
+			if (currentBatchCount >= batchSize) {
+				currentBatchCount = 0;
+				currentAligner = (currentAligner + 1) % aligners.size();
+			}
+			currentBatchCount++;
+			pending.add(new PendingRead(currentAligner, samReadName(fq.getReadName())));
+			aligner = aligners.get(currentAligner);
+		}
+		// Writing to the aligner can block until the aligner output has been consumed
+		// so we can't hold our lock here.
+		aligner.asyncAlign(fq);
+	}
+
+	/**
+	 * Aligners truncate read names at the first whitespace character
+	 */
+	private static String samReadName(String fastqReadName) {
+		for (int i = 0; i < fastqReadName.length(); i++) {
+			if (Character.isWhitespace(fastqReadName.charAt(i))) {
+				return fastqReadName.substring(0, i);
+			}
+		}
+		return fastqReadName;
+	}
+
+	/**
+	 * Moves alignments from the aligner processes to the output in request order.
+	 * @param allAlignmentsReceived all alignments for all requested reads have been received
+	 */
+	private void reassemble(boolean allAlignmentsReceived) {
+		for (int i = 0; i < aligners.size(); i++) {
+			ExternalProcessStreamingAligner aligner = aligners.get(i);
+			Queue<SAMRecord> output = alignerOutput.get(i);
+			while (aligner.processedAlignmentRecords() > 0) {
+				output.add(aligner.getAlignment());
+			}
+		}
+		while (!pending.isEmpty()) {
+			PendingRead read = pending.peek();
+			Queue<SAMRecord> output = alignerOutput.get(read.alignerIndex);
+			while (!output.isEmpty() && output.peek().getReadName().equals(read.readName)) {
+				completed.add(output.poll());
+			}
+			if (output.isEmpty() && !allAlignmentsReceived) {
+				// aligner could still return more records for this read
+				break;
+			}
+			pending.poll();
+		}
+		if (allAlignmentsReceived) {
+			for (Queue<SAMRecord> output : alignerOutput) {
+				if (!output.isEmpty()) {
+					throw new IllegalStateException(String.format("Aligner returned alignment for %s which is not awaiting alignment. "
+							+ "Aligners must return records in input order.", output.peek().getReadName()));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Flushes all aligner processes.
+	 *
+	 * Aligner processes are flushed in parallel with alignments being consumed as they become available.
+	 */
+	@Override
+	public void flush() throws IOException {
+		List<Future<?>> flushes = new ArrayList<>(aligners.size());
+		for (ExternalProcessStreamingAligner aligner : aligners) {
+			flushes.add(flushExecutor.submit(() -> {
+				aligner.flush();
+				return null;
+			}));
+		}
+		try {
+			while (!flushes.stream().allMatch(Future::isDone)) {
+				synchronized (this) {
+					reassemble(false);
+				}
+				Thread.sleep(POLL_INTERVAL);
+			}
+			for (Future<?> f : flushes) {
+				f.get();
+			}
+		} catch (InterruptedException e) {
+			log.warn(e);
+			Thread.currentThread().interrupt();
+			return;
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException)e.getCause();
+			}
+			throw new RuntimeException(e.getCause());
+		}
+		synchronized (this) {
+			reassemble(true);
+			currentBatchCount = 0;
+		}
+	}
+
+	@Override
+	public synchronized int processedAlignmentRecords() {
+		reassemble(false);
+		return completed.size();
+	}
+
+	@Override
+	public synchronized int outstandingAlignmentRecord() {
+		return pending.size();
+	}
+
+	@Override
+	public synchronized SAMRecord getAlignment() {
+		if (completed.isEmpty()) {
+			reassemble(false);
+		}
+		SAMRecord r = completed.poll();
+		if (r == null) {
+			throw new IllegalStateException("No alignments available. getAlignment() should only be called if at least one alignment record is available.");
+		}
+		return r;
+	}
+
+	@Override
+	public void close() throws IOException {
+		flush();
+		for (ExternalProcessStreamingAligner aligner : aligners) {
+			aligner.close();
+		}
+		flushExecutor.shutdown();
+	}
+}
@@ -1,6 +1,7 @@
 package au.edu.wehi.idsv.bed;
 
 import au.edu.wehi.idsv.LinearGenomicCoordinate;
+import com.google.common.collect.BoundType;
 import com.google.common.collect.Range;
 import com.google.common.collect.RangeSet;
 import com.google.common.collect.TreeRangeSet;
@@ -16,46 +17,80 @@ import java.io.File;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
-import java.util.stream.Collectors;
+import java.util.Arrays;
+
+import static it.unimi.dsi.fastutil.Arrays.quickSort;
 
 /**
  * Minimal bed wrapper retaining only interval information
+ *
+ * Intervals are stored as sorted, disjoint, half-open linear coordinate intervals
+ * in primitive arrays so overlap queries are a binary search without allocation.
  * @author Daniel Cameron
  *
  */
 public class IntervalBed {
 	private static final Log log = Log.getInstance(IntervalBed.class);
+	private static final int DEFAULT_SIZE = 16;
 	private final LinearGenomicCoordinate linear;
-	private final RangeSet<Long> intervals;
+	/**
+	 * Interval start linear coordinates (inclusive) in ascending order
+	 */
+	private long[] start;
+	/**
+	 * Interval end linear coordinates (exclusive) in ascending order
+	 */
+	private long[] end;
+	private int count;
 	public int size() {
-		return intervals.asRanges().size();
+		return count;
 	}
 	public IntervalBed(LinearGenomicCoordinate linear, File bed) throws IOException {
-		this(linear, toRangeSet(linear, bed));
+		this(linear);
+		load(bed);
 	}
 	public IntervalBed(LinearGenomicCoordinate linear) {
-		this(linear, TreeRangeSet.<Long>create());
+		this.linear = linear;
+		this.start = new long[DEFAULT_SIZE];
+		this.end = new long[DEFAULT_SIZE];
+		this.count = 0;
 	}
 	public IntervalBed(LinearGenomicCoordinate linear, QueryInterval[] intervals) {
-		this(linear, TreeRangeSet.<Long>create());
+		this(linear);
 		for (QueryInterval qi : intervals) {
 			addInterval(qi);
 		}
 	}
-	private IntervalBed(LinearGenomicCoordinate linear, RangeSet<Long> intervals) {
+	/**
+	 * Creates an interval set from the given (possibly unsorted and overlapping) intervals
+	 * @param start interval start linear coordinates (inclusive)
+	 * @param end interval end linear coordinates (exclusive)
+	 * @param n number of intervals
+	 */
+	private IntervalBed(LinearGenomicCoordinate linear, long[] start, long[] end, int n) {
 		this.linear = linear;
-		this.intervals = intervals;
+		this.start = start;
+		this.end = end;
+		this.count = n;
+		normalise();
 	}
 	public static IntervalBed merge(LinearGenomicCoordinate linear, Iterable<IntervalBed> list) {
-		RangeSet<Long> blacklisted = TreeRangeSet.create();
+		int n = 0;
 		for (IntervalBed bed : list) {
 			// TODO assert dictionaries and linear coordinates match
-			blacklisted.addAll(bed.intervals);
+			n += bed.count;
+		}
+		long[] start = new long[Math.max(DEFAULT_SIZE, n)];
+		long[] end = new long[Math.max(DEFAULT_SIZE, n)];
+		int offset = 0;
+		for (IntervalBed bed : list) {
+			System.arraycopy(bed.start, 0, start, offset, bed.count);
+			System.arraycopy(bed.end, 0, end, offset, bed.count);
+			offset += bed.count;
 		}
-		return new IntervalBed(linear, blacklisted);
+		return new IntervalBed(linear, start, end, n);
 	}
-	private static RangeSet<Long> toRangeSet(LinearGenomicCoordinate linear, File bed) throws IOException {
-		RangeSet<Long> rs = TreeRangeSet.create();
+	private void load(File bed) throws IOException {
 		BEDCodec codec = new BEDCodec();
 	    try (AbstractFeatureReader<BEDFeature, LineIterator> reader = AbstractFeatureReader.getFeatureReader(bed.getPath(), codec, false)) {
 	    	int lineno = 0;
@@ -70,19 +105,101 @@ public class IntervalBed {
 					log.error(msg);
 					throw new IllegalArgumentException(msg);
 				}
-				rs.add(Range.closedOpen(linear.getLinearCoordinate(referenceIndex, start), linear.getLinearCoordinate(referenceIndex, end) + 1));
+				// defer merging of unsorted bed files until all records are loaded
+				ensureCapacity(count + 1);
+				this.start[count] = linear.getLinearCoordinate(referenceIndex, start);
+				this.end[count] = linear.getLinearCoordinate(referenceIndex, end) + 1;
+				count++;
 			}
         }
-		return rs;
+		normalise();
 	}
 	public static void addInterval(LinearGenomicCoordinate linear, RangeSet<Long> blacklisted, int referenceIndex, int start, int end) {
 		blacklisted.add(Range.closedOpen(linear.getLinearCoordinate(referenceIndex, start), linear.getLinearCoordinate(referenceIndex, end) + 1));
 	}
 	public synchronized void addInterval(int referenceIndex, int start, int end) {
-		addInterval(linear, intervals, referenceIndex, start, end);
+		add(linear.getLinearCoordinate(referenceIndex, start), linear.getLinearCoordinate(referenceIndex, end) + 1);
 	}
 	public synchronized void addInterval(QueryInterval qi) {
-		addInterval(linear, intervals, qi.referenceIndex, qi.start, qi.end);
+		addInterval(qi.referenceIndex, qi.start, qi.end);
+	}
+	/**
+	 * Adds the given half-open interval, merging with any overlapping or adjacent intervals
+	 */
+	private void add(long low, long high) {
+		if (low >= high) return;
+		if (count == 0 || low > end[count - 1]) {
+			// fast path for intervals added in ascending order
+			ensureCapacity(count + 1);
+			start[count] = low;
+			end[count] = high;
+			count++;
+			return;
+		}
+		int first = firstIndexOf(end, low);
+		int last = firstIndexOf(start, high + 1) - 1;
+		if (last < first) {
+			// between intervals
+			ensureCapacity(count + 1);
+			System.arraycopy(start, first, start, first + 1, count - first);
+			System.arraycopy(end, first, end, first + 1, count - first);
+			start[first] = low;
+			end[first] = high;
+			count++;
+		} else {
+			// merge with all intervals from first to last inclusive
+			start[first] = Math.min(low, start[first]);
+			end[first] = Math.max(high, end[last]);
+			int removed = last - first;
+			if (removed > 0) {
+				System.arraycopy(start, last + 1, start, first + 1, count - last - 1);
+				System.arraycopy(end, last + 1, end, first + 1, count - last - 1);
+				count -= removed;
+			}
+		}
+	}
+	/**
+	 * Returns the index of the first interval with a coordinate at or after the given position
+	 * @param coordinates interval start or end coordinates
+	 */
+	private int firstIndexOf(long[] coordinates, long position) {
+		int index = Arrays.binarySearch(coordinates, 0, count, position);
+		if (index < 0) {
+			index = -index - 1;
+		}
+		return index;
+	}
+	private void ensureCapacity(int size) {
+		if (start.length < size) {
+			int newSize = Math.max(size, 2 * start.length);
+			start = Arrays.copyOf(start, newSize);
+			end = Arrays.copyOf(end, newSize);
+		}
+	}
+	/**
+	 * Sorts the intervals by start position and merges overlapping and adjacent intervals
+	 */
+	private void normalise() {
+		quickSort(0, count, (a, b) -> Long.compare(start[a], start[b]), (a, b) -> {
+			long tmp = start[a];
+			start[a] = start[b];
+			start[b] = tmp;
+			tmp = end[a];
+			end[a] = end[b];
+			end[b] = tmp;
+		});
+		int n = 0;
+		for (int i = 0; i < count; i++) {
+			if (start[i] >= end[i]) continue;
+			if (n > 0 && start[i] <= end[n - 1]) {
+				end[n - 1] = Math.max(end[n - 1], end[i]);
+			} else {
+				start[n] = start[i];
+				end[n] = end[i];
+				n++;
+			}
+		}
+		count = n;
 	}
 	/**
 	 * Determines whether any of the intervals overlap the given interval
@@ -94,29 +211,73 @@ public class IntervalBed {
 	public boolean overlaps(int referenceIndex, int start, int end) {
 		return overlaps(linear.getLinearCoordinate(referenceIndex, start), linear.getLinearCoordinate(referenceIndex, end));
 	}
+	/**
+	 * Determines whether any of the intervals overlap the given closed interval
+	 */
 	public boolean overlaps(long start, long end) {
-		Range<Long> r = Range.closedOpen(start, end + 1);
-		return overlaps(r);
+		return overlapsHalfOpen(start, end + 1);
 	}
 	public boolean overlaps(Range<Long> interval) {
 		if (interval == null) {
 			return false;
 		}
-		return intervals.intersects(interval);
+		long low = Long.MIN_VALUE;
+		long high = Long.MAX_VALUE;
+		if (interval.hasLowerBound()) {
+			low = interval.lowerBoundType() == BoundType.CLOSED ? interval.lowerEndpoint() : interval.lowerEndpoint() + 1;
+		}
+		if (interval.hasUpperBound()) {
+			high = interval.upperBoundType() == BoundType.CLOSED ? interval.upperEndpoint() + 1 : interval.upperEndpoint();
+		}
+		return overlapsHalfOpen(low, high);
+	}
+	private boolean overlapsHalfOpen(long low, long high) {
+		if (low >= high) return false;
+		// first interval ending after the start of the query
+		int index = low == Long.MAX_VALUE ? count : firstIndexOf(end, low + 1);
+		return index < count && start[index] < high;
 	}
 	/**
 	 * Removes the given set of intervals
 	 * @param toRemove intervals to remove
 	 */
 	public void remove(IntervalBed toRemove) {
-		intervals.removeAll(toRemove.intervals.asRanges());
+		long[] newStart = new long[Math.max(DEFAULT_SIZE, count + toRemove.count)];
+		long[] newEnd = new long[newStart.length];
+		int n = 0;
+		int j = 0;
+		for (int i = 0; i < count; i++) {
+			long low = start[i];
+			long high = end[i];
+			while (j < toRemove.count && toRemove.end[j] <= low) {
+				j++;
+			}
+			int k = j;
+			while (low < high && k < toRemove.count && toRemove.start[k] < high) {
+				if (toRemove.start[k] > low) {
+					newStart[n] = low;
+					newEnd[n] = toRemove.start[k];
+					n++;
+				}
+				low = Math.max(low, toRemove.end[k]);
+				k++;
+			}
+			if (low < high) {
+				newStart[n] = low;
+				newEnd[n] = high;
+				n++;
+			}
+		}
+		start = newStart;
+		end = newEnd;
+		count = n;
 	}
 	public void write(File bed, String name) throws IOException {
 		try (BufferedWriter writer = Files.newBufferedWriter(bed.toPath(), StandardCharsets.US_ASCII)) {
 			writer.write(String.format("track name=\"%s\" description=\"%s\" useScore=0\n", name, name));
-			for (Range<Long> r : intervals.asRanges()) {
-				long lower = r.lowerEndpoint();
-				long upper = r.upperEndpoint();
+			for (int i = 0; i < count; i++) {
+				long lower = start[i];
+				long upper = end[i];
 				int referenceIndex = linear.getReferenceIndex(lower);
 				int referenceIndex2 = linear.getReferenceIndex(upper);
 				assert(referenceIndex == referenceIndex2);
@@ -127,12 +288,11 @@ public class IntervalBed {
 		}
 	}
 	public QueryInterval[] asQueryInterval() {
-		QueryInterval[] qis = new QueryInterval[intervals.asRanges().size()];
-		int i = 0;
-		for (Range<Long> r : intervals.asRanges()) {
-			QueryInterval qi = new QueryInterval(linear.getReferenceIndex(r.lowerEndpoint()), linear.getReferencePosition(r.lowerEndpoint()), linear.getReferencePosition(r.upperEndpoint() - 1));
-			qis[i++] = qi;
-			if (linear.getReferenceIndex(r.upperEndpoint() - 1) != qi.referenceIndex) {
+		QueryInterval[] qis = new QueryInterval[count];
+		for (int i = 0; i < count; i++) {
+			QueryInterval qi = new QueryInterval(linear.getReferenceIndex(start[i]), linear.getReferencePosition(start[i]), linear.getReferencePosition(end[i] - 1));
+			qis[i] = qi;
+			if (linear.getReferenceIndex(end[i] - 1) != qi.referenceIndex) {
 				throw new RuntimeException("Not Yet Implemented: support for interval spaning chromosomes and unpadded LinearGenomicCoordinate lookups. This should not happen. Please raise an issue at https://github.com/PapenfussLab/gridss/issues");
 			}
 		}
@@ -144,22 +304,24 @@ public class IntervalBed {
 	 * Expanded intervals are truncated at reference contig bounds.
 	 */
 	public IntervalBed expandIntervals(int startBases, int endBases) {
-		TreeRangeSet<Long> expanded = TreeRangeSet.create(intervals
-				.asRanges()
-				.stream()
-				.map(r -> expand(r, startBases, endBases))
-				.collect(Collectors.toList()));
-		return new IntervalBed(linear, expanded);
-	}
-	private Range<Long> expand(Range<Long> range, int startBases, int endBases) {
-		int referenceIndex = linear.getReferenceIndex(range.lowerEndpoint());
-		int start = linear.getReferencePosition(range.lowerEndpoint());
-		int end = linear.getReferencePosition(range.upperEndpoint());
-		start = Math.max(1, start - startBases);
-		end = Math.min(linear.getDictionary().getSequence(referenceIndex).getSequenceLength() + 1, end + endBases);
-		return Range.closedOpen(linear.getLinearCoordinate(referenceIndex, start), linear.getLinearCoordinate(referenceIndex, end));
+		long[] expandedStart = new long[Math.max(DEFAULT_SIZE, count)];
+		long[] expandedEnd = new long[expandedStart.length];
+		for (int i = 0; i < count; i++) {
+			int referenceIndex = linear.getReferenceIndex(start[i]);
+			int s = linear.getReferencePosition(start[i]);
+			int e = linear.getReferencePosition(end[i]);
+			s = Math.max(1, s - startBases);
+			e = Math.min(linear.getDictionary().getSequence(referenceIndex).getSequenceLength() + 1, e + endBases);
+			expandedStart[i] = linear.getLinearCoordinate(referenceIndex, s);
+			expandedEnd[i] = linear.getLinearCoordinate(referenceIndex, e);
+		}
+		return new IntervalBed(linear, expandedStart, expandedEnd, count);
 	}
 	public RangeSet<Long> asRangeSet() {
-		return TreeRangeSet.create(intervals);
+		RangeSet<Long> rs = TreeRangeSet.create();
+		for (int i = 0; i < count; i++) {
+			rs.add(Range.closedOpen(start[i], end[i]));
+		}
+		return rs;
 	}
 }
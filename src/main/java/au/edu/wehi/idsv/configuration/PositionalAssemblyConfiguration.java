@@ -15,6 +15,9 @@ public class PositionalAssemblyConfiguration {
 		forceFullMemoizationRecalculationAt = config.getFloat("forceFullMemoizationRecalculationAt");
 		safetyModePathCountThreshold = config.getInt("safetyModePathCountThreshold");
 		safetyModeContigsToCall = config.getInt("safetyModeContigsToCall");
+		spillDenseRegions = config.getBoolean("spillDenseRegions");
+		spillWindowSize = config.getInt("spillWindowSize");
+		simplifyPaths = config.getBoolean("simplifyPaths");
 		if (retainWidthMultiple < 1) {
 			throw new IllegalArgumentException("retainWidthMultiple must be at least 1");
 		}
@@ -24,6 +27,9 @@ public class PositionalAssemblyConfiguration {
 		if (maximumNodeDensity <= 0) {
 			throw new IllegalArgumentException("maximumNodeDensity must be positive");
 		}
+		if (spillWindowSize <= 0) {
+			throw new IllegalArgumentException("spillWindowSize must be positive");
+		}
 	}
 	/**
 	 * Maximum length of a single path node. Leaves longer that this length will not be collapsed.
@@ -76,4 +82,21 @@ public class PositionalAssemblyConfiguration {
 	 * Number of memoized paths to enter safety mode
 	 */
 	public final int safetyModePathCountThreshold;
-}
\ No newline at end of file
+	/**
+	 * Spill evidence in regions exceeding maximumNodeDensity to disk and assemble
+	 * them in windows of at most {@link #spillWindowSize} reads instead of downsampling
+	 * the region.
+	 */
+	public final boolean spillDenseRegions;
+	/**
+	 * Maximum number of spilled reads loaded into the assembly graph at any one time.
+	 */
+	public final int spillWindowSize;
+	/**
+	 * Merges adjacent path nodes with matching kmers or matching support intervals
+	 * before contig calling. Simplification reduces the number of nodes traversed
+	 * during contig calling but delays the loading of each node until no further
+	 * merges are possible.
+	 */
+	public boolean simplifyPaths;
+}
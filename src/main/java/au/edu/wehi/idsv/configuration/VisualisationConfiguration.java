@@ -16,6 +16,7 @@ public class VisualisationConfiguration {
 		assemblyContigMemoization = config.getBoolean("assemblyContigMemoization");
 		assemblyTelemetry = config.getBoolean("assemblyTelemetry");
 		maxCliqueTelemetry = config.getBoolean("maxCliqueTelemetry");
+		binaryTelemetry = config.getBoolean("binaryTelemetry");
 		evidenceAllocation = config.getBoolean("evidenceAllocation");
 		evidenceTracker = config.getBoolean("evidenceTracker");
 		buffers = config.getBoolean("buffers");
@@ -45,5 +46,9 @@ public class VisualisationConfiguration {
 	public float bufferTrackingItervalInSeconds;
 	public boolean assemblyTelemetry;
 	public boolean maxCliqueTelemetry;
+	/**
+	 * Write telemetry to a binary file through non-blocking per-thread buffers
+	 */
+	public boolean binaryTelemetry;
 	public boolean evidenceTracker;
 }
@@ -0,0 +1,47 @@
+package au.edu.wehi.idsv.debruijn;
+
+import it.unimi.dsi.fastutil.HashCommon;
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+
+/**
+ * Kmer counter supporting concurrent increments.
+ *
+ * Kmers are partitioned across independently locked primitive hash tables
+ * so threads counting different kmers rarely contend.
+ *
+ * Lookups are not synchronised and must not be performed concurrently with increments.
+ */
+public class ConcurrentKmerCounter {
+    private final Long2IntOpenHashMap[] stripes;
+    private final int mask;
+    /**
+     * @param stripes number of independently locked partitions. Rounded up to the next power of two.
+     */
+    public ConcurrentKmerCounter(int stripes) {
+        int n = HashCommon.nextPowerOfTwo(Math.max(1, stripes));
+        this.stripes = new Long2IntOpenHashMap[n];
+        this.mask = n - 1;
+        for (int i = 0; i < n; i++) {
+            this.stripes[i] = new Long2IntOpenHashMap();
+        }
+    }
+    private Long2IntOpenHashMap stripe(long kmer) {
+        return stripes[(int)HashCommon.mix(kmer) & mask];
+    }
+    /**
+     * Increments the count of the given kmer
+     * @return updated kmer count
+     */
+    public int increment(long kmer) {
+        Long2IntOpenHashMap stripe = stripe(kmer);
+        synchronized (stripe) {
+            return stripe.addTo(kmer, 1) + 1;
+        }
+    }
+    /**
+     * Gets the count of the given kmer
+     */
+    public int get(long kmer) {
+        return stripe(kmer).get(kmer);
+    }
+}
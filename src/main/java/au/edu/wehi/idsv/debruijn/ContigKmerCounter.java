@@ -102,11 +102,11 @@ public class ContigKmerCounter {
 
     public int count(byte[] seq) {
         int hits = 0;
-        PackedSequence fps = new PackedSequence(seq, false, false);
-        //PackedSequence bps = new PackedSequence(seq, true, true); // don't need to RC the reads since we added the RC of the reference
-        for (int i = 0; i < seq.length - k + 1; i++) {
-            hits += count(fps.getKmer(i, k));
-            //hits += count(bps.getKmer(i, k));
+        // don't need to RC the reads since we added the RC of the reference
+        long[] kmers = new long[Math.max(0, seq.length - k + 1)];
+        int kmerCount = KmerEncodingHelper.kmers(k, seq, kmers);
+        for (int i = 0; i < kmerCount; i++) {
+            hits += count(kmers[i]);
         }
         return hits;
     }
@@ -122,6 +122,108 @@ public class KmerEncodingHelper {
 	public static long picardBaseToEncoded(int k, byte[] bases) {
 		return picardBaseToEncoded(k, Bytes.asList(bases));
 	}
+	/**
+	 * Number of 64-bit words required to pack the given number of bases
+	 */
+	public static int packedWords(int baseCount) {
+		return (baseCount + MAX_K - 1) / MAX_K;
+	}
+	/**
+	 * Packs the given bases in 2bit format.
+	 * The first base is packed in the MSBs of the first word.
+	 * @param bases ASCII bases
+	 * @param reverse reverse the base order
+	 * @param complement complement the bases
+	 * @param packed output array. Must have at least packedWords(bases.length) elements
+	 */
+	public static void pack(byte[] bases, boolean reverse, boolean complement, long[] packed) {
+		int n = bases.length;
+		int words = packedWords(n);
+		long xor = complement ? complementBits[1] : 0;
+		for (int w = 0; w < words; w++) {
+			int start = w * MAX_K;
+			int end = Math.min(n, start + MAX_K);
+			long word = 0;
+			if (reverse) {
+				for (int i = start; i < end; i++) {
+					word = (word << 2) | (BYTE_TO_ENCODED[bases[n - 1 - i] & 0xFF] ^ xor);
+				}
+			} else {
+				for (int i = start; i < end; i++) {
+					word = (word << 2) | (BYTE_TO_ENCODED[bases[i] & 0xFF] ^ xor);
+				}
+			}
+			// pad the final word so bases are in the MSBs
+			packed[w] = word << (2 * (start + MAX_K - end));
+		}
+	}
+	/**
+	 * Extracts every kmer from the given packed sequence
+	 * @param k kmer size
+	 * @param packed bases packed as per {@link #pack(byte[], boolean, boolean, long[])}
+	 * @param baseCount number of packed bases
+	 * @param kmers output array. Must have at least baseCount - k + 1 elements
+	 * @return number of kmers written
+	 */
+	public static int packedKmers(int k, long[] packed, int baseCount, long[] kmers) {
+		int count = Math.max(0, baseCount - k + 1);
+		int dropBits = Long.SIZE - 2 * k;
+		// kmers entirely contained in the packed array without needing a following word
+		int fastCount = Math.max(0, Math.min(count, (packed.length - 1) * MAX_K));
+		// no loop-carried dependencies so the JIT can unroll and vectorise this loop
+		for (int i = 0; i < fastCount; i++) {
+			int w = i >>> 5;
+			int shift = 2 * (i & (MAX_K - 1));
+			// double shift avoids the Java shift-by-64 no-op when shift is 0
+			long bits = (packed[w] << shift) | ((packed[w + 1] >>> 1) >>> (Long.SIZE - 1 - shift));
+			kmers[i] = bits >>> dropBits;
+		}
+		for (int i = fastCount; i < count; i++) {
+			int w = i >>> 5;
+			int shift = 2 * (i & (MAX_K - 1));
+			kmers[i] = (packed[w] << shift) >>> dropBits;
+		}
+		return count;
+	}
+	/**
+	 * Encodes every kmer of the given bases
+	 * @param k kmer size
+	 * @param bases ASCII bases
+	 * @param kmers output array. Must have at least bases.length - k + 1 elements
+	 * @return number of kmers written
+	 */
+	public static int kmers(int k, byte[] bases, long[] kmers) {
+		return kmers(k, bases, false, false, kmers);
+	}
+	/**
+	 * Encodes every kmer of the given bases
+	 * @param k kmer size
+	 * @param bases ASCII bases
+	 * @param reverse reverse the base order
+	 * @param complement complement the bases
+	 * @param kmers output array. Must have at least bases.length - k + 1 elements
+	 * @return number of kmers written
+	 */
+	public static int kmers(int k, byte[] bases, boolean reverse, boolean complement, long[] kmers) {
+		long[] packed = new long[packedWords(bases.length)];
+		pack(bases, reverse, complement, packed);
+		return packedKmers(k, packed, bases.length, kmers);
+	}
+	/**
+	 * Converts the kmers of a sequence to the kmers of the reverse complement of that sequence
+	 * @param k kmer size
+	 * @param kmers kmers of the sequence in sequence order
+	 * @param count number of kmers
+	 * @param rcKmers output array. Must have at least count elements and not be the same array as kmers.
+	 */
+	public static void reverseComplementKmers(int k, long[] kmers, int count, long[] rcKmers) {
+		long xor = complementBits[k];
+		int shift = Long.SIZE - 2 * k;
+		for (int i = 0; i < count; i++) {
+			long encoded = kmers[count - 1 - i] ^ xor;
+			rcKmers[i] = ((Long.reverse(encoded & HIGH_BITS) << 1) | (Long.reverse(encoded & LOW_BITS) >>> 1)) >>> shift;
+		}
+	}
 	/**
 	 * Reverses the kmer bases
 	 * @param k kmer size
@@ -35,6 +35,14 @@ public class PackedKmerList {
 	public long kmer(int offset) {
 		return seq.getKmer(offset, k);
 	}
+	/**
+	 * Extracts every kmer
+	 * @param kmers output array. Must have at least length() elements
+	 * @return number of kmers written
+	 */
+	public int kmers(long[] kmers) {
+		return seq.getKmers(k, kmers);
+	}
 	public int weight(int offset) {
 		assert(offset < length());
 		if (weights == null) return 0;
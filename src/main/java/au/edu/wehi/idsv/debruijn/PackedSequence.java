@@ -33,28 +33,9 @@ public class PackedSequence implements Serializable {
 		this.baseCount = ps.baseCount;
 	}
 	public PackedSequence(byte[] bases, boolean reverse, boolean complement) {
-		packed = new long[IntMath.divide(bases.length, BASES_PER_WORD, RoundingMode.CEILING)];
+		packed = new long[KmerEncodingHelper.packedWords(bases.length)];
 		baseCount = bases.length;
-		int revMultiplier = 1;
-		int revOffset = 0;
-		if (reverse) {
-			revMultiplier = -1;
-			revOffset = bases.length - 1;
-		}
-		if (complement) { 
-			for (int i = 0; i < bases.length; i++) {
-				byte base = bases[i];
-				long encoded = KmerEncodingHelper.picardBaseToEncoded(base);
-				encoded = KmerEncodingHelper.complement(1, encoded);
-				setBaseEncoded(revOffset + i * revMultiplier, encoded);
-			}
-		} else {
-			for (int i = 0; i < bases.length; i++) {
-				byte base = bases[i];
-				long encoded = KmerEncodingHelper.picardBaseToEncoded(base);
-				setBaseEncoded(revOffset + i * revMultiplier, encoded);
-			}
-		}
+		KmerEncodingHelper.pack(bases, reverse, complement, packed);
 	}
 	/**
 	 * Subsequence of the given packed sequence
@@ -158,6 +139,15 @@ public class PackedSequence implements Serializable {
 			return kmer;
 		}
 	}
+	/**
+	 * Extracts every kmer in this sequence
+	 * @param k kmer size
+	 * @param kmers output array. Must have at least {@link #kmers(int)} elements
+	 * @return number of kmers written
+	 */
+	public int getKmers(int k, long[] kmers) {
+		return KmerEncodingHelper.packedKmers(k, packed, baseCount, kmers);
+	}
 	@Override
 	public String toString() {
 		return new String(getBytes(0, baseCount));
@@ -7,30 +7,50 @@ import au.edu.wehi.idsv.configuration.ErrorCorrectionConfiguration;
 import htsjdk.samtools.SAMRecord;
 import htsjdk.samtools.util.Log;
 import htsjdk.samtools.util.SequenceUtil;
+import com.google.common.collect.Lists;
 import it.unimi.dsi.fastutil.Hash;
-import it.unimi.dsi.fastutil.longs.Long2IntMap;
-import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
 import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
 import it.unimi.dsi.fastutil.longs.LongSet;
 
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
 
 public class ReadErrorCorrector {
     private static final Log log = Log.getInstance(ReadErrorCorrector.class);
-    private final Long2IntMap kmerCounts = new Long2IntOpenHashMap();
+    /**
+     * Number of reads processed by each task when error correcting on a thread pool
+     */
+    private static final int READS_PER_TASK = 256;
+    /**
+     * Number of kmer counter partitions used when error correcting on a thread pool
+     */
+    private static final int CONCURRENT_COUNTER_STRIPES = 64;
+    private final ConcurrentKmerCounter kmerCounts;
     private final int k;
     private final float kmerErrorCorrectionMultiple;
     private final boolean deduplicateReadKmers;
     private final int maxCorrectionsInKmer;
-    private int maxCount = 0;
+    private volatile int maxCount = 0;
     private int maxCollapseCount = 0;
 
     public ReadErrorCorrector(ErrorCorrectionConfiguration ecc) {
         this(ecc.k, ecc.kmerErrorCorrectionMultiple, ecc.maxCorrectionsInKmer, ecc.deduplicateReadKmers);
     }
     public ReadErrorCorrector(int k, float kmerErrorCorrectionMultiple, int maxCorrectionsInKmer, boolean deduplicateReadKmers) {
+        this(k, kmerErrorCorrectionMultiple, maxCorrectionsInKmer, deduplicateReadKmers, 1);
+    }
+    /**
+     * @param counterStripes number of independently locked kmer count partitions.
+     *                       Kmers can be counted from multiple threads concurrently but must all be counted before any read is corrected.
+     */
+    public ReadErrorCorrector(int k, float kmerErrorCorrectionMultiple, int maxCorrectionsInKmer, boolean deduplicateReadKmers, int counterStripes) {
         if (k > 31) throw new IllegalArgumentException("k cannot exceed 31");
+        this.kmerCounts = new ConcurrentKmerCounter(counterStripes);
         this.k = k;
         this.kmerErrorCorrectionMultiple = kmerErrorCorrectionMultiple;
         this.maxCorrectionsInKmer = maxCorrectionsInKmer;
@@ -47,10 +67,82 @@ public class ReadErrorCorrector {
      */
     public static void errorCorrect(int k, float kmerErrorCorrectionMultiple, int maxCorrectionsInKmer, boolean deduplicateReadKmers, Iterable<? extends DirectedEvidence> evidence) {
         ReadErrorCorrector ec = new ReadErrorCorrector(k, kmerErrorCorrectionMultiple, maxCorrectionsInKmer, deduplicateReadKmers);
-        // need to deduplicate the underlying reads so we don't double count
-        // kmers from reads with multiple evidence (e.g. multiple indels or SC on both ends)
         Set<SAMRecord> reads = new HashSet<>();
         Set<SAMRecord> rcreads = new HashSet<>();
+        underlyingReads(evidence, reads, rcreads);
+        // TODO: cache PackedSequence
+        reads.stream().forEach(r -> ec.countKmers(r, false));
+        rcreads.stream().forEach(r -> ec.countKmers(r, true));
+        reads.stream().forEach(r -> ec.errorCorrect(r, false));
+        rcreads.stream().forEach(r -> ec.errorCorrect(r, true));
+    }
+
+    /**
+     * Error corrects the reads underlying the given evidence using the given thread pool.
+     * @param threadpool thread pool to perform error correction on. If null, error correction is performed on the calling thread.
+     * @see #errorCorrect(int, float, int, boolean, Iterable)
+     */
+    public static void errorCorrect(int k, float kmerErrorCorrectionMultiple, int maxCorrectionsInKmer, boolean deduplicateReadKmers, Iterable<? extends DirectedEvidence> evidence, Executor threadpool) {
+        if (threadpool == null) {
+            errorCorrect(k, kmerErrorCorrectionMultiple, maxCorrectionsInKmer, deduplicateReadKmers, evidence);
+        } else {
+            errorCorrectAsync(k, kmerErrorCorrectionMultiple, maxCorrectionsInKmer, deduplicateReadKmers, evidence, threadpool).join();
+        }
+    }
+
+    /**
+     * Asynchronously error corrects the reads underlying the given evidence.
+     *
+     * Kmers are counted in parallel, then reads are corrected in parallel.
+     * Since correction depends only on the final kmer counts, the result is identical to
+     * that of the single-threaded error correction.
+     *
+     * The evidence is traversed on the calling thread. No task submitted to the thread pool waits on any other task.
+     * @param threadpool thread pool to perform error correction on
+     * @return future that completes when all reads have been error corrected
+     * @see #errorCorrect(int, float, int, boolean, Iterable)
+     */
+    public static CompletableFuture<Void> errorCorrectAsync(int k, float kmerErrorCorrectionMultiple, int maxCorrectionsInKmer, boolean deduplicateReadKmers, Iterable<? extends DirectedEvidence> evidence, Executor threadpool) {
+        ReadErrorCorrector ec = new ReadErrorCorrector(k, kmerErrorCorrectionMultiple, maxCorrectionsInKmer, deduplicateReadKmers, CONCURRENT_COUNTER_STRIPES);
+        List<SAMRecord> reads = new ArrayList<>();
+        List<SAMRecord> rcreads = new ArrayList<>();
+        {
+            Set<SAMRecord> readSet = new HashSet<>();
+            Set<SAMRecord> rcreadSet = new HashSet<>();
+            underlyingReads(evidence, readSet, rcreadSet);
+            reads.addAll(readSet);
+            rcreads.addAll(rcreadSet);
+        }
+        if (reads.isEmpty() && rcreads.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        List<CompletableFuture<Void>> counting = new ArrayList<>();
+        submit(counting, reads, r -> ec.countKmers(r, false), threadpool);
+        submit(counting, rcreads, r -> ec.countKmers(r, true), threadpool);
+        return CompletableFuture.allOf(counting.toArray(new CompletableFuture[0]))
+                .thenComposeAsync(v -> {
+                    List<CompletableFuture<Void>> correcting = new ArrayList<>();
+                    submit(correcting, reads, r -> ec.errorCorrect(r, false), threadpool);
+                    submit(correcting, rcreads, r -> ec.errorCorrect(r, true), threadpool);
+                    return CompletableFuture.allOf(correcting.toArray(new CompletableFuture[0]));
+                }, threadpool);
+    }
+
+    private static void submit(List<CompletableFuture<Void>> tasks, List<SAMRecord> reads, Consumer<SAMRecord> action, Executor threadpool) {
+        for (List<SAMRecord> batch : Lists.partition(reads, READS_PER_TASK)) {
+            tasks.add(CompletableFuture.runAsync(() -> batch.forEach(action), threadpool));
+        }
+    }
+
+    /**
+     * Collects the distinct reads underlying the given evidence.
+     *
+     * Reads need to be deduplicated so we don't double count
+     * kmers from reads with multiple evidence (e.g. multiple indels or SC on both ends)
+     * @param reads reads to error correct in their stored orientation
+     * @param rcreads reads to error correct in the reverse complement orientation
+     */
+    private static void underlyingReads(Iterable<? extends DirectedEvidence> evidence, Set<SAMRecord> reads, Set<SAMRecord> rcreads) {
         for (DirectedEvidence de : evidence) {
             reads.add(de.getUnderlyingSAMRecord());
             if (de instanceof NonReferenceReadPair) {
@@ -62,27 +154,21 @@ public class ReadErrorCorrector {
                 }
             }
         }
-        // TODO: cache PackedSequence
-        reads.stream().forEach(r -> ec.countKmers(r, false));
-        rcreads.stream().forEach(r -> ec.countKmers(r, true));
-        reads.stream().forEach(r -> ec.errorCorrect(r, false));
-        rcreads.stream().forEach(r -> ec.errorCorrect(r, true));
     }
 
     public void countKmers(SAMRecord r, boolean reverseComplement) {
-        PackedSequence ps = new PackedSequence(r.getReadBases(), reverseComplement, reverseComplement);
-        LongSet encountered = new LongOpenHashSet(Math.max(1, ps.length() - k + 1), Hash.FAST_LOAD_FACTOR);
-        for (int i = 0; i < ps.length() - k + 1; i++) {
-            long kmer = ps.getKmer(i, k);
+        byte[] bases = r.getReadBases();
+        long[] kmers = new long[Math.max(0, bases.length - k + 1)];
+        int kmerCount = KmerEncodingHelper.kmers(k, bases, reverseComplement, reverseComplement, kmers);
+        LongSet encountered = new LongOpenHashSet(Math.max(1, kmerCount), Hash.FAST_LOAD_FACTOR);
+        for (int i = 0; i < kmerCount; i++) {
+            long kmer = kmers[i];
             if (this.deduplicateReadKmers && encountered.contains(kmer)) {
                 continue;
             }
-            int count = kmerCounts.get(kmer);
-            count++;
-            kmerCounts.put(kmer, count);
+            int count = kmerCounts.increment(kmer);
             if (count > maxCount) {
-                maxCount = count;
-                refreshMaxCollapseCount();
+                updateMaxCount(count);
             }
             if (this.deduplicateReadKmers) {
                 encountered.add(kmer);
@@ -152,6 +238,13 @@ public class ReadErrorCorrector {
         System.err.printf("\n");
     }
 
+    private synchronized void updateMaxCount(int count) {
+        if (count > maxCount) {
+            maxCount = count;
+            refreshMaxCollapseCount();
+        }
+    }
+
     /**
      * Max count that we will consider collapsing. All kmers above this threshold are safe from
      * error correction
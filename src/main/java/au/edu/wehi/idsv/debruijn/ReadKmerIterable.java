@@ -2,7 +2,6 @@ package au.edu.wehi.idsv.debruijn;
 
 import com.google.common.collect.AbstractIterator;
 import com.google.common.primitives.UnsignedBytes;
-import htsjdk.samtools.util.SequenceUtil;
 import org.apache.commons.lang3.ArrayUtils;
 
 import java.util.Collections;
@@ -38,14 +37,11 @@ public class ReadKmerIterable implements Iterable<ReadKmer> {
 		if (bases.length < k) return Collections.emptyIterator();
 		return new ReadKmerIterator();
 	}
-	private byte adjustBase(byte base) {
-		if (complement) return SequenceUtil.complement(base);
-		return base;
-	}
 	private class ReadKmerIterator extends AbstractIterator<ReadKmer> {
 		private int lastAmbigiousBaseOffset = Integer.MIN_VALUE;
 		private int offset = Integer.MIN_VALUE;
 		private long currentkmer;
+		private long[] kmers;
 		private byte[] baseQualsRotatingBuffer;
 		private int rotatingBufferPosition;
 		private int minBaseQual;
@@ -61,7 +57,7 @@ public class ReadKmerIterable implements Iterable<ReadKmer> {
 			return new ReadKmer(currentkmer, 1 + (qual == null ? 0 : minBaseQual), lastAmbigiousBaseOffset >= offset - k);
 		}
 		private void advance() {
-			currentkmer = KmerEncodingHelper.nextState(k, currentkmer, adjustBase(bases[offset]));
+			currentkmer = kmers[offset - k + 1];
 			if (qual != null) {
 				addToBuffer(qual[offset]);
 			}
@@ -86,8 +82,10 @@ public class ReadKmerIterable implements Iterable<ReadKmer> {
 			minBaseQual = UnsignedBytes.min(baseQualsRotatingBuffer);
 		}
 		private void init() {
-			currentkmer = KmerEncodingHelper.picardBaseToEncoded(k, bases);
-			if (complement) currentkmer = KmerEncodingHelper.complement(k, currentkmer);
+			// bases have already been reversed if required
+			kmers = new long[bases.length - k + 1];
+			KmerEncodingHelper.kmers(k, bases, false, complement, kmers);
+			currentkmer = kmers[0];
 			if (qual != null) {
 				baseQualsRotatingBuffer = new byte[k];
 				rotatingBufferPosition = 0;
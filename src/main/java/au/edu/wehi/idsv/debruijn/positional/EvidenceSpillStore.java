@@ -0,0 +1,185 @@
+package au.edu.wehi.idsv.debruijn.positional;
+
+import au.edu.wehi.idsv.DirectedEvidence;
+import au.edu.wehi.idsv.ProcessingContext;
+import au.edu.wehi.idsv.SAMEvidenceSource;
+import htsjdk.samtools.BAMRecordCodec;
+import htsjdk.samtools.SAMFileHeader;
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.SAMRecordCoordinateComparator;
+import htsjdk.samtools.util.BinaryCodec;
+import htsjdk.samtools.util.CloseableIterator;
+import htsjdk.samtools.util.Log;
+import htsjdk.samtools.util.RuntimeEOFException;
+import htsjdk.samtools.util.SortingCollection;
+
+import java.io.Closeable;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.*;
+
+/**
+ * On-disk store of evidence spilled from the assembly graph of an excessively dense region.
+ *
+ * Evidence is stored as the underlying SAM records and reloaded in coordinate order
+ * in windows of bounded size so the region can be assembled without
+ * loading all evidence into memory at once.
+ *
+ * @author Daniel Cameron
+ *
+ */
+public class EvidenceSpillStore implements Closeable {
+	private static final Log log = Log.getInstance(EvidenceSpillStore.class);
+	private final ProcessingContext context;
+	private final int windowSize;
+	private final List<SAMEvidenceSource> sources = new ArrayList<>();
+	private final List<SAMFileHeader> headers = new ArrayList<>();
+	private SortingCollection<SpilledRecord> records;
+	private CloseableIterator<SpilledRecord> reloadIt = null;
+	private int spilled = 0;
+	/**
+	 * @param context processing context
+	 * @param windowSize maximum number of records to reload at a time.
+	 * This is also the maximum number of records held in memory before spilling to disk.
+	 */
+	public EvidenceSpillStore(ProcessingContext context, int windowSize) {
+		if (windowSize <= 0) throw new IllegalArgumentException("windowSize must be positive");
+		this.context = context;
+		this.windowSize = windowSize;
+		this.records = SortingCollection.newInstance(
+				SpilledRecord.class,
+				new SpilledRecordCodec(),
+				Comparator.comparing((SpilledRecord sr) -> sr.record, new SAMRecordCoordinateComparator()),
+				windowSize,
+				context.getFileSystemContext().getTemporaryDirectory().toPath());
+	}
+	private int sourceIndex(SAMEvidenceSource source, SAMRecord record) {
+		int index = sources.indexOf(source);
+		if (index < 0) {
+			index = sources.size();
+			sources.add(source);
+			headers.add(record.getHeader() != null ? record.getHeader() : context.getBasicSamHeader());
+		}
+		return index;
+	}
+	/**
+	 * Spills the given evidence to disk
+	 */
+	public void add(DirectedEvidence e) {
+		if (reloadIt != null) throw new IllegalStateException("Cannot add evidence after reloading has started");
+		SAMRecord record = e.getUnderlyingSAMRecord();
+		spilled++;
+		records.add(new SpilledRecord(sourceIndex((SAMEvidenceSource)e.getEvidenceSource(), record), record, e.getEvidenceID()));
+	}
+	/**
+	 * Number of pieces of evidence spilled to the store
+	 */
+	public int size() {
+		return spilled;
+	}
+	/**
+	 * Reloads the next window of spilled evidence
+	 * @return next window of evidence, or null if all spilled evidence has been reloaded
+	 */
+	public List<DirectedEvidence> nextWindow() {
+		if (reloadIt == null) {
+			log.debug(String.format("Reloading %d spilled evidence", spilled));
+			records.doneAdding();
+			reloadIt = records.iterator();
+		}
+		List<DirectedEvidence> window = new ArrayList<>();
+		// evidence spilled more than once is only assembled once
+		Set<String> windowEvidenceIds = new HashSet<>();
+		int recordCount = 0;
+		while (recordCount < windowSize && reloadIt.hasNext()) {
+			SpilledRecord sr = reloadIt.next();
+			recordCount++;
+			// A single record can give rise to multiple pieces of evidence so only the spilled evidence is reloaded
+			for (DirectedEvidence e : sources.get(sr.sourceIndex).asEvidence(sr.record)) {
+				if (e.getEvidenceID().equals(sr.evidenceId) && windowEvidenceIds.add(sr.evidenceId)) {
+					window.add(e);
+				}
+			}
+		}
+		if (recordCount == 0) {
+			return null;
+		}
+		return window;
+	}
+	@Override
+	public void close() {
+		if (reloadIt != null) {
+			reloadIt.close();
+			reloadIt = null;
+		}
+		if (records != null) {
+			records.cleanup();
+			records = null;
+		}
+	}
+	private static class SpilledRecord {
+		private final int sourceIndex;
+		private final SAMRecord record;
+		private final String evidenceId;
+		public SpilledRecord(int sourceIndex, SAMRecord record, String evidenceId) {
+			this.sourceIndex = sourceIndex;
+			this.record = record;
+			this.evidenceId = evidenceId;
+		}
+	}
+	/**
+	 * Encodes the evidence source index and evidence identifier followed by the BAM encoding of the record
+	 */
+	private class SpilledRecordCodec implements SortingCollection.Codec<SpilledRecord> {
+		private final BinaryCodec binaryCodec = new BinaryCodec();
+		private final List<BAMRecordCodec> recordCodecs = new ArrayList<>();
+		private OutputStream os;
+		private InputStream is;
+		private BAMRecordCodec recordCodec(int sourceIndex) {
+			while (recordCodecs.size() <= sourceIndex) {
+				BAMRecordCodec codec = new BAMRecordCodec(headers.get(recordCodecs.size()));
+				if (os != null) codec.setOutputStream(os);
+				if (is != null) codec.setInputStream(is);
+				recordCodecs.add(codec);
+			}
+			return recordCodecs.get(sourceIndex);
+		}
+		@Override
+		public void setOutputStream(OutputStream os) {
+			this.os = os;
+			binaryCodec.setOutputStream(os);
+			for (BAMRecordCodec codec : recordCodecs) {
+				codec.setOutputStream(os);
+			}
+		}
+		@Override
+		public void setInputStream(InputStream is) {
+			this.is = is;
+			binaryCodec.setInputStream(is);
+			for (BAMRecordCodec codec : recordCodecs) {
+				codec.setInputStream(is);
+			}
+		}
+		@Override
+		public void encode(SpilledRecord val) {
+			binaryCodec.writeInt(val.sourceIndex);
+			binaryCodec.writeString(val.evidenceId, true, false);
+			recordCodec(val.sourceIndex).encode(val.record);
+		}
+		@Override
+		public SpilledRecord decode() {
+			int sourceIndex;
+			try {
+				sourceIndex = binaryCodec.readInt();
+			} catch (RuntimeEOFException e) {
+				return null;
+			}
+			String evidenceId = binaryCodec.readLengthAndString(false);
+			return new SpilledRecord(sourceIndex, recordCodec(sourceIndex).decode(), evidenceId);
+		}
+		@Override
+		public SortingCollection.Codec<SpilledRecord> clone() {
+			return new SpilledRecordCodec();
+		}
+	}
+}
@@ -3,18 +3,18 @@ package au.edu.wehi.idsv.debruijn.positional;
 import au.edu.wehi.idsv.Defaults;
 import au.edu.wehi.idsv.util.IntervalUtil;
 import htsjdk.samtools.util.Log;
-import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
 import it.unimi.dsi.fastutil.longs.LongArrayList;
-import it.unimi.dsi.fastutil.longs.LongLinkedOpenHashSet;
-import it.unimi.dsi.fastutil.longs.LongSortedSet;
-import it.unimi.dsi.fastutil.objects.Object2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongSet;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
 import it.unimi.dsi.fastutil.objects.ObjectOpenHashSet;
 
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.PrintWriter;
 import java.util.*;
-import java.util.stream.Collectors;
 
 import static au.edu.wehi.idsv.Defaults.SANITY_CHECK_EVIDENCE_TRACKER;
 
@@ -22,20 +22,55 @@ import static au.edu.wehi.idsv.Defaults.SANITY_CHECK_EVIDENCE_TRACKER;
  * Tracks evidence provided to a given graph by wrapping a source iterator
  * and tracking evidence emitted by the iterator 
  * 
+ * Kmer support is stored in primitive arrays instead of per-kmer lists of
+ * KmerSupportNode objects. Each tracked KmerEvidence is interned to an int index
+ * and each support node is stored as a (start, end, weight, evidence index) entry
+ * in a singly linked chain of entries for that kmer.
+ * 
  * @author Daniel Cameron
  *
  */
 public class EvidenceTracker {
 	private static final Log log = Log.getInstance(EvidenceTracker.class);
-	//public static EvidenceTracker TEMP_HACK_CURRENT_TRACKER = null;
-	private final Long2ObjectOpenHashMap<LinkedList<KmerSupportNode>> lookup = new Long2ObjectOpenHashMap<>();
-	private final Object2ObjectOpenHashMap<String, List<KmerEvidence>> id = new Object2ObjectOpenHashMap<>();
+	private static final int NONE = -1;
+	private static final int INITIAL_CAPACITY = 64;
+	/**
+	 * kmer -> first support entry for that kmer
+	 */
+	private final Long2IntOpenHashMap lookup = new Long2IntOpenHashMap();
+	/**
+	 * evidence ID -> first KmerEvidence index for that evidence
+	 */
+	private final Object2IntOpenHashMap<String> id = new Object2IntOpenHashMap<>();
+	// Support entries
+	private int[] entryStart = new int[INITIAL_CAPACITY];
+	private int[] entryEnd = new int[INITIAL_CAPACITY];
+	private int[] entryWeight = new int[INITIAL_CAPACITY];
+	private int[] entryEvidence = new int[INITIAL_CAPACITY];
+	/**
+	 * Next entry for the same kmer, or next free entry for unused entries
+	 */
+	private int[] entryNext = new int[INITIAL_CAPACITY];
+	private int entryAllocated = 0;
+	private int entryFree = NONE;
+	private int entryCount = 0;
+	// Interned KmerEvidence
+	private KmerEvidence[] evidence = new KmerEvidence[INITIAL_CAPACITY];
+	/**
+	 * Next KmerEvidence with the same evidence ID, or next free slot for unused slots
+	 */
+	private int[] evidenceNext = new int[INITIAL_CAPACITY];
+	private boolean[] evidenceRemoving = new boolean[INITIAL_CAPACITY];
+	private int evidenceAllocated = 0;
+	private int evidenceFree = NONE;
 	private long evidenceTotal = 0;
 	private PrintWriter debugFile = null;
 	/**
 	 * Tracks evidence emitted from the given iterator
 	 */
 	public EvidenceTracker() {
+		lookup.defaultReturnValue(NONE);
+		id.defaultReturnValue(NONE);
 	}
 	public void setDebugFileOutput(File file) {
 		try {
@@ -50,33 +85,95 @@ public class EvidenceTracker {
 			debugFile = null;
 		}
 	}
+	private int allocateEntry() {
+		int entry = entryFree;
+		if (entry != NONE) {
+			entryFree = entryNext[entry];
+		} else {
+			if (entryAllocated == entryNext.length) {
+				int size = 2 * entryNext.length;
+				entryStart = Arrays.copyOf(entryStart, size);
+				entryEnd = Arrays.copyOf(entryEnd, size);
+				entryWeight = Arrays.copyOf(entryWeight, size);
+				entryEvidence = Arrays.copyOf(entryEvidence, size);
+				entryNext = Arrays.copyOf(entryNext, size);
+			}
+			entry = entryAllocated++;
+		}
+		entryCount++;
+		return entry;
+	}
+	private void freeEntry(int entry) {
+		entryNext[entry] = entryFree;
+		entryFree = entry;
+		entryCount--;
+	}
+	private int allocateEvidence(KmerEvidence ke) {
+		int index = evidenceFree;
+		if (index != NONE) {
+			evidenceFree = evidenceNext[index];
+		} else {
+			if (evidenceAllocated == evidence.length) {
+				int size = 2 * evidence.length;
+				evidence = Arrays.copyOf(evidence, size);
+				evidenceNext = Arrays.copyOf(evidenceNext, size);
+				evidenceRemoving = Arrays.copyOf(evidenceRemoving, size);
+			}
+			index = evidenceAllocated++;
+		}
+		evidence[index] = ke;
+		evidenceNext[index] = NONE;
+		return index;
+	}
+	private void freeEvidence(int index) {
+		evidence[index] = null;
+		evidenceRemoving[index] = false;
+		evidenceNext[index] = evidenceFree;
+		evidenceFree = index;
+	}
 	/**
-	 * Tracks the given evidence
-	 * @param support
+	 * Interns the given evidence
+	 * @return evidence index
 	 */
-	public KmerSupportNode track(KmerSupportNode support) {
-		long kmer = support.lastKmer();
-		LinkedList<KmerSupportNode> list = lookup.get(kmer);
-		if (list == null) {
-			list = new LinkedList<KmerSupportNode>();
-			lookup.put(kmer, list);
-		}
-		list.add(support);
-		KmerEvidence ke = support.evidence();
+	private int intern(KmerEvidence ke) {
 		String evidenceId = ke.evidence().getEvidenceID();
-		List<KmerEvidence> idvalue = id.get(evidenceId);
-		if (idvalue == null) {
+		int head = id.getInt(evidenceId);
+		if (head == NONE) {
 			evidenceTotal++;
-			idvalue = new ArrayList<>();
-			id.put(evidenceId, idvalue);
+			head = allocateEvidence(ke);
+			id.put(evidenceId, head);
 			if (debugFile != null) {
 				debugFile.write("Add," + evidenceId);
 				debugFile.write('\n');
 			}
+			return head;
 		}
-		if (!idvalue.contains(ke)) {
-			idvalue.add(ke);
+		int last = head;
+		for (int i = head; i != NONE; i = evidenceNext[i]) {
+			if (evidence[i].equals(ke)) {
+				return i;
+			}
+			last = i;
 		}
+		// Read pairs can have two: one each of the anchored and unanchored reads
+		int index = allocateEvidence(ke);
+		evidenceNext[last] = index;
+		return index;
+	}
+	/**
+	 * Tracks the given evidence
+	 * @param support
+	 */
+	public KmerSupportNode track(KmerSupportNode support) {
+		int evidenceIndex = intern(support.evidence());
+		long kmer = support.lastKmer();
+		int entry = allocateEntry();
+		entryStart[entry] = support.lastStart();
+		entryEnd[entry] = support.lastEnd();
+		entryWeight[entry] = support.weight();
+		entryEvidence[entry] = evidenceIndex;
+		entryNext[entry] = lookup.get(kmer);
+		lookup.put(kmer, entry);
 		return support;
 	}
 	/**
@@ -85,58 +182,72 @@ public class EvidenceTracker {
 	 */
 	public Set<KmerEvidence> remove(Set<KmerEvidence> evidenceSet) {
 		Set<KmerEvidence> evidenceToRemove = new ObjectOpenHashSet<>();
-		LongSortedSet kmersInSet = new LongLinkedOpenHashSet();
-		for (KmerEvidence evidence : evidenceSet) {
-			addToRemoveList(evidence, evidenceToRemove, kmersInSet);
+		LongSet kmersInSet = new LongOpenHashSet();
+		IntArrayList removed = new IntArrayList();
+		for (KmerEvidence ke : evidenceSet) {
+			addToRemoveList(ke, evidenceToRemove, removed, kmersInSet);
 		}
 		for (long kmer : kmersInSet) {
-			remove(kmer, evidenceToRemove);
+			removeFlagged(kmer);
+		}
+		for (int index : removed) {
+			freeEvidence(index);
 		}
 		if (SANITY_CHECK_EVIDENCE_TRACKER) {
 			sanityCheck();
 		}
 		return evidenceToRemove;
 	}
-	private void addToRemoveList(KmerEvidence evidence, Set<KmerEvidence> removeSet, LongSortedSet kmersInSet) {
-		String evidenceId = evidence.evidence().getEvidenceID();
+	private void addToRemoveList(KmerEvidence ke, Set<KmerEvidence> removeSet, IntArrayList removed, LongSet kmersInSet) {
+		String evidenceId = ke.evidence().getEvidenceID();
 		if (this.debugFile != null) {
-			debugFile.write("Remove," + evidence.evidence().getEvidenceID());
+			debugFile.write("Remove," + evidenceId);
 		}
 		// Need to remove all KmerEvidence associated with the evidence
 		// Read pairs can have two: one each of the anchored and unanchored reads
-		Collection<KmerEvidence> trackedKmerEvidenceForEvidence = id.remove(evidenceId);
-		if (trackedKmerEvidenceForEvidence == null) {
-			// Will happen when we attempt to remove the second KmerEvidence in a read pair
-			return;
-		}
-		removeSet.addAll(trackedKmerEvidenceForEvidence);
-		for (KmerEvidence e : trackedKmerEvidenceForEvidence) {
-			for (int i = 0; i < e.length(); i++) {
-				KmerSupportNode node = e.node(i);
-				if (node != null) {
-					kmersInSet.add(node.firstKmer());
+		int head = id.removeInt(evidenceId);
+		// NONE will happen when we attempt to remove the second KmerEvidence in a read pair
+		for (int i = head; i != NONE; i = evidenceNext[i]) {
+			KmerEvidence e = evidence[i];
+			evidenceRemoving[i] = true;
+			removed.add(i);
+			removeSet.add(e);
+			long[] kmers = new long[e.length()];
+			e.kmers(kmers);
+			for (int j = 0; j < kmers.length; j++) {
+				if (e.node(j) != null) {
+					kmersInSet.add(kmers[j]);
 				}
 			}
 		}
 	}
 	/**
-	 * Stops tracking all nodes associated with the given evidence 
-	 * @param evidence
+	 * Stops tracking all entries of the given kmer for evidence flagged for removal
 	 */
-	private void remove(long kmer, Collection<KmerEvidence> evidence) {
-		LinkedList<KmerSupportNode> list = lookup.get(kmer);
-		if (list != null) {
-			ListIterator<KmerSupportNode> it = list.listIterator();
-			while (it.hasNext()) {
-				KmerSupportNode n = it.next();
-				if (evidence.contains(n.evidence())) {
-					it.remove();
-				}
+	private void removeFlagged(long kmer) {
+		int prev = NONE;
+		int entry = lookup.get(kmer);
+		while (entry != NONE) {
+			int next = entryNext[entry];
+			if (evidenceRemoving[entryEvidence[entry]]) {
+				unlink(kmer, prev, entry, next);
+			} else {
+				prev = entry;
 			}
-			if (list.size() == 0) {
+			entry = next;
+		}
+	}
+	private void unlink(long kmer, int prev, int entry, int next) {
+		if (prev == NONE) {
+			if (next == NONE) {
 				lookup.remove(kmer);
+			} else {
+				lookup.put(kmer, next);
 			}
+		} else {
+			entryNext[prev] = next;
 		}
+		freeEntry(entry);
 	}
 	/**
 	 * Identifies evidence supporting the given path
@@ -182,19 +293,21 @@ public class EvidenceTracker {
 	 * @param end
 	 */
 	private void toCollection(Collection<KmerEvidence> collection, long kmer, int start, int end, boolean remove) {
-		LinkedList<KmerSupportNode> list = lookup.get(kmer);
-		if (list != null) {
-			ListIterator<KmerSupportNode> it = list.listIterator();
-			while (it.hasNext()) {
-				KmerSupportNode n = it.next();
-				if (IntervalUtil.overlapsClosed(start, end, n.lastStart(), n.lastEnd())) {
-					if (remove) {
-						it.remove();
-					}
-					KmerEvidence e = n.evidence();
-					collection.add(e);
+		int prev = NONE;
+		int entry = lookup.get(kmer);
+		while (entry != NONE) {
+			int next = entryNext[entry];
+			if (IntervalUtil.overlapsClosed(start, end, entryStart[entry], entryEnd[entry])) {
+				collection.add(evidence[entryEvidence[entry]]);
+				if (remove) {
+					unlink(kmer, prev, entry, next);
+				} else {
+					prev = entry;
 				}
+			} else {
+				prev = entry;
 			}
+			entry = next;
 		}
 	}
 	public boolean matchesExpected(KmerPathSubnode pn) {
@@ -210,18 +323,15 @@ public class EvidenceTracker {
 	public boolean matchesExpected(int expectedWidthWeight, LongArrayList kmers, int start, int end) {
 		int evidenceWeight = 0;
 		for (long kmer : kmers) {
-			LinkedList<KmerSupportNode> list = lookup.get(kmer);
-			if (list != null) {
-				for (KmerSupportNode n : list) {
-					evidenceWeight += n.weight() * IntervalUtil.overlapsWidthClosed(start, end, n.lastStart(), n.lastEnd());
-				}
+			for (int entry = lookup.get(kmer); entry != NONE; entry = entryNext[entry]) {
+				evidenceWeight += entryWeight[entry] * IntervalUtil.overlapsWidthClosed(start, end, entryStart[entry], entryEnd[entry]);
 			}
 		}
 		assert(evidenceWeight == expectedWidthWeight);
 		return evidenceWeight == expectedWidthWeight;
 	}
 	public boolean isTracked(String evidenceId) {
-		return id.keySet().contains(evidenceId);
+		return id.containsKey(evidenceId);
 	}
 
 
@@ -264,7 +374,13 @@ public class EvidenceTracker {
 		}
 	}
 	public Set<KmerEvidence> getTrackedEvidence() {
-		return id.values().stream().flatMap(x -> x.stream()).collect(Collectors.toSet());
+		Set<KmerEvidence> result = new HashSet<>();
+		for (int i = 0; i < evidenceAllocated; i++) {
+			if (evidence[i] != null) {
+				result.add(evidence[i]);
+			}
+		}
+		return result;
 	}
 	public long tracking_evidenceTotal() {
 		return evidenceTotal;
@@ -276,46 +392,63 @@ public class EvidenceTracker {
 		return lookup.size();
 	}
 	public int tracking_supportNodeCount() {
-		return lookup.values().stream().mapToInt(x -> x.size()).sum();
+		return entryCount;
 	}
 	public int tracking_maxKmerSupportNodesCount() {
-		return lookup.values().stream().mapToInt(x -> x.size()).max().orElse(0);
+		int max = 0;
+		for (int head : lookup.values()) {
+			int count = 0;
+			for (int entry = head; entry != NONE; entry = entryNext[entry]) {
+				count++;
+			}
+			max = Math.max(max, count);
+		}
+		return max;
+	}
+	private boolean containsEntry(long kmer, int evidenceIndex, int start) {
+		for (int entry = lookup.get(kmer); entry != NONE; entry = entryNext[entry]) {
+			if (entryEvidence[entry] == evidenceIndex && entryStart[entry] == start) {
+				return true;
+			}
+		}
+		return false;
 	}
 	public void sanityCheck() {
-		Set<String> lookupEid = lookup.values()
-				.stream()
-				.flatMap(ll -> ll.stream())
-				.map(ksn -> ksn.evidence().evidence().getEvidenceID())
-				.collect(Collectors.toSet());
-		Set<String> idEid = id.keySet().stream().collect(Collectors.toSet());
-		Set<String> missingInLookup = new HashSet<>(idEid);
-		Set<String> missingInIds = new HashSet<>(lookupEid);
-		missingInIds.removeAll(idEid);
-		missingInLookup.removeAll(lookupEid);
-		Set<KmerEvidence> kes = lookup.values()
-				.stream()
-				.flatMap(ll -> ll.stream())
-				.map(ksn -> ksn.evidence())
-				.collect(Collectors.toSet());
-		List<KmerSupportNode> missingKsn = new ArrayList<>();
-		for (KmerEvidence ke : kes) {
-			for (int i = 0; i < ke.length(); i++) {
-				KmerSupportNode ksn = ke.node(i);
-				if (ksn != null) {
-					LinkedList<KmerSupportNode> list = lookup.get(ksn.firstKmer());
-					if (!list.contains(ksn)) {
-						missingKsn.add(ksn);
-					}
+		BitSet inLookup = new BitSet(evidenceAllocated);
+		for (int head : lookup.values()) {
+			for (int entry = head; entry != NONE; entry = entryNext[entry]) {
+				inLookup.set(entryEvidence[entry]);
+			}
+		}
+		BitSet inIds = new BitSet(evidenceAllocated);
+		boolean missingInLookup = false;
+		for (int head : id.values()) {
+			boolean found = false;
+			for (int i = head; i != NONE; i = evidenceNext[i]) {
+				inIds.set(i);
+				found |= inLookup.get(i);
+			}
+			missingInLookup |= !found;
+		}
+		BitSet missingInIds = (BitSet)inLookup.clone();
+		missingInIds.andNot(inIds);
+		boolean missingKsn = false;
+		for (int i = inLookup.nextSetBit(0); i >= 0 && !missingKsn; i = inLookup.nextSetBit(i + 1)) {
+			KmerEvidence ke = evidence[i];
+			if (ke == null) continue;
+			for (int j = 0; j < ke.length(); j++) {
+				if (ke.node(j) != null && !containsEntry(ke.kmer(j), i, ke.startPosition() + j)) {
+					missingKsn = true;
 				}
 			}
 		}
-		if (missingInLookup.size() > 0) {
+		if (missingInLookup) {
 			throw new IllegalStateException("Missing evidence in lookup");
 		}
-		if (missingInIds.size() > 0) {
+		if (!missingInIds.isEmpty()) {
 			throw new IllegalStateException("Missing all kmer evidence for evidence in lookup");
 		}
-		if (missingKsn.size() > 0) {
+		if (missingKsn) {
 			throw new IllegalStateException("Partially missing kmer support.");
 		}
 	}
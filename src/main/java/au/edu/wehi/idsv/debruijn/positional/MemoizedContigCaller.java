@@ -3,7 +3,7 @@ package au.edu.wehi.idsv.debruijn.positional;
 import au.edu.wehi.idsv.Defaults;
 import au.edu.wehi.idsv.SanityCheckFailureException;
 import au.edu.wehi.idsv.debruijn.positional.optimiseddatastructures.TraversalNodeByPathFirstStartEndSubnodeSortedSet;
-import au.edu.wehi.idsv.debruijn.positional.optimiseddatastructures.TraversalNodeByScoreDescPathFirstIdentity;
+import au.edu.wehi.idsv.debruijn.positional.optimiseddatastructures.TraversalNodeByScoreDescPathFirstEndSubnodeHeap;
 import au.edu.wehi.idsv.util.IntervalUtil;
 import au.edu.wehi.idsv.visualisation.PositionalDeBruijnGraphTracker.MemoizationStats;
 import com.google.common.collect.ImmutableSet;
@@ -14,7 +14,6 @@ import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.util.*;
-import java.util.stream.Collectors;
 
 
 /**
@@ -53,14 +52,14 @@ public class MemoizedContigCaller extends ContigCaller {
 	/**
 	 * Path scores in order of descending score
 	 */
-	private final SortedSet<TraversalNode> contigByScore = /*Defaults.USE_OPTIMISED_ASSEMBLY_DATA_STRUCTURES ? new TraversalNodeByScoreDescPathFirstIdentity() : */ new TreeSet<>(TraversalNode.ByScoreDescPathFirstEndSubnode);
+	private final TraversalNodeByScoreDescPathFirstEndSubnodeHeap contigByScore = new TraversalNodeByScoreDescPathFirstEndSubnodeHeap();
 	// We could convert this into an Int2IntSortedMap if we changed MemoizedContigTraverse
 	// to only call onFrontierRemove() on nodes that are actually in the frontier
 	private final SortedSet<TraversalNode> frontierByPathStart = Defaults.USE_OPTIMISED_ASSEMBLY_DATA_STRUCTURES ? new TraversalNodeByPathFirstStartEndSubnodeSortedSet(16) : new TreeSet<>(TraversalNode.ByPathFirstStartScoreEndSubnode);
 	private final MemoizedContigTraverse frontier = new MemoizedContigTraverse();
 	
 	private int contigByScoreBeforePosition_startPosition = Integer.MIN_VALUE;
-	private SortedSet<TraversalNode> contigByScoreBeforePosition = /*Defaults.USE_OPTIMISED_ASSEMBLY_DATA_STRUCTURES ? new TraversalNodeByScoreDescPathFirstIdentity() : */ new TreeSet<>(TraversalNode.ByScoreDescPathFirstEndSubnode);
+	private final TraversalNodeByScoreDescPathFirstEndSubnodeHeap contigByScoreBeforePosition = new TraversalNodeByScoreDescPathFirstEndSubnodeHeap();
 	/**
 	 * Scoring bonus for anchoring the start/end of a contig at a reference node. 
 	 */
@@ -339,10 +338,12 @@ public class MemoizedContigCaller extends ContigCaller {
 	}
 	private void ensureContigByScoreBeforePosition(int contigStartsBefore) {
 		if (contigByScoreBeforePosition_startPosition != contigStartsBefore) {
-			contigByScoreBeforePosition = Defaults.USE_OPTIMISED_ASSEMBLY_DATA_STRUCTURES ? new TraversalNodeByScoreDescPathFirstIdentity() : new TreeSet<>(TraversalNode.ByScoreDescPathFirstEndSubnode);
-			contigByScore.stream()
-				.filter(n -> n.pathFirstStart() < contigStartsBefore)
-				.collect(Collectors.toCollection(() -> contigByScoreBeforePosition));
+			contigByScoreBeforePosition.clear();
+			for (TraversalNode tn : contigByScore) {
+				if (tn.pathFirstStart() < contigStartsBefore) {
+					contigByScoreBeforePosition.add(tn);
+				}
+			}
 			contigByScoreBeforePosition_startPosition = contigStartsBefore;
 		}
 	}
@@ -485,8 +486,8 @@ public class MemoizedContigCaller extends ContigCaller {
 	public void sanityCheckMatches(MemoizedContigCaller caller) {
 		NavigableSet<TraversalNode> set1 = new TreeSet<>(TraversalNode.ByKmerScoreStartEnd);
 		NavigableSet<TraversalNode> set2 = new TreeSet<>(TraversalNode.ByKmerScoreStartEnd);
-		set1.addAll(contigByScore);
-		set2.addAll(caller.contigByScore);
+		contigByScore.forEach(set1::add);
+		caller.contigByScore.forEach(set2::add);
 		sanityCheckMatches(set1, set2);
 		set1 = new TreeSet<>(TraversalNode.ByKmerScoreStartEnd);
 		set2 = new TreeSet<>(TraversalNode.ByKmerScoreStartEnd);
@@ -2,20 +2,18 @@ package au.edu.wehi.idsv.debruijn.positional;
 
 import au.edu.wehi.idsv.Defaults;
 import au.edu.wehi.idsv.debruijn.positional.optimiseddatastructures.TraversalNodeByLastEndKmerSortedSet;
+import au.edu.wehi.idsv.debruijn.positional.optimiseddatastructures.TraversalNodeMemoizationTable;
 import au.edu.wehi.idsv.util.IntervalUtil;
 import au.edu.wehi.idsv.util.MessageThrottler;
 import au.edu.wehi.idsv.visualisation.PositionalDeBruijnGraphTracker.MemoizationStats;
 import com.google.common.collect.ImmutableList;
 import com.google.common.io.Files;
 import htsjdk.samtools.util.Log;
-import it.unimi.dsi.fastutil.ints.AbstractInt2ObjectSortedMap;
-import it.unimi.dsi.fastutil.ints.Int2ObjectRBTreeMap;
 import it.unimi.dsi.fastutil.objects.ObjectOpenCustomHashSet;
 
 import java.io.File;
 import java.io.IOException;
 import java.util.*;
-import java.util.Map.Entry;
 import java.util.stream.Stream;
 
 /**
@@ -31,9 +29,9 @@ public class MemoizedTraverse {
 	 * (BFS in position space) of the graph, caching the best predecessor
 	 * of each node.
 	 *
-	 * Int2ObjectSortedMap is sorted by TraversalNode.firstEnd
+	 * Memoized paths of each node are sorted by TraversalNode.firstEnd
 	 */
-	private final IdentityHashMap<KmerPathNode, AbstractInt2ObjectSortedMap<TraversalNode>> memoized = new IdentityHashMap<>();
+	private final TraversalNodeMemoizationTable memoized = new TraversalNodeMemoizationTable();
 	// TODO: track anchored and unanchored paths in different frontiers - only call unanchored when no anchored paths nearby
 	private final SortedSet<TraversalNode> frontier = Defaults.USE_OPTIMISED_ASSEMBLY_DATA_STRUCTURES ? new TraversalNodeByLastEndKmerSortedSet(16) : new TreeSet<>(TraversalNode.ByLastEndKmer);
 	private final MemoizationStats stats = new MemoizationStats();
@@ -43,7 +41,7 @@ public class MemoizedTraverse {
 	 */
 	public void remove(Set<KmerPathNode> nodes) {
 		// bulk remove nodes in removal set
-		int initialSize = memoized.size();
+		int initialSize = memoized.nodeCount();
 		Collection<TraversalNode> tns = new ArrayList<>(2 * nodes.size());
 		Set<KmerPathNode> children = new ObjectOpenCustomHashSet<KmerPathNode>(new KmerNodeUtil.HashByLastEndKmer<KmerPathNode>());
 		for (KmerPathNode node : nodes) {
@@ -53,14 +51,17 @@ public class MemoizedTraverse {
 				}
 				continue;
 			}
-			AbstractInt2ObjectSortedMap<TraversalNode> cache = memoized.remove(node);
-			if (cache == null) {
+			int id = memoized.id(node);
+			if (id < 0) {
 				if (!MessageThrottler.Current.shouldSupress(log, "removal of unmemoized nodes")) {
 					log.error(String.format("Sanity check failure: %s not memoized", node));
 				}
-			} else if (!cache.isEmpty()) {
-				tns.addAll(cache.values());
-				children.addAll(node.next());
+			} else {
+				if (memoized.size(id) > 0) {
+					tns.addAll(memoized.paths(id));
+					children.addAll(node.next());
+				}
+				memoized.remove(id);
 			}
 		}
 		children.removeAll(nodes);
@@ -105,14 +106,16 @@ public class MemoizedTraverse {
 	private Collection<TraversalNode> removeChildPaths(Iterable<KmerPathNode> toCheck, Set<KmerPathNode> parents) {
 		Collection<TraversalNode> matches = new ArrayList<>();
 		for (KmerPathNode node : toCheck) {
-			AbstractInt2ObjectSortedMap<TraversalNode> cache = memoized.get(node);
-			if (cache == null || cache.isEmpty()) continue;
-			Iterator<TraversalNode> it = cache.values().iterator();
-			while (it.hasNext()) {
-				TraversalNode tn = it.next();
+			int id = memoized.id(node);
+			if (id < 0) continue;
+			int i = 0;
+			while (i < memoized.size(id)) {
+				TraversalNode tn = memoized.get(id, i);
 				if (tn.parent != null && parents.contains(tn.parent.node.node())) {
-					it.remove();
+					memoized.removeAt(id, i);
 					matches.add(tn);
+				} else {
+					i++;
 				}
 			}
 		}
@@ -132,15 +135,15 @@ public class MemoizedTraverse {
 	 */
 	public void remove(KmerPathNode node) {
 		assert(node.isValid());
-		AbstractInt2ObjectSortedMap<TraversalNode> cache = memoized.get(node);
-		if (cache == null) return;
+		int id = memoized.id(node);
+		if (id < 0) return;
 		Stack<TraversalNode> callStack = new Stack<TraversalNode>();
-		callStack.addAll(cache.values());
+		callStack.addAll(memoized.paths(id));
 		while (!callStack.isEmpty()) {
 			unmemoize(callStack.pop(), callStack, false);
 		}
-		assert(cache.size() == 0);
-		memoized.remove(node);
+		assert(memoized.size(id) == 0);
+		memoized.remove(id);
 		if (Defaults.SANITY_CHECK_MEMOIZATION) {
 			assert(sanityCheckAreRemoved(ImmutableList.of(node)));
 			assert(sanityCheck());
@@ -157,7 +160,8 @@ public class MemoizedTraverse {
 	 */
 	private int unmemoize(TraversalNode tn, Stack<TraversalNode> callStack, boolean alreadyRemoved) {
 		if (!alreadyRemoved) {
-			if (memoized.get(tn.node.node()).remove(tn.node.firstEnd()) == null) {
+			int id = memoized.id(tn.node.node());
+			if (id < 0 || memoized.removeByEnd(id, tn.node.firstEnd()) == null) {
 				// already processed this TraversalNode
 				return 0;
 			}
@@ -169,10 +173,11 @@ public class MemoizedTraverse {
 		int frontierResetCount = addAlternatePathsToFrontier(tn);
 		// check if this path continues on to any children
 		for (KmerPathNode child : tn.node.node().next()) {
-			AbstractInt2ObjectSortedMap<TraversalNode> cache = memoized.get(child);
-			if (cache != null) {
+			int id = memoized.id(child);
+			if (id >= 0) {
 				// skip values that end before we start
-				for (TraversalNode childtn : cache.tailMap(tn.node.lastStart() + 1).values()) {
+				for (int i = memoized.firstEndingAtOrAfter(id, tn.node.lastStart() + 1); i < memoized.size(id); i++) {
+					TraversalNode childtn = memoized.get(id, i);
 					// can't use reference equality since
 					// the parent node could have been split
 					// on an unrelated path.
@@ -211,9 +216,10 @@ public class MemoizedTraverse {
 		for (KmerPathNode prev : tn.node.node().prev()) {
 			if (prev != parent) {
 				int parentLength = prev.length();
-				AbstractInt2ObjectSortedMap<TraversalNode> cache = memoized.get(prev);
-				if (cache != null) {
-					for (TraversalNode altParent : cache.tailMap(tn.node.firstStart() - parentLength).values()) {
+				int id = memoized.id(prev);
+				if (id >= 0) {
+					for (int i = memoized.firstEndingAtOrAfter(id, tn.node.firstStart() - parentLength); i < memoized.size(id); i++) {
+						TraversalNode altParent = memoized.get(id, i);
 						if (altParent.node.lastStart() + 1 > tn.node.firstEnd()) {
 							break;
 						}
@@ -230,9 +236,9 @@ public class MemoizedTraverse {
 	 * @return Memoized best paths
 	 */
 	public Collection<TraversalNode> memoized(KmerPathNode node) {
-		AbstractInt2ObjectSortedMap<TraversalNode> cache = memoized.get(node);
-		if (cache == null) return Collections.emptyList();
-		return cache.values();
+		int id = memoized.id(node);
+		if (id < 0) return Collections.emptyList();
+		return memoized.paths(id);
 	}
 	/**
 	 * Memoize the given score for the given position
@@ -242,24 +248,20 @@ public class MemoizedTraverse {
 	public void memoize(TraversalNode node) {
 		KmerPathSubnode sn = node.node;
 		KmerPathNode pn = sn.node();
-		AbstractInt2ObjectSortedMap<TraversalNode> cache = memoized.get(pn);
-		if (cache == null) {
-			cache = new Int2ObjectRBTreeMap<TraversalNode>();
-			memoized.put(pn, cache);
-		}
-		memoize_fastutil_sortedmap(node, cache);
-		assert(!cache.isEmpty());
+		int id = memoized.getOrCreateId(pn);
+		memoize(node, id);
+		assert(memoized.size(id) > 0);
 		if (Defaults.SANITY_CHECK_MEMOIZATION) {
 			//sanityCheck();
 		}
 	}
-	private void memoize_fastutil_sortedmap(TraversalNode node, AbstractInt2ObjectSortedMap<TraversalNode> cache) {
+	private void memoize(TraversalNode node, int id) {
 		KmerPathSubnode sn = node.node;
 		// skip cached values that end before we start
-		Iterator<TraversalNode> it = cache.tailMap(sn.firstStart()).values().iterator();
-		List<TraversalNode> addlist = null; // need to delay adding to cache until after our iterator is complete (so we don't invalidate the iterator midway)
-		while (it.hasNext()) {
-			TraversalNode existing = it.next();
+		int i = memoized.firstEndingAtOrAfter(id, sn.firstStart());
+		List<TraversalNode> addlist = null; // need to delay adding to cache until after our traversal is complete (so we don't invalidate our offset midway)
+		while (i < memoized.size(id)) {
+			TraversalNode existing = memoized.get(id, i);
 			KmerPathSubnode existingsn = existing.node;
 			assert(existingsn.firstEnd() >= sn.firstStart()); // should have been skipped in the initial lookup
 			if (existingsn.firstStart() > sn.firstEnd()) {
@@ -271,7 +273,7 @@ public class MemoizedTraverse {
 			assert(existingsn.firstKmer() == sn.firstKmer() && IntervalUtil.overlapsClosed(existingsn.firstStart(), existingsn.firstEnd(), sn.firstStart(), sn.firstEnd()));
 			if (node.score > existing.score) {
 				// remove existing node in overlapping interval
-				it.remove();
+				memoized.removeAt(id, i);
 				onMemoizeRemove(existing);
 				boolean inFrontier = frontier.remove(existing);
 				if (inFrontier) {
@@ -317,18 +319,19 @@ public class MemoizedTraverse {
 				} else {
 					node = new TraversalNode(node, newStartPosition, node.node.firstEnd());
 					sn = node.node;
+					i++;
 				}
 			}
 		}
 		if (node != null) {
-			cache.put(node.node.firstEnd(), node);
+			memoized.put(id, node);
 			onMemoizeAdd(node);
 			frontier.add(node);
 			onFrontierAdd(node);
 		}
 		if (addlist != null) {
 			for (TraversalNode n : addlist) {
-				cache.put(n.node.firstEnd(), n);
+				memoized.put(id, n);
 				onMemoizeAdd(n);
 			}
 		}
@@ -396,17 +399,17 @@ public class MemoizedTraverse {
 	 * node, and the node has not been removed.
 	 */
 	public boolean isMemoized(KmerPathNode node) {
-		return memoized.containsKey(node);
+		return memoized.contains(node);
 	}
 	/**
 	 * Returns the memoized predecessor of the given path
 	 * @return predecessor node, null if no single predecessor is defined for the entire interval 
 	 */
 	public KmerPathNode getParent(KmerPathNode node, int start, int end) {
-		AbstractInt2ObjectSortedMap<TraversalNode> cache = memoized.get(node);
-		Iterator<TraversalNode> it = cache.tailMap(start).values().iterator();
-		if (it.hasNext()) {
-			TraversalNode existing = it.next();
+		int id = memoized.id(node);
+		int i = memoized.firstEndingAtOrAfter(id, start);
+		if (i < memoized.size(id)) {
+			TraversalNode existing = memoized.get(id, i);
 			if (existing.node.firstStart() <= start && existing.node.firstEnd() >= end) {
 				if (existing.parent != null) {
 					return existing.parent.node.node();
@@ -420,17 +423,17 @@ public class MemoizedTraverse {
 	 * @param node node to recalculate
 	 */
 	public void addFrontier(TraversalNode node) {
-		assert(memoized.containsKey(node.node.node()));
-		assert(memoized.get(node.node.node()).containsValue(node));
+		assert(memoized.contains(node.node.node()));
+		assert(memoized.containsPath(node));
 		frontier.add(node);
 		onFrontierAdd(node);
 	}
 	@Override
 	public String toString() {
-		return String.format("%d nodes memoized, %d in frontier", memoized.size(), frontier.size());
+		return String.format("%d nodes memoized, %d in frontier", memoized.nodeCount(), frontier.size());
 	}
 	public int memoizedNodeCount() {
-		return memoized.size();
+		return memoized.nodeCount();
 	}
 	public int tracking_frontierSize() {
 		return frontier.size();
@@ -445,7 +448,7 @@ public class MemoizedTraverse {
 	 */
 	public void export(File file) throws IOException {
 		StringBuilder sb = new StringBuilder("score,kmerlength,start,end,nodehash,parenthash,nodestart,nodeend,memoized,frontier\n");
-		Stream.concat(frontier.stream(), memoized.values().stream().flatMap(m -> m.values().stream())).distinct().forEach(tn -> {
+		Stream.concat(frontier.stream(), memoized.paths()).distinct().forEach(tn -> {
 			sb.append(String.format("%d,%d,%d,%d,%x,%x,%d,%d,%b,%b\n",
 				tn.score,
 				tn.pathLength,
@@ -455,38 +458,34 @@ public class MemoizedTraverse {
 				tn.parent == null ? 0 : System.identityHashCode(tn.parent.node.node()),
 				tn.node.node().firstStart(),
 				tn.node.node().firstEnd(),
-				memoized.containsKey(tn.node.node()) && memoized.get(tn.node.node()).containsValue(tn),
+				memoized.containsPath(tn),
 				frontier.contains(tn)));
 		});
 		Files.write(sb.toString().getBytes(), file);
 	}
 	public boolean sanityCheck() {
-		for (Entry<KmerPathNode, AbstractInt2ObjectSortedMap<TraversalNode>> entry : memoized.entrySet()) {
-			KmerPathNode node = entry.getKey();
+		memoized.ids().forEach(id -> {
+			KmerPathNode node = memoized.node(id);
 			assert(node.isValid());
-			for (int position : entry.getValue().keySet()) {
+			int lastEnd = Integer.MIN_VALUE;
+			for (TraversalNode tn : memoized.paths(id)) {
+				int position = tn.node.firstEnd();
+				assert(position > lastEnd);
+				lastEnd = position;
 				assert(position >= node.firstStart());
 				assert(position <= node.firstEnd());
-				TraversalNode tn = entry.getValue().get(position);
 				assert(tn.sanityCheck());
 				assert(tn.node.node() == node);
-				assert(tn.node.firstEnd() == position);
 			}
-		}
+		});
 		for (TraversalNode tn : frontier) {
-			assert(memoized.containsKey(tn.node.node()));
-			assert(memoized.get(tn.node.node()).get(tn.node.firstEnd()) == tn);
-			assert(memoized.get(tn.node.node()).containsValue(tn));
+			assert(memoized.contains(tn.node.node()));
+			assert(memoized.containsPath(tn));
 		}
 		return true;
 	}
 	public boolean sanityCheckAreRemoved(Collection<KmerPathNode> removed) {
-		for (Entry<KmerPathNode, AbstractInt2ObjectSortedMap<TraversalNode>> entry : memoized.entrySet()) {
-			for (int position : entry.getValue().keySet()) {
-				TraversalNode tn = entry.getValue().get(position);
-				sanityCheckDoesNotContain(tn, removed);
-			}
-		}
+		memoized.paths().forEach(tn -> sanityCheckDoesNotContain(tn, removed));
 		for (TraversalNode tn : frontier) {
 			sanityCheckDoesNotContain(tn, removed);
 		}
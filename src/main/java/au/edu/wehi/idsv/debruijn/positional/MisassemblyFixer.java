@@ -1,19 +1,10 @@
 package au.edu.wehi.idsv.debruijn.positional;
 
-import au.edu.wehi.idsv.util.IntervalUtil;
+import au.edu.wehi.idsv.debruijn.positional.optimiseddatastructures.KmerOffsetIntervalLookup;
 import com.google.common.collect.Lists;
-import com.google.common.collect.Multiset;
-import com.google.common.collect.SortedMultiset;
-import com.google.common.collect.TreeMultiset;
-import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
-import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
-import it.unimi.dsi.fastutil.longs.LongArrayList;
-import it.unimi.dsi.fastutil.longs.LongList;
-import org.apache.commons.lang3.tuple.ImmutableTriple;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
 
 import java.util.*;
-import java.util.Map.Entry;
-import java.util.stream.Collectors;
 
 /**
  * Corrects misassembly due to incorporation of read pair evidence at multiple positions
@@ -23,52 +14,50 @@ import java.util.stream.Collectors;
 class MisassemblyFixer {
 	private final List<KmerPathSubnode> contig;
 	/**
-	 * path kmer offset -> { path node offset, pretransition kmers, posttransition kmers }
+	 * Path kmer offset of the last kmer of each contig node except the last.
+	 * Ascending order since offsets are assigned along the path.
 	 */
-	private final NavigableMap<Integer, ImmutableTriple<Integer, LongList, LongList>> contigTransitionOffsetLookup;
+	private final int[] transitionOffset;
+	/**
+	 * Last kmer of each contig node except the last
+	 */
+	private final long[] transitionPreKmer;
+	/**
+	 * First kmer of each contig node except the first
+	 */
+	private final long[] transitionPostKmer;
 	/**
 	 * kmer -> { start, end, path kmer offset }
-	 * unordered for now: ideally this should be an IntIntervalTreeMultimap
 	 */
-	private final Long2ObjectMap<List<ImmutableTriple<Integer, Integer, Integer>>> contigOffsetLookup;
+	private final KmerOffsetIntervalLookup contigOffsetLookup;
+	private final int contigKmers;
+	/**
+	 * Per-read votes for each inferred starting kmer offset.
+	 * Indexed by offset + readLength so reads starting before the contig can be counted.
+	 */
+	private int[] offsetVotes = new int[0];
+	private final IntArrayList votedOffsets = new IntArrayList();
 	public MisassemblyFixer(Collection<KmerPathSubnode> contig) {
 		this.contig = Lists.newArrayList(contig);
-		this.contigTransitionOffsetLookup = createContigTransitionOffsetLookup(this.contig);
-		this.contigOffsetLookup = createContigOffsetLookup(this.contig);
-	}
-	private static NavigableMap<Integer, ImmutableTriple<Integer, LongList, LongList>> createContigTransitionOffsetLookup(List<KmerPathSubnode> contig) {
-		NavigableMap<Integer, ImmutableTriple<Integer, LongList, LongList>> lookup = new TreeMap<Integer, ImmutableTriple<Integer, LongList, LongList>>();
+		int transitions = Math.max(0, this.contig.size() - 1);
+		this.transitionOffset = new int[transitions];
+		this.transitionPreKmer = new long[transitions];
+		this.transitionPostKmer = new long[transitions];
+		this.contigKmers = this.contig.stream().mapToInt(sn -> sn.length()).sum();
+		this.contigOffsetLookup = new KmerOffsetIntervalLookup(contigKmers);
 		int snoffset = 0;
-		for (int i = 0; i < contig.size() - 1; i++) {
-			KmerPathSubnode sn = contig.get(i);
-			LongArrayList snendkmers = new LongArrayList();
-			snendkmers.add(sn.lastKmer());
-			KmerPathSubnode snext = contig.get(i + 1);
-			LongArrayList snextstartkmers = new LongArrayList();
-			snextstartkmers.add(snext.firstKmer());
-			lookup.put(snoffset + sn.length() - 1, new ImmutableTriple<Integer, LongList, LongList>(i, snendkmers, snextstartkmers));
-			snoffset += sn.length();
-		}
-		return lookup;
-	}
-	private static Long2ObjectMap<List<ImmutableTriple<Integer, Integer, Integer>>> createContigOffsetLookup(Collection<KmerPathSubnode> contig) {
-		Long2ObjectMap<List<ImmutableTriple<Integer, Integer, Integer>>> contigOffsetLookup = new Long2ObjectOpenHashMap<List<ImmutableTriple<Integer, Integer, Integer>>>();
-		int snoffset = 0;
-		for (KmerPathSubnode sn : contig) {
-			for (int i = 0; i < sn.length(); i++) {
-				contigOffsetLookupAdd(contigOffsetLookup, snoffset + i, sn.node().kmer(i), sn.firstStart() + i, sn.firstEnd() + i);
+		for (int i = 0; i < this.contig.size(); i++) {
+			KmerPathSubnode sn = this.contig.get(i);
+			for (int j = 0; j < sn.length(); j++) {
+				contigOffsetLookup.add(sn.node().kmer(j), sn.firstStart() + j, sn.firstEnd() + j, snoffset + j);
+			}
+			if (i < transitions) {
+				transitionOffset[i] = snoffset + sn.length() - 1;
+				transitionPreKmer[i] = sn.lastKmer();
+				transitionPostKmer[i] = this.contig.get(i + 1).firstKmer();
 			}
 			snoffset += sn.length();
 		}
-		return contigOffsetLookup;
-	}
-	private static void contigOffsetLookupAdd(Long2ObjectMap<List<ImmutableTriple<Integer, Integer, Integer>>> contigOffsetLookup, int offset, long kmer, int start, int end) {
-		List<ImmutableTriple<Integer, Integer, Integer>> list = contigOffsetLookup.get(kmer);
-		if (list == null) {
-			list = new ArrayList<ImmutableTriple<Integer,Integer,Integer>>();
-			contigOffsetLookup.put(kmer, list);
-		}
-		list.add(new ImmutableTriple<Integer, Integer, Integer>(start, end, offset));
 	}
 	/**
 	 * Reassembles the given contig ensuring a valid traversal path
@@ -79,8 +68,14 @@ class MisassemblyFixer {
 		// as a conservative approximation to full OLC reassembly
 		// we naively left/right align everything and truncate if we have
 		// zero support for a node transition.
-		List<KmerPathSubnode> left = asLeftAligned(evidence);
-		List<KmerPathSubnode> right = asRightAligned(evidence);
+		int[] leftSupport = new int[transitionOffset.length];
+		int[] rightSupport = new int[transitionOffset.length];
+		// single placement pass: both alignments share the same offset votes
+		for (KmerEvidence e : evidence) {
+			placeEvidence(e, leftSupport, rightSupport);
+		}
+		List<KmerPathSubnode> left = asLeftAligned(leftSupport);
+		List<KmerPathSubnode> right = asRightAligned(rightSupport);
 		boolean leftAnchored = left.get(0).prev().stream().anyMatch(sn -> sn.node().isReference());
 		boolean rightAnchored = right.get(right.size() - 1).next().stream().anyMatch(sn -> sn.node().isReference());
 		if (leftAnchored && !rightAnchored) return left;
@@ -90,8 +85,7 @@ class MisassemblyFixer {
 		if (leftWeight >= rightWeight) return left;
 		else return right;
 	}
-	private List<KmerPathSubnode> asLeftAligned(Collection<KmerEvidence> evidence) {
-		int[] transitionSupport = transitionSupport(evidence, true);
+	private List<KmerPathSubnode> asLeftAligned(int[] transitionSupport) {
 		List<KmerPathSubnode> newContig = new ArrayList<KmerPathSubnode>(contig.size());
 		newContig.add(contig.get(0));
 		for (int i = 0; i < transitionSupport.length; i++) {
@@ -103,8 +97,7 @@ class MisassemblyFixer {
 		}
 		return newContig;
 	}
-	private List<KmerPathSubnode> asRightAligned(Collection<KmerEvidence> evidence) {
-		int[] transitionSupport = transitionSupport(evidence, false);
+	private List<KmerPathSubnode> asRightAligned(int[] transitionSupport) {
 		LinkedList<KmerPathSubnode> newContig = new LinkedList<KmerPathSubnode>();
 		newContig.add(contig.get(contig.size() - 1));
 		for (int i = contig.size() - 2; i >= 0; i--) {
@@ -116,60 +109,80 @@ class MisassemblyFixer {
 		}
 		return newContig;
 	}
-	private int[] transitionSupport(Collection<KmerEvidence> evidence, boolean leftAlign) {
-		int[] transitionSupport = new int[contig.size() - 1];
-		for (KmerEvidence e : evidence) {
-			int[] offsets = matchingOffsets(e);
-			int offset = leftAlign ? offsets[0] : offsets[1];
-			addSupport(transitionSupport, e, offset);
-		}
-		return transitionSupport;
+	/**
+	 * Places the evidence at its best left and right aligned contig offsets
+	 * and adds the resultant transition support.
+	 */
+	private void placeEvidence(KmerEvidence evidence, int[] leftSupport, int[] rightSupport) {
+		int[] offsets = matchingOffsets(evidence);
+		addSupport(leftSupport, evidence, offsets[0]);
+		addSupport(rightSupport, evidence, offsets[1]);
 	}
 	private void addSupport(int[] transitionSupport, KmerEvidence evidence, int offset) {
-		for (Entry<Integer, ImmutableTriple<Integer, LongList, LongList>> entry : contigTransitionOffsetLookup.subMap(offset, offset + evidence.length() - 1).entrySet()) {
-			KmerSupportNode preNode = evidence.node(entry.getKey() - offset);
-			KmerSupportNode postNode = evidence.node(entry.getKey() - offset + 1);
+		int endOffset = offset + evidence.length() - 1;
+		for (int i = firstTransitionAtOrAfter(offset); i < transitionOffset.length && transitionOffset[i] < endOffset; i++) {
+			KmerSupportNode preNode = evidence.node(transitionOffset[i] - offset);
+			KmerSupportNode postNode = evidence.node(transitionOffset[i] - offset + 1);
 			if (preNode != null && postNode != null) {
-				long readKmerPreTransition = preNode.firstKmer();
-				long readKmerPostTransition = postNode.firstKmer();
-				ImmutableTriple<Integer, LongList, LongList> transition = entry.getValue();
-				if (transition.middle.contains(readKmerPreTransition) && transition.right.contains(readKmerPostTransition)) {
-					transitionSupport[transition.left]++;
+				if (transitionPreKmer[i] == preNode.firstKmer() && transitionPostKmer[i] == postNode.firstKmer()) {
+					transitionSupport[i]++;
 				}
 			}
 		}
 	}
+	private int firstTransitionAtOrAfter(int offset) {
+		int low = 0;
+		int high = transitionOffset.length;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (transitionOffset[mid] < offset) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
 	/**
 	 * Returns the inferred contig offset of the starting read kmer for every kmer match  
 	 * @param evidence read
 	 * @return max and min best read starting kmer offset   
 	 */
 	private int[] matchingOffsets(KmerEvidence evidence) {
-		SortedMultiset<Integer> counts = TreeMultiset.create();
+		int bias = evidence.length();
+		if (offsetVotes.length < contigKmers + bias) {
+			offsetVotes = new int[contigKmers + bias];
+		}
+		votedOffsets.clear();
 		for (int i = 0; i < evidence.length(); i++) {
 			KmerSupportNode n = evidence.node(i);
 			if (n != null) {
-				offsetLookup(counts, i, n.firstKmer(), n.firstStart(), n.firstEnd());
+				int readOffset = i;
+				contigOffsetLookup.forEachOverlapping(n.firstKmer(), n.firstStart(), n.firstEnd(), contigOffset -> {
+					int index = contigOffset - readOffset + bias;
+					if (offsetVotes[index]++ == 0) {
+						votedOffsets.add(index);
+					}
+				});
 			}
 		}
-		int maxCount = counts.entrySet().stream()
-				.mapToInt(e -> e.getCount())
-				.max()
-				.getAsInt();
-		List<Integer> best = counts.entrySet().stream()
-				.filter(e -> e.getCount() == maxCount)
-				.map(e -> e.getElement())
-				.collect(Collectors.toList());
-		return new int[] { best.get(0), best.get(best.size() - 1) };
-	}
-	private void offsetLookup(Multiset<Integer> counts, int readOffset, long kmer, int positionStart, int positionEnd) {
-		List<ImmutableTriple<Integer, Integer, Integer>> validPositionRanges = contigOffsetLookup.get(kmer);
-		if (validPositionRanges != null) {
-			for (ImmutableTriple<Integer, Integer, Integer> entry : validPositionRanges)  {
-				if (IntervalUtil.overlapsClosed(entry.left, entry.middle, positionStart, positionEnd)) {
-					counts.add(entry.right - readOffset);	
-				}
+		if (votedOffsets.isEmpty()) throw new NoSuchElementException("No contig kmers matching " + evidence.toString());
+		int maxCount = 0;
+		int min = Integer.MAX_VALUE;
+		int max = Integer.MIN_VALUE;
+		for (int j = 0; j < votedOffsets.size(); j++) {
+			int index = votedOffsets.getInt(j);
+			int count = offsetVotes[index];
+			offsetVotes[index] = 0;
+			if (count > maxCount) {
+				maxCount = count;
+				min = index;
+				max = index;
+			} else if (count == maxCount) {
+				min = Math.min(min, index);
+				max = Math.max(max, index);
 			}
 		}
-	} 
-}
\ No newline at end of file
+		return new int[] { min - bias, max - bias };
+	}
+}
@@ -98,6 +98,7 @@ public class NonReferenceContigAssembler implements Iterator<SAMRecord> {
 	private PositionalDeBruijnGraphTracker exportTracker = null;
 	private AssemblyChunkTelemetry telemetry = null;
 	private Set<KmerEvidence> untrackedEvidenceStillBeingProcessed = null;
+	private boolean enforceMaximumNodeDensity = true;
 	public int getReferenceIndex() { return referenceIndex; }
 
 	private int retainWidth() {
@@ -433,10 +434,10 @@ public class NonReferenceContigAssembler implements Iterator<SAMRecord> {
 		int advanceWidth = nextPosition() - lastNextPosition;
 		float density = advanceWidth <= 0 ? 0 : count / (float)advanceWidth;
 		boolean filtered = false;
-		if (density > aes.getContext().getAssemblyParameters().positional.maximumNodeDensity) {
+		if (enforceMaximumNodeDensity && density > aes.getContext().getAssemblyParameters().positional.maximumNodeDensity) {
 			log.debug(String.format("Density of %.2f at %s:%d-%d exceeds maximum: error correcting and downsampling.", density, contigName, lastNextPosition, nextPosition()));
 			Range<Integer> range = Range.closedOpen(lastNextPosition, nextPosition());
-			if (excludedRegions != null) {
+			if (excludedRegions != null && !aes.getContext().getAssemblyParameters().positional.spillDenseRegions) {
 				excludedRegions.addInterval(referenceIndex, range.lowerEndpoint(), range.upperEndpoint());
 			}
 			filtered = true;
@@ -1232,6 +1233,13 @@ public class NonReferenceContigAssembler implements Iterator<SAMRecord> {
 	public void setTelemetry(AssemblyChunkTelemetry telemetry) {
 		this.telemetry = telemetry;
 	}
+	/**
+	 * Determines whether an AssemblyThresholdReachedException is thrown when the
+	 * graph density exceeds the maximum node density.
+	 */
+	public void setEnforceMaximumNodeDensity(boolean enforceMaximumNodeDensity) {
+		this.enforceMaximumNodeDensity = enforceMaximumNodeDensity;
+	}
 	public ContigStats tracking_lastContig() {
 		return stats;
 	}
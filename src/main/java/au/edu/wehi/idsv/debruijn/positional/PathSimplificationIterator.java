@@ -1,13 +1,13 @@
 package au.edu.wehi.idsv.debruijn.positional;
 
 import au.edu.wehi.idsv.Defaults;
+import au.edu.wehi.idsv.debruijn.positional.optimiseddatastructures.KmerNodeByFirstStartEndKmerReferenceNavigablePartiallyOrderedSet;
+import au.edu.wehi.idsv.debruijn.positional.optimiseddatastructures.KmerNodeByLastEndKmerHashLookup;
+import au.edu.wehi.idsv.debruijn.positional.optimiseddatastructures.KmerNodeByLastEndPriorityQueue;
 import com.google.common.collect.Iterators;
 import com.google.common.collect.PeekingIterator;
-import it.unimi.dsi.fastutil.objects.ObjectOpenCustomHashSet;
 
-import java.util.Iterator;
-import java.util.PriorityQueue;
-import java.util.TreeSet;
+import java.util.*;
 
 /**
  * Simplifies the graph until the number of nodes used to represent the graph cannot be further reduced
@@ -49,7 +49,11 @@ import java.util.TreeSet;
  *
  */
 public class PathSimplificationIterator implements PeekingIterator<KmerPathNode> {
-	private final ObjectOpenCustomHashSet<KmerPathNode> endLookup = new ObjectOpenCustomHashSet<KmerPathNode>(new KmerNodeUtil.HashByLastEndKmer<KmerPathNode>());
+	/**
+	 * Processed nodes indexed by last kmer and end position so adjacent nodes can be found
+	 * without allocating a lookup key
+	 */
+	private final KmerNodeByLastEndKmerHashLookup<KmerPathNode> endLookup = new KmerNodeByLastEndKmerHashLookup<>();
 	/**
 	 * Always merge with earlier nodes. Ordering by end position ensures that
 	 * both kmer and position precedessors have been processed before each node
@@ -67,12 +71,12 @@ public class PathSimplificationIterator implements PeekingIterator<KmerPathNode>
 	 *  node is maxNodeLength + maxNodeWidth in size
 	 * 
 	 */
-	private final PriorityQueue<KmerPathNode> unprocessed = new PriorityQueue<KmerPathNode>(16, KmerNodeUtil.ByLastEnd);
+	private final Queue<KmerPathNode> unprocessed = Defaults.USE_OPTIMISED_ASSEMBLY_DATA_STRUCTURES ? new KmerNodeByLastEndPriorityQueue<>(16) : new PriorityQueue<>(16, KmerNodeUtil.ByLastEnd);
 	/**
 	 * Nodes that have been processed, but could be modified further
 	 * 
 	 */
-	private final TreeSet<KmerPathNode> processed = new TreeSet<KmerPathNode>(KmerNodeUtil.ByFirstStartKmer);
+	private final NavigableSet<KmerPathNode> processed = Defaults.USE_OPTIMISED_ASSEMBLY_DATA_STRUCTURES ? new KmerNodeByFirstStartEndKmerReferenceNavigablePartiallyOrderedSet<>(16) : new TreeSet<>(KmerNodeUtil.ByFirstStartKmer);
 	private final int maxLength;
 	private final int maxWidth;
 	private final PeekingIterator<KmerPathNode> underlying;
@@ -125,7 +129,7 @@ public class PathSimplificationIterator implements PeekingIterator<KmerPathNode>
 		return false;
 	}
 	private KmerPathNode adjacentBeforeKmerToMergeWith(KmerPathNode node) {
-		KmerPathNode adj = endLookup.get(new KmerPathNode(node.lastKmer(), 0, node.lastStart() - 1, false, 0));
+		KmerPathNode adj = endLookup.get(node.lastKmer(), node.lastStart() - 1);
 		if (adj != null
 				&& node.canCoaleseBeforeAdjacent(adj)
 				&& adj.width() + node.width() <= maxWidth
@@ -187,7 +191,7 @@ public class PathSimplificationIterator implements PeekingIterator<KmerPathNode>
 	private void process(KmerPathNode node) {
 		int beforeTotalWeight = 0;
 		if (Defaults.SANITY_CHECK_ASSEMBLY_GRAPH) {
-			beforeTotalWeight = node.width() * node.weight() + processed.stream().mapToInt(n -> n.width() * n.weight()).sum();
+			beforeTotalWeight = node.width() * node.weight() + endLookup.stream().mapToInt(n -> n.width() * n.weight()).sum();
 			assert(!processed.contains(node));
 		}
 		while (reduce(node)) {
@@ -196,7 +200,7 @@ public class PathSimplificationIterator implements PeekingIterator<KmerPathNode>
 			simplified++;
 		}
 		if (Defaults.SANITY_CHECK_ASSEMBLY_GRAPH) {
-			int afterTotalWeight = node.width() * node.weight() + processed.stream().mapToInt(n -> n.width() * n.weight()).sum();
+			int afterTotalWeight = node.width() * node.weight() + endLookup.stream().mapToInt(n -> n.width() * n.weight()).sum();
 			assert(beforeTotalWeight == afterTotalWeight);
 			assert(!processed.contains(node));
 		}
@@ -213,7 +217,8 @@ public class PathSimplificationIterator implements PeekingIterator<KmerPathNode>
 		while (underlying.hasNext() && underlying.peek().firstStart() <= inputPosition) {
 			KmerPathNode nextRecord = underlying.next();
 			consumed++;
-			assert(nextRecord.width() <= maxWidth);
+			// input width is not bounded by maxWidth as aggregation can join
+			// adjacent support intervals. maxWidth only bounds the width of merged nodes
 			assert(nextRecord.length() <= maxLength);
 			unprocessed.add(nextRecord);
 		}
@@ -227,14 +232,14 @@ public class PathSimplificationIterator implements PeekingIterator<KmerPathNode>
 	}
 	public boolean sanityCheck() {
 		assert(endLookup.size() == processed.size());
-		for (KmerPathNode pn : processed) {
+		endLookup.stream().forEach(pn -> {
+			assert(processed.contains(pn));
 			// should not be able to reduce processed nodes any further
 			assert(prevKmerToMergeWith(pn) == null);
 			assert(adjacentBeforeKmerToMergeWith(pn) == null);
-			assert(unprocessed.stream().filter(n -> pn.equals(n)).count() == 0);
-		}
+		});
 		for (KmerPathNode pn : unprocessed) {
-			assert(processed.stream().filter(n -> pn.equals(n)).count() == 0);
+			assert(!processed.contains(pn));
 		}
 		return true;
 	}
@@ -10,6 +10,7 @@ import au.edu.wehi.idsv.picard.ReferenceLookup;
 import au.edu.wehi.idsv.sam.SamTags;
 import au.edu.wehi.idsv.util.*;
 import au.edu.wehi.idsv.visualisation.AssemblyTelemetry.AssemblyChunkTelemetry;
+import au.edu.wehi.idsv.visualisation.BinaryTelemetry;
 import au.edu.wehi.idsv.visualisation.PositionalDeBruijnGraphTracker;
 import com.google.common.collect.*;
 import htsjdk.samtools.*;
@@ -42,6 +43,10 @@ public class PositionalAssembler implements Iterator<SAMRecord> {
 	private final IntervalBed safetyRegions;
 	private EvidenceTracker evidenceTracker = null;
 	private boolean contigGeneratedSinceException = false;
+	/**
+	 * Evidence from excessively dense regions still to be assembled
+	 */
+	private EvidenceSpillStore spillStore = null;
 	public PositionalAssembler(ProcessingContext context, AssemblyEvidenceSource source, AssemblyIdGenerator assemblyNameGenerator, Iterator<DirectedEvidence> backingIterator, BreakendDirection direction, IntervalBed excludedRegions, IntervalBed safetyRegions) {
 		this.context = context;
 		this.source = source;
@@ -106,9 +111,15 @@ public class PositionalAssembler implements Iterator<SAMRecord> {
 		try {
 			ensureAssembler(preload);
 		} catch (AssemblyThresholdReachedException atre) {
+			if (context.getAssemblyParameters().positional.spillDenseRegions) {
+				Set<DirectedEvidence> preloadRecoverySet = spillEvidenceInRegion(atre.getRange());
+				closeCurrentAssembler();
+				ensureAssembler(true, preloadRecoverySet);
+				return;
+			}
 			Set<DirectedEvidence> reloadRecoverySet = getEvidenceInCurrentAssembler();
 			// really aggressive error correction of every read might simplify our assembly graph
-			ReadErrorCorrector.errorCorrect(context.getAssemblyParameters().errorCorrection.k, context.getAssemblyParameters().errorCorrection.kmerErrorCorrectionMultiple / 2, context.getAssemblyParameters().errorCorrection.maxCorrectionsInKmer, context.getAssemblyParameters().errorCorrection.deduplicateReadKmers, reloadRecoverySet);
+			ReadErrorCorrector.errorCorrect(context.getAssemblyParameters().errorCorrection.k, context.getAssemblyParameters().errorCorrection.kmerErrorCorrectionMultiple / 2, context.getAssemblyParameters().errorCorrection.maxCorrectionsInKmer, context.getAssemblyParameters().errorCorrection.deduplicateReadKmers, reloadRecoverySet, context.getEvidenceThreadpool());
 			Set<DirectedEvidence> downsampledRecoverySet = downsampleEvidenceInRegion(reloadRecoverySet, atre.getRange());
 			// restart assembly using the downsampled set of reads
 			closeCurrentAssembler();
@@ -165,6 +176,39 @@ public class PositionalAssembler implements Iterator<SAMRecord> {
 		}
 	}
 
+	/**
+	 * Spills the evidence in the current assembler overlapping the given region, and
+	 * any evidence not yet loaded for the region, to disk.
+	 * @param range excessively dense region
+	 * @return evidence in the current assembler before the region
+	 */
+	private Set<DirectedEvidence> spillEvidenceInRegion(Range<Integer> range) {
+		Set<DirectedEvidence> reloadRecoverySet = getEvidenceInCurrentAssembler();
+		int referenceIndex = currentAssembler.getReferenceIndex();
+		Set<DirectedEvidence> preload = reloadRecoverySet.stream()
+				.filter(de -> de.getBreakendSummary().start < range.lowerEndpoint())
+				.collect(Collectors.toSet());
+		if (preload.size() == reloadRecoverySet.size()) {
+			// ensure progress is made
+			preload.clear();
+		}
+		if (spillStore == null) {
+			spillStore = new EvidenceSpillStore(context, context.getAssemblyParameters().positional.spillWindowSize);
+		}
+		for (DirectedEvidence de : reloadRecoverySet) {
+			if (!preload.contains(de)) {
+				spillStore.add(de);
+			}
+		}
+		int spillUntil = range.upperEndpoint() + source.getMaxConcordantFragmentSize();
+		while (it.hasNext()
+				&& it.peek().getBreakendSummary().referenceIndex == referenceIndex
+				&& it.peek().getBreakendSummary().start <= spillUntil) {
+			spillStore.add(it.next());
+		}
+		log.debug(String.format("Density at %s:%d-%d exceeds maximum: spilled %d reads to disk.", currentContig, range.lowerEndpoint(), range.upperEndpoint(), spillStore.size()));
+		return preload;
+	}
 	private Set<DirectedEvidence> downsampleEvidenceInRegion(Set<DirectedEvidence> preload, Range<Integer> range) {
 		float scRate = context.getAssemblyParameters().downsampling.densityDownsampleRateClippedReads;
 		float rpRate = context.getAssemblyParameters().downsampling.densityDownsampleRateDiscordantReads;
@@ -291,14 +335,36 @@ public class PositionalAssembler implements Iterator<SAMRecord> {
 
 	private void ensureAssembler(Set<DirectedEvidence> preload) {
 		flushIfRequired();
-		while ((currentAssembler == null || !currentAssembler.hasNext()) && ((preload != null && !preload.isEmpty()) || it.hasNext())) {
+		while ((currentAssembler == null || !currentAssembler.hasNext()) && (spillStore != null || (preload != null && !preload.isEmpty()) || it.hasNext())) {
 			// traverse contigs until we find one that has an assembly to call
-			currentAssembler = createAssembler(preload);
-			preload = null;
+			if (spillStore != null && preload != null && !preload.isEmpty()) {
+				// evidence before the spilled region is assembled first as
+				// subsequent calls will not pass it back to us
+				currentAssembler = createAssembler(preload, true);
+				preload = null;
+			} else if (spillStore != null) {
+				// assemble spilled evidence before resuming
+				List<DirectedEvidence> window = spillStore.nextWindow();
+				if (window == null) {
+					spillStore.close();
+					spillStore = null;
+					continue;
+				}
+				if (window.isEmpty()) continue;
+				currentAssembler = createAssembler(window, true);
+			} else {
+				currentAssembler = createAssembler(preload, false);
+				preload = null;
+			}
 			flushIfRequired();
 		}
 	}
-	private NonReferenceContigAssembler createAssembler(Set<DirectedEvidence> preload) {
+	/**
+	 * Creates an assembler for the given evidence
+	 * @param preload evidence to assemble before the underlying iterator
+	 * @param spilled only the given evidence is assembled
+	 */
+	private NonReferenceContigAssembler createAssembler(Collection<DirectedEvidence> preload, boolean spilled) {
 		AssemblyConfiguration ap = context.getAssemblyParameters();
 		int maxKmerSupportIntervalWidth = source.getMaxConcordantFragmentSize() - source.getMinConcordantFragmentSize() + 1; 		
 		int maxReadLength = source.getMaxReadLength();
@@ -310,7 +376,7 @@ public class PositionalAssembler implements Iterator<SAMRecord> {
 		if (preload != null && preload.size() > 0) {
 			ArrayList<DirectedEvidence> list = Lists.newArrayList(preload);
 			list.sort(DirectedEvidenceOrder.ByNatural);
-			inputIterator = Iterators.peekingIterator(Iterators.concat(list.iterator(), inputIterator));
+			inputIterator = Iterators.peekingIterator(spilled ? list.iterator() : Iterators.concat(list.iterator(), inputIterator));
 		}
 		int referenceIndex = inputIterator.peek().getBreakendSummary().referenceIndex;
 		int firstPosition = inputIterator.peek().getBreakendSummary().start;
@@ -349,14 +415,34 @@ public class PositionalAssembler implements Iterator<SAMRecord> {
 		if (Defaults.SANITY_CHECK_DUMP_ITERATORS) {
 			pnIt = Iterators.peekingIterator(new DebugSpammingIterator<>(pnIt, "PositionalAssembler.PathNodeIterator"));
 		}
+		PathSimplificationIterator simplifyIt = null;
+		if (ap.positional.simplifyPaths) {
+			simplifyIt = new PathSimplificationIterator(pnIt, maxPathLength, maxEvidenceSupportIntervalWidth);
+			pnIt = simplifyIt;
+			if (Defaults.SANITY_CHECK_ASSEMBLY_GRAPH) {
+				pnIt = evidenceTracker.new PathNodeAssertionInterceptor(pnIt, "PathSimplificationIterator");
+			}
+			if (Defaults.SANITY_CHECK_DUMP_ITERATORS) {
+				pnIt = Iterators.peekingIterator(new DebugSpammingIterator<>(pnIt, "PositionalAssembler.PathSimplificationIterator"));
+			}
+		}
 		currentAssembler = new NonReferenceContigAssembler(pnIt, referenceIndex, maxEvidenceSupportIntervalWidth, anchorAssemblyLength, k, source, assemblyNameGenerator, evidenceTracker, currentContig, BreakendDirection.Forward, excludedRegions, safetyRegions);
+		if (spilled) {
+			// window size already bounds the graph size
+			currentAssembler.setEnforceMaximumNodeDensity(false);
+		}
 		if (vis.assemblyProgress) {
 			String filename = String.format("positional-%s_%d-%s.csv", context.getDictionary().getSequence(referenceIndex).getSequenceName(), firstPosition, direction);
 			filename = FilenameUtil.stripInvalidFilenameCharacters(filename);
 			File file = new File(vis.directory, filename);
 			PositionalDeBruijnGraphTracker exportTracker;
 			try {
-				exportTracker = new PositionalDeBruijnGraphTracker(file, supportIt_raw, agIt_raw, pathNodeIt, null, evidenceTracker, currentAssembler);
+				BinaryTelemetry binaryTelemetry = context.getBinaryTelemetry();
+				if (binaryTelemetry != null) {
+					exportTracker = new PositionalDeBruijnGraphTracker(binaryTelemetry, filename, supportIt_raw, agIt_raw, pathNodeIt, simplifyIt, evidenceTracker, currentAssembler);
+				} else {
+					exportTracker = new PositionalDeBruijnGraphTracker(file, supportIt_raw, agIt_raw, pathNodeIt, simplifyIt, evidenceTracker, currentAssembler);
+				}
 				exportTracker.writeHeader();
 				currentAssembler.setExportTracker(exportTracker);
 			} catch (IOException e) {
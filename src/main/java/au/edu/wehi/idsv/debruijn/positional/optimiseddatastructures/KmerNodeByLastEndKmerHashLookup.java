@@ -0,0 +1,134 @@
+package au.edu.wehi.idsv.debruijn.positional.optimiseddatastructures;
+
+import au.edu.wehi.idsv.debruijn.positional.KmerNode;
+import it.unimi.dsi.fastutil.HashCommon;
+
+import java.util.Arrays;
+import java.util.stream.Stream;
+
+/**
+ * Open addressing hash lookup of KmerNodes keyed by last kmer and last end position.
+ *
+ * Keys are stored in parallel primitive arrays so lookups do not require
+ * a key object to be allocated.
+ */
+public class KmerNodeByLastEndKmerHashLookup<T extends KmerNode> {
+    private static final int DEFAULT_SIZE = 16;
+    private long[] kmer;
+    private int[] end;
+    private KmerNode[] value;
+    private int mask;
+    private int size = 0;
+    public KmerNodeByLastEndKmerHashLookup() {
+        this(DEFAULT_SIZE);
+    }
+    public KmerNodeByLastEndKmerHashLookup(int expectedSize) {
+        allocate(HashCommon.arraySize(Math.max(DEFAULT_SIZE, expectedSize), 0.5f));
+    }
+    private void allocate(int capacity) {
+        kmer = new long[capacity];
+        end = new int[capacity];
+        value = new KmerNode[capacity];
+        mask = capacity - 1;
+    }
+    private int slot(long kmer, int end) {
+        return (int)HashCommon.mix(kmer ^ (long)end * 0x9E3779B97F4A7C15L) & mask;
+    }
+    private int find(long kmer, int end) {
+        int pos = slot(kmer, end);
+        while (value[pos] != null) {
+            if (this.kmer[pos] == kmer && this.end[pos] == end) return pos;
+            pos = (pos + 1) & mask;
+        }
+        return -1;
+    }
+    /**
+     * Gets the node with the given last kmer ending at the given position
+     * @return matching node, null if no such node exists
+     */
+    @SuppressWarnings("unchecked")
+    public T get(long kmer, int end) {
+        int pos = find(kmer, end);
+        return pos < 0 ? null : (T)value[pos];
+    }
+    /**
+     * Adds the given node, replacing any existing node with the same last kmer and end position
+     */
+    public void add(T node) {
+        long k = node.lastKmer();
+        int e = node.lastEnd();
+        int pos = slot(k, e);
+        while (value[pos] != null) {
+            if (kmer[pos] == k && end[pos] == e) {
+                value[pos] = node;
+                return;
+            }
+            pos = (pos + 1) & mask;
+        }
+        kmer[pos] = k;
+        end[pos] = e;
+        value[pos] = node;
+        size++;
+        if (2 * size > value.length) {
+            rehash(2 * value.length);
+        }
+    }
+    /**
+     * Removes the given node
+     * @return true if a node with the same last kmer and end position was removed
+     */
+    public boolean remove(T node) {
+        int pos = find(node.lastKmer(), node.lastEnd());
+        if (pos < 0) return false;
+        size--;
+        // backward shift deletion so no tombstones are required
+        int last;
+        while (true) {
+            last = pos;
+            pos = (pos + 1) & mask;
+            int slot;
+            while (true) {
+                if (value[pos] == null) {
+                    value[last] = null;
+                    return true;
+                }
+                slot = slot(kmer[pos], end[pos]);
+                if (last <= pos ? last >= slot || slot > pos : last >= slot && slot > pos) break;
+                pos = (pos + 1) & mask;
+            }
+            kmer[last] = kmer[pos];
+            end[last] = end[pos];
+            value[last] = value[pos];
+        }
+    }
+    private void rehash(int capacity) {
+        long[] oldKmer = kmer;
+        int[] oldEnd = end;
+        KmerNode[] oldValue = value;
+        allocate(capacity);
+        for (int i = 0; i < oldValue.length; i++) {
+            if (oldValue[i] != null) {
+                int pos = slot(oldKmer[i], oldEnd[i]);
+                while (value[pos] != null) {
+                    pos = (pos + 1) & mask;
+                }
+                kmer[pos] = oldKmer[i];
+                end[pos] = oldEnd[i];
+                value[pos] = oldValue[i];
+            }
+        }
+    }
+    public int size() {
+        return size;
+    }
+    public boolean isEmpty() {
+        return size == 0;
+    }
+    /**
+     * Nodes in unspecified order
+     */
+    @SuppressWarnings("unchecked")
+    public Stream<T> stream() {
+        return Arrays.stream(value).filter(n -> n != null).map(n -> (T)n);
+    }
+}
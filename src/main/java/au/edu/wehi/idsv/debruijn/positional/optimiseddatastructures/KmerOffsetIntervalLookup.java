@@ -0,0 +1,131 @@
+package au.edu.wehi.idsv.debruijn.positional.optimiseddatastructures;
+
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+import static it.unimi.dsi.fastutil.Arrays.quickSort;
+
+/**
+ * Lookup of the offsets at which a kmer occurs over a closed position interval.
+ *
+ * Entries are stored in parallel primitive arrays grouped by kmer and sorted by interval start.
+ * Each entry also records the maximum interval end of all preceding entries of the same kmer
+ * so both the first and last candidate entries of a query can be found by binary search.
+ *
+ * Entries must all be added before any lookups are performed.
+ */
+public class KmerOffsetIntervalLookup {
+    private static final int DEFAULT_SIZE = 16;
+    private static final int NOT_FOUND = -1;
+    private long[] kmer;
+    private int[] start;
+    private int[] end;
+    private int[] offset;
+    /**
+     * Maximum end of all entries of the same kmer up to and including this entry
+     */
+    private int[] maxEnd;
+    private int size = 0;
+    /**
+     * kmer -> index of first entry
+     */
+    private Long2IntOpenHashMap firstEntry = null;
+    /**
+     * kmer -> number of entries
+     */
+    private Long2IntOpenHashMap entryCount = null;
+    public KmerOffsetIntervalLookup() {
+        this(DEFAULT_SIZE);
+    }
+    public KmerOffsetIntervalLookup(int initialSize) {
+        int n = Math.max(1, initialSize);
+        this.kmer = new long[n];
+        this.start = new int[n];
+        this.end = new int[n];
+        this.offset = new int[n];
+    }
+    /**
+     * Adds an occurrence of the given kmer
+     * @param kmer kmer
+     * @param start interval start
+     * @param end interval end
+     * @param offset offset associated with the kmer
+     */
+    public void add(long kmer, int start, int end, int offset) {
+        if (firstEntry != null) throw new IllegalStateException("Cannot add entries after lookups have started");
+        if (size == this.kmer.length) {
+            int newSize = 2 * size;
+            this.kmer = Arrays.copyOf(this.kmer, newSize);
+            this.start = Arrays.copyOf(this.start, newSize);
+            this.end = Arrays.copyOf(this.end, newSize);
+            this.offset = Arrays.copyOf(this.offset, newSize);
+        }
+        this.kmer[size] = kmer;
+        this.start[size] = start;
+        this.end[size] = end;
+        this.offset[size] = offset;
+        size++;
+    }
+    public int size() {
+        return size;
+    }
+    private void ensureIndexed() {
+        if (firstEntry != null) return;
+        quickSort(0, size, (a, b) -> {
+            int cmp = Long.compare(kmer[a], kmer[b]);
+            if (cmp == 0) cmp = Integer.compare(start[a], start[b]);
+            return cmp;
+        }, (a, b) -> {
+            long tmpKmer = kmer[a]; kmer[a] = kmer[b]; kmer[b] = tmpKmer;
+            int tmp = start[a]; start[a] = start[b]; start[b] = tmp;
+            tmp = end[a]; end[a] = end[b]; end[b] = tmp;
+            tmp = offset[a]; offset[a] = offset[b]; offset[b] = tmp;
+        });
+        maxEnd = new int[size];
+        firstEntry = new Long2IntOpenHashMap(size);
+        firstEntry.defaultReturnValue(NOT_FOUND);
+        entryCount = new Long2IntOpenHashMap(size);
+        for (int i = 0; i < size; i++) {
+            if (i == 0 || kmer[i] != kmer[i - 1]) {
+                firstEntry.put(kmer[i], i);
+                maxEnd[i] = end[i];
+            } else {
+                maxEnd[i] = Math.max(maxEnd[i - 1], end[i]);
+            }
+            entryCount.addTo(kmer[i], 1);
+        }
+    }
+    /**
+     * Calls the given consumer with the offset of each occurrence of the given kmer
+     * whose interval overlaps the given closed interval.
+     * Offsets are reported in ascending order of interval start.
+     * @return number of matching occurrences
+     */
+    public int forEachOverlapping(long kmer, int start, int end, IntConsumer action) {
+        ensureIndexed();
+        int first = firstEntry.get(kmer);
+        if (first == NOT_FOUND) return 0;
+        int last = first + entryCount.get(kmer);
+        // maxEnd is non-decreasing so find the first entry that can end at or after our start
+        int low = first;
+        int high = last;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (maxEnd[mid] < start) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        int matches = 0;
+        for (int i = low; i < last && this.start[i] <= end; i++) {
+            if (this.end[i] >= start) {
+                action.accept(offset[i]);
+                matches++;
+            }
+        }
+        return matches;
+    }
+}
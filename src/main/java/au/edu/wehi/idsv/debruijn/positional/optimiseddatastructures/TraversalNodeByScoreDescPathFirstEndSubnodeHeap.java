@@ -0,0 +1,167 @@
+package au.edu.wehi.idsv.debruijn.positional.optimiseddatastructures;
+
+import au.edu.wehi.idsv.debruijn.positional.TraversalNode;
+import it.unimi.dsi.fastutil.objects.Reference2IntOpenHashMap;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.stream.Stream;
+
+/**
+ * Indexed d-ary min-heap of TraversalNodes ordered by TraversalNode.ByScoreDescPathFirstEndSubnode
+ *
+ * The heap position of each node is tracked by node identity so arbitrary nodes
+ * can be removed in O(log n) time. Unlike a TreeSet, no allocation is performed
+ * per operation once the backing arrays have grown to the working set size.
+ *
+ * Iteration order is unspecified.
+ */
+public class TraversalNodeByScoreDescPathFirstEndSubnodeHeap implements Iterable<TraversalNode> {
+    private static final int ARITY = 4;
+    private static final int DEFAULT_SIZE = 16;
+    private static final int NOT_IN_HEAP = -1;
+    private TraversalNode[] heap;
+    private int size = 0;
+    /**
+     * Heap position of each node
+     */
+    private final Reference2IntOpenHashMap<TraversalNode> index;
+    public TraversalNodeByScoreDescPathFirstEndSubnodeHeap() {
+        this(DEFAULT_SIZE);
+    }
+    public TraversalNodeByScoreDescPathFirstEndSubnodeHeap(int initialSize) {
+        this.heap = new TraversalNode[Math.max(1, initialSize)];
+        this.index = new Reference2IntOpenHashMap<>(Math.max(1, initialSize));
+        this.index.defaultReturnValue(NOT_IN_HEAP);
+    }
+    private static int compare(TraversalNode left, TraversalNode right) {
+        return TraversalNode.ByScoreDescPathFirstEndSubnode.compare(left, right);
+    }
+    /**
+     * Adds the given node to the heap
+     * @return true if the node was added, false if the node was already present
+     */
+    public boolean add(TraversalNode tn) {
+        if (index.containsKey(tn)) return false;
+        if (size == heap.length) {
+            heap = Arrays.copyOf(heap, 2 * heap.length);
+        }
+        heap[size] = tn;
+        index.put(tn, size);
+        size++;
+        siftUp(size - 1);
+        return true;
+    }
+    /**
+     * Removes the given node from the heap
+     * @return true if the node was removed, false if the node was not present
+     */
+    public boolean remove(TraversalNode tn) {
+        int position = index.removeInt(tn);
+        if (position == NOT_IN_HEAP) return false;
+        size--;
+        if (position != size) {
+            TraversalNode last = heap[size];
+            heap[position] = last;
+            index.put(last, position);
+            heap[size] = null;
+            if (position > 0 && compare(last, heap[parent(position)]) < 0) {
+                siftUp(position);
+            } else {
+                siftDown(position);
+            }
+        } else {
+            heap[size] = null;
+        }
+        return true;
+    }
+    public boolean removeAll(Collection<TraversalNode> tns) {
+        boolean changed = false;
+        for (TraversalNode tn : tns) {
+            changed |= remove(tn);
+        }
+        return changed;
+    }
+    public boolean contains(TraversalNode tn) {
+        return index.containsKey(tn);
+    }
+    /**
+     * Highest scoring node
+     */
+    public TraversalNode first() {
+        if (size == 0) throw new NoSuchElementException();
+        return heap[0];
+    }
+    public int size() {
+        return size;
+    }
+    public boolean isEmpty() {
+        return size == 0;
+    }
+    public void clear() {
+        Arrays.fill(heap, 0, size, null);
+        size = 0;
+        index.clear();
+    }
+    private static int parent(int position) {
+        return (position - 1) / ARITY;
+    }
+    private void siftUp(int position) {
+        TraversalNode tn = heap[position];
+        while (position > 0) {
+            int parent = parent(position);
+            TraversalNode p = heap[parent];
+            if (compare(tn, p) >= 0) break;
+            heap[position] = p;
+            index.put(p, position);
+            position = parent;
+        }
+        heap[position] = tn;
+        index.put(tn, position);
+    }
+    private void siftDown(int position) {
+        TraversalNode tn = heap[position];
+        while (true) {
+            int firstChild = ARITY * position + 1;
+            if (firstChild >= size) break;
+            int best = firstChild;
+            int lastChild = Math.min(firstChild + ARITY, size);
+            for (int child = firstChild + 1; child < lastChild; child++) {
+                if (compare(heap[child], heap[best]) < 0) {
+                    best = child;
+                }
+            }
+            if (compare(heap[best], tn) >= 0) break;
+            heap[position] = heap[best];
+            index.put(heap[position], position);
+            position = best;
+        }
+        heap[position] = tn;
+        index.put(tn, position);
+    }
+    /**
+     * Nodes in unspecified order
+     */
+    public Stream<TraversalNode> stream() {
+        return Arrays.stream(heap, 0, size);
+    }
+    /**
+     * Iterates over the nodes in unspecified order
+     */
+    @Override
+    public Iterator<TraversalNode> iterator() {
+        return stream().iterator();
+    }
+    public boolean sanityCheck() {
+        assert(index.size() == size);
+        for (int i = 0; i < size; i++) {
+            assert(index.getInt(heap[i]) == i);
+            if (i > 0) {
+                assert(compare(heap[parent(i)], heap[i]) <= 0);
+            }
+        }
+        return true;
+    }
+}
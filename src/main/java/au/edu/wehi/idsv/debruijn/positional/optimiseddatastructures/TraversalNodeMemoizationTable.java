@@ -0,0 +1,196 @@
+package au.edu.wehi.idsv.debruijn.positional.optimiseddatastructures;
+
+import au.edu.wehi.idsv.debruijn.positional.KmerPathNode;
+import au.edu.wehi.idsv.debruijn.positional.TraversalNode;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.objects.Reference2IntOpenHashMap;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Memoized best paths of each KmerPathNode.
+ *
+ * Each memoized node is assigned a dense integer id. The paths of each node
+ * cover disjoint first kmer intervals and are stored in an array sorted by
+ * TraversalNode.node.firstEnd(). Ids and path arrays of removed nodes are reused.
+ */
+public class TraversalNodeMemoizationTable {
+    private static final int NOT_MEMOIZED = -1;
+    private static final int DEFAULT_NODES = 16;
+    private static final int DEFAULT_PATHS = 2;
+    /**
+     * Path arrays larger than this are not retained for reuse
+     */
+    private static final int MAX_REUSED_PATHS = 64;
+    private final Reference2IntOpenHashMap<KmerPathNode> ids = new Reference2IntOpenHashMap<>();
+    private final IntArrayList freeIds = new IntArrayList();
+    private KmerPathNode[] node = new KmerPathNode[DEFAULT_NODES];
+    private TraversalNode[][] paths = new TraversalNode[DEFAULT_NODES][];
+    private int[] pathCount = new int[DEFAULT_NODES];
+    private int idCount = 0;
+    public TraversalNodeMemoizationTable() {
+        ids.defaultReturnValue(NOT_MEMOIZED);
+    }
+    /**
+     * Id of the given node
+     * @return node id, or a negative number if the node is not memoized
+     */
+    public int id(KmerPathNode kpn) {
+        return ids.getInt(kpn);
+    }
+    /**
+     * Id of the given node, assigning a new id if the node is not yet memoized
+     */
+    public int getOrCreateId(KmerPathNode kpn) {
+        int id = ids.getInt(kpn);
+        if (id != NOT_MEMOIZED) return id;
+        if (!freeIds.isEmpty()) {
+            id = freeIds.popInt();
+        } else {
+            id = idCount++;
+            if (id == node.length) {
+                int newSize = 2 * node.length;
+                node = Arrays.copyOf(node, newSize);
+                paths = Arrays.copyOf(paths, newSize);
+                pathCount = Arrays.copyOf(pathCount, newSize);
+            }
+            paths[id] = new TraversalNode[DEFAULT_PATHS];
+        }
+        node[id] = kpn;
+        ids.put(kpn, id);
+        return id;
+    }
+    public boolean contains(KmerPathNode kpn) {
+        return ids.containsKey(kpn);
+    }
+    /**
+     * Removes the given node and all its memoized paths
+     */
+    public void remove(int id) {
+        ids.removeInt(node[id]);
+        node[id] = null;
+        if (paths[id].length > MAX_REUSED_PATHS) {
+            paths[id] = new TraversalNode[DEFAULT_PATHS];
+        } else {
+            Arrays.fill(paths[id], 0, pathCount[id], null);
+        }
+        pathCount[id] = 0;
+        freeIds.add(id);
+    }
+    /**
+     * Number of memoized nodes
+     */
+    public int nodeCount() {
+        return ids.size();
+    }
+    public KmerPathNode node(int id) {
+        return node[id];
+    }
+    /**
+     * Number of paths memoized for the given node
+     */
+    public int size(int id) {
+        return pathCount[id];
+    }
+    /**
+     * Memoized path at the given offset
+     */
+    public TraversalNode get(int id, int offset) {
+        return paths[id][offset];
+    }
+    /**
+     * Offset of the first path with a first kmer end position at or after the given position
+     */
+    public int firstEndingAtOrAfter(int id, int position) {
+        TraversalNode[] arr = paths[id];
+        int low = 0;
+        int high = pathCount[id];
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (arr[mid].node.firstEnd() < position) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+    /**
+     * Path with the given first kmer end position
+     * @return path, null if no such path exists
+     */
+    public TraversalNode getByEnd(int id, int firstEnd) {
+        int offset = firstEndingAtOrAfter(id, firstEnd);
+        if (offset < pathCount[id] && paths[id][offset].node.firstEnd() == firstEnd) {
+            return paths[id][offset];
+        }
+        return null;
+    }
+    /**
+     * Removes the path with the given first kmer end position
+     * @return removed path, null if no such path exists
+     */
+    public TraversalNode removeByEnd(int id, int firstEnd) {
+        int offset = firstEndingAtOrAfter(id, firstEnd);
+        if (offset < pathCount[id] && paths[id][offset].node.firstEnd() == firstEnd) {
+            TraversalNode tn = paths[id][offset];
+            removeAt(id, offset);
+            return tn;
+        }
+        return null;
+    }
+    public void removeAt(int id, int offset) {
+        TraversalNode[] arr = paths[id];
+        int count = --pathCount[id];
+        System.arraycopy(arr, offset + 1, arr, offset, count - offset);
+        arr[count] = null;
+    }
+    /**
+     * Memoizes the given path, replacing any existing path with the same first kmer end position
+     */
+    public void put(int id, TraversalNode tn) {
+        int offset = firstEndingAtOrAfter(id, tn.node.firstEnd());
+        TraversalNode[] arr = paths[id];
+        int count = pathCount[id];
+        if (offset < count && arr[offset].node.firstEnd() == tn.node.firstEnd()) {
+            arr[offset] = tn;
+            return;
+        }
+        if (count == arr.length) {
+            arr = Arrays.copyOf(arr, 2 * arr.length);
+            paths[id] = arr;
+        }
+        System.arraycopy(arr, offset, arr, offset + 1, count - offset);
+        arr[offset] = tn;
+        pathCount[id]++;
+    }
+    /**
+     * Checks if the given path is memoized
+     */
+    public boolean containsPath(TraversalNode tn) {
+        int id = id(tn.node.node());
+        return id != NOT_MEMOIZED && getByEnd(id, tn.node.firstEnd()) == tn;
+    }
+    /**
+     * Memoized paths of the given node in ascending order of first kmer position
+     */
+    public List<TraversalNode> paths(int id) {
+        return Collections.unmodifiableList(Arrays.asList(paths[id]).subList(0, pathCount[id]));
+    }
+    /**
+     * Ids of all memoized nodes
+     */
+    public IntStream ids() {
+        return IntStream.range(0, idCount).filter(id -> node[id] != null);
+    }
+    /**
+     * All memoized paths
+     */
+    public Stream<TraversalNode> paths() {
+        return ids().boxed().flatMap(id -> Arrays.stream(paths[id], 0, pathCount[id]));
+    }
+}
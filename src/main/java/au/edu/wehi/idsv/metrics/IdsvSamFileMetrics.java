@@ -40,6 +40,20 @@ public class IdsvSamFileMetrics {
 	private InsertSizeDistribution insertDistribution = null;
 	private List<CigarDetailMetrics> cigarDetailMetrics = null;
 	private CigarSizeDistribution cigarDistribution;
+	/**
+	 * Smallest fragment size in the readPairFoldedCdf lookup table
+	 */
+	private int readPairTableOffset;
+	/**
+	 * Folded cumulative distribution of read pairs for each fragment size in the support of the insert size distribution
+	 */
+	private double[] readPairFoldedCdf;
+	private double[] readPairPhred;
+	/**
+	 * Folded cumulative distribution of read pairs for fragment sizes outside the support of the insert size distribution
+	 */
+	private double outsideSupportReadPairFoldedCdf;
+	private double outsideSupportReadPairPhred;
 	public IdsvMetrics getIdsvMetrics() { return idsvMetrics; }
 	public MapqMetrics getMapqMetrics() { return mapqMetrics; }
 	public InsertSizeMetrics getInsertSizeMetrics() { return insertSize; }
@@ -95,6 +109,40 @@ public class IdsvSamFileMetrics {
 		this.insertDistribution = insertDistribution;
 		this.cigarDetailMetrics = cigarDetailMetrics;
 		this.cigarDistribution = cigarDetailMetrics == null ? null : new CigarSizeDistribution(cigarDetailMetrics);
+		if (insertDistribution != null && idsvMetrics != null) {
+			createReadPairLookup();
+		}
+	}
+	/**
+	 * Precomputes the read pair fragment size scores so lookups
+	 * do not require synchronisation on the insert size distribution.
+	 */
+	private void createReadPairLookup() {
+		int lower = insertDistribution.getSupportLowerBound();
+		double[] cdf = insertDistribution.cumulativeProbabilityTable();
+		double[] folded = new double[cdf.length];
+		double[] phred = new double[cdf.length];
+		for (int i = 0; i < cdf.length; i++) {
+			double prUpper = 1.0 - (i == 0 ? 0 : cdf[i - 1]);
+			double prLower = cdf[i];
+			int fragmentSize = lower + i;
+			if (fragmentSize > 0) {
+				folded[i] = foldedCumulativeDistribution(Math.min(prUpper, prLower) * insertDistribution.getTotalMappedPairs());
+			} else {
+				folded[i] = foldedCumulativeDistribution(0);
+			}
+			phred[i] = MathUtil.prToPhred(folded[i]);
+		}
+		this.readPairTableOffset = lower;
+		this.readPairFoldedCdf = folded;
+		this.readPairPhred = phred;
+		this.outsideSupportReadPairFoldedCdf = foldedCumulativeDistribution(0);
+		this.outsideSupportReadPairPhred = MathUtil.prToPhred(outsideSupportReadPairFoldedCdf);
+	}
+	private double foldedCumulativeDistribution(double pairsFromFragmentDistribution) {
+		double totalPairs = idsvMetrics.READ_PAIRS_BOTH_MAPPED;
+		double dpPairs = totalPairs - insertDistribution.getTotalMappedPairs() + pairsFromFragmentDistribution;
+		return Math.min(1, dpPairs / totalPairs);
 	}
 	private static List<CigarDetailMetrics> getCigarMetrics(File cigarMetricsFile) {
 		if (cigarMetricsFile == null) return null;
@@ -134,21 +182,18 @@ public class IdsvSamFileMetrics {
 	 * @return phred-scaled likelihood of a fragment as or more extreme
 	 */
 	public double getReadPairPhred(int fragmentSize) {
-		return MathUtil.prToPhred(readPairFoldedCumulativeDistribution(fragmentSize));
+		int offset = fragmentSize - readPairTableOffset;
+		if (offset >= 0 && offset < readPairPhred.length) {
+			return readPairPhred[offset];
+		}
+		return outsideSupportReadPairPhred;
 	}
 	public double readPairFoldedCumulativeDistribution(int fragmentSize) {
-		double pairsFromFragmentDistribution = 0;
-		if (fragmentSize > 0) {
-			if (fragmentSize >= insertDistribution.getSupportLowerBound() && fragmentSize <= insertDistribution.getSupportUpperBound()) {
-				double prUpper = 1.0 - insertDistribution.cumulativeProbability(fragmentSize - 1);
-				double prLower = insertDistribution.cumulativeProbability(fragmentSize);
-				double pr = Math.min(prUpper, prLower);
-				pairsFromFragmentDistribution = pr * insertDistribution.getTotalMappedPairs();
-			}
+		int offset = fragmentSize - readPairTableOffset;
+		if (offset >= 0 && offset < readPairFoldedCdf.length) {
+			return readPairFoldedCdf[offset];
 		}
-		double totalPairs = idsvMetrics.READ_PAIRS_BOTH_MAPPED;
-		double dpPairs = totalPairs - insertDistribution.getTotalMappedPairs() + pairsFromFragmentDistribution;
-		return Math.min(1, dpPairs / totalPairs);
+		return outsideSupportReadPairFoldedCdf;
 	}
 	
 	/**
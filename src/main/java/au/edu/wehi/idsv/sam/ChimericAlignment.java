@@ -78,6 +78,7 @@ public class ChimericAlignment {
 	}
 	public static List<ChimericAlignment> getChimericAlignments(String sa, String separatorRegex) {
 		if (StringUtils.isEmpty(sa)) return Collections.emptyList();
+		if (";".equals(separatorRegex)) return ParsedSATag.parse(sa).getChimericAlignments();
 		List<ChimericAlignment> list = new ArrayList<ChimericAlignment>();
 		String[] splits = sa.split(separatorRegex);
 		for (String s : splits) {
@@ -90,8 +91,13 @@ public class ChimericAlignment {
 	public static List<ChimericAlignment> getChimericAlignments(String sa) {
 		return getChimericAlignments(sa, ";");
 	}
+	/**
+	 * Gets the alignments in the SA tag of the given record.
+	 * The SA tag is parsed once and cached on the record.
+	 * @see ParsedSATag#get(SAMRecord)
+	 */
 	public static List<ChimericAlignment> getChimericAlignments(SAMRecord r) {
-		return getChimericAlignments(r.getStringAttribute(SAMTag.SA.name()));
+		return ParsedSATag.get(r).getChimericAlignments();
 	}
 
 	/**
@@ -100,13 +106,7 @@ public class ChimericAlignment {
 	 * @return Intervals over which the read is aligned in read offset coordinate space.
 	 */
 	public static RangeSet<Integer> getAlignedIntervals(List<ChimericAlignment> ca) {
-		RangeSet<Integer> rs = TreeRangeSet.create();
-		for (ChimericAlignment x : ca) {
-			int first = x.getFirstAlignedBaseReadOffset();
-			int last = x.getLastAlignedBaseReadOffset();
-			rs.add(Range.closedOpen(Math.min(first, last), Math.max(first, last) + 1));
-		}
-		return rs;
+		return toRangeSet(alignedIntervals(ca));
 	}
 	/**
 	 * Returns the half-open intervals over which the read is not aligned.
@@ -118,9 +118,25 @@ public class ChimericAlignment {
 		for (ChimericAlignment x : ca) {
 			readLength = Math.max(readLength, CigarUtil.readLengthIncludingHardClipping(x.cigar.getCigarElements()));
 		}
-		RangeSet<Integer> rs = getAlignedIntervals(ca);
-		rs = rs.complement();
-		rs = rs.subRangeSet(Range.closedOpen(0, readLength));
+		return toRangeSet(ParsedSATag.complement(alignedIntervals(ca), 0, readLength));
+	}
+	private static int[] alignedIntervals(List<ChimericAlignment> ca) {
+		int[] start = new int[ca.size()];
+		int[] end = new int[ca.size()];
+		for (int i = 0; i < ca.size(); i++) {
+			ChimericAlignment x = ca.get(i);
+			int first = x.getFirstAlignedBaseReadOffset();
+			int last = x.getLastAlignedBaseReadOffset();
+			start[i] = Math.min(first, last);
+			end[i] = Math.max(first, last) + 1;
+		}
+		return ParsedSATag.union(start, end, ca.size());
+	}
+	private static RangeSet<Integer> toRangeSet(int[] intervals) {
+		RangeSet<Integer> rs = TreeRangeSet.create();
+		for (int i = 0; i < intervals.length; i += 2) {
+			rs.add(Range.closedOpen(intervals[i], intervals[i + 1]));
+		}
 		return rs;
 	}
 
@@ -0,0 +1,420 @@
+package au.edu.wehi.idsv.sam;
+
+import htsjdk.samtools.SAMFileHeader;
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.SAMSequenceDictionary;
+import htsjdk.samtools.SAMTag;
+import htsjdk.samtools.TextCigarCodec;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static it.unimi.dsi.fastutil.Arrays.quickSort;
+
+/**
+ * Parsed SA tag of a read.
+ *
+ * The SA tag is parsed once without regular expressions and the per-alignment
+ * fields and derived read offsets are packed into a single int array.
+ * ChimericAlignment objects are only created when requested.
+ *
+ * The parsed tag is cached as a transient attribute of the record and is
+ * reparsed if the SA tag of the record changes.
+ */
+public class ParsedSATag {
+	private static final String TRANSIENT_ATTRIBUTE_KEY = "ParsedSA";
+	private static final ParsedSATag EMPTY = new ParsedSATag(null, null, 0);
+	private static final int REFERENCE_INDEX = 0;
+	private static final int POS = 1;
+	private static final int NEGATIVE_STRAND = 2;
+	private static final int MAPQ = 3;
+	private static final int NM = 4;
+	private static final int FIRST_ALIGNED_READ_OFFSET = 5;
+	private static final int LAST_ALIGNED_READ_OFFSET = 6;
+	private static final int READ_LENGTH = 7;
+	private static final int REFERENCE_LENGTH = 8;
+	private static final int FIELDS = 9;
+	private static final int NM_MISSING = -1;
+	/**
+	 * SA tag this record was parsed from
+	 */
+	private final String sa;
+	private final String[] rname;
+	private final String[] cigar;
+	private final int[] packed;
+	private final int size;
+	private ChimericAlignment[] alignments = null;
+	private ParsedSATag(String sa, SAMSequenceDictionary dict, int capacity) {
+		this.sa = sa;
+		this.rname = new String[capacity];
+		this.cigar = new String[capacity];
+		this.packed = new int[capacity * FIELDS];
+		this.size = sa == null ? 0 : parseAlignments(sa, dict);
+	}
+	/**
+	 * Gets the parsed SA tag of the given record.
+	 */
+	public static ParsedSATag get(SAMRecord r) {
+		String sa = r.getStringAttribute(SAMTag.SA.name());
+		if (sa == null || sa.isEmpty()) return EMPTY;
+		Object cached = r.getTransientAttribute(TRANSIENT_ATTRIBUTE_KEY);
+		if (cached instanceof ParsedSATag) {
+			ParsedSATag parsed = (ParsedSATag)cached;
+			if (parsed.sa == sa || parsed.sa.equals(sa)) {
+				return parsed;
+			}
+		}
+		SAMFileHeader header = r.getHeader();
+		ParsedSATag parsed = parse(sa, header == null ? null : header.getSequenceDictionary());
+		r.setTransientAttribute(TRANSIENT_ATTRIBUTE_KEY, parsed);
+		return parsed;
+	}
+	/**
+	 * Parses the given SA tag
+	 * @param sa SA tag value
+	 * @param dict sequence dictionary used to resolve reference indexes. Can be null.
+	 */
+	public static ParsedSATag parse(String sa, SAMSequenceDictionary dict) {
+		if (sa == null || sa.isEmpty()) return EMPTY;
+		int capacity = 1;
+		for (int i = 0; i < sa.length(); i++) {
+			if (sa.charAt(i) == ';') capacity++;
+		}
+		return new ParsedSATag(sa, dict, capacity);
+	}
+	public static ParsedSATag parse(String sa) {
+		return parse(sa, null);
+	}
+	private int parseAlignments(String sa, SAMSequenceDictionary dict) {
+		int n = 0;
+		int start = 0;
+		while (start < sa.length()) {
+			int end = sa.indexOf(';', start);
+			if (end < 0) end = sa.length();
+			int s = start;
+			int e = end;
+			while (s < e && Character.isWhitespace(sa.charAt(s))) s++;
+			while (e > s && Character.isWhitespace(sa.charAt(e - 1))) e--;
+			if (s < e) {
+				parseAlignment(sa, s, e, n, dict);
+				n++;
+			}
+			start = end + 1;
+		}
+		return n;
+	}
+	private void parseAlignment(String sa, int start, int end, int index, SAMSequenceDictionary dict) {
+		int offset = index * FIELDS;
+		int[] fieldStart = new int[6];
+		int[] fieldEnd = new int[6];
+		int fieldCount = 0;
+		int s = start;
+		for (int i = start; i <= end && fieldCount < fieldStart.length; i++) {
+			if (i == end || sa.charAt(i) == ',') {
+				fieldStart[fieldCount] = s;
+				fieldEnd[fieldCount] = i;
+				fieldCount++;
+				s = i + 1;
+			}
+		}
+		// trailing empty fields are ignored
+		while (fieldCount > 0 && fieldStart[fieldCount - 1] == fieldEnd[fieldCount - 1]) fieldCount--;
+		if (fieldCount < 4) {
+			throw new IllegalArgumentException(String.format("Malformed SA tag alignment \"%s\"", sa.substring(start, end)));
+		}
+		rname[index] = sa.substring(fieldStart[0], fieldEnd[0]);
+		packed[offset + REFERENCE_INDEX] = dict == null ? -1 : dict.getSequenceIndex(rname[index]);
+		packed[offset + POS] = parseInt(sa, fieldStart[1], fieldEnd[1]);
+		packed[offset + NEGATIVE_STRAND] = fieldEnd[2] - fieldStart[2] == 1 && sa.charAt(fieldStart[2]) == '-' ? 1 : 0;
+		cigar[index] = sa.substring(fieldStart[3], fieldEnd[3]);
+		packed[offset + MAPQ] = fieldCount < 5 || fieldStart[4] == fieldEnd[4] ? SAMRecord.UNKNOWN_MAPPING_QUALITY : parseInt(sa, fieldStart[4], fieldEnd[4]);
+		int nm = NM_MISSING;
+		if (fieldCount >= 6) {
+			try {
+				nm = parseInt(sa, fieldStart[5], fieldEnd[5]);
+			} catch (NumberFormatException nfe) {
+				// swallow and fall back to missing
+			}
+		}
+		packed[offset + NM] = nm;
+		parseCigarOffsets(sa, fieldStart[3], fieldEnd[3], offset);
+	}
+	/**
+	 * Calculates read offsets directly from the CIGAR string
+	 */
+	private void parseCigarOffsets(String sa, int start, int end, int offset) {
+		int startClip = 0;
+		int endClip = 0;
+		int readLength = 0;
+		int referenceLength = 0;
+		boolean aligned = false;
+		int length = 0;
+		for (int i = start; i < end; i++) {
+			char c = sa.charAt(i);
+			if (c >= '0' && c <= '9') {
+				length = length * 10 + (c - '0');
+				continue;
+			}
+			switch (c) {
+				case 'S':
+				case 'H':
+					readLength += length;
+					if (aligned) {
+						endClip += length;
+					} else {
+						startClip += length;
+					}
+					break;
+				case 'M':
+				case '=':
+				case 'X':
+					readLength += length;
+					referenceLength += length;
+					aligned = true;
+					endClip = 0;
+					break;
+				case 'I':
+					readLength += length;
+					aligned = true;
+					endClip = 0;
+					break;
+				case 'D':
+				case 'N':
+					referenceLength += length;
+					aligned = true;
+					endClip = 0;
+					break;
+				case 'P':
+					aligned = true;
+					endClip = 0;
+					break;
+				case '*':
+					break;
+				default:
+					throw new IllegalArgumentException(String.format("Malformed CIGAR \"%s\" in SA tag", sa.substring(start, end)));
+			}
+			length = 0;
+		}
+		if (!aligned) {
+			// entirely clipped: every clip is both a start and end clip
+			endClip = startClip;
+		}
+		boolean negative = packed[offset + NEGATIVE_STRAND] != 0;
+		packed[offset + FIRST_ALIGNED_READ_OFFSET] = negative ? endClip : startClip;
+		packed[offset + LAST_ALIGNED_READ_OFFSET] = readLength - 1 - (negative ? startClip : endClip);
+		packed[offset + READ_LENGTH] = readLength;
+		packed[offset + REFERENCE_LENGTH] = referenceLength;
+	}
+	private static int parseInt(String s, int start, int end) {
+		if (start >= end) throw new NumberFormatException("Empty integer field");
+		boolean negative = false;
+		int i = start;
+		if (s.charAt(i) == '-' || s.charAt(i) == '+') {
+			negative = s.charAt(i) == '-';
+			i++;
+			if (i == end) throw new NumberFormatException(s.substring(start, end));
+		}
+		int value = 0;
+		for (; i < end; i++) {
+			char c = s.charAt(i);
+			if (c < '0' || c > '9') throw new NumberFormatException(s.substring(start, end));
+			value = value * 10 + (c - '0');
+		}
+		return negative ? -value : value;
+	}
+	/**
+	 * Number of alignments in the SA tag
+	 */
+	public int size() {
+		return size;
+	}
+	public boolean isEmpty() {
+		return size == 0;
+	}
+	public String referenceName(int i) {
+		checkIndex(i);
+		return rname[i];
+	}
+	/**
+	 * Reference index of the alignment
+	 * @return reference index, -1 if the reference could not be resolved
+	 */
+	public int referenceIndex(int i) {
+		return field(i, REFERENCE_INDEX);
+	}
+	public int pos(int i) {
+		return field(i, POS);
+	}
+	public boolean isNegativeStrand(int i) {
+		return field(i, NEGATIVE_STRAND) != 0;
+	}
+	public int mapq(int i) {
+		return field(i, MAPQ);
+	}
+	public boolean hasNm(int i) {
+		return field(i, NM) != NM_MISSING;
+	}
+	public int nm(int i) {
+		return field(i, NM);
+	}
+	/**
+	 * @see ChimericAlignment#getFirstAlignedBaseReadOffset()
+	 */
+	public int firstAlignedBaseReadOffset(int i) {
+		return field(i, FIRST_ALIGNED_READ_OFFSET);
+	}
+	/**
+	 * @see ChimericAlignment#getLastAlignedBaseReadOffset()
+	 */
+	public int lastAlignedBaseReadOffset(int i) {
+		return field(i, LAST_ALIGNED_READ_OFFSET);
+	}
+	/**
+	 * Read length including hard clipped bases
+	 */
+	public int readLength(int i) {
+		return field(i, READ_LENGTH);
+	}
+	public int referenceLength(int i) {
+		return field(i, REFERENCE_LENGTH);
+	}
+	private int field(int i, int field) {
+		checkIndex(i);
+		return packed[i * FIELDS + field];
+	}
+	private void checkIndex(int i) {
+		if (i < 0 || i >= size) throw new IndexOutOfBoundsException(String.format("Index %d, size %d", i, size));
+	}
+	/**
+	 * Gets the given alignment.
+	 * The returned object is shared by all callers and must not be modified.
+	 */
+	public ChimericAlignment chimericAlignment(int i) {
+		checkIndex(i);
+		if (alignments == null) {
+			alignments = new ChimericAlignment[size];
+		}
+		ChimericAlignment ca = alignments[i];
+		if (ca == null) {
+			if (hasNm(i)) {
+				ca = new ChimericAlignment(rname[i], pos(i), isNegativeStrand(i), TextCigarCodec.decode(cigar[i]), mapq(i), nm(i));
+			} else {
+				ca = new ChimericAlignment(rname[i], pos(i), isNegativeStrand(i), TextCigarCodec.decode(cigar[i]), mapq(i));
+			}
+			alignments[i] = ca;
+		}
+		return ca;
+	}
+	/**
+	 * Alignments in SA tag order.
+	 * @return new list that can be modified by the caller
+	 */
+	public List<ChimericAlignment> getChimericAlignments() {
+		List<ChimericAlignment> list = new ArrayList<>(size);
+		for (int i = 0; i < size; i++) {
+			list.add(chimericAlignment(i));
+		}
+		return list;
+	}
+	/**
+	 * Index of the alignment with the greatest first aligned base read offset less than the given offset
+	 * @return alignment index, -1 if no such alignment exists
+	 */
+	public int predecessorByReadOffset(int readOffset) {
+		int best = -1;
+		for (int i = 0; i < size; i++) {
+			int offset = firstAlignedBaseReadOffset(i);
+			if (offset < readOffset && (best < 0 || offset > firstAlignedBaseReadOffset(best))) {
+				best = i;
+			}
+		}
+		return best;
+	}
+	/**
+	 * Index of the alignment with the smallest first aligned base read offset greater than the given offset
+	 * @return alignment index, -1 if no such alignment exists
+	 */
+	public int successorByReadOffset(int readOffset) {
+		int best = -1;
+		for (int i = 0; i < size; i++) {
+			int offset = firstAlignedBaseReadOffset(i);
+			if (offset > readOffset && (best < 0 || offset < firstAlignedBaseReadOffset(best))) {
+				best = i;
+			}
+		}
+		return best;
+	}
+	/**
+	 * Returns the half-open intervals over which the read is aligned.
+	 * @return sorted non-overlapping intervals in read offset coordinate space
+	 * packed as consecutive start, end pairs
+	 */
+	public int[] getAlignedIntervals() {
+		int[] start = new int[size];
+		int[] end = new int[size];
+		for (int i = 0; i < size; i++) {
+			int first = firstAlignedBaseReadOffset(i);
+			int last = lastAlignedBaseReadOffset(i);
+			start[i] = Math.min(first, last);
+			end[i] = Math.max(first, last) + 1;
+		}
+		return union(start, end, size);
+	}
+	/**
+	 * Returns the half-open intervals over which the read is not aligned.
+	 * @return sorted non-overlapping intervals in read offset coordinate space
+	 * packed as consecutive start, end pairs
+	 */
+	public int[] getUnalignedIntervals() {
+		int readLength = 0;
+		for (int i = 0; i < size; i++) {
+			readLength = Math.max(readLength, readLength(i));
+		}
+		return complement(getAlignedIntervals(), 0, readLength);
+	}
+	/**
+	 * Merges the given half-open intervals.
+	 * Empty intervals are ignored and adjacent intervals are merged.
+	 * The input arrays are modified.
+	 * @return sorted non-overlapping intervals packed as consecutive start, end pairs
+	 */
+	static int[] union(int[] start, int[] end, int n) {
+		quickSort(0, n, (a, b) -> Integer.compare(start[a], start[b]), (a, b) -> {
+			int tmp = start[a]; start[a] = start[b]; start[b] = tmp;
+			tmp = end[a]; end[a] = end[b]; end[b] = tmp;
+		});
+		int[] result = new int[2 * n];
+		int count = 0;
+		for (int i = 0; i < n; i++) {
+			if (start[i] >= end[i]) continue;
+			if (count > 0 && start[i] <= result[count - 1]) {
+				result[count - 1] = Math.max(result[count - 1], end[i]);
+			} else {
+				result[count++] = start[i];
+				result[count++] = end[i];
+			}
+		}
+		return Arrays.copyOf(result, count);
+	}
+	/**
+	 * Complement of the given sorted non-overlapping half-open intervals over [from, to)
+	 */
+	static int[] complement(int[] intervals, int from, int to) {
+		int[] result = new int[intervals.length + 2];
+		int count = 0;
+		int position = from;
+		for (int i = 0; i < intervals.length && position < to; i += 2) {
+			if (intervals[i] > position) {
+				result[count++] = position;
+				result[count++] = Math.min(intervals[i], to);
+			}
+			position = Math.max(position, intervals[i + 1]);
+		}
+		if (position < to) {
+			result[count++] = position;
+			result[count++] = to;
+		}
+		return Arrays.copyOf(result, count);
+	}
+}
@@ -20,6 +20,23 @@ import java.util.function.Function;
 
 public class SAMFileUtil {
 	private static final Log log = Log.getInstance(SAMFileUtil.class);
+	/**
+	 * Skips BAM records matching the given filter before they are decoded.
+	 * Only applies to iterators subsequently opened on the reader.
+	 * @param reader reader to filter
+	 * @param filter BAM record filter
+	 * @return true if the filter was applied, false if the reader is not a BAM reader
+	 */
+	public static boolean setRecordFilter(SamReader reader, BAMRecordFilter filter) {
+		if (reader instanceof SamReader.PrimitiveSamReaderToSamReaderAdapter) {
+			SamReader.PrimitiveSamReader underlying = ((SamReader.PrimitiveSamReaderToSamReaderAdapter)reader).underlyingReader();
+			if (underlying instanceof BAMFileReader) {
+				((BAMFileReader)underlying).setRecordFilter(filter);
+				return true;
+			}
+		}
+		return false;
+	}
 	/**
 	 * Sorts records in the given SAM/BAM file by coordinate or queryname 
 	 * @param unsorted input SAM/BAM file
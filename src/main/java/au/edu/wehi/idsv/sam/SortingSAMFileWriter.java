@@ -0,0 +1,86 @@
+package au.edu.wehi.idsv.sam;
+
+import htsjdk.samtools.BAMRecordCodec;
+import htsjdk.samtools.SAMFileHeader;
+import htsjdk.samtools.SAMFileHeader.SortOrder;
+import htsjdk.samtools.SAMFileWriter;
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.util.CloseableIterator;
+import htsjdk.samtools.util.ProgressLoggerInterface;
+import htsjdk.samtools.util.SortingCollection;
+
+import java.io.File;
+
+/**
+ * SAMFileWriter that sorts records in-process instead of writing them to a file.
+ * Records exceeding the in-memory buffer size are spilled to temporary files.
+ *
+ * Sorted records can be iterated over once the writer has been closed.
+ */
+public class SortingSAMFileWriter implements SAMFileWriter {
+	private final SAMFileHeader header;
+	private final SortingCollection<SAMRecord> collection;
+	private ProgressLoggerInterface progress;
+	private boolean closed = false;
+	private int count = 0;
+	/**
+	 * @param header header of the sorted records
+	 * @param sortOrder sort order
+	 * @param maxRecordsInRam maximum number of records to hold in memory before spilling to disk
+	 * @param tmpDir temporary directory to spill to
+	 */
+	public SortingSAMFileWriter(SAMFileHeader header, SortOrder sortOrder, int maxRecordsInRam, File tmpDir) {
+		this.header = header.clone();
+		this.header.setSortOrder(sortOrder);
+		this.collection = SortingCollection.newInstance(
+				SAMRecord.class,
+				new BAMRecordCodec(this.header),
+				sortOrder.getComparatorInstance(),
+				maxRecordsInRam,
+				tmpDir.toPath());
+	}
+	@Override
+	public void addAlignment(SAMRecord alignment) {
+		if (closed) throw new IllegalStateException("Cannot add records to a closed writer");
+		collection.add(alignment);
+		count++;
+		if (progress != null) {
+			progress.record(alignment);
+		}
+	}
+	@Override
+	public SAMFileHeader getFileHeader() {
+		return header;
+	}
+	@Override
+	public void setProgressLogger(ProgressLoggerInterface progress) {
+		this.progress = progress;
+	}
+	@Override
+	public void close() {
+		if (!closed) {
+			collection.doneAdding();
+			closed = true;
+		}
+	}
+	/**
+	 * Number of records written
+	 */
+	public int size() {
+		return count;
+	}
+	/**
+	 * Iterates over the written records in sorted order.
+	 * Records can only be iterated over once.
+	 */
+	public CloseableIterator<SAMRecord> iterator() {
+		if (!closed) throw new IllegalStateException("Writer must be closed before sorted records can be iterated over");
+		return collection.iterator();
+	}
+	/**
+	 * Deletes any temporary files
+	 */
+	public void cleanup() {
+		collection.cleanup();
+	}
+}
@@ -0,0 +1,108 @@
+package au.edu.wehi.idsv.util;
+
+import com.google.common.collect.Lists;
+
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Merges sorted iterators using a tournament tree of losers.
+ *
+ * Each record requires log2(k) comparisons against the previous losers
+ * on the path from the leaf to the root instead of the 2log2(k) comparisons
+ * of a binary heap sift down.
+ *
+ * Records comparing equal are returned in iterator order.
+ */
+public class LoserTreeMergingIterator<T> implements Iterator<T> {
+    private final List<Iterator<? extends T>> iterators;
+    private final Comparator<? super T> comparator;
+    private final int k;
+    /**
+     * Current head record of each iterator
+     */
+    private final Object[] head;
+    private final boolean[] exhausted;
+    /**
+     * tree[0] is the index of the overall winner, tree[1..k-1] the index of the loser at each internal node.
+     * Leaf i is at position k + i.
+     */
+    private final int[] tree;
+
+    public LoserTreeMergingIterator(Iterable<? extends Iterator<? extends T>> iterators, Comparator<? super T> comparator) {
+        this.iterators = Lists.newArrayList(iterators);
+        this.comparator = comparator;
+        this.k = this.iterators.size();
+        this.head = new Object[k];
+        this.exhausted = new boolean[k];
+        this.tree = new int[Math.max(1, k)];
+        for (int i = 0; i < k; i++) {
+            advance(i);
+        }
+        if (k > 1) {
+            int[] winner = new int[2 * k];
+            for (int i = 0; i < k; i++) {
+                winner[k + i] = i;
+            }
+            for (int node = k - 1; node >= 1; node--) {
+                int a = winner[2 * node];
+                int b = winner[2 * node + 1];
+                if (beats(a, b)) {
+                    winner[node] = a;
+                    tree[node] = b;
+                } else {
+                    winner[node] = b;
+                    tree[node] = a;
+                }
+            }
+            tree[0] = winner[1];
+        }
+    }
+
+    private void advance(int i) {
+        Iterator<? extends T> it = iterators.get(i);
+        if (it.hasNext()) {
+            head[i] = it.next();
+        } else {
+            head[i] = null;
+            exhausted[i] = true;
+        }
+    }
+
+    /**
+     * Determines whether the head of iterator a is returned before the head of iterator b
+     */
+    @SuppressWarnings("unchecked")
+    private boolean beats(int a, int b) {
+        if (exhausted[a]) return false;
+        if (exhausted[b]) return true;
+        int cmp = comparator.compare((T)head[a], (T)head[b]);
+        if (cmp != 0) return cmp < 0;
+        return a < b;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return k > 0 && !exhausted[tree[0]];
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public T next() {
+        if (!hasNext()) throw new NoSuchElementException();
+        int winner = tree[0];
+        T result = (T)head[winner];
+        advance(winner);
+        for (int node = (winner + k) / 2; node > 0; node /= 2) {
+            if (beats(tree[node], winner)) {
+                int tmp = tree[node];
+                tree[node] = winner;
+                winner = tmp;
+            }
+        }
+        tree[0] = winner;
+        return result;
+    }
+}
@@ -1,5 +1,6 @@
 package au.edu.wehi.idsv.util;
 
+import com.google.common.base.Throwables;
 import com.google.common.collect.Ordering;
 
 import java.util.Iterator;
@@ -17,17 +18,25 @@ import java.util.function.Function;
  * This class is not thread-safe and access from multiple threads should
  * be synchronised.
  * 
+ * Exceptions thrown by the transform are rethrown by {@link #next()}
+ * when the record that caused them is reached.
+ * 
  * @author Daniel Cameron
  *
  */
 public class ParallelTransformIterator<T, U> implements Iterator<U> {
 	private static class TransformResult<U> {
-		public TransformResult(final long ordinal, final U result) {
+		public TransformResult(final long ordinal, final U result, final Throwable error) {
 			this.ordinal = ordinal;
 			this.result = result;
+			this.error = error;
 		}
 		public final long ordinal;
 		public final U result;
+		/**
+		 * Exception thrown by the transform, or null if the transform completed successfully
+		 */
+		public final Throwable error;
 		@SuppressWarnings("rawtypes")
 		public static Ordering<TransformResult> byOrdinal = Ordering.natural().onResultOf((TransformResult tr) -> tr.ordinal);
 	}
@@ -92,11 +101,16 @@ public class ParallelTransformIterator<T, U> implements Iterator<U> {
 			}
 			results.add(record);
 		}
-		U result = results.poll().result;
+		TransformResult<U> record = results.poll();
 		dispatched--;
 		lastOrdinal++;
+		if (record.error != null) {
+			// rethrow on the consumer thread so the failure isn't silently lost on the worker
+			Throwables.throwIfUnchecked(record.error);
+			throw new RuntimeException(record.error);
+		}
 		dispatch();
-		return result;
+		return record.result;
 	}
 	/**
 	 * Dispatches records until we have lookahead records.
@@ -110,7 +124,14 @@ public class ParallelTransformIterator<T, U> implements Iterator<U> {
 	}
 	private void dispatch(final long ordinal, final T record) {
 		threadpool.execute(() -> {
-			completed.add(new TransformResult<U>(ordinal, transform(record)));
+			U result = null;
+			Throwable error = null;
+			try {
+				result = transform(record);
+			} catch (Throwable t) {
+				error = t;
+			}
+			completed.add(new TransformResult<U>(ordinal, result, error));
 		});
 	}
 }
@@ -0,0 +1,178 @@
+package au.edu.wehi.idsv.util;
+
+import com.google.common.collect.PeekingIterator;
+import htsjdk.samtools.util.Log;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.ToIntFunction;
+
+/**
+ * Partitions the given iterator, feeding internal buffers from a background thread.
+ *
+ * Each record is routed to exactly one of the consuming iterators.
+ * Record order within each partition is preserved.
+ *
+ * This wrapper is thread-safe.
+ *
+ * <b>Separate consumer threads are required as
+ * iterator calls block the calling thread when sufficiently
+ * far ahead of other iterators.
+ * </b>
+ * @author Daniel Cameron
+ *
+ */
+public class PartitioningIterable<T> implements Iterable<T> {
+	private static final Log log = Log.getInstance(PartitioningIterable.class);
+	private static final List<Object> endofstream = Collections.emptyList();
+	private static final AtomicInteger threadCount = new AtomicInteger(0);
+	private final Iterator<T> it;
+	private final ToIntFunction<T> partitioner;
+	private final int batchSize;
+	private final List<PartitioningIterableIterator> iterators = new ArrayList<>();
+	private final List<BlockingQueue<List<Object>>> queues = new ArrayList<>();
+	private int iteratorsRequested = 0;
+	private FeedingThread thread;
+	private volatile Exception error = null;
+
+	/**
+	 * Partitions an iterator
+	 * @param nIterators number of consuming iterators
+	 * @param it underlying iterator
+	 * @param partitioner returns the index of the consuming iterator the record should be routed to.
+	 * Records with a negative index are dropped.
+	 * @param batchSize number of records written to a consuming iterator at a time
+	 * @param maxIteratorDifference maximum number of batches an iterator can traverse before blocking to wait
+	 * for other iterators to catch up
+	 */
+	public PartitioningIterable(int nIterators, Iterator<T> it, ToIntFunction<T> partitioner, int batchSize, int maxIteratorDifference) {
+		if (it == null) throw new IllegalArgumentException();
+		if (batchSize <= 0) throw new IllegalArgumentException("batch size must be greater than zero.");
+		if (maxIteratorDifference <= 0) throw new IllegalArgumentException("buffer size must be greater than zero.");
+		this.it = it;
+		this.partitioner = partitioner;
+		this.batchSize = batchSize;
+		for (int i = 0; i < nIterators; i++) {
+			queues.add(new ArrayBlockingQueue<>(maxIteratorDifference));
+			iterators.add(new PartitioningIterableIterator(queues.get(i)));
+		}
+		this.thread = new FeedingThread();
+		this.thread.setDaemon(true);
+		this.thread.setName(String.format("PartitioningIterable-%d", threadCount.incrementAndGet()));
+		this.thread.start();
+	}
+	/**
+	 * Creates the next partition iterator
+	 */
+	@Override
+	public synchronized PeekingIterator<T> iterator() {
+		if (iteratorsRequested >= iterators.size()) throw new IllegalStateException(String.format("Already created %d iterators", iterators.size()));
+		return iterators.get(iteratorsRequested++);
+	}
+	private class FeedingThread extends Thread {
+		private final List<List<Object>> pending = new ArrayList<>();
+		@Override
+		public void run() {
+			for (int i = 0; i < queues.size(); i++) {
+				pending.add(new ArrayList<>(batchSize));
+			}
+			try {
+				while (it.hasNext()) {
+					T n = it.next();
+					int partition = partitioner.applyAsInt(n);
+					if (partition < 0) continue;
+					List<Object> batch = pending.get(partition);
+					batch.add(n);
+					if (batch.size() >= batchSize) {
+						flush(partition);
+					}
+				}
+				for (int i = 0; i < queues.size(); i++) {
+					flush(i);
+				}
+				eos();
+			} catch (InterruptedException e) {
+				log.warn("Interrupted waiting to feed next record - ending stream early");
+				for (BlockingQueue<List<Object>> queue : queues) {
+					queue.clear();
+					try {
+						eos();
+					} catch (InterruptedException e1) {
+						log.error("Sanity check failure: end of stream writing should not have blocked.");
+					}
+				}
+			} catch (Exception e) {
+				log.error("Error traversing iterator", e);
+				error = e;
+				try {
+					eos();
+				} catch (InterruptedException e1) {
+					log.error("Interrupted when writing end of stream.");
+				}
+			}
+		}
+		private void flush(int partition) throws InterruptedException {
+			List<Object> batch = pending.get(partition);
+			if (!batch.isEmpty()) {
+				queues.get(partition).put(batch);
+				pending.set(partition, new ArrayList<>(batchSize));
+			}
+		}
+		private void eos() throws InterruptedException {
+			for (BlockingQueue<List<Object>> queue : queues) {
+				queue.put(endofstream);
+			}
+		}
+	}
+	private class PartitioningIterableIterator implements PeekingIterator<T> {
+		private final BlockingQueue<List<Object>> queue;
+		private List<Object> batch = null;
+		private int offset = 0;
+		public PartitioningIterableIterator(BlockingQueue<List<Object>> queue) {
+			this.queue = queue;
+		}
+		private void ensureNext() {
+			while (batch != endofstream && (batch == null || offset >= batch.size())) {
+				try {
+					batch = queue.take();
+					offset = 0;
+				} catch (InterruptedException e) {
+					log.debug("Interrupted waiting for next record");
+					throw new RuntimeException(e);
+				}
+			}
+			if (error != null) {
+				throw new RuntimeException(error);
+			}
+		}
+		@Override
+		public boolean hasNext() {
+			ensureNext();
+			return batch != endofstream;
+		}
+		@SuppressWarnings("unchecked")
+		@Override
+		public T peek() {
+			if (!hasNext()) throw new NoSuchElementException();
+			return (T)batch.get(offset);
+		}
+		@SuppressWarnings("unchecked")
+		@Override
+		public T next() {
+			if (!hasNext()) throw new NoSuchElementException();
+			T result = (T)batch.get(offset);
+			batch.set(offset++, null); // release reference as soon as possible
+			return result;
+		}
+		@Override
+		public void remove() {
+			throw new IllegalStateException();
+		}
+	}
+}
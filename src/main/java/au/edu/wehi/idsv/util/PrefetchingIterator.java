@@ -0,0 +1,131 @@
+package au.edu.wehi.idsv.util;
+
+import htsjdk.samtools.util.CloseableIterator;
+import htsjdk.samtools.util.CloserUtil;
+
+import java.util.*;
+import java.util.concurrent.Executor;
+
+/**
+ * Reads ahead from the underlying iterator using tasks on a shared thread pool.
+ *
+ * Unlike AsyncBufferedIterator, no dedicated thread is required so a large number
+ * of iterators can read ahead concurrently on a bounded number of threads.
+ * Each iterator has at most one read-ahead task outstanding and tasks never wait on the consumer,
+ * but they do call the underlying iterator which can block on I/O. A read-ahead task therefore
+ * occupies its pool thread for as long as reading a batch from the underlying iterator takes.
+ * Underlying iterators must not themselves depend on tasks running on the same thread pool.
+ *
+ * @param <T>
+ */
+public class PrefetchingIterator<T> implements CloseableIterator<T> {
+	private final Iterator<T> underlying;
+	private final Executor threadpool;
+	private final int batchSize;
+	private final int maxBatches;
+	private final Queue<List<T>> ready = new ArrayDeque<>();
+	private Iterator<T> current = Collections.emptyIterator();
+	private boolean taskRunning = false;
+	private boolean endOfStream = false;
+	private boolean closed = false;
+	private Throwable error = null;
+	/**
+	 * @param underlying iterator to read ahead from
+	 * @param threadpool thread pool to perform read-ahead on
+	 * @param maxBatches maximum number of batches to read ahead
+	 * @param batchSize number of records read by each read-ahead task
+	 */
+	public PrefetchingIterator(Iterator<T> underlying, Executor threadpool, int maxBatches, int batchSize) {
+		if (maxBatches <= 0 || batchSize <= 0) throw new IllegalArgumentException("Buffer size must be at least 1.");
+		this.underlying = underlying;
+		this.threadpool = threadpool;
+		this.maxBatches = maxBatches;
+		this.batchSize = batchSize;
+		synchronized (this) {
+			schedule();
+		}
+	}
+	private void schedule() {
+		if (!taskRunning && !endOfStream && !closed && ready.size() < maxBatches) {
+			taskRunning = true;
+			threadpool.execute(this::readAhead);
+		}
+	}
+	private void readAhead() {
+		List<T> batch = new ArrayList<>(batchSize);
+		boolean end = false;
+		Throwable t = null;
+		try {
+			while (batch.size() < batchSize && underlying.hasNext()) {
+				batch.add(underlying.next());
+			}
+			end = !underlying.hasNext();
+		} catch (Throwable e) {
+			t = e;
+		}
+		synchronized (this) {
+			if (!batch.isEmpty()) {
+				ready.add(batch);
+			}
+			if (t != null) {
+				error = t;
+				end = true;
+			}
+			endOfStream = end;
+			taskRunning = false;
+			schedule();
+			notifyAll();
+		}
+	}
+	@Override
+	public boolean hasNext() {
+		while (!current.hasNext()) {
+			synchronized (this) {
+				if (closed) return false;
+				while (ready.isEmpty() && !endOfStream) {
+					try {
+						wait();
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						throw new RuntimeException(e);
+					}
+				}
+				if (ready.isEmpty()) {
+					if (error != null) {
+						if (error instanceof Error) throw (Error)error;
+						if (error instanceof RuntimeException) throw (RuntimeException)error;
+						throw new RuntimeException(error);
+					}
+					return false;
+				}
+				current = ready.poll().iterator();
+				schedule();
+			}
+		}
+		return true;
+	}
+	@Override
+	public T next() {
+		if (!hasNext()) throw new NoSuchElementException();
+		return current.next();
+	}
+	@Override
+	public void close() {
+		synchronized (this) {
+			if (closed) return;
+			closed = true;
+			ready.clear();
+			current = Collections.emptyIterator();
+			// wait for the outstanding read-ahead to complete before closing the underlying iterator
+			while (taskRunning) {
+				try {
+					wait();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					break;
+				}
+			}
+		}
+		CloserUtil.close(underlying);
+	}
+}
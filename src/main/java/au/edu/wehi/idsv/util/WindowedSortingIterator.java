@@ -1,15 +1,16 @@
 package au.edu.wehi.idsv.util;
 
 import au.edu.wehi.idsv.visualisation.TrackedBuffer;
-import com.google.common.base.Function;
 import com.google.common.collect.*;
 import com.google.common.primitives.Longs;
 import htsjdk.samtools.util.Log;
 
+import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
 import java.util.PriorityQueue;
+import java.util.function.ToLongFunction;
 
 /**
  * Sorts a mostly-sorted input sequence.
@@ -19,45 +20,109 @@ import java.util.PriorityQueue;
  * start position and the alignment start position is bounded by the fragment size
  * for read pair evidence, and the read length for soft clip evidence.
  * 
+ * Since records cannot be out of order by more than the window size, buffered
+ * records are held in a ring of coordinate buckets spanning the window instead of
+ * a heap. Each bucket is only sorted when it becomes the head of the ring.
+ * The sort order must order records by coordinate first.
+ * 
  * @author Daniel Cameron
  *
  * @param <T>
  */
 public class WindowedSortingIterator<T> extends AbstractIterator<T> implements TrackedBuffer {
 	private static final Log log = Log.getInstance(WindowedSortingIterator.class);
-	private final PriorityQueue<T> calls; 
+	/**
+	 * Maximum number of buckets in the ring.
+	 * Wider windows use buckets spanning multiple coordinates.
+	 */
+	private static final int MAX_BUCKETS = 4096;
 	private final long windowSize;
 	private final PeekingIterator<T> it;
-	private final Function<T, Long> toCoordinate;
+	private final ToLongFunction<T> toCoordinate;
 	private long lastPosition = Long.MIN_VALUE;
 	private final Comparator<T> sortOrder;
 	private T lastEmitted = null;
+	private final long bucketWidth;
+	private final List<Bucket> ring;
+	/**
+	 * Coordinate of the start of the head bucket
+	 */
+	private long origin;
+	private int headSlot = 0;
+	/**
+	 * Records that do not fit in the ring.
+	 * Only used when input is out of order by more than the window size.
+	 */
+	private final PriorityQueue<T> overflow;
+	private int size = 0;
+	private int ringSize = 0;
 	/**
 	 * Creates a new sorted iterator from a mostly-sorted sequence
 	 * @param it mostly-sorted sequence. Records cannot be out of order by more than windowSize
 	 * @param transform Coordinate transform for position of record.
 	 * @param windowSize Maximum coordinate-space length that records can deviate from a sorted sequence 
 	 */
-	public WindowedSortingIterator(final Iterator<T> it, final Function<T, Long> transform, final long windowSize) {
+	public WindowedSortingIterator(final Iterator<T> it, final ToLongFunction<T> transform, final long windowSize) {
 		this(it, transform, windowSize, new Ordering<T>() {
 			public int compare(T arg0, T arg1) {
-				return Longs.compare(transform.apply(arg0), transform.apply(arg1));
+				return Longs.compare(transform.applyAsLong(arg0), transform.applyAsLong(arg1));
 			  }
 		});
 	}
-	public WindowedSortingIterator(final Iterator<T> it, final Function<T, Long> transform, final long windowSize, final Comparator<T> sortOrder) {
+	public WindowedSortingIterator(final Iterator<T> it, final ToLongFunction<T> transform, final long windowSize, final Comparator<T> sortOrder) {
+		if (windowSize < 0) throw new IllegalArgumentException("Window size cannot be negative");
 		this.windowSize = windowSize;
 		this.it = Iterators.peekingIterator(it);
 		this.toCoordinate = transform;
-		this.calls = new PriorityQueue<T>(32, sortOrder);
+		this.overflow = new PriorityQueue<T>(32, sortOrder);
 		this.sortOrder = sortOrder;
+		this.bucketWidth = (windowSize + MAX_BUCKETS) / MAX_BUCKETS;
+		// accepted records are within windowSize of a record in the head bucket
+		int bucketCount = (int)((bucketWidth - 1 + windowSize) / bucketWidth) + 1;
+		this.ring = new ArrayList<>(bucketCount);
+		for (int i = 0; i < bucketCount; i++) {
+			ring.add(new Bucket());
+		}
+	}
+	private class Bucket {
+		private final List<T> records = new ArrayList<>();
+		private int offset = 0;
+		private boolean sorted = true;
+		private long minCoordinate = Long.MAX_VALUE;
+		public boolean isEmpty() {
+			return offset >= records.size();
+		}
+		public void add(T record, long coordinate) {
+			records.add(record);
+			sorted = false;
+			minCoordinate = Math.min(minCoordinate, coordinate);
+		}
+		public T peek() {
+			if (!sorted) {
+				records.subList(offset, records.size()).sort(sortOrder);
+				sorted = true;
+			}
+			return records.get(offset);
+		}
+		public T poll() {
+			T result = peek();
+			records.set(offset++, null);
+			if (isEmpty()) {
+				records.clear();
+				offset = 0;
+				minCoordinate = Long.MAX_VALUE;
+			} else {
+				minCoordinate = toCoordinate.applyAsLong(records.get(offset));
+			}
+			return result;
+		}
 	}
 	@Override
 	protected T computeNext() {
 		advanceUnderlying();
-		if (calls.isEmpty()) return endOfData();
-		T next = calls.poll();
-		long nextPos = toCoordinate.apply(next);
+		if (size == 0) return endOfData();
+		T next = poll();
+		long nextPos = toCoordinate.applyAsLong(next);
 		if (nextPos < lastPosition) {
 			log.error("Sanity check failure: sorting window size too small: evidence out of order at linear coordinate" + nextPos);
 		}
@@ -68,16 +133,57 @@ public class WindowedSortingIterator<T> extends AbstractIterator<T> implements T
 		return next;
 	}
 	private void advanceUnderlying() {
-		while (it.hasNext() && (calls.isEmpty() || nextRecordCouldBeAtStartOfWindow())) {
-			T next = it.next();
-			calls.add(next);
+		while (it.hasNext() && (size == 0 || nextRecordCouldBeAtStartOfWindow())) {
+			add(it.next());
 		}
 	}
 	private boolean nextRecordCouldBeAtStartOfWindow() {
-		long bufferPosition = toCoordinate.apply(calls.peek());
-		long nextPosition = toCoordinate.apply(it.peek());
+		long bufferPosition = headCoordinate();
+		long nextPosition = toCoordinate.applyAsLong(it.peek());
 		return nextPosition <= bufferPosition + windowSize;
 	}
+	private void add(T record) {
+		long coordinate = toCoordinate.applyAsLong(record);
+		if (ringSize == 0) {
+			origin = coordinate;
+		}
+		size++;
+		if (coordinate < origin || (coordinate - origin) / bucketWidth >= ring.size()) {
+			overflow.add(record);
+		} else {
+			int slot = (int)((headSlot + (coordinate - origin) / bucketWidth) % ring.size());
+			ring.get(slot).add(record, coordinate);
+			ringSize++;
+		}
+	}
+	/**
+	 * Advances the head of the ring to the first non-empty bucket
+	 */
+	private void advanceHead() {
+		if (ringSize == 0) return;
+		while (ring.get(headSlot).isEmpty()) {
+			headSlot = (headSlot + 1) % ring.size();
+			origin += bucketWidth;
+		}
+	}
+	private long headCoordinate() {
+		advanceHead();
+		long position = ring.get(headSlot).minCoordinate;
+		if (!overflow.isEmpty()) {
+			position = Math.min(position, toCoordinate.applyAsLong(overflow.peek()));
+		}
+		return position;
+	}
+	private T poll() {
+		advanceHead();
+		Bucket head = ring.get(headSlot);
+		size--;
+		if (overflow.isEmpty() || (!head.isEmpty() && sortOrder.compare(head.peek(), overflow.peek()) <= 0)) {
+			ringSize--;
+			return head.poll();
+		}
+		return overflow.poll();
+	}
 	private String trackedBufferName_calls = "windowedSort";
 	@Override
 	public void setTrackedBufferContext(String context) {
@@ -86,7 +192,7 @@ public class WindowedSortingIterator<T> extends AbstractIterator<T> implements T
 	@Override
 	public List<NamedTrackedBuffer> currentTrackedBufferSizes() {
 		return ImmutableList.of(
-				new NamedTrackedBuffer(trackedBufferName_calls, calls.size())
+				new NamedTrackedBuffer(trackedBufferName_calls, size)
 				);
 	}
 }
@@ -1,6 +1,8 @@
 package au.edu.wehi.idsv.visualisation;
 
 import au.edu.wehi.idsv.BreakendDirection;
+import au.edu.wehi.idsv.visualisation.BinaryTelemetry.ColumnType;
+import au.edu.wehi.idsv.visualisation.BinaryTelemetry.TelemetryStream;
 import htsjdk.samtools.SAMSequenceDictionary;
 import htsjdk.samtools.util.Log;
 
@@ -15,14 +17,29 @@ public class AssemblyTelemetry implements Closeable {
 	private final File file;
 	private final SAMSequenceDictionary dict;
 	private BlockingQueue<String> queue;
+	private final TelemetryStream stream;
 	public AssemblyTelemetry(File telemetryFile, SAMSequenceDictionary dict) {
 		this.file = telemetryFile;
+		this.stream = null;
 		this.queue = new ArrayBlockingQueue<>(4096);
 		this.dict = dict;
 		Thread thread = new Thread(new WriterRunnable(), "AT:" + file.getName());
 		thread.setDaemon(true);
 		thread.start();
 	}
+	/**
+	 * Writes telemetry to the given binary telemetry sink instead of a text file
+	 * @param telemetry binary telemetry sink
+	 * @param name telemetry stream name
+	 * @param dict sequence dictionary
+	 */
+	public AssemblyTelemetry(BinaryTelemetry telemetry, String name, SAMSequenceDictionary dict) {
+		this.file = null;
+		this.dict = dict;
+		this.stream = telemetry.createStream(name, null,
+				ColumnType.LONG, ColumnType.STRING, ColumnType.STRING, ColumnType.STRING,
+				ColumnType.LONG, ColumnType.LONG, ColumnType.LONG, ColumnType.BOOLEAN, ColumnType.LONG);
+	}
 	private static void writeHeader(FileWriter writer) {
 	}
 	public AssemblyChunkTelemetry getTelemetry(int chunkNumber, BreakendDirection direction) {
@@ -31,21 +48,52 @@ public class AssemblyTelemetry implements Closeable {
 	public class AssemblyChunkTelemetry {
 		private int chunk;
 		private BreakendDirection direction;
+		private final long[] row;
 		private AssemblyChunkTelemetry(int chunk, BreakendDirection direction) {
 			this.chunk = chunk;
 			this.direction = direction;
+			this.row = stream == null ? null : new long[stream.getColumnTypes().length];
+		}
+		/**
+		 * Records a row to the binary telemetry stream
+		 * Chunk telemetry is only written to from the thread assembling the chunk so the row buffer can be reused 
+		 */
+		private void record(String event, int referenceIndex, int start, int end, int count, long filtered, long nsSinceLast) {
+			BinaryTelemetry telemetry = stream.getTelemetry();
+			row[0] = chunk;
+			row[1] = telemetry.intern(String.valueOf(direction.toChar()));
+			row[2] = telemetry.intern(event);
+			row[3] = telemetry.intern(dict.getSequence(referenceIndex).getSequenceName());
+			row[4] = start;
+			row[5] = end;
+			row[6] = count;
+			row[7] = filtered;
+			row[8] = nsSinceLast / 1000;
+			stream.record(row);
 		}
 		public void loadGraph(int referenceIndex, int start, int end, int nodes, boolean filtered, long nsSinceLast) {
+			if (stream != null) {
+				record("load", referenceIndex, start, end, nodes, filtered ? 1 : 0, nsSinceLast);
+				return;
+			}
 			String str = String.format("%d,%s,load,%s,%d,%d,%d,%b,%d\n", chunk, direction.toChar(), dict.getSequence(referenceIndex).getSequenceName(), start, end, nodes, filtered, nsSinceLast / 1000);
 			put(str);
 		}
 
 		public void flushContigs(int referenceIndex, int flushStart, int flushEnd, int contigsFlushed, long nsSinceLast) {
+			if (stream != null) {
+				record("flushContigs", referenceIndex, flushStart, flushEnd, contigsFlushed, BinaryTelemetry.EMPTY, nsSinceLast);
+				return;
+			}
 			String str = String.format("%d,%s,flushContigs,%s,%d,%d,%d,,%d\n", chunk, direction.toChar(), dict.getSequence(referenceIndex).getSequenceName(), flushStart, flushEnd, contigsFlushed, nsSinceLast / 1000);
 			put(str);
 		}
 
 		public void flushReferenceNodes(int referenceIndex, int flushStart, int flushEnd, int readsFlushed, long nsSinceLast) {
+			if (stream != null) {
+				record("flushReferenceNodes", referenceIndex, flushStart, flushEnd, readsFlushed, BinaryTelemetry.EMPTY, nsSinceLast);
+				return;
+			}
 			String str = String.format("%d,%s,flushReferenceNodes,%s,%d,%d,%d,,%d\n", chunk, direction.toChar(), dict.getSequence(referenceIndex).getSequenceName(), flushStart, flushEnd, readsFlushed, nsSinceLast / 1000);
 			put(str);
 		}
@@ -63,6 +111,10 @@ public class AssemblyTelemetry implements Closeable {
 	}
 	@Override
 	public void close() {
+		if (queue == null) {
+			// binary telemetry is flushed by the shared sink
+			return;
+		}
 		try {
 			queue.put("");
 			queue = null;
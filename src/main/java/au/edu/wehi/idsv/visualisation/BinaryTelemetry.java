@@ -0,0 +1,377 @@
+package au.edu.wehi.idsv.visualisation;
+
+import htsjdk.samtools.util.Log;
+
+import java.io.*;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Non-blocking binary telemetry sink.
+ *
+ * Each calling thread writes fixed-size records into its own lock-free ring buffer.
+ * A background thread drains the ring buffers and writes the records in compact
+ * columnar blocks. Records are dropped instead of blocking the calling thread if
+ * the writer falls behind.
+ *
+ * Use {@link BinaryTelemetryReader} to convert the output back to the equivalent text formats.
+ *
+ * File format: magic, version, then a sequence of tagged sections:
+ * <ul>
+ * <li>'S': stream definition: name, header, column count, column types</li>
+ * <li>'T': string table entry</li>
+ * <li>'B': block of records: stream id, row count, then for each column the zig-zag varint encoded deltas between rows</li>
+ * <li>'D': number of records dropped since the previous 'D' section</li>
+ * </ul>
+ */
+public class BinaryTelemetry implements Closeable {
+	private static final Log log = Log.getInstance(BinaryTelemetry.class);
+	public enum ColumnType {
+		LONG,
+		BOOLEAN,
+		/**
+		 * Identifier returned by {@link BinaryTelemetry#intern(String)}
+		 */
+		STRING,
+		/**
+		 * Milliseconds since epoch
+		 */
+		TIMESTAMP,
+	}
+	/**
+	 * Value indicating an empty cell
+	 */
+	public static final long EMPTY = Long.MIN_VALUE;
+	static final int MAGIC = 0x47544C4D; // GTLM
+	static final int VERSION = 1;
+	static final int SECTION_STREAM = 'S';
+	static final int SECTION_STRING = 'T';
+	static final int SECTION_BLOCK = 'B';
+	static final int SECTION_DROPPED = 'D';
+	public static final int DEFAULT_RING_CAPACITY = 1 << 16;
+	private static final long DRAIN_INTERVAL_NS = TimeUnit.MILLISECONDS.toNanos(100);
+	private final File file;
+	private final int ringCapacity;
+	private final List<ThreadRing> rings = new CopyOnWriteArrayList<>();
+	private final ThreadLocal<TelemetryRingBuffer> localRing = ThreadLocal.withInitial(this::registerThread);
+	private final List<TelemetryStream> streams = new CopyOnWriteArrayList<>();
+	private final ConcurrentHashMap<String, Integer> stringLookup = new ConcurrentHashMap<>();
+	private final List<String> strings = new ArrayList<>();
+	private final Thread writerThread;
+	private final Thread shutdownHook;
+	private volatile boolean closed = false;
+	// Writer thread state
+	private final List<ColumnBuffer> buffers = new ArrayList<>();
+	private int stringsWritten = 0;
+	private int streamsWritten = 0;
+	private long droppedWritten = 0;
+	private long droppedByExitedThreads = 0;
+	public BinaryTelemetry(File file) throws IOException {
+		this(file, DEFAULT_RING_CAPACITY);
+	}
+	/**
+	 * @param file output file
+	 * @param ringCapacity size of the per-thread ring buffers in 64-bit words
+	 */
+	public BinaryTelemetry(File file, int ringCapacity) throws IOException {
+		this.file = file;
+		this.ringCapacity = ringCapacity;
+		if (file.getParentFile() != null) {
+			file.getParentFile().mkdirs();
+		}
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+		this.writerThread = new Thread(() -> writeLoop(out), "BinaryTelemetry:" + file.getName());
+		this.writerThread.setDaemon(true);
+		this.writerThread.start();
+		// telemetry is written asynchronously so make sure we don't lose the tail end on exit
+		this.shutdownHook = new Thread(this::closeQuietly);
+		Runtime.getRuntime().addShutdownHook(shutdownHook);
+	}
+	public File getFile() {
+		return file;
+	}
+	/**
+	 * Defines a new telemetry stream.
+	 * @param name stream name. Converted text output is written to a file of this name.
+	 * @param header text header line, or null if the stream has no header
+	 * @param types column types
+	 * @return stream
+	 */
+	public synchronized TelemetryStream createStream(String name, String header, ColumnType... types) {
+		if (types.length == 0) throw new IllegalArgumentException("Telemetry stream requires at least one column");
+		TelemetryStream stream = new TelemetryStream(this, streams.size(), name, header, types);
+		streams.add(stream);
+		return stream;
+	}
+	/**
+	 * Gets the identifier of the given string for use in {@link ColumnType#STRING} columns.
+	 */
+	public int intern(String s) {
+		if (s == null) s = "";
+		Integer id = stringLookup.get(s);
+		if (id == null) {
+			synchronized (strings) {
+				id = stringLookup.get(s);
+				if (id == null) {
+					id = strings.size();
+					strings.add(s);
+					stringLookup.put(s, id);
+				}
+			}
+		}
+		return id;
+	}
+	/**
+	 * Number of records dropped due to full ring buffers
+	 */
+	public long getDroppedCount() {
+		long count = droppedByExitedThreads;
+		for (ThreadRing tr : rings) {
+			count += tr.ring.getDroppedCount();
+		}
+		return count;
+	}
+	private void record(TelemetryStream stream, long[] values) {
+		if (closed) return;
+		localRing.get().offer(stream.id, values, stream.types.length);
+	}
+	private TelemetryRingBuffer registerThread() {
+		TelemetryRingBuffer ring = new TelemetryRingBuffer(ringCapacity);
+		rings.add(new ThreadRing(Thread.currentThread(), ring));
+		return ring;
+	}
+	private void writeLoop(DataOutputStream out) {
+		try {
+			while (!closed) {
+				LockSupport.parkNanos(this, DRAIN_INTERVAL_NS);
+				writePending(out);
+			}
+			writePending(out);
+		} catch (IOException e) {
+			log.warn(e, "Error writing telemetry to ", file);
+		} finally {
+			try {
+				out.close();
+			} catch (IOException e) {
+				log.debug(e);
+			}
+		}
+	}
+	private void writePending(DataOutputStream out) throws IOException {
+		for (ThreadRing tr : rings) {
+			// exited threads will not write any more records
+			boolean exited = !tr.thread.isAlive();
+			tr.ring.drain(this::buffer);
+			if (exited) {
+				droppedByExitedThreads += tr.ring.getDroppedCount();
+				rings.remove(tr);
+			}
+		}
+		synchronized (strings) {
+			for (; stringsWritten < strings.size(); stringsWritten++) {
+				out.writeByte(SECTION_STRING);
+				out.writeUTF(strings.get(stringsWritten));
+			}
+		}
+		for (; streamsWritten < streams.size(); streamsWritten++) {
+			writeStreamDefinition(out, streams.get(streamsWritten));
+		}
+		for (ColumnBuffer cb : buffers) {
+			if (cb != null) {
+				cb.write(out);
+			}
+		}
+		long dropped = getDroppedCount();
+		if (dropped != droppedWritten) {
+			out.writeByte(SECTION_DROPPED);
+			writeVarLong(out, dropped - droppedWritten);
+			droppedWritten = dropped;
+		}
+		out.flush();
+	}
+	private void buffer(int streamId, long[] values, int length) {
+		while (buffers.size() <= streamId) {
+			buffers.add(null);
+		}
+		ColumnBuffer cb = buffers.get(streamId);
+		if (cb == null) {
+			cb = new ColumnBuffer(streamId, length);
+			buffers.set(streamId, cb);
+		}
+		cb.add(values);
+	}
+	private static void writeStreamDefinition(DataOutputStream out, TelemetryStream stream) throws IOException {
+		out.writeByte(SECTION_STREAM);
+		out.writeUTF(stream.name);
+		out.writeBoolean(stream.header != null);
+		if (stream.header != null) {
+			out.writeUTF(stream.header);
+		}
+		writeVarLong(out, stream.types.length);
+		for (ColumnType type : stream.types) {
+			out.writeByte(type.ordinal());
+		}
+	}
+	@Override
+	public void close() throws IOException {
+		if (closed) return;
+		closed = true;
+		LockSupport.unpark(writerThread);
+		try {
+			writerThread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		try {
+			Runtime.getRuntime().removeShutdownHook(shutdownHook);
+		} catch (IllegalStateException e) {
+			// already shutting down
+		}
+	}
+	private void closeQuietly() {
+		try {
+			close();
+		} catch (IOException e) {
+			log.debug(e);
+		}
+	}
+	static void writeVarLong(DataOutput out, long value) throws IOException {
+		long v = (value << 1) ^ (value >> 63);
+		while ((v & ~0x7FL) != 0) {
+			out.writeByte((int)((v & 0x7F) | 0x80));
+			v >>>= 7;
+		}
+		out.writeByte((int)v);
+	}
+	static long readVarLong(DataInput in) throws IOException {
+		long v = 0;
+		int shift = 0;
+		int b;
+		do {
+			b = in.readUnsignedByte();
+			v |= (long)(b & 0x7F) << shift;
+			shift += 7;
+		} while ((b & 0x80) != 0);
+		return (v >>> 1) ^ -(v & 1);
+	}
+	/**
+	 * Formats the given value as text
+	 * @param type column type
+	 * @param value value
+	 * @param strings string table
+	 */
+	public static String format(ColumnType type, long value, List<String> strings) {
+		if (value == EMPTY) return "";
+		switch (type) {
+			case BOOLEAN:
+				return Boolean.toString(value != 0);
+			case STRING:
+				return value >= 0 && value < strings.size() ? strings.get((int)value) : "";
+			case TIMESTAMP:
+				return LocalDateTime.ofInstant(Instant.ofEpochMilli(value), ZoneId.systemDefault()).toString();
+			case LONG:
+			default:
+				return Long.toString(value);
+		}
+	}
+	private static class ThreadRing {
+		private final Thread thread;
+		private final TelemetryRingBuffer ring;
+		private ThreadRing(Thread thread, TelemetryRingBuffer ring) {
+			this.thread = thread;
+			this.ring = ring;
+		}
+	}
+	/**
+	 * Column-oriented buffer of records awaiting writing
+	 */
+	private static class ColumnBuffer {
+		private final int streamId;
+		private final long[][] columns;
+		private int rows = 0;
+		private ColumnBuffer(int streamId, int columnCount) {
+			this.streamId = streamId;
+			this.columns = new long[columnCount][16];
+		}
+		private void add(long[] values) {
+			if (rows == columns[0].length) {
+				for (int i = 0; i < columns.length; i++) {
+					long[] grown = new long[rows * 2];
+					System.arraycopy(columns[i], 0, grown, 0, rows);
+					columns[i] = grown;
+				}
+			}
+			for (int i = 0; i < columns.length; i++) {
+				columns[i][rows] = values[i];
+			}
+			rows++;
+		}
+		private void write(DataOutputStream out) throws IOException {
+			if (rows == 0) return;
+			out.writeByte(SECTION_BLOCK);
+			writeVarLong(out, streamId);
+			writeVarLong(out, rows);
+			for (long[] column : columns) {
+				long last = 0;
+				for (int i = 0; i < rows; i++) {
+					writeVarLong(out, column[i] - last);
+					last = column[i];
+				}
+			}
+			rows = 0;
+		}
+	}
+	public static class TelemetryStream {
+		private final BinaryTelemetry owner;
+		private final int id;
+		private final String name;
+		private final String header;
+		private final ColumnType[] types;
+		TelemetryStream(BinaryTelemetry owner, int id, String name, String header, ColumnType[] types) {
+			this.owner = owner;
+			this.id = id;
+			this.name = name;
+			this.header = header;
+			this.types = types;
+		}
+		/**
+		 * Records a row. The values are copied so the array can be reused by the caller.
+		 * @param values row values. Must have one value per column.
+		 */
+		public void record(long[] values) {
+			owner.record(this, values);
+		}
+		public BinaryTelemetry getTelemetry() {
+			return owner;
+		}
+		public String getName() {
+			return name;
+		}
+		public String getHeader() {
+			return header;
+		}
+		public ColumnType[] getColumnTypes() {
+			return types;
+		}
+		/**
+		 * Formats the given row as a line of comma separated text
+		 */
+		public String format(long[] row, List<String> strings) {
+			StringBuilder sb = new StringBuilder();
+			for (int i = 0; i < types.length; i++) {
+				if (i > 0) sb.append(',');
+				sb.append(BinaryTelemetry.format(types[i], row[i], strings));
+			}
+			return sb.toString();
+		}
+	}
+}
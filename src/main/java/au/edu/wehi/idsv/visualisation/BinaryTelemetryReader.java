@@ -0,0 +1,154 @@
+package au.edu.wehi.idsv.visualisation;
+
+import au.edu.wehi.idsv.visualisation.BinaryTelemetry.ColumnType;
+import au.edu.wehi.idsv.visualisation.BinaryTelemetry.TelemetryStream;
+import htsjdk.samtools.util.Log;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads telemetry written by {@link BinaryTelemetry}
+ */
+public class BinaryTelemetryReader implements Closeable {
+	private static final Log log = Log.getInstance(BinaryTelemetryReader.class);
+	private final File file;
+	private final DataInputStream in;
+	private final List<String> strings = new ArrayList<>();
+	private final List<TelemetryStream> streams = new ArrayList<>();
+	private long dropped = 0;
+	public interface RowHandler {
+		/**
+		 * @param stream stream the row belongs to
+		 * @param row row values. The array is reused between calls.
+		 * @param strings string table
+		 */
+		void row(TelemetryStream stream, long[] row, List<String> strings) throws IOException;
+	}
+	public BinaryTelemetryReader(File file) throws IOException {
+		this.file = file;
+		this.in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+		if (in.readInt() != BinaryTelemetry.MAGIC) {
+			in.close();
+			throw new IOException(file + " is not a GRIDSS binary telemetry file");
+		}
+		int version = in.readInt();
+		if (version != BinaryTelemetry.VERSION) {
+			in.close();
+			throw new IOException(String.format("Unsupported telemetry version %d in %s", version, file));
+		}
+	}
+	/**
+	 * Passes every record in the file to the given handler.
+	 * Files truncated due to abnormal termination of the writing process are read up to the last complete section.
+	 */
+	public void read(RowHandler handler) throws IOException {
+		long[][] columns = new long[0][];
+		long[] row = new long[0];
+		try {
+			int section;
+			while ((section = in.read()) != -1) {
+				switch (section) {
+					case BinaryTelemetry.SECTION_STRING:
+						strings.add(in.readUTF());
+						break;
+					case BinaryTelemetry.SECTION_STREAM:
+						streams.add(readStreamDefinition());
+						break;
+					case BinaryTelemetry.SECTION_DROPPED:
+						dropped += BinaryTelemetry.readVarLong(in);
+						break;
+					case BinaryTelemetry.SECTION_BLOCK:
+						int streamId = (int)BinaryTelemetry.readVarLong(in);
+						int rows = (int)BinaryTelemetry.readVarLong(in);
+						if (streamId < 0 || streamId >= streams.size()) {
+							throw new IOException(String.format("Undefined telemetry stream %d in %s", streamId, file));
+						}
+						TelemetryStream stream = streams.get(streamId);
+						int columnCount = stream.getColumnTypes().length;
+						if (columns.length < columnCount) {
+							columns = new long[columnCount][];
+							row = new long[columnCount];
+						}
+						for (int i = 0; i < columnCount; i++) {
+							if (columns[i] == null || columns[i].length < rows) {
+								columns[i] = new long[rows];
+							}
+							long last = 0;
+							for (int j = 0; j < rows; j++) {
+								last += BinaryTelemetry.readVarLong(in);
+								columns[i][j] = last;
+							}
+						}
+						for (int j = 0; j < rows; j++) {
+							for (int i = 0; i < columnCount; i++) {
+								row[i] = columns[i][j];
+							}
+							handler.row(stream, row, strings);
+						}
+						break;
+					default:
+						throw new IOException(String.format("Unexpected telemetry section %d in %s", section, file));
+				}
+			}
+		} catch (EOFException e) {
+			log.warn("Telemetry file ", file, " is truncated. Ignoring incomplete trailing records.");
+		}
+	}
+	private TelemetryStream readStreamDefinition() throws IOException {
+		String name = in.readUTF();
+		String header = in.readBoolean() ? in.readUTF() : null;
+		int columnCount = (int)BinaryTelemetry.readVarLong(in);
+		ColumnType[] types = new ColumnType[columnCount];
+		for (int i = 0; i < columnCount; i++) {
+			types[i] = ColumnType.values()[in.readUnsignedByte()];
+		}
+		return new TelemetryStream(null, streams.size(), name, header, types);
+	}
+	/**
+	 * Number of records dropped by the writer due to full ring buffers
+	 */
+	public long getDroppedCount() {
+		return dropped;
+	}
+	@Override
+	public void close() throws IOException {
+		in.close();
+	}
+	/**
+	 * Converts binary telemetry to the equivalent text output.
+	 * One file is written to the output directory for each distinct stream name.
+	 * @param input binary telemetry file
+	 * @param outputDirectory output directory
+	 * @return number of records dropped by the writer
+	 */
+	public static long convert(File input, File outputDirectory) throws IOException {
+		outputDirectory.mkdirs();
+		Map<String, Writer> writers = new HashMap<>();
+		try (BinaryTelemetryReader reader = new BinaryTelemetryReader(input)) {
+			reader.read((stream, row, strings) -> {
+				Writer writer = writers.get(stream.getName());
+				if (writer == null) {
+					File file = new File(outputDirectory, new File(stream.getName()).getName());
+					writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8));
+					writers.put(stream.getName(), writer);
+					if (stream.getHeader() != null) {
+						writer.write(stream.getHeader());
+						writer.write('\n');
+					}
+				}
+				writer.write(stream.format(row, strings));
+				writer.write('\n');
+			});
+			return reader.getDroppedCount();
+		} finally {
+			for (Writer writer : writers.values()) {
+				writer.close();
+			}
+		}
+	}
+}
@@ -1,5 +1,7 @@
 package au.edu.wehi.idsv.visualisation;
 
+import au.edu.wehi.idsv.visualisation.BinaryTelemetry.ColumnType;
+import au.edu.wehi.idsv.visualisation.BinaryTelemetry.TelemetryStream;
 import au.edu.wehi.idsv.visualisation.TrackedBuffer.NamedTrackedBuffer;
 import htsjdk.samtools.util.CloserUtil;
 
@@ -21,6 +23,8 @@ import java.util.List;
 public class BufferTracker {
 	private final List<WeakReference<TrackedBuffer>> bufferObjects = Collections.synchronizedList(new ArrayList<WeakReference<TrackedBuffer>>());
 	private final File output;
+	private final TelemetryStream stream;
+	private final long[] row = new long[3];
 	private final float writeIntervalInSeconds;
 	private volatile Worker worker = null;
 	/**
@@ -31,6 +35,18 @@ public class BufferTracker {
 	 */
 	public BufferTracker(File output, float writeIntervalInSeconds) {
 		this.output = output;
+		this.stream = null;
+		this.writeIntervalInSeconds = writeIntervalInSeconds;
+	}
+	/**
+	 * Tracks buffer sizes to the given binary telemetry sink
+	 * @param telemetry binary telemetry sink
+	 * @param name telemetry stream name
+	 * @param writeIntervalInSeconds interval between 
+	 */
+	public BufferTracker(BinaryTelemetry telemetry, String name, float writeIntervalInSeconds) {
+		this.output = null;
+		this.stream = telemetry.createStream(name, null, ColumnType.TIMESTAMP, ColumnType.STRING, ColumnType.LONG);
 		this.writeIntervalInSeconds = writeIntervalInSeconds;
 	}
 	public void start() {
@@ -67,7 +83,25 @@ public class BufferTracker {
 		}
 		return sb.toString();
 	}
+	private synchronized void record() {
+		row[0] = System.currentTimeMillis();
+		BinaryTelemetry telemetry = stream.getTelemetry();
+		for (WeakReference<TrackedBuffer> wr : bufferObjects) {
+			TrackedBuffer buffer = wr.get();
+			if (buffer != null) {
+				for (NamedTrackedBuffer bufferSize : buffer.currentTrackedBufferSizes()) {
+					row[1] = telemetry.intern(bufferSize.name);
+					row[2] = bufferSize.size;
+					stream.record(row);
+				}
+			}
+		}
+	}
 	private void append() {
+		if (stream != null) {
+			record();
+			return;
+		}
 		FileOutputStream os = null;
 		String str = getCsvRows();
 		if (!str.isEmpty()) {
@@ -2,10 +2,13 @@ package au.edu.wehi.idsv.visualisation;
 
 import au.edu.wehi.idsv.Defaults;
 import au.edu.wehi.idsv.debruijn.positional.*;
+import au.edu.wehi.idsv.visualisation.BinaryTelemetry.ColumnType;
+import au.edu.wehi.idsv.visualisation.BinaryTelemetry.TelemetryStream;
 import htsjdk.samtools.util.CloserUtil;
 import htsjdk.samtools.util.Log;
 
 import java.io.*;
+import java.util.Arrays;
 
 /**
  * Tracks information associated with positional de Bruijn graph calling
@@ -44,6 +47,8 @@ public class PositionalDeBruijnGraphTracker implements Closeable {
 		}
 	}
 	private BufferedWriter writer;
+	private TelemetryStream stream;
+	private final long[] row;
 	private SupportNodeIterator support;
 	private AggregateNodeIterator aggregate;
 	private PathNodeIterator pathNode;
@@ -59,129 +64,145 @@ public class PositionalDeBruijnGraphTracker implements Closeable {
 			PathSimplificationIterator simplify,
 			EvidenceTracker tracker,
 			NonReferenceContigAssembler assembler) throws IOException {
+		this(support, aggregate, pathNode, simplify, tracker, assembler);
 		this.writer = new BufferedWriter(new FileWriter(file));
+	}
+	/**
+	 * Tracks assembly progress to the given binary telemetry sink
+	 * @param telemetry binary telemetry sink
+	 * @param name telemetry stream name
+	 */
+	public PositionalDeBruijnGraphTracker(
+			BinaryTelemetry telemetry,
+			String name,
+			SupportNodeIterator support,
+			AggregateNodeIterator aggregate,
+			PathNodeIterator pathNode,
+			PathSimplificationIterator simplify,
+			EvidenceTracker tracker,
+			NonReferenceContigAssembler assembler) {
+		this(support, aggregate, pathNode, simplify, tracker, assembler);
+		ColumnType[] types = new ColumnType[row.length];
+		Arrays.fill(types, ColumnType.LONG);
+		this.stream = telemetry.createStream(name, header(), types);
+	}
+	private PositionalDeBruijnGraphTracker(
+			SupportNodeIterator support,
+			AggregateNodeIterator aggregate,
+			PathNodeIterator pathNode,
+			PathSimplificationIterator simplify,
+			EvidenceTracker tracker,
+			NonReferenceContigAssembler assembler) {
 		this.support = support;
 		this.pathNode = pathNode;
 		this.aggregate = aggregate;
 		this.simplify = simplify;
 		this.tracker = tracker;
 		this.assembler = assembler;
+		this.row = new long[header().split(",").length];
 	}
-	public void writeHeader() throws IOException {
-		if (writer == null) return;
-		writer.write("nsElapsedTime");
-		writer.write(",supportPosition,aggregatePosition,pathNodePosition,collapsePosition,simplifyPosition,assemblerPosition,assemblerFirstPosition");
-		writer.write(",supportConsumed,aggregateConsumed,pathNodeConsumed,collapseConsumed,simplifyConsumed,assemblerConsumed,trackerConsumed");
-		writer.write(",trackerActive");
-		writer.write(",supportProcessedSize");
-		writer.write(",aggregateProcessedSize,aggregateQueueSize,aggregateActiveSize");
-		writer.write(",pathNodeProcessedSize,pathNodeActiveSize,pathNodeEdgeLookupSize,pathNodePathLookupSize");
-		writer.write(",collapseProcessedSize,collapseUnprocessedSize,collapseTraversalCount,collapsedBranchCount,collapsedLeafCount");
-		writer.write(",simplifyProcessedSize,simplifyLookupSize,simplifyUnprocessedSize,simplifiedCount");
-		writer.write(",trackerLookupSize");
-		writer.write(",contigFrontierSize,contigMemoizedSize");
-		writer.write(",assemblyActiveSize");
-		writer.write(",");
-		writer.write(ContigStats.header());
-		writer.write(",");
-		writer.write(MemoizationStats.header());
+	private static String header() {
+		StringBuilder sb = new StringBuilder();
+		sb.append("nsElapsedTime");
+		sb.append(",supportPosition,aggregatePosition,pathNodePosition,collapsePosition,simplifyPosition,assemblerPosition,assemblerFirstPosition");
+		sb.append(",supportConsumed,aggregateConsumed,pathNodeConsumed,collapseConsumed,simplifyConsumed,assemblerConsumed,trackerConsumed");
+		sb.append(",trackerActive");
+		sb.append(",supportProcessedSize");
+		sb.append(",aggregateProcessedSize,aggregateQueueSize,aggregateActiveSize");
+		sb.append(",pathNodeProcessedSize,pathNodeActiveSize,pathNodeEdgeLookupSize,pathNodePathLookupSize");
+		sb.append(",collapseProcessedSize,collapseUnprocessedSize,collapseTraversalCount,collapsedBranchCount,collapsedLeafCount");
+		sb.append(",simplifyProcessedSize,simplifyLookupSize,simplifyUnprocessedSize,simplifiedCount");
+		sb.append(",trackerLookupSize");
+		sb.append(",contigFrontierSize,contigMemoizedSize");
+		sb.append(",assemblyActiveSize");
+		sb.append(",");
+		sb.append(ContigStats.header());
+		sb.append(",");
+		sb.append(MemoizationStats.header());
 		if (Defaults.SANITY_CHECK_ASSEMBLY_GRAPH) {
-			writer.write(",aggregateKmerMaxActive,aggregateActiveNodes,pathNodeEdgeMaxActive,pathNodePathMaxActive,trackerMaxKmerSupport,assemblyMaxActive,trackerLookupSize");
+			sb.append(",aggregateKmerMaxActive,aggregateActiveNodes,pathNodeEdgeMaxActive,pathNodePathMaxActive,trackerMaxKmerSupport,assemblyMaxActive,trackerLookupSize");
 		}
+		return sb.toString();
+	}
+	public void writeHeader() throws IOException {
+		if (writer == null) return;
+		writer.write(header());
 		writer.write('\n');
 	}
 	public void trackAssembly(MemoizedContigCaller caller) {
-		if (writer == null) return;
+		if (writer == null && stream == null) return;
 		long currentTime = System.nanoTime();
 		long deltaTime = currentTime - lastTime;
 		try {
-			writer.write(Long.toString(deltaTime));
-			writer.write(',');
-			writer.write(Integer.toString(support.tracking_inputPosition()));
-			writer.write(',');
-			writer.write(Integer.toString(aggregate.tracking_inputPosition()));
-			writer.write(',');
-			writer.write(Integer.toString(pathNode.tracking_inputPosition()));
-			writer.write(',');
-			writer.write(',');
-			if (simplify != null) writer.write(Integer.toString(simplify.tracking_inputPosition()));
-			writer.write(',');
-			writer.write(Integer.toString(assembler.tracking_firstPosition()));
-			writer.write(',');
-			writer.write(Integer.toString(assembler.tracking_inputPosition()));
-			writer.write(',');
-			writer.write(Long.toString(support.tracking_underlyingConsumed()));
-			writer.write(',');
-			writer.write(Long.toString(aggregate.tracking_underlyingConsumed()));
-			writer.write(',');
-			writer.write(Long.toString(pathNode.tracking_underlyingConsumed()));
-			writer.write(',');
-			writer.write(',');
-			if (simplify != null) writer.write(Long.toString(simplify.tracking_underlyingConsumed()));
-			writer.write(',');
-			writer.write(Long.toString(assembler.tracking_underlyingConsumed()));
-			writer.write(',');
-			writer.write(Long.toString(tracker.tracking_evidenceTotal()));
-			writer.write(',');
-			writer.write(Long.toString(tracker.tracking_evidenceActive()));
-			writer.write(',');
-			writer.write(Integer.toString(support.tracking_processedSize()));
-			writer.write(',');
-			writer.write(Integer.toString(aggregate.tracking_processedSize()));
-			writer.write(',');
-			writer.write(Integer.toString(aggregate.tracking_aggregatorQueueSize()));
-			writer.write(',');
-			writer.write(Integer.toString(aggregate.tracking_kmerCount()));
-			writer.write(',');
-			writer.write(Integer.toString(pathNode.tracking_processedSize()));
-			writer.write(',');
-			writer.write(Integer.toString(pathNode.tracking_activeSize()));
-			writer.write(',');
-			writer.write(Integer.toString(pathNode.tracking_edgeLookupSize()));
-			writer.write(',');
-			writer.write(Integer.toString(pathNode.tracking_pathNodeEdgeLookupSize()));
-			writer.write(',');
-			writer.write(',');
-			writer.write(',');
-			writer.write(',');
-			writer.write(',');
-			writer.write(',');
-			if (simplify != null) writer.write(Integer.toString(simplify.tracking_processedSize()));
-			writer.write(',');
-			if (simplify != null) writer.write(Integer.toString(simplify.tracking_lookupSize()));
-			writer.write(',');
-			if (simplify != null) writer.write(Integer.toString(simplify.tracking_unprocessedSize()));
-			writer.write(',');
-			if (simplify != null) writer.write(Long.toString(simplify.tracking_simplifiedCount()));
-			writer.write(',');
-			writer.write(Integer.toString(tracker.tracking_kmerCount()));
-			writer.write(',');
-			writer.write(Integer.toString(caller.tracking_frontierSize()));
-			writer.write(',');
-			writer.write(Integer.toString(caller.memoizedNodeCount()));
-			writer.write(',');
-			writer.write(Integer.toString(assembler.tracking_activeNodes()));
-			writer.write(',');
-			writer.write(assembler.tracking_lastContig().toString());
-			writer.write(',');
-			writer.write(caller.tracking_lastRemoval().toString());
+			int i = 0;
+			row[i++] = deltaTime;
+			row[i++] = support.tracking_inputPosition();
+			row[i++] = aggregate.tracking_inputPosition();
+			row[i++] = pathNode.tracking_inputPosition();
+			row[i++] = BinaryTelemetry.EMPTY;
+			row[i++] = simplify != null ? simplify.tracking_inputPosition() : BinaryTelemetry.EMPTY;
+			row[i++] = assembler.tracking_firstPosition();
+			row[i++] = assembler.tracking_inputPosition();
+			row[i++] = support.tracking_underlyingConsumed();
+			row[i++] = aggregate.tracking_underlyingConsumed();
+			row[i++] = pathNode.tracking_underlyingConsumed();
+			row[i++] = BinaryTelemetry.EMPTY;
+			row[i++] = simplify != null ? simplify.tracking_underlyingConsumed() : BinaryTelemetry.EMPTY;
+			row[i++] = assembler.tracking_underlyingConsumed();
+			row[i++] = tracker.tracking_evidenceTotal();
+			row[i++] = tracker.tracking_evidenceActive();
+			row[i++] = support.tracking_processedSize();
+			row[i++] = aggregate.tracking_processedSize();
+			row[i++] = aggregate.tracking_aggregatorQueueSize();
+			row[i++] = aggregate.tracking_kmerCount();
+			row[i++] = pathNode.tracking_processedSize();
+			row[i++] = pathNode.tracking_activeSize();
+			row[i++] = pathNode.tracking_edgeLookupSize();
+			row[i++] = pathNode.tracking_pathNodeEdgeLookupSize();
+			for (int j = 0; j < 5; j++) {
+				// collapse stage no longer exists
+				row[i++] = BinaryTelemetry.EMPTY;
+			}
+			row[i++] = simplify != null ? simplify.tracking_processedSize() : BinaryTelemetry.EMPTY;
+			row[i++] = simplify != null ? simplify.tracking_lookupSize() : BinaryTelemetry.EMPTY;
+			row[i++] = simplify != null ? simplify.tracking_unprocessedSize() : BinaryTelemetry.EMPTY;
+			row[i++] = simplify != null ? simplify.tracking_simplifiedCount() : BinaryTelemetry.EMPTY;
+			row[i++] = tracker.tracking_kmerCount();
+			row[i++] = caller.tracking_frontierSize();
+			row[i++] = caller.memoizedNodeCount();
+			row[i++] = assembler.tracking_activeNodes();
+			ContigStats cs = assembler.tracking_lastContig();
+			row[i++] = cs.contigStartPosition;
+			row[i++] = cs.contigNodes;
+			row[i++] = cs.startAnchorNodes;
+			row[i++] = cs.endAnchorNodes;
+			row[i++] = cs.truncatedNodes;
+			MemoizationStats ms = caller.tracking_lastRemoval();
+			row[i++] = ms.nodes;
+			row[i++] = ms.removed;
+			row[i++] = ms.pathsRemoved;
+			row[i++] = ms.descendentPathsRemoved;
+			row[i++] = ms.pathsReset;
+			row[i++] = ms.pathsRestarted;
 			if (Defaults.SANITY_CHECK_ASSEMBLY_GRAPH) {
-				writer.write(',');
-				writer.write(Integer.toString(aggregate.tracking_aggregatorKmerMaxActiveNodeCount()));
-				writer.write(',');
-				writer.write(Integer.toString(aggregate.tracking_aggregatorActiveNodeCount()));
-				writer.write(',');
-				writer.write(Integer.toString(pathNode.tracking_pathNodeEdgeLookupMaxKmerNodeCount()));
-				writer.write(',');
-				writer.write(Integer.toString(pathNode.tracking_edgeLookupMaxKmerNodeCount()));
-				writer.write(',');
-				writer.write(Integer.toString(tracker.tracking_maxKmerSupportNodesCount()));
-				writer.write(',');
-				writer.write(Integer.toString(assembler.tracking_maxKmerActiveNodeCount()));
-				writer.write(',');
-				writer.write(Integer.toString(tracker.tracking_supportNodeCount()));	
+				row[i++] = aggregate.tracking_aggregatorKmerMaxActiveNodeCount();
+				row[i++] = aggregate.tracking_aggregatorActiveNodeCount();
+				row[i++] = pathNode.tracking_pathNodeEdgeLookupMaxKmerNodeCount();
+				row[i++] = pathNode.tracking_edgeLookupMaxKmerNodeCount();
+				row[i++] = tracker.tracking_maxKmerSupportNodesCount();
+				row[i++] = assembler.tracking_maxKmerActiveNodeCount();
+				row[i++] = tracker.tracking_supportNodeCount();
+			}
+			assert(i == row.length);
+			if (stream != null) {
+				stream.record(row);
+			} else {
+				for (int j = 0; j < row.length; j++) {
+					if (j > 0) writer.write(',');
+					if (row[j] != BinaryTelemetry.EMPTY) writer.write(Long.toString(row[j]));
+				}
+				writer.write('\n');
 			}
-			writer.write('\n');
 		} catch (IOException e) {
 			if (log != null) log.error(e);
 			log = null;
@@ -194,6 +215,7 @@ public class PositionalDeBruijnGraphTracker implements Closeable {
 		if (writer != null) writer.flush();
 		CloserUtil.close(writer);
 		writer = null;
+		stream = null;
 		support = null;
 		aggregate = null;
 		tracker = null;
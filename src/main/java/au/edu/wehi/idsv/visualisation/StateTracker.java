@@ -1,24 +1,51 @@
 package au.edu.wehi.idsv.visualisation;
 
+import au.edu.wehi.idsv.visualisation.BinaryTelemetry.ColumnType;
+import au.edu.wehi.idsv.visualisation.BinaryTelemetry.TelemetryStream;
+
 import java.io.*;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.List;
 
 public class StateTracker implements Closeable {
     private BufferedWriter writer;
     private long lastTime = System.nanoTime();
     private boolean inHeader = true;
+    private BinaryTelemetry telemetry;
+    private String name;
+    private String header;
+    private TelemetryStream stream;
+    private long[] row;
     public StateTracker(File file) throws IOException {
         this.writer = new BufferedWriter(new FileWriter(file));
     }
 
+    /**
+     * Tracks state to the given binary telemetry sink.
+     * Column types are determined from the first row tracked.
+     * @param telemetry binary telemetry sink
+     * @param name telemetry stream name
+     */
+    public StateTracker(BinaryTelemetry telemetry, String name) {
+        this.telemetry = telemetry;
+        this.name = name;
+    }
+
     public void writeHeader(Collection<TrackedState> obj) throws IOException {
-        writer.write("nsElapsedTime");
+        StringBuilder sb = new StringBuilder("nsElapsedTime");
         for (TrackedState o : obj) {
             for (String s : o.trackedNames()) {
-                writer.write(",");
-                writer.write(s);
+                sb.append(",");
+                sb.append(s);
             }
         }
+        if (telemetry != null) {
+            header = sb.toString();
+            return;
+        }
+        writer.write(sb.toString());
         writer.write("\n");
     }
 
@@ -26,6 +53,14 @@ public class StateTracker implements Closeable {
         long currentTime = System.nanoTime();
         long deltaTime = currentTime - lastTime;
         lastTime = currentTime;
+        if (telemetry != null) {
+            if (stream == null) {
+                createStream(deltaTime, obj);
+            } else {
+                record(deltaTime, obj);
+            }
+            return;
+        }
         writer.write(Long.toString(deltaTime));
         for (TrackedState o : obj) {
             for (Object x : o.trackedState()) {
@@ -38,8 +73,54 @@ public class StateTracker implements Closeable {
         writer.write("\n");
     }
 
+    private void record(long deltaTime, Collection<TrackedState> obj) {
+        int i = 0;
+        row[i++] = deltaTime;
+        for (TrackedState o : obj) {
+            for (Object x : o.trackedState()) {
+                if (i >= row.length) break;
+                row[i] = toValue(stream.getColumnTypes()[i], x);
+                i++;
+            }
+        }
+        while (i < row.length) {
+            row[i++] = BinaryTelemetry.EMPTY;
+        }
+        stream.record(row);
+    }
+
+    private void createStream(long deltaTime, Collection<TrackedState> obj) {
+        List<Object> values = new ArrayList<>();
+        for (TrackedState o : obj) {
+            values.addAll(Arrays.asList(o.trackedState()));
+        }
+        ColumnType[] types = new ColumnType[values.size() + 1];
+        types[0] = ColumnType.LONG;
+        row = new long[types.length];
+        row[0] = deltaTime;
+        for (int i = 0; i < values.size(); i++) {
+            Object x = values.get(i);
+            types[i + 1] = x instanceof Number ? ColumnType.LONG : (x instanceof Boolean ? ColumnType.BOOLEAN : ColumnType.STRING);
+            row[i + 1] = toValue(types[i + 1], x);
+        }
+        stream = telemetry.createStream(name, header, types);
+        stream.record(row);
+    }
+
+    private long toValue(ColumnType type, Object x) {
+        if (x == null) return BinaryTelemetry.EMPTY;
+        switch (type) {
+            case LONG:
+                return x instanceof Number ? ((Number)x).longValue() : BinaryTelemetry.EMPTY;
+            case BOOLEAN:
+                return x instanceof Boolean ? ((Boolean)x ? 1 : 0) : BinaryTelemetry.EMPTY;
+            default:
+                return telemetry.intern(x.toString());
+        }
+    }
+
     @Override
     public void close() throws IOException {
-        writer.close();
+        if (writer != null) writer.close();
     }
 }
@@ -0,0 +1,105 @@
+package au.edu.wehi.idsv.visualisation;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free single producer, single consumer ring buffer of fixed-size binary telemetry records.
+ *
+ * The producer never blocks: records that do not fit in the buffer are dropped and counted.
+ * Each record is stored as a header word containing the stream identifier and record length
+ * followed by the record values.
+ */
+public class TelemetryRingBuffer {
+	private final long[] buffer;
+	private final int mask;
+	/**
+	 * Next slot to write. Only updated by the producer.
+	 */
+	private final AtomicLong head = new AtomicLong();
+	/**
+	 * Next slot to read. Only updated by the consumer.
+	 */
+	private final AtomicLong tail = new AtomicLong();
+	private final AtomicLong dropped = new AtomicLong();
+	/**
+	 * Producer-local copy of tail to avoid reading the consumer cache line on every write
+	 */
+	private long cachedTail = 0;
+	/**
+	 * Consumer scratch space
+	 */
+	private long[] record = new long[16];
+	public interface RecordConsumer {
+		void accept(int streamId, long[] values, int length);
+	}
+	/**
+	 * @param capacity buffer size in 64-bit words. Must be a power of two
+	 */
+	public TelemetryRingBuffer(int capacity) {
+		if (capacity < 2 || Integer.bitCount(capacity) != 1) {
+			throw new IllegalArgumentException("Ring buffer capacity must be a power of two");
+		}
+		this.buffer = new long[capacity];
+		this.mask = capacity - 1;
+	}
+	/**
+	 * Appends a record to the buffer. Must only be called from the producer thread.
+	 * @param streamId stream identifier
+	 * @param values record values
+	 * @param length number of values in the record
+	 * @return true if the record was written, false if it was dropped due to insufficient space
+	 */
+	public boolean offer(int streamId, long[] values, int length) {
+		int words = length + 1;
+		long h = head.get();
+		if (h + words - cachedTail > buffer.length) {
+			cachedTail = tail.get();
+			if (h + words - cachedTail > buffer.length) {
+				dropped.incrementAndGet();
+				return false;
+			}
+		}
+		buffer[(int)(h & mask)] = ((long)streamId << 32) | length;
+		for (int i = 0; i < length; i++) {
+			buffer[(int)((h + 1 + i) & mask)] = values[i];
+		}
+		// release store publishes the record to the consumer
+		head.lazySet(h + words);
+		return true;
+	}
+	/**
+	 * Passes all published records to the given consumer. Must only be called from the consumer thread.
+	 * The values array passed to the consumer is reused between records.
+	 * @return number of records consumed
+	 */
+	public int drain(RecordConsumer consumer) {
+		long t = tail.get();
+		long h = head.get();
+		int count = 0;
+		while (t < h) {
+			long header = buffer[(int)(t & mask)];
+			int streamId = (int)(header >>> 32);
+			int length = (int)header;
+			if (record.length < length) {
+				record = new long[length];
+			}
+			for (int i = 0; i < length; i++) {
+				record[i] = buffer[(int)((t + 1 + i) & mask)];
+			}
+			t += length + 1;
+			consumer.accept(streamId, record, length);
+			count++;
+		}
+		tail.lazySet(t);
+		return count;
+	}
+	public boolean isEmpty() {
+		return tail.get() == head.get();
+	}
+	/**
+	 * Number of records dropped due to the buffer being full
+	 */
+	public long getDroppedCount() {
+		return dropped.get();
+	}
+}
@@ -4,21 +4,33 @@ import au.edu.wehi.idsv.VariantContextDirectedBreakpoint;
 import au.edu.wehi.idsv.VariantContextDirectedEvidence;
 import au.edu.wehi.idsv.alignment.BreakpointHomology;
 import au.edu.wehi.idsv.util.AutoClosingIterator;
+import au.edu.wehi.idsv.util.BatchingIterator;
 import au.edu.wehi.idsv.util.ParallelTransformIterator;
+import au.edu.wehi.idsv.util.UngroupingIterator;
 import gridss.cmdline.VcfTransformCommandLineProgram;
 import htsjdk.samtools.util.CloseableIterator;
 
 import java.util.Iterator;
+import java.util.List;
 import java.util.concurrent.ExecutorService;
+import java.util.stream.Collectors;
 
 public class AnnotateInexactHomology extends VcfTransformCommandLineProgram {
+	/**
+	 * Number of calls to annotate in each parallel task
+	 */
+	private static final int BATCH_SIZE = 64;
 	@Override
 	public CloseableIterator<VariantContextDirectedEvidence> iterator(CloseableIterator<VariantContextDirectedEvidence> calls, ExecutorService threadpool) {
-		Iterator<VariantContextDirectedEvidence> it = new ParallelTransformIterator<VariantContextDirectedEvidence, VariantContextDirectedEvidence>(
-				calls,
-				call -> (call instanceof VariantContextDirectedBreakpoint) ? BreakpointHomology.annotate(getContext(), (VariantContextDirectedBreakpoint)call) : call,
+		// Homology calculation per call is cheap so batch calls to reduce the per-task scheduling overhead
+		Iterator<List<VariantContextDirectedEvidence>> batchIt = new ParallelTransformIterator<List<VariantContextDirectedEvidence>, List<VariantContextDirectedEvidence>>(
+				new BatchingIterator<>(calls, BATCH_SIZE),
+				batch -> batch.stream()
+						.map(call -> (call instanceof VariantContextDirectedBreakpoint) ? BreakpointHomology.annotate(getContext(), (VariantContextDirectedBreakpoint)call) : call)
+						.collect(Collectors.toList()),
 				WORKER_THREADS + 1,
 				threadpool);
+		Iterator<VariantContextDirectedEvidence> it = new UngroupingIterator<>(batchIt);
 		return new AutoClosingIterator<>(it, calls);
 	}
 	public static void main(String[] argv) {
@@ -5,7 +5,9 @@ import au.edu.wehi.idsv.alignment.BreakpointHomology;
 import au.edu.wehi.idsv.bed.BedpeIterator;
 import au.edu.wehi.idsv.bed.BedpeRecord;
 import au.edu.wehi.idsv.bed.BedpeWriter;
+import au.edu.wehi.idsv.util.BatchingIterator;
 import au.edu.wehi.idsv.util.ParallelTransformIterator;
+import au.edu.wehi.idsv.util.UngroupingIterator;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import gridss.cmdline.ReferenceCommandLineProgram;
 import htsjdk.samtools.SAMSequenceDictionary;
@@ -17,11 +19,18 @@ import picard.cmdline.StandardOptionDefinitions;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.util.Iterator;
+import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
 
 public class AnnotateInexactHomologyBedpe extends ReferenceCommandLineProgram {
 	private static final Log log = Log.getInstance(AnnotateInexactHomologyBedpe.class);
+	/**
+	 * Number of records to annotate in each parallel task
+	 */
+	private static final int BATCH_SIZE = 64;
 	@Argument(shortName=StandardOptionDefinitions.INPUT_SHORT_NAME, doc="Input BEDPE")
     public File INPUT;
 	@Argument(shortName=StandardOptionDefinitions.OUTPUT_SHORT_NAME, doc="BEDPE with the score column populated by the length of inexact homology between breakends")
@@ -72,8 +81,11 @@ public class AnnotateInexactHomologyBedpe extends ReferenceCommandLineProgram {
 		SAMSequenceDictionary dict = getReference().getSequenceDictionary();
 		try (BedpeIterator bit = new BedpeIterator(INPUT, dict)) {
 			try (BedpeWriter writer = new BedpeWriter(dict, OUTPUT)) {
-				ParallelTransformIterator<BedpeRecord, InexactHomologyBedpeRecord> asyncit = new ParallelTransformIterator<BedpeRecord, InexactHomologyBedpeRecord>(
-						bit, rec -> new InexactHomologyBedpeRecord(rec), WORKER_THREADS + 1, threadpool);
+				Iterator<InexactHomologyBedpeRecord> asyncit = new UngroupingIterator<>(new ParallelTransformIterator<List<BedpeRecord>, List<InexactHomologyBedpeRecord>>(
+						new BatchingIterator<>(bit, BATCH_SIZE),
+						batch -> batch.stream().map(rec -> new InexactHomologyBedpeRecord(rec)).collect(Collectors.toList()),
+						WORKER_THREADS + 1,
+						threadpool));
 				while (asyncit.hasNext()) {
 					InexactHomologyBedpeRecord rec = asyncit.next();
 					writer.write(
@@ -3,7 +3,9 @@ package gridss;
 import au.edu.wehi.idsv.FileSystemContext;
 import au.edu.wehi.idsv.VariantContextRepeatMaskerAnnotator;
 import au.edu.wehi.idsv.alignment.BwaStreamingAligner;
+import au.edu.wehi.idsv.alignment.CachingStreamingAligner;
 import au.edu.wehi.idsv.alignment.ExternalProcessStreamingAligner;
+import au.edu.wehi.idsv.alignment.ExternalProcessStreamingAlignerPool;
 import au.edu.wehi.idsv.alignment.StreamingAligner;
 import au.edu.wehi.idsv.util.FileHelper;
 import au.edu.wehi.idsv.vcf.InsertedSequenceAnnotator;
@@ -54,6 +56,10 @@ public class AnnotateInsertedSequence extends ReferenceCommandLineProgram {
     public List<String> ALIGNER_COMMAND_LINE = Lists.newArrayList(BWA_COMMAND_LINE);
     @Argument(doc = "Number of records to buffer when performing in-process or streaming alignment. Not applicable when performing external alignment.", optional = true)
     public int ALIGNER_BATCH_SIZE = MAX_RECORDS_IN_RAM;
+    @Argument(doc = "Number of distinct sequences to cache alignments for. Identical inserted sequences are sent to the aligner only once. Set to 0 to disable.", optional = true)
+    public int ALIGNER_CACHE_SIZE = 10000;
+    @Argument(doc = "Number of external aligner processes to run. WORKER_THREADS are evenly split across the aligner processes.", optional = true)
+    public int ALIGNER_PROCESSES = 1;
     @Argument(doc = "Whether to align inserted sequences to REFERENCE_GENOME. Valid values are:" +
             "APPEND (Append alignments to REFERENCE_GENOME to the BEALN field), " +
             "REPLACE (Replace all BEALN fields)  (default)," +
@@ -88,6 +94,9 @@ public class AnnotateInsertedSequence extends ReferenceCommandLineProgram {
 
     @Override
     protected String[] customCommandLineValidation() {
+        if (ALIGNER_PROCESSES < 1) {
+            return new String[]{"ALIGNER_PROCESSES must be at least 1"};
+        }
         if (REPEAT_MASKER_BED != null && !REPEAT_MASKER_BED.isFile()) {
             return new String[]{"REPEAT_MASKER_BED: file not found"};
         }
@@ -110,7 +119,14 @@ public class AnnotateInsertedSequence extends ReferenceCommandLineProgram {
                     sa = new BwaStreamingAligner(REFERENCE_SEQUENCE, dict, WORKER_THREADS, ALIGNER_BATCH_SIZE * 150);
                 } else {
                     log.info("Using external process alignment");
-                    sa = new ExternalProcessStreamingAligner(SamReaderFactory.make(), ALIGNER_COMMAND_LINE, REFERENCE_SEQUENCE, WORKER_THREADS, dict);
+                    if (ALIGNER_PROCESSES > 1) {
+                        sa = new ExternalProcessStreamingAlignerPool(SamReaderFactory.make(), ALIGNER_COMMAND_LINE, REFERENCE_SEQUENCE, WORKER_THREADS, dict, ALIGNER_PROCESSES, ExternalProcessStreamingAlignerPool.DEFAULT_BATCH_SIZE);
+                    } else {
+                        sa = new ExternalProcessStreamingAligner(SamReaderFactory.make(), ALIGNER_COMMAND_LINE, REFERENCE_SEQUENCE, WORKER_THREADS, dict);
+                    }
+                }
+                if (ALIGNER_CACHE_SIZE > 0) {
+                    sa = new CachingStreamingAligner(sa, ALIGNER_CACHE_SIZE);
                 }
                 InsertedSequenceAnnotator ann = new InsertedSequenceAnnotator(
                         INPUT,
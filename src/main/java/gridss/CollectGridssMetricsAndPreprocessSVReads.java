@@ -0,0 +1,144 @@
+package gridss;
+
+import au.edu.wehi.idsv.FileSystemContext;
+import au.edu.wehi.idsv.sam.SortingSAMFileWriter;
+import au.edu.wehi.idsv.util.FileHelper;
+import gridss.cmdline.CommandLineProgramHelper;
+import htsjdk.samtools.*;
+import htsjdk.samtools.util.CloseableIterator;
+import htsjdk.samtools.util.IOUtil;
+import htsjdk.samtools.util.Log;
+import org.broadinstitute.barclay.argparser.Argument;
+import org.broadinstitute.barclay.argparser.CommandLineProgramProperties;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Locale;
+
+/**
+ * Single process equivalent of running CollectGridssMetricsAndExtractSVReads, a read name sort,
+ * PreprocessForBreakendAssembly and a coordinate sort.
+ *
+ * Extracted reads are passed between stages using in-process sorting buffers instead of
+ * intermediate BAM files so only the final SV BAM is compressed.
+ */
+@CommandLineProgramProperties(
+        summary = "Merging of CollectGridssMetricsAndExtractSVReads and PreprocessForBreakendAssembly. "
+        		+ "Extracted SV reads are sorted in-process and written once as a coordinate sorted and indexed SV_OUTPUT "
+        		+ "with tags corrected and split reads identified. Realignment is done in-process.",
+        oneLineSummary = "Produces metrics for the provided SAM/BAM and extracts and preprocesses SV reads for the GRIDSS assembler.",
+        programGroup = gridss.cmdline.programgroups.DataConversion.class
+)
+public class CollectGridssMetricsAndPreprocessSVReads extends CollectGridssMetricsAndExtractSVReads {
+	private static final Log log = Log.getInstance(CollectGridssMetricsAndPreprocessSVReads.class);
+	@Argument(doc = "Directory to place intermediate results directories. Default location is the same directory"
+			+ " as the associated input or output file.", optional = true)
+	public File WORKING_DIR = null;
+	@Argument(doc="Minimum bases clipped for soft clip realignment. Generally, short read aligners are not able to uniquely align sequences shorter than 18-20 bases.", optional=true)
+	public int REALIGNMENT_MIN_CLIP_LENGTH = new SoftClipsToSplitReads().MIN_CLIP_LENGTH;
+	@Argument(doc="Minimum average base quality score of clipped bases for soft clip realignment. Low quality clipped bases are indicative of sequencing errors.", optional=true)
+	public float REALIGNMENT_MIN_CLIP_QUAL = new SoftClipsToSplitReads().MIN_CLIP_QUAL;
+	@Argument(doc="Which in-process aligner to use.", optional=true)
+	public SoftClipsToSplitReads.Aligner ALIGNER = SoftClipsToSplitReads.Aligner.BWAMEM;
+	@Argument(doc="Number of records to buffer when performing in-process alignment.", optional=true)
+	public int ALIGNER_BATCH_SIZE = new PreprocessForBreakendAssembly().ALIGNER_BATCH_SIZE;
+	@Argument(doc="Number of distinct sequences to cache alignments for. Identical soft clipped sequences are sent to the aligner only once. Set to 0 to disable.", optional=true)
+	public int ALIGNER_CACHE_SIZE = new PreprocessForBreakendAssembly().ALIGNER_CACHE_SIZE;
+	@Argument(doc="Outputs a tsv containing an overview of the changes made by ComputeSamTags.", optional=true)
+	public File MODIFICATION_SUMMARY_FILE = null;
+	@Argument(doc="Number of threads to use for realignment. Defaults to number of cores available."
+			+ " Note that I/O threads are not included in this worker thread count so CPU usage can be higher than the number of worker thread.",
+			shortName="THREADS")
+	public int WORKER_THREADS = Runtime.getRuntime().availableProcessors();
+	@Argument(doc="Base quality score to sent to aligner if quality scores are missing.", optional=true)
+	public byte FALLBACK_BASE_QUALITY = new SoftClipsToSplitReads().FALLBACK_BASE_QUALITY;
+	private SortingSAMFileWriter nameSorted;
+	public static void main(final String[] args) {
+		new CollectGridssMetricsAndPreprocessSVReads().instanceMainWithExit(args);
+	}
+	@Override
+	protected String[] customCommandLineValidation() {
+		if (ALIGNER == SoftClipsToSplitReads.Aligner.EXTERNAL) {
+			return new String[]{"Cannot use external aligner for CollectGridssMetricsAndPreprocessSVReads. Run CollectGridssMetricsAndExtractSVReads, ComputeSamTags and SoftClipsToSplitReads separately instead."};
+		}
+		if (WORKER_THREADS < 1) {
+			return new String[]{"WORKER_THREADS must be at least 1."};
+		}
+		if (REFERENCE_SEQUENCE == null) {
+			return new String[]{"REFERENCE_SEQUENCE is required."};
+		}
+		return super.customCommandLineValidation();
+	}
+	@Override
+	protected ExtractSVReads getExtractSVReads() {
+		ExtractSVReads extract = super.getExtractSVReads();
+		extract.setOutputWriter(nameSorted);
+		return extract;
+	}
+	protected PreprocessForBreakendAssembly getPreprocessForBreakendAssembly() {
+		PreprocessForBreakendAssembly preprocess = new PreprocessForBreakendAssembly();
+		CommandLineProgramHelper.copyInputs(this, preprocess);
+		preprocess.setReference(REFERENCE_SEQUENCE);
+		preprocess.WORKING_DIR = WORKING_DIR;
+		preprocess.INPUT = INPUT;
+		preprocess.OUTPUT = SV_OUTPUT;
+		preprocess.ASSUME_SORTED = true;
+		preprocess.MIN_CLIP_LENGTH = REALIGNMENT_MIN_CLIP_LENGTH;
+		preprocess.MIN_CLIP_QUAL = REALIGNMENT_MIN_CLIP_QUAL;
+		preprocess.ALIGNER = ALIGNER;
+		preprocess.ALIGNER_BATCH_SIZE = ALIGNER_BATCH_SIZE;
+		preprocess.ALIGNER_CACHE_SIZE = ALIGNER_CACHE_SIZE;
+		preprocess.MODIFICATION_SUMMARY_FILE = MODIFICATION_SUMMARY_FILE;
+		preprocess.WORKER_THREADS = WORKER_THREADS;
+		preprocess.FALLBACK_BASE_QUALITY = FALLBACK_BASE_QUALITY;
+		return preprocess;
+	}
+	@Override
+	public int doWork() {
+		log.debug("Setting language-neutral locale");
+		java.util.Locale.setDefault(Locale.ROOT);
+		IOUtil.assertFileIsReadable(INPUT);
+		IOUtil.assertFileIsWritable(SV_OUTPUT);
+		File tmpDir = TMP_DIR.get(0);
+		SAMFileHeader header;
+		try (SamReader reader = SamReaderFactory.makeDefault().referenceSequence(REFERENCE_SEQUENCE).open(INPUT)) {
+			header = reader.getFileHeader();
+		} catch (IOException e) {
+			log.error(e);
+			return -1;
+		}
+		nameSorted = new SortingSAMFileWriter(header, SAMFileHeader.SortOrder.queryname, MAX_RECORDS_IN_RAM, tmpDir);
+		SortingSAMFileWriter coordinateSorted = new SortingSAMFileWriter(header, SAMFileHeader.SortOrder.coordinate, MAX_RECORDS_IN_RAM, tmpDir);
+		try {
+			int result = super.doWork();
+			if (result != 0) return result;
+			// extraction closes the writer when complete but make sure in case no records were processed
+			nameSorted.close();
+			log.info(String.format("Preprocessing %d SV reads from %s", nameSorted.size(), INPUT));
+			try (CloseableIterator<SAMRecord> it = nameSorted.iterator()) {
+				getPreprocessForBreakendAssembly().process(it, coordinateSorted, INPUT.getName() + "-");
+			}
+			nameSorted.cleanup();
+			coordinateSorted.close();
+			File tmpOutput = gridss.Defaults.OUTPUT_TO_TEMP_FILE ? FileSystemContext.getWorkingFileFor(SV_OUTPUT, "gridss.tmp.CollectGridssMetricsAndPreprocessSVReads.") : SV_OUTPUT;
+			SAMFileWriterFactory writerFactory = new SAMFileWriterFactory().setCreateIndex(true);
+			try (SAMFileWriter writer = writerFactory.makeSAMOrBAMWriter(coordinateSorted.getFileHeader(), true, tmpOutput)) {
+				try (CloseableIterator<SAMRecord> it = coordinateSorted.iterator()) {
+					while (it.hasNext()) {
+						writer.addAlignment(it.next());
+					}
+				}
+			}
+			if (tmpOutput != SV_OUTPUT) {
+				FileHelper.move(tmpOutput, SV_OUTPUT, true);
+			}
+		} catch (IOException e) {
+			log.error(e);
+			return -1;
+		} finally {
+			nameSorted.cleanup();
+			coordinateSorted.cleanup();
+		}
+		return 0;
+	}
+}
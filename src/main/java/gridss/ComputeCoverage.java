@@ -2,6 +2,7 @@ package gridss;
 
 import au.edu.wehi.idsv.*;
 import com.google.common.collect.Iterators;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import gridss.cmdline.GcSinglePassSamProgram;
 import htsjdk.samtools.SAMFileHeader;
 import htsjdk.samtools.SAMRecord;
@@ -16,7 +17,14 @@ import org.broadinstitute.barclay.argparser.CommandLineProgramProperties;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 @CommandLineProgramProperties(
 		summary = "Computes reference genome coverage for a given BAM",
@@ -40,12 +48,36 @@ public class ComputeCoverage extends GcSinglePassSamProgram {
 			+ " actual aligned sequence coverage, and FRAGMENT which calculated physical coverage based on the"
 			+ " alignment of read pairs.", optional=true)
 	public CoverageCalculationMethod COVERAGE_METHOD = CoverageCalculationMethod.READ;
+	@Argument(doc="Number of worker threads to spawn. If more than one thread is used, bins are split into independent"
+			+ " genomic shards which are updated concurrently. Note that the floating point summation order,"
+			+ " and thus the last significant digits of the output, is not deterministic when multiple threads are used.",
+			shortName="THREADS", optional=true)
+	public int WORKER_THREADS = 1;
+	/**
+	 * Number of bins in each independently updated shard
+	 */
+	private static final int BINS_PER_SHARD = 64;
+	/**
+	 * Number of reads processed by each worker task
+	 */
+	private static final int READS_PER_BATCH = 4096;
 	
 	private IntervalCoverageAccumulator ica_gc;
 	private IntervalCoverageAccumulator ica_raw;
 	private GcBiasAdjuster gcAdjust;
+	private ExecutorService threadpool;
+	/**
+	 * Limits the number of batches awaiting processing
+	 */
+	private Semaphore batchesInFlight;
+	private final AtomicReference<Throwable> workerFailure = new AtomicReference<>();
+	private List<SAMRecord> batch;
+	private ReferenceSequence batchRefSeq;
 	@Override
 	protected String[] customCommandLineValidation() {
+		if (WORKER_THREADS < 1) {
+			return new String[] { "WORKER_THREADS must be at least 1." };
+		}
 		if (OUTPUT_GC != null) {
 			if (GC_ADJUSTMENT == null) {
 				return new String[] { "GC_ADJUSTMENT file is required if GC_OUTPUT specified" };
@@ -65,17 +97,25 @@ public class ComputeCoverage extends GcSinglePassSamProgram {
 			ica_gc = initIntervalCoverageAccumulator();
 		}
 		ica_raw = initIntervalCoverageAccumulator();
+		if (WORKER_THREADS > 1) {
+			// lazily initialised so ensure it's created before we start our worker threads
+			getReadPairConcordanceCalculator();
+			threadpool = Executors.newFixedThreadPool(WORKER_THREADS, new ThreadFactoryBuilder().setDaemon(true).setNameFormat("ComputeCoverage-%d").build());
+			batchesInFlight = new Semaphore(2 * WORKER_THREADS);
+			batch = new ArrayList<>(READS_PER_BATCH);
+		}
 	}
 	private IntervalCoverageAccumulator initIntervalCoverageAccumulator() {
 		SAMSequenceDictionary dictionary = getReference().getSequenceDictionary();
+		int binsPerShard = WORKER_THREADS > 1 ? BINS_PER_SHARD : Integer.MAX_VALUE / BIN_SIZE;
 		if (VCF == null) {
-			return new IntervalCoverageAccumulator(COVERAGE_METHOD, dictionary, BIN_SIZE, null);
+			return new IntervalCoverageAccumulator(COVERAGE_METHOD, dictionary, BIN_SIZE, binsPerShard, null);
 		} else {
 			try (VCFFileReader vcfReader = new VCFFileReader(VCF, false)) {
 				try (CloseableIterator<VariantContext> it = vcfReader.iterator()) {
 					Iterator<IdsvVariantContext> idsvIt = Iterators.transform(it, variant -> IdsvVariantContext.create(dictionary, null, variant));
 					Iterator<VariantContextDirectedEvidence> bpit = Iterators.filter(idsvIt, VariantContextDirectedEvidence.class);
-					return new IntervalCoverageAccumulator(COVERAGE_METHOD, dictionary, BIN_SIZE, bpit);
+					return new IntervalCoverageAccumulator(COVERAGE_METHOD, dictionary, BIN_SIZE, binsPerShard, bpit);
 				}
 			}
 		}
@@ -83,14 +123,65 @@ public class ComputeCoverage extends GcSinglePassSamProgram {
 	@Override
 	protected void acceptRead(SAMRecord record, ReferenceSequence refSeq) {
 		if (record.getDuplicateReadFlag() && !INCLUDE_DUPLICATES) return;
+		if (threadpool == null) {
+			addRead(record, refSeq);
+			return;
+		}
+		if (batchRefSeq != refSeq || batch.size() >= READS_PER_BATCH) {
+			dispatchBatch();
+		}
+		batchRefSeq = refSeq;
+		batch.add(record);
+	}
+	private void addRead(SAMRecord record, ReferenceSequence refSeq) {
 		ReadGcSummary gc = new ReadGcSummary(record, refSeq, UNPAIRED_FRAGMENT_SIZE, getReadPairConcordanceCalculator());
 		if (ica_gc != null) {
 			ica_gc.add(record, gc, gcAdjust.adjustmentMultiplier((int)gc.gcPercentage));
 		}
 		ica_raw.add(record, gc, 1.0);
 	}
+	private void dispatchBatch() {
+		if (workerFailure.get() != null) {
+			throw new RuntimeException("Error computing coverage", workerFailure.get());
+		}
+		if (batch.isEmpty()) return;
+		final List<SAMRecord> toProcess = batch;
+		final ReferenceSequence refSeq = batchRefSeq;
+		batch = new ArrayList<>(READS_PER_BATCH);
+		batchesInFlight.acquireUninterruptibly();
+		threadpool.execute(() -> {
+			try {
+				for (SAMRecord r : toProcess) {
+					addRead(r, refSeq);
+				}
+			} catch (Throwable t) {
+				log.error(t, "Error computing coverage");
+				workerFailure.compareAndSet(null, t);
+			} finally {
+				batchesInFlight.release();
+			}
+		});
+	}
+	private void awaitWorkers() {
+		if (threadpool == null) return;
+		dispatchBatch();
+		threadpool.shutdown();
+		try {
+			while (!threadpool.awaitTermination(1, TimeUnit.MINUTES)) {
+				log.debug("Waiting for coverage calculation to complete.");
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		}
+		threadpool = null;
+		if (workerFailure.get() != null) {
+			throw new RuntimeException("Error computing coverage", workerFailure.get());
+		}
+	}
 	@Override
 	protected void finish() {
+		awaitWorkers();
 		// Write BED files
 		try {
 			ica_raw.writeToBed(OUTPUT);
@@ -35,11 +35,20 @@ public class ExtractSVReads extends ProcessStructuralVariantReadsCommandLineProg
     private SamRecordFilter readfilter;
     private SamRecordFilter pairfilter;
     private int count;
+    /**
+     * Writes extracted reads to the given writer instead of OUTPUT.
+     * The writer is closed when extraction completes.
+     */
+    public void setOutputWriter(SAMFileWriter writer) {
+    	this.writer = writer;
+    }
     @Override
     protected void setup(SAMFileHeader header, File samFile) {
-    	SAMFileWriterFactory writerFactory = new SAMFileWriterFactory();
-    	tmpoutput = gridss.Defaults.OUTPUT_TO_TEMP_FILE ? FileSystemContext.getWorkingFileFor(OUTPUT, "gridss.tmp.ExtractSVReads.") : OUTPUT;
-    	writer = writerFactory.makeSAMOrBAMWriter(header, true, tmpoutput);
+    	if (writer == null) {
+    		SAMFileWriterFactory writerFactory = new SAMFileWriterFactory();
+    		tmpoutput = gridss.Defaults.OUTPUT_TO_TEMP_FILE ? FileSystemContext.getWorkingFileFor(OUTPUT, "gridss.tmp.ExtractSVReads.") : OUTPUT;
+    		writer = writerFactory.makeSAMOrBAMWriter(header, true, tmpoutput);
+    	}
     	
     	IndelReadFilter indelFilter = new IndelReadFilter(INDELS ? MIN_INDEL_SIZE : Integer.MAX_VALUE);
 		ClippedReadFilter softClipFilter = new ClippedReadFilter(CLIPPED ? MIN_CLIP_LENGTH : Integer.MAX_VALUE, SPLIT);
@@ -182,7 +191,7 @@ public class ExtractSVReads extends ProcessStructuralVariantReadsCommandLineProg
 	protected void finish() {
 		writer.close();
 		try {
-			if (tmpoutput != OUTPUT) {
+			if (tmpoutput != null && tmpoutput != OUTPUT) {
 				FileHelper.move(tmpoutput, OUTPUT, true);
 			}
 			log.info(String.format("Extracted %d reads from %s", count, INPUT));
@@ -0,0 +1,199 @@
+package gridss;
+
+import gridss.cmdline.ResidentResources;
+import htsjdk.samtools.util.IOUtil;
+import htsjdk.samtools.util.Log;
+import org.broadinstitute.barclay.argparser.Argument;
+import org.broadinstitute.barclay.argparser.CommandLineProgramProperties;
+import picard.cmdline.CommandLineProgram;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Runs GRIDSS command line programs in a single long-lived JVM.
+ *
+ * The reference genome, bwa index image and worker thread pools are loaded once
+ * and kept resident between invocations.
+ *
+ * Requests are accepted on the loopback interface. The port and a random
+ * authentication token are written to PORT_FILE. Each request consists of the lines:
+ * <pre>
+ * token
+ * working directory
+ * argument count
+ * program class name
+ * program arguments (one per line)
+ * </pre>
+ * The output of the program is returned to the client followed by an exit status line.
+ * Requests are processed one at a time.
+ */
+@CommandLineProgramProperties(
+		summary = "Runs GRIDSS command line programs in a persistent JVM. "
+				+ "The reference genome, bwa index image and worker thread pools are kept loaded between invocations. "
+				+ "Requests must originate from the same working directory as the daemon.",
+		oneLineSummary = "Runs GRIDSS command line programs in a persistent JVM.",
+		programGroup = gridss.cmdline.programgroups.DataConversion.class
+)
+public class GridssDaemon extends CommandLineProgram {
+	private static final Log log = Log.getInstance(GridssDaemon.class);
+	/**
+	 * Prefix of the final line written in response to each request
+	 */
+	public static final String EXIT_STATUS_PREFIX = "GRIDSS_DAEMON_EXIT ";
+	public static final String SHUTDOWN_COMMAND = "SHUTDOWN";
+	private static final String PROGRAM_PACKAGE_PREFIX = "gridss.";
+	@Argument(doc="File to write the listening port and authentication token to.")
+	public File PORT_FILE;
+	@Argument(doc="Port to listen on. Defaults to any available port.", optional=true)
+	public int PORT = 0;
+	@Argument(doc="Shut down after this many seconds without a request. Zero to wait indefinitely.", optional=true)
+	public int IDLE_TIMEOUT = 0;
+	private String token;
+	private String workingDirectory;
+	@Override
+	protected int doWork() {
+		IOUtil.assertFileIsWritable(PORT_FILE);
+		token = generateToken();
+		workingDirectory = new File(System.getProperty("user.dir")).getAbsolutePath();
+		ResidentResources.setEnabled(true);
+		try (ServerSocket server = new ServerSocket(PORT, 0, InetAddress.getLoopbackAddress())) {
+			server.setSoTimeout(IDLE_TIMEOUT * 1000);
+			writePortFile(server.getLocalPort());
+			log.info(String.format("Listening on port %d", server.getLocalPort()));
+			boolean running = true;
+			while (running) {
+				try (Socket socket = server.accept()) {
+					running = handle(socket);
+				} catch (SocketTimeoutException e) {
+					log.info("Idle timeout reached");
+					running = false;
+				} catch (IOException e) {
+					log.warn(e, "Error processing request");
+				}
+			}
+		} catch (IOException e) {
+			log.error(e, "Unable to start daemon");
+			return 1;
+		} finally {
+			PORT_FILE.delete();
+			ResidentResources.release();
+			ResidentResources.setEnabled(false);
+		}
+		return 0;
+	}
+	private static String generateToken() {
+		byte[] bytes = new byte[16];
+		new SecureRandom().nextBytes(bytes);
+		StringBuilder sb = new StringBuilder();
+		for (byte b : bytes) {
+			sb.append(String.format("%02x", b));
+		}
+		return sb.toString();
+	}
+	private void writePortFile(int port) throws IOException {
+		File tmp = new File(PORT_FILE.getAbsolutePath() + ".tmp");
+		Files.write(tmp.toPath(), String.format("%d %s\n", port, token).getBytes(StandardCharsets.US_ASCII));
+		try {
+			Files.setPosixFilePermissions(tmp.toPath(), PosixFilePermissions.fromString("rw-------"));
+		} catch (UnsupportedOperationException e) {
+			log.warn("Unable to restrict access to " + PORT_FILE);
+		}
+		Files.move(tmp.toPath(), PORT_FILE.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+	/**
+	 * Processes a single request
+	 * @return false if the daemon should shut down
+	 */
+	private boolean handle(Socket socket) throws IOException {
+		BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+		PrintStream out = new PrintStream(new BufferedOutputStream(socket.getOutputStream()), true, StandardCharsets.UTF_8.name());
+		String requestToken = in.readLine();
+		if (requestToken == null || !MessageDigest.isEqual(token.getBytes(StandardCharsets.US_ASCII), requestToken.getBytes(StandardCharsets.US_ASCII))) {
+			log.warn("Rejecting request with invalid token");
+			out.println(EXIT_STATUS_PREFIX + 1);
+			return true;
+		}
+		String cwd = in.readLine();
+		List<String> args = new ArrayList<>();
+		try {
+			int argc = Integer.parseInt(in.readLine());
+			for (int i = 0; i < argc; i++) {
+				String arg = in.readLine();
+				if (arg == null) throw new EOFException();
+				args.add(arg);
+			}
+		} catch (NumberFormatException | EOFException e) {
+			out.println("Malformed request");
+			out.println(EXIT_STATUS_PREFIX + 1);
+			return true;
+		}
+		if (args.size() == 1 && args.get(0).equals(SHUTDOWN_COMMAND)) {
+			out.println(EXIT_STATUS_PREFIX + 0);
+			return false;
+		}
+		if (cwd == null || !new File(cwd).getAbsolutePath().equals(workingDirectory)) {
+			// Relative paths in the arguments are resolved against the JVM working directory
+			out.println(String.format("Request from %s does not match daemon working directory %s", cwd, workingDirectory));
+			out.println(EXIT_STATUS_PREFIX + 1);
+			return true;
+		}
+		int result = run(args, out);
+		out.println(EXIT_STATUS_PREFIX + result);
+		return true;
+	}
+	private int run(List<String> args, PrintStream out) {
+		if (args.isEmpty()) {
+			out.println("Missing program name");
+			return 1;
+		}
+		CommandLineProgram program;
+		try {
+			String programName = args.get(0);
+			if (!programName.startsWith(PROGRAM_PACKAGE_PREFIX)) {
+				throw new IllegalArgumentException(programName + " is not a GRIDSS command line program");
+			}
+			Class<?> c = Class.forName(programName);
+			if (!CommandLineProgram.class.isAssignableFrom(c) || c == GridssDaemon.class) {
+				throw new IllegalArgumentException(programName + " is not a GRIDSS command line program");
+			}
+			program = (CommandLineProgram)c.newInstance();
+		} catch (ReflectiveOperationException | IllegalArgumentException e) {
+			out.println(e.getMessage());
+			return 1;
+		}
+		log.info("Running " + String.join(" ", args));
+		PrintStream stdout = System.out;
+		PrintStream stderr = System.err;
+		PrintStream logStream = Log.getGlobalPrintStream();
+		System.setOut(out);
+		System.setErr(out);
+		Log.setGlobalPrintStream(out);
+		try {
+			return program.instanceMain(args.subList(1, args.size()).toArray(new String[0]));
+		} catch (Throwable t) {
+			t.printStackTrace(out);
+			return 1;
+		} finally {
+			out.flush();
+			System.setOut(stdout);
+			System.setErr(stderr);
+			Log.setGlobalPrintStream(logStream);
+			log.info("Completed " + args.get(0));
+		}
+	}
+	public static void main(String[] argv) {
+		System.exit(new GridssDaemon().instanceMain(argv));
+	}
+}
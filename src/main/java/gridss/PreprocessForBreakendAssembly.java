@@ -5,6 +5,7 @@ import au.edu.wehi.idsv.GenomicProcessingContext;
 import au.edu.wehi.idsv.SAMRecordChangeTracker;
 import au.edu.wehi.idsv.StreamingSplitReadRealigner;
 import au.edu.wehi.idsv.alignment.BwaStreamingAligner;
+import au.edu.wehi.idsv.alignment.CachingStreamingAligner;
 import au.edu.wehi.idsv.alignment.StreamingAligner;
 import au.edu.wehi.idsv.sam.SamTags;
 import au.edu.wehi.idsv.util.AsyncBufferedIterator;
@@ -44,6 +45,8 @@ public class PreprocessForBreakendAssembly extends ReferenceCommandLineProgram {
 	public SoftClipsToSplitReads.Aligner ALIGNER = SoftClipsToSplitReads.Aligner.BWAMEM;
 	@Argument(doc="Number of records to buffer when performing in-process or streaming alignment. Not applicable when performing external alignment.", optional=true)
 	public int ALIGNER_BATCH_SIZE = 100000;
+	@Argument(doc="Number of distinct sequences to cache alignments for. Identical soft clipped sequences are sent to the aligner only once. Set to 0 to disable.", optional=true)
+	public int ALIGNER_CACHE_SIZE = 10000;
 	@Argument(shortName= StandardOptionDefinitions.INPUT_SHORT_NAME, doc="Input BAM file grouped by read name.")
 	public File INPUT;
 	@Argument(shortName=StandardOptionDefinitions.OUTPUT_SHORT_NAME, doc="Unsorted BAM file with tags corrected and split reads identified.")
@@ -83,6 +86,48 @@ public class PreprocessForBreakendAssembly extends ReferenceCommandLineProgram {
 		IOUtil.assertFileIsWritable(OUTPUT);
 		IOUtil.assertFileIsReadable(REFERENCE_SEQUENCE);
 
+		String threadPrefix = INPUT.getName() + "-";
+		try {
+			SamReaderFactory readerFactory = SamReaderFactory.makeDefault().referenceSequence(REFERENCE_SEQUENCE);
+			SAMFileWriterFactory writerFactory = new SAMFileWriterFactory();
+			try (SamReader reader = readerFactory.open(INPUT)) {
+				SAMFileHeader header = reader.getFileHeader();
+				if (!ASSUME_SORTED) {
+					if (header.getSortOrder() != SAMFileHeader.SortOrder.queryname) {
+						log.error("INPUT is not sorted by queryname. "
+								+ "ComputeSamTags requires that reads with the same name be sorted together. "
+								+ "If the input file satisfies this constraint (the output from many aligners do),"
+								+ " this check can be disabled with the ASSUME_SORTED option.");
+						return -1;
+					}
+				}
+				// strip header because our output is unordered
+				header.setSortOrder(SAMFileHeader.SortOrder.unsorted);
+				try (SAMRecordIterator it = reader.iterator()) {
+					File tmpOutput = gridss.Defaults.OUTPUT_TO_TEMP_FILE ? FileSystemContext.getWorkingFileFor(OUTPUT, "gridss.tmp.PreprocessForBReakendAssembly.") : OUTPUT;
+					try (SAMFileWriter writer = writerFactory.makeSAMOrBAMWriter(header, true, tmpOutput)) {
+						process(it, writer, threadPrefix);
+					}
+					if (tmpOutput != OUTPUT) {
+						FileHelper.move(tmpOutput, OUTPUT, true);
+					}
+				}
+			}
+		} catch (IOException e) {
+			log.error(e);
+			return -1;
+		}
+		return 0;
+	}
+
+	/**
+	 * Computes SAM tags and realigns soft clipped bases of the given records.
+	 * Records with the same read name must be consecutive.
+	 * @param it input records
+	 * @param writer unordered output
+	 * @param threadPrefix prefix of the background thread names
+	 */
+	public void process(Iterator<SAMRecord> it, SAMFileWriter writer, String threadPrefix) throws IOException {
 		GenomicProcessingContext pc = new GenomicProcessingContext(getFileSystemContext(), REFERENCE_SEQUENCE, getReference());
 		StreamingAligner sa;
 		StreamingSplitReadRealigner realigner;
@@ -99,6 +144,9 @@ public class PreprocessForBreakendAssembly extends ReferenceCommandLineProgram {
 			default:
 				throw new IllegalArgumentException("Aligner not supported by PreprocessForBreakendAssembly");
 		}
+		if (ALIGNER_CACHE_SIZE > 0) {
+			sa = new CachingStreamingAligner(sa, ALIGNER_CACHE_SIZE);
+		}
 		realigner = new StreamingSplitReadRealigner(pc, sa, ALIGNER_BATCH_SIZE);
 		realigner.setFallbackBaseQuality(FALLBACK_BASE_QUALITY);
 		realigner.setMinSoftClipLength(MIN_CLIP_LENGTH);
@@ -114,48 +162,17 @@ public class PreprocessForBreakendAssembly extends ReferenceCommandLineProgram {
 		tags.WORKER_THREADS = -1; // don't use ComputeSamTags workers - we're handling this ourselves
 		tags.MODIFICATION_SUMMARY_FILE = MODIFICATION_SUMMARY_FILE;
 		tags.REMOVE_TAGS = ImmutableList.of(SamTags.IS_ASSEMBLY);
-		String threadPrefix = INPUT.getName() + "-";
-		try {
-			SamReaderFactory readerFactory = SamReaderFactory.makeDefault().referenceSequence(REFERENCE_SEQUENCE);
-			SAMFileWriterFactory writerFactory = new SAMFileWriterFactory();
-			try (SamReader reader = readerFactory.open(INPUT)) {
-				SAMFileHeader header = reader.getFileHeader();
-				if (!ASSUME_SORTED) {
-					if (header.getSortOrder() != SAMFileHeader.SortOrder.queryname) {
-						log.error("INPUT is not sorted by queryname. "
-								+ "ComputeSamTags requires that reads with the same name be sorted together. "
-								+ "If the input file satisfies this constraint (the output from many aligners do),"
-								+ " this check can be disabled with the ASSUME_SORTED option.");
-						return -1;
-					}
-				}
-				// strip header because our output is unordered
-				header.setSortOrder(SAMFileHeader.SortOrder.unsorted);
-				SAMRecordChangeTracker tracker = null;
-				if (MODIFICATION_SUMMARY_FILE != null) {
-					tracker = new SAMRecordChangeTracker();
-				}
-				try (SAMRecordIterator it = reader.iterator()) {
-					File tmpOutput = gridss.Defaults.OUTPUT_TO_TEMP_FILE ? FileSystemContext.getWorkingFileFor(OUTPUT, "gridss.tmp.PreprocessForBReakendAssembly.") : OUTPUT;
-					try (SAMFileWriter writer = writerFactory.makeSAMOrBAMWriter(header, true, tmpOutput)) {
-						CloseableIterator<SAMRecord> asyncIn = new AsyncBufferedIterator<>(it, threadPrefix + "raw");
-						// We can reuse the non-blocking task thread pool since the transforms aren't blocking operations
-						Iterator<SAMRecord> tagFixedIt = tags.transform(AsyncReadTaskRunner.getNonBlockingThreadpool(), Defaults.ASYNC_BUFFER_SIZE, asyncIn, tracker);
-						realigner.process(tagFixedIt, writer, writer);
-					}
-					if (tmpOutput != OUTPUT) {
-						FileHelper.move(tmpOutput, OUTPUT, true);
-					}
-				}
-				if (tracker != null) {
-					tracker.writeSummary(MODIFICATION_SUMMARY_FILE);
-				}
-			}
-			sa.close();
-		} catch (IOException e) {
-			log.error(e);
-			return -1;
+		SAMRecordChangeTracker tracker = null;
+		if (MODIFICATION_SUMMARY_FILE != null) {
+			tracker = new SAMRecordChangeTracker();
 		}
-		return 0;
+		CloseableIterator<SAMRecord> asyncIn = new AsyncBufferedIterator<>(it, threadPrefix + "raw");
+		// We can reuse the non-blocking task thread pool since the transforms aren't blocking operations
+		Iterator<SAMRecord> tagFixedIt = tags.transform(AsyncReadTaskRunner.getNonBlockingThreadpool(), Defaults.ASYNC_BUFFER_SIZE, asyncIn, tracker);
+		realigner.process(tagFixedIt, writer, writer);
+		if (tracker != null) {
+			tracker.writeSummary(MODIFICATION_SUMMARY_FILE);
+		}
+		sa.close();
 	}
 }
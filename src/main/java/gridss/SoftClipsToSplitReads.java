@@ -5,8 +5,11 @@ import au.edu.wehi.idsv.IterativeSplitReadRealigner;
 import au.edu.wehi.idsv.SplitReadRealigner;
 import au.edu.wehi.idsv.StreamingSplitReadRealigner;
 import au.edu.wehi.idsv.alignment.BwaStreamingAligner;
+import au.edu.wehi.idsv.alignment.CachingStreamingAligner;
 import au.edu.wehi.idsv.alignment.ExternalProcessFastqAligner;
 import au.edu.wehi.idsv.alignment.ExternalProcessStreamingAligner;
+import au.edu.wehi.idsv.alignment.ExternalProcessStreamingAlignerPool;
+import au.edu.wehi.idsv.alignment.StreamingAligner;
 import com.google.common.collect.Lists;
 import gridss.cmdline.ReferenceCommandLineProgram;
 import htsjdk.samtools.SAMFileWriterFactory;
@@ -64,10 +67,16 @@ public class SoftClipsToSplitReads extends ReferenceCommandLineProgram {
 	public Aligner ALIGNER = Aligner.EXTERNAL;
 	@Argument(doc="Number of records to buffer when performing in-process or streaming alignment. Not applicable when performing external alignment.", optional=true)
 	public int ALIGNER_BATCH_SIZE = MAX_RECORDS_IN_RAM;
+	@Argument(doc="Number of distinct sequences to cache alignments for when performing in-process or streaming alignment. "
+			+ "Identical soft clipped sequences are sent to the aligner only once. Set to 0 to disable.", optional=true)
+	public int ALIGNER_CACHE_SIZE = 10000;
     @Argument(doc="Directly pipe the input and output of the aligner instead of writing to intermediate files."
 			+ " The aligner must support using \"-\" as the input filename when reading from stdin."
 			+ " The sort order of the input file will not be retained.", optional=true)
 	public boolean ALIGNER_STREAMING = false;
+	@Argument(doc="Number of external aligner processes to run when performing streaming alignment. "
+			+ "WORKER_THREADS are evenly split across the aligner processes.", optional=true)
+	public int ALIGNER_PROCESSES = 1;
     @Argument(doc="Command line arguments to run external aligner. Aligner output should be written to stdout and the records MUST match the input fastq order."
     		+ "Java argument formatting is used with %1$s being the fastq file to align, "
     		+ "%2$s the reference genome, and %3$d the number of threads to use.", optional=true)
@@ -97,14 +106,20 @@ public class SoftClipsToSplitReads extends ReferenceCommandLineProgram {
         	SAMFileWriterFactory writerFactory = new SAMFileWriterFactory();
         	switch (ALIGNER) {
 				case BWAMEM:
-					BwaStreamingAligner bwaAligner = new BwaStreamingAligner(REFERENCE_SEQUENCE, getReference().getSequenceDictionary(), WORKER_THREADS, ALIGNER_BATCH_SIZE * 150);
+					StreamingAligner bwaAligner = withCache(new BwaStreamingAligner(REFERENCE_SEQUENCE, getReference().getSequenceDictionary(), WORKER_THREADS, ALIGNER_BATCH_SIZE * 150));
 					realigner = new StreamingSplitReadRealigner(pc, bwaAligner, ALIGNER_BATCH_SIZE);
 					toClose.add(bwaAligner);
 					break;
 				case EXTERNAL:
 				default:
 					if (ALIGNER_STREAMING) {
-						ExternalProcessStreamingAligner streamingAligner = new ExternalProcessStreamingAligner(readerFactory, ALIGNER_COMMAND_LINE, REFERENCE_SEQUENCE, WORKER_THREADS, getReference().getSequenceDictionary());
+						StreamingAligner streamingAligner;
+						if (ALIGNER_PROCESSES > 1) {
+							streamingAligner = new ExternalProcessStreamingAlignerPool(readerFactory, ALIGNER_COMMAND_LINE, REFERENCE_SEQUENCE, WORKER_THREADS, getReference().getSequenceDictionary(), ALIGNER_PROCESSES, ExternalProcessStreamingAlignerPool.DEFAULT_BATCH_SIZE);
+						} else {
+							streamingAligner = new ExternalProcessStreamingAligner(readerFactory, ALIGNER_COMMAND_LINE, REFERENCE_SEQUENCE, WORKER_THREADS, getReference().getSequenceDictionary());
+						}
+						streamingAligner = withCache(streamingAligner);
 						toClose.add(streamingAligner);
 						realigner = new StreamingSplitReadRealigner(pc, streamingAligner, ALIGNER_BATCH_SIZE);
 					} else {
@@ -134,8 +149,18 @@ public class SoftClipsToSplitReads extends ReferenceCommandLineProgram {
     	return 0;
 	}
     
+	private StreamingAligner withCache(StreamingAligner aligner) {
+		if (ALIGNER_CACHE_SIZE > 0) {
+			return new CachingStreamingAligner(aligner, ALIGNER_CACHE_SIZE);
+		}
+		return aligner;
+	}
+
 	private void validateParameters() {
     	IOUtil.assertFileIsReadable(INPUT);
+    	if (ALIGNER_PROCESSES < 1) {
+    		throw new IllegalArgumentException("ALIGNER_PROCESSES must be at least 1.");
+		}
     	IOUtil.assertFileIsWritable(OUTPUT);
     	if (OUTPUT_UNORDERED_RECORDS != null) {
 			IOUtil.assertFileIsWritable(OUTPUT_UNORDERED_RECORDS);
@@ -0,0 +1,45 @@
+package gridss;
+
+import au.edu.wehi.idsv.visualisation.BinaryTelemetryReader;
+import htsjdk.samtools.util.IOUtil;
+import htsjdk.samtools.util.Log;
+import org.broadinstitute.barclay.argparser.Argument;
+import org.broadinstitute.barclay.argparser.CommandLineProgramProperties;
+import picard.cmdline.CommandLineProgram;
+import picard.cmdline.StandardOptionDefinitions;
+
+import java.io.File;
+import java.io.IOException;
+
+@CommandLineProgramProperties(
+		summary = "Converts GRIDSS binary telemetry to the equivalent text telemetry files. "
+				+ "One file is written to the output directory for each telemetry stream.",
+        oneLineSummary = "Converts GRIDSS binary telemetry to text.",
+        programGroup = gridss.cmdline.programgroups.DataConversion.class
+)
+public class TelemetryToCsv extends CommandLineProgram {
+	private static final Log log = Log.getInstance(TelemetryToCsv.class);
+	@Argument(shortName= StandardOptionDefinitions.INPUT_SHORT_NAME, doc="Binary telemetry file", optional=false)
+	public File INPUT;
+	@Argument(shortName=StandardOptionDefinitions.OUTPUT_SHORT_NAME, doc="Output directory", optional=false)
+	public File OUTPUT;
+
+	@Override
+	protected int doWork() {
+		IOUtil.assertFileIsReadable(INPUT);
+		try {
+			long dropped = BinaryTelemetryReader.convert(INPUT, OUTPUT);
+			if (dropped > 0) {
+				log.warn(String.format("%d telemetry records were dropped when writing %s", dropped, INPUT));
+			}
+		} catch (IOException e) {
+			log.error(e);
+			return -1;
+		}
+		return 0;
+	}
+
+	public static void main(String[] argv) {
+		System.exit(new TelemetryToCsv().instanceMain(argv));
+	}
+}
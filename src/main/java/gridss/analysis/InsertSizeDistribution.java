@@ -20,6 +20,8 @@ public class InsertSizeDistribution extends CachedEnumeratedIntegerDistribution
 	 */
 	private static final long serialVersionUID = -2332020573213102253L;
 	private final long total;
+	private final int[] singletons;
+	private final double[] readCounts;
 	public long getTotalMappedPairs() {
 		return total;
 	}
@@ -63,6 +65,26 @@ public class InsertSizeDistribution extends CachedEnumeratedIntegerDistribution
 	private InsertSizeDistribution(int[] singletons, double[] readCounts, long readTotal) {
 		super(singletons, readCounts);
 		this.total = readTotal;
+		this.singletons = singletons.clone();
+		this.readCounts = readCounts.clone();
+	}
+	/**
+	 * Cumulative probability of each fragment size from the support lower bound to the support upper bound inclusive.
+	 * @return cumulative probabilities indexed by fragment size offset from the support lower bound
+	 */
+	public double[] cumulativeProbabilityTable() {
+		int lower = getSupportLowerBound();
+		double[] cdf = new double[getSupportUpperBound() - lower + 1];
+		double sum = Arrays.stream(readCounts).sum();
+		for (int i = 0; i < singletons.length; i++) {
+			if (readCounts[i] > 0) {
+				cdf[singletons[i] - lower] += readCounts[i] / sum;
+			}
+		}
+		for (int i = 1; i < cdf.length; i++) {
+			cdf[i] += cdf[i - 1];
+		}
+		return cdf;
 	}
 	public double descendingCumulativeProbability(int x) {
 		return 1.0 - cumulativeProbability(x - 1);
@@ -169,7 +169,13 @@ public abstract class MultipleSamFileCommandLineProgram extends ReferenceCommand
     		ensureSequenceDictionary(REFERENCE_SEQUENCE);
     		ensureDictionariesMatch();
     		log.info(String.format("Using %d worker threads", WORKER_THREADS));
-    		threadpool = Executors.newFixedThreadPool(getContext().getWorkerThreadCount(), new ThreadFactoryBuilder().setDaemon(false).setNameFormat("Worker-%d").build());
+    		if (ResidentResources.isEnabled()) {
+    			// resident thread pools are reused by subsequent invocations.
+    			// Shutting down our view only cancels the tasks of this invocation
+    			threadpool = ResidentResources.getWorkerThreadpool(getContext().getWorkerThreadCount());
+    		} else {
+    			threadpool = Executors.newFixedThreadPool(getContext().getWorkerThreadCount(), new ThreadFactoryBuilder().setDaemon(false).setNameFormat("Worker-%d").build());
+    		}
     		return doWork(threadpool);
 		} catch (IOException | InterruptedException | ExecutionException e) {
 			log.error(e);
@@ -53,16 +53,23 @@ public abstract class ReferenceCommandLineProgram extends CommandLineProgram {
 		if (reference == null) {
 			IOUtil.assertFileIsReadable(REFERENCE_SEQUENCE);
 			ensureSequenceDictionary(REFERENCE_SEQUENCE);
-			try {
-				reference = new TwoBitBufferedReferenceSequenceFile(new IndexedFastaSequenceFile(REFERENCE_SEQUENCE));
-			} catch (FileNotFoundException e) {
-				String msg = String.format("Missing reference genome %s", REFERENCE_SEQUENCE);
-				log.error(msg);
-				throw new RuntimeException(msg);
+			if (ResidentResources.isEnabled()) {
+				reference = ResidentResources.getReference(REFERENCE_SEQUENCE);
+			} else {
+				reference = loadReference(REFERENCE_SEQUENCE);
 			}
 		}
 		return reference;
 	}
+	private static ReferenceLookup loadReference(File referenceFile) {
+		try {
+			return new TwoBitBufferedReferenceSequenceFile(new IndexedFastaSequenceFile(referenceFile));
+		} catch (FileNotFoundException e) {
+			String msg = String.format("Missing reference genome %s", referenceFile);
+			log.error(msg);
+			throw new RuntimeException(msg);
+		}
+	}
 	/**
 	 * Ensures that a sequence dictionary exists for the given reference
 	 * @param referenceFile reference genome fasta
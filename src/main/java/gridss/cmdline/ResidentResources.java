@@ -0,0 +1,174 @@
+package gridss.cmdline;
+
+import au.edu.wehi.idsv.GenomicProcessingContext;
+import au.edu.wehi.idsv.picard.ReferenceLookup;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import htsjdk.samtools.util.Log;
+import org.broadinstitute.hellbender.utils.bwa.BwaMemIndex;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Function;
+
+/**
+ * Resources that are kept loaded between command line program invocations
+ * when GRIDSS is running as a worker daemon.
+ *
+ * When not enabled, every lookup loads a new instance of the resource.
+ *
+ * Resident resources are owned by this class and must not be closed by the caller.
+ */
+public class ResidentResources {
+	private static final Log log = Log.getInstance(ResidentResources.class);
+	private static volatile boolean enabled = false;
+	private static final Map<String, ReferenceLookup> references = new HashMap<>();
+	private static final Map<String, BwaMemIndex> bwaIndexes = new HashMap<>();
+	private static final Map<Integer, ExecutorService> workerThreadpools = new HashMap<>();
+	public static boolean isEnabled() {
+		return enabled;
+	}
+	public static void setEnabled(boolean enabled) {
+		ResidentResources.enabled = enabled;
+	}
+	/**
+	 * Resources are keyed by file location and modification time so
+	 * a regenerated file is reloaded
+	 */
+	private static String key(File file) {
+		try {
+			return file.getCanonicalPath() + "\t" + file.lastModified() + "\t" + file.length();
+		} catch (IOException e) {
+			return file.getAbsolutePath() + "\t" + file.lastModified() + "\t" + file.length();
+		}
+	}
+	/**
+	 * Gets the resident reference genome lookup.
+	 * All callers share the same synchronized lookup so it is always loaded the same way.
+	 * @param referenceFile reference genome
+	 * @return resident reference genome lookup
+	 */
+	public static ReferenceLookup getReference(File referenceFile) {
+		if (!enabled) throw new IllegalStateException("Resident resources not enabled");
+		synchronized (references) {
+			return references.computeIfAbsent(key(referenceFile), k -> {
+				log.info("Loading resident reference genome " + referenceFile);
+				return GenomicProcessingContext.LoadSynchronizedReference(referenceFile);
+			});
+		}
+	}
+	/**
+	 * Gets the resident bwa index image
+	 * @param image bwa index image
+	 * @param loader loads the bwa index if it is not already resident
+	 * @return resident bwa index
+	 */
+	public static BwaMemIndex getBwaIndex(File image, Function<File, BwaMemIndex> loader) {
+		if (!enabled) throw new IllegalStateException("Resident resources not enabled");
+		synchronized (bwaIndexes) {
+			return bwaIndexes.computeIfAbsent(key(image), k -> {
+				log.info("Loading resident bwa index " + image);
+				return loader.apply(image);
+			});
+		}
+	}
+	/**
+	 * Gets a view of the resident worker thread pool of the given size.
+	 * Shutting down the returned view cancels the tasks submitted through it
+	 * without shutting down the underlying resident thread pool. Each invocation
+	 * should use its own view and shut it down on completion.
+	 */
+	public static ExecutorService getWorkerThreadpool(int threads) {
+		if (!enabled) throw new IllegalStateException("Resident resources not enabled");
+		synchronized (workerThreadpools) {
+			return new InvocationExecutorService(workerThreadpools.computeIfAbsent(threads, k -> Executors.newFixedThreadPool(threads,
+					new ThreadFactoryBuilder().setDaemon(true).setNameFormat("ResidentWorker" + threads + "-%d").build())));
+		}
+	}
+	/**
+	 * Tracks the tasks submitted to a shared thread pool so they can be
+	 * cancelled and drained independently of the shared pool.
+	 */
+	private static class InvocationExecutorService extends AbstractExecutorService {
+		private final ExecutorService underlying;
+		private final Set<FutureTask<?>> outstanding = new HashSet<>();
+		private boolean shutdown = false;
+		private InvocationExecutorService(ExecutorService underlying) {
+			this.underlying = underlying;
+		}
+		@Override
+		public void execute(Runnable command) {
+			FutureTask<Void> task = new FutureTask<>(command, null);
+			synchronized (this) {
+				if (shutdown) throw new RejectedExecutionException("Invocation thread pool has been shut down");
+				outstanding.add(task);
+			}
+			underlying.execute(() -> {
+				try {
+					task.run();
+				} finally {
+					synchronized (this) {
+						outstanding.remove(task);
+						notifyAll();
+					}
+				}
+			});
+		}
+		@Override
+		public synchronized void shutdown() {
+			shutdown = true;
+		}
+		@Override
+		public synchronized List<Runnable> shutdownNow() {
+			shutdown = true;
+			for (FutureTask<?> task : outstanding) {
+				task.cancel(true);
+			}
+			return new ArrayList<>();
+		}
+		@Override
+		public synchronized boolean isShutdown() {
+			return shutdown;
+		}
+		@Override
+		public synchronized boolean isTerminated() {
+			return shutdown && outstanding.isEmpty();
+		}
+		@Override
+		public synchronized boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+			long deadline = System.nanoTime() + unit.toNanos(timeout);
+			while (!isTerminated()) {
+				long remaining = deadline - System.nanoTime();
+				if (remaining <= 0) return false;
+				TimeUnit.NANOSECONDS.timedWait(this, remaining);
+			}
+			return true;
+		}
+	}
+	/**
+	 * Releases all resident resources
+	 */
+	public static void release() {
+		synchronized (workerThreadpools) {
+			for (ExecutorService threadpool : workerThreadpools.values()) {
+				threadpool.shutdownNow();
+			}
+			workerThreadpools.clear();
+		}
+		synchronized (references) {
+			for (ReferenceLookup ref : references.values()) {
+				try {
+					ref.close();
+				} catch (IOException e) {
+					log.warn(e, "Error closing reference genome");
+				}
+			}
+			references.clear();
+		}
+		synchronized (bwaIndexes) {
+			// bwa indexes can't be closed while any aligner is in use (see BwaAligner.close())
+			bwaIndexes.clear();
+		}
+	}
+}
@@ -69,6 +69,9 @@ public class BAMFileReader extends SamReader.ReaderImplementation {
     // For creating BAMRecords
     private SAMRecordFactory samRecordFactory;
 
+    // If non-null, records matching this filter are skipped without being decoded.
+    private BAMRecordFilter recordFilter = null;
+
     /**
      * Use the caching index reader implementation rather than the disk-hit-per-file model.
      */
@@ -450,6 +453,13 @@ public class BAMFileReader extends SamReader.ReaderImplementation {
 
     public void setEagerDecode(final boolean desired) { this.eagerDecode = desired; }
 
+    /**
+     * Skips records matching the given filter before they are decoded into a SAMRecord.
+     * Applies to iterators created after this call.
+     * @param filter filter to apply, or null to return all records
+     */
+    public void setRecordFilter(final BAMRecordFilter filter) { this.recordFilter = filter; }
+
     @Override
     public void close() {
         if (mCompressedInputStream != null) {
@@ -806,6 +816,8 @@ public class BAMFileReader extends SamReader.ReaderImplementation {
         private final BAMRecordCodec streamCodec;
         private final AsyncBamDecoder mAsync;
         private long streamSamRecordIndex = 0; // Records at what position (counted in records) we are at in the file
+        private final BAMRecordFilter filter = recordFilter;
+        private byte[] filterBuffer = new byte[0]; // Reused buffer for records that could be filtered
 
         BAMFileIterator() {
             this(true);
@@ -949,17 +961,30 @@ public class BAMFileReader extends SamReader.ReaderImplementation {
          */
         private BamRecordDecodingInfo readNextRecord() {
             try {
-                if (!advanceToNextRecordStart()) {
-                    // effectively end of stream
-                    return null;
-                }
-                final long startCoordinate = mCompressedInputStream.getFilePointer();
-                Integer readLength = streamCodec.decodeRecordLength();
-                if (readLength == null) {
-                    // EOF returns null read length
-                    return null;
-                } else {
-                    if (useAsynchronousIO) {
+                while (true) {
+                    if (!advanceToNextRecordStart()) {
+                        // effectively end of stream
+                        return null;
+                    }
+                    final long startCoordinate = mCompressedInputStream.getFilePointer();
+                    Integer readLength = streamCodec.decodeRecordLength();
+                    if (readLength == null) {
+                        // EOF returns null read length
+                        return null;
+                    } else if (filter != null) {
+                        if (filterBuffer.length < readLength) {
+                            filterBuffer = new byte[Math.max(readLength, 2 * filterBuffer.length)];
+                        }
+                        if (mCompressedInputStream.read(filterBuffer, 0, readLength) != readLength) {
+                            throw new RuntimeEOFException("Premature EOF reading BAM record");
+                        }
+                        ++streamSamRecordIndex;
+                        if (readLength >= BAMFileConstants.FIXED_BLOCK_SIZE && filter.filterOut(filterBuffer, readLength)) {
+                            continue;
+                        }
+                        long stopCoordinate = mCompressedInputStream.getFilePointer();
+                        return new BamRecordDecodingInfo(streamSamRecordIndex, readLength, startCoordinate, stopCoordinate, Arrays.copyOf(filterBuffer, readLength));
+                    } else if (useAsynchronousIO) {
                         byte[] buffer = new byte[readLength];
                         mCompressedInputStream.read(buffer);
                         long stopCoordinate = mCompressedInputStream.getFilePointer();
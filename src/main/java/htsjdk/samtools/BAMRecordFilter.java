@@ -0,0 +1,75 @@
+package htsjdk.samtools;
+
+/**
+ * Filters BAM records based on their binary encoding before a SAMRecord is created.
+ *
+ * The record buffer contains the BAM record excluding the leading block_size field.
+ * Only the fixed-length fields and the CIGAR should be inspected.
+ */
+public interface BAMRecordFilter {
+    /**
+     * Determines whether the given encoded record should be skipped
+     * @param record encoded BAM record. The buffer may be larger than the record and is reused between calls.
+     * @param recordLength length of the encoded record
+     * @return true if the record should not be returned by the reader
+     */
+    boolean filterOut(byte[] record, int recordLength);
+
+    static int getReferenceIndex(final byte[] record) {
+        return readInt(record, 0);
+    }
+
+    /**
+     * @return 1-based alignment start
+     */
+    static int getAlignmentStart(final byte[] record) {
+        return readInt(record, 4) + 1;
+    }
+
+    static int getMappingQuality(final byte[] record) {
+        return record[9] & 0xFF;
+    }
+
+    static int getCigarLength(final byte[] record) {
+        return readUShort(record, 12);
+    }
+
+    static int getFlags(final byte[] record) {
+        return readUShort(record, 14);
+    }
+
+    static int getMateReferenceIndex(final byte[] record) {
+        return readInt(record, 20);
+    }
+
+    static int getInferredInsertSize(final byte[] record) {
+        return readInt(record, 28);
+    }
+
+    /**
+     * Gets the operator of the given CIGAR element
+     * @param index CIGAR element index
+     */
+    static CigarOperator getCigarOperator(final byte[] record, final int index) {
+        final int readNameLength = record[8] & 0xFF;
+        final int offset = BAMFileConstants.FIXED_BLOCK_SIZE + readNameLength + 4 * index;
+        return CigarOperator.binaryToEnum(readInt(record, offset) & 0xF);
+    }
+
+    static int getCigarOperatorLength(final byte[] record, final int index) {
+        final int readNameLength = record[8] & 0xFF;
+        final int offset = BAMFileConstants.FIXED_BLOCK_SIZE + readNameLength + 4 * index;
+        return readInt(record, offset) >>> 4;
+    }
+
+    static int readInt(final byte[] buffer, final int offset) {
+        return (buffer[offset] & 0xFF)
+                | ((buffer[offset + 1] & 0xFF) << 8)
+                | ((buffer[offset + 2] & 0xFF) << 16)
+                | ((buffer[offset + 3] & 0xFF) << 24);
+    }
+
+    static int readUShort(final byte[] buffer, final int offset) {
+        return (buffer[offset] & 0xFF) | ((buffer[offset + 1] & 0xFF) << 8);
+    }
+}
@@ -1,5 +1,6 @@
 package au.edu.wehi.idsv;
 
+import au.edu.wehi.idsv.bed.IntervalBed;
 import au.edu.wehi.idsv.picard.InMemoryReferenceSequenceFile;
 import au.edu.wehi.idsv.picard.ReferenceLookup;
 import au.edu.wehi.idsv.picard.TwoBitBufferedReferenceSequenceFile;
@@ -9,6 +10,7 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
 import htsjdk.samtools.SAMFileHeader;
 import htsjdk.samtools.SAMFileHeader.SortOrder;
+import htsjdk.samtools.SAMFileWriterFactory;
 import htsjdk.samtools.SAMRecord;
 import htsjdk.samtools.SamReader;
 import htsjdk.samtools.SamReaderFactory;
@@ -20,9 +22,12 @@ import org.junit.Ignore;
 import org.junit.Test;
 
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Properties;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
@@ -71,6 +76,84 @@ public class AssemblyEvidenceSourceTest extends IntermediateFilesTest {
 		assertEquals(1, getRecords(assemblyFile).size());
 		assertEquals("AATTAATCGCAAGAGCGGGTTGTATTCGACGCCAAGTCAGCTGAAGCACCATTACCCGATCAAAACATATCAGAAATGATTGACGTATCACAAGCCGGAT", S(getRecords(assemblyFile).get(0).getReadBases()));
 	}
+	private File writeCheckpoint(AssemblyEvidenceSource aes, BreakendDirection direction, int lastId) throws IOException {
+		File chunk = aes.getContext().getFileSystemContext().getAssemblyChunkBam(assemblyFile, 0);
+		chunk.getParentFile().mkdirs();
+		SAMFileHeader header = aes.getHeader().clone();
+		header.setSortOrder(SortOrder.coordinate);
+		new SAMFileWriterFactory().makeSAMOrBAMWriter(header, true, AssemblyEvidenceSource.getCheckpointBam(chunk, direction)).close();
+		Properties state = new Properties();
+		state.setProperty("lastAssemblyId", Integer.toString(lastId));
+		try (OutputStream os = new FileOutputStream(AssemblyEvidenceSource.getCheckpointState(chunk, direction))) {
+			state.store(os, null);
+		}
+		return chunk;
+	}
+	@Test
+	public void should_resume_chunk_from_checkpoint() throws IOException {
+		createInput(
+				withSequence("AATTAATCGCAAGAGCGGGTTGTATTCGACGCCAAGTCAGCTGAAGCACCATTACCCGATCAAAACATATCAGAAATGATTGACGTATCACAAGCCGGA", Read(0, 1, "41M58S")),
+				withSequence("AATTAATCGCAAGAGCGGGTTGTATTCGACGCCAAGTCAGCTGAAGCACCATTACCCGATCAAAACATATCAGAAATGATTGACGTATCACAAGCCGGAT", Read(0, 1, "41M59S"))
+				);
+		ProcessingContext pc = getCommandlineContext();
+		pc.getConfig().getAssembly().minReads = 1;
+		SAMEvidenceSource ses = new SAMEvidenceSource(pc, input, null, 0);
+		FileHelper.copy(ses.getFile(), ses.getSVFile(), true);
+		AssemblyEvidenceSource aes = new AssemblyEvidenceSource(pc, ImmutableList.of(ses), assemblyFile);
+		// forward assembly already completed
+		writeCheckpoint(aes, BreakendDirection.Forward, 5);
+		aes.assembleBreakends(null);
+		assertEquals(0, getRecords(assemblyFile).size());
+	}
+	@Test
+	public void should_continue_contig_naming_from_checkpoint() throws IOException {
+		createInput(
+				withSequence("AATTAATCGCAAGAGCGGGTTGTATTCGACGCCAAGTCAGCTGAAGCACCATTACCCGATCAAAACATATCAGAAATGATTGACGTATCACAAGCCGGA", Read(0, 100, "58S41M")),
+				withSequence("TAATTAATCGCAAGAGCGGGTTGTATTCGACGCCAAGTCAGCTGAAGCACCATTACCCGATCAAAACATATCAGAAATGATTGACGTATCACAAGCCGGA", Read(0, 100, "59S41M"))
+				);
+		ProcessingContext pc = getCommandlineContext();
+		pc.getConfig().getAssembly().minReads = 1;
+		SAMEvidenceSource ses = new SAMEvidenceSource(pc, input, null, 0);
+		FileHelper.copy(ses.getFile(), ses.getSVFile(), true);
+		AssemblyEvidenceSource aes = new AssemblyEvidenceSource(pc, ImmutableList.of(ses), assemblyFile);
+		writeCheckpoint(aes, BreakendDirection.Forward, 5);
+		aes.assembleBreakends(null);
+		List<SAMRecord> asm = getRecords(assemblyFile);
+		assertEquals(1, asm.size());
+		assertEquals(String.format(pc.getConfig().getAssembly().contigNamePrefix, 0) + "6", asm.get(0).getReadName());
+	}
+	@Test
+	public void should_restore_regions_from_checkpoint() throws IOException {
+		createInput(RP(0, 1, 2, 1));
+		ProcessingContext pc = getCommandlineContext();
+		SAMEvidenceSource ses = new SAMEvidenceSource(pc, input, null, 0);
+		FileHelper.copy(ses.getFile(), ses.getSVFile(), true);
+		AssemblyEvidenceSource aes = new AssemblyEvidenceSource(pc, ImmutableList.of(ses), assemblyFile);
+		File chunk = writeCheckpoint(aes, BreakendDirection.Forward, 0);
+		IntervalBed excluded = new IntervalBed(pc.getLinear());
+		excluded.addInterval(0, 100, 200);
+		excluded.write(AssemblyEvidenceSource.getCheckpointRegions(chunk, BreakendDirection.Forward, "excluded"), "excluded");
+		aes.assembleBreakends(null);
+		IntervalBed written = new IntervalBed(pc.getLinear(), pc.getFileSystemContext().getAssemblyExcludedRegions(assemblyFile, 0));
+		assertTrue(written.overlaps(0, 100, 200));
+		assertEquals(1, written.size());
+	}
+	@Test
+	public void should_only_resume_from_checkpoint_of_completed_passes() throws IOException {
+		createInput(
+				withSequence("AATTAATCGCAAGAGCGGGTTGTATTCGACGCCAAGTCAGCTGAAGCACCATTACCCGATCAAAACATATCAGAAATGATTGACGTATCACAAGCCGGA", Read(0, 1, "41M58S")),
+				withSequence("AATTAATCGCAAGAGCGGGTTGTATTCGACGCCAAGTCAGCTGAAGCACCATTACCCGATCAAAACATATCAGAAATGATTGACGTATCACAAGCCGGAT", Read(0, 1, "41M59S"))
+				);
+		ProcessingContext pc = getCommandlineContext();
+		pc.getConfig().getAssembly().minReads = 1;
+		SAMEvidenceSource ses = new SAMEvidenceSource(pc, input, null, 0);
+		FileHelper.copy(ses.getFile(), ses.getSVFile(), true);
+		AssemblyEvidenceSource aes = new AssemblyEvidenceSource(pc, ImmutableList.of(ses), assemblyFile);
+		// backward checkpoint cannot be used without the preceding forward pass
+		writeCheckpoint(aes, BreakendDirection.Backward, 5);
+		aes.assembleBreakends(null);
+		assertEquals(1, getRecords(assemblyFile).size());
+	}
 	@Test
 	public void iterator_should_return_in_chr_order() throws IOException {
 		createInput(
@@ -15,6 +15,9 @@ import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.stream.Collectors;
 
 public class DirectedEvidenceErrorCorrectingIteratorTest extends TestHelper {
@@ -57,4 +60,39 @@ public class DirectedEvidenceErrorCorrectingIteratorTest extends TestHelper {
                 .filter(s -> s.getAlignmentStart() == 1081)
                 .allMatch(s -> new String(s.getReadBases()).contains("AAGAACAAGTGGTGGGACT")));
     }
-}
\ No newline at end of file
+    private List<String> errorCorrectedReads(SAMEvidenceSource ses, Executor threadpool) {
+        DirectedEvidenceErrorCorrectingIterator deeci = new DirectedEvidenceErrorCorrectingIterator(
+                ses.getContext().getLinear(),
+                ses.iterator(SAMEvidenceSource.EvidenceSortOrder.SAMRecordStartPosition),
+                ses.getMinConcordantFragmentSize(),
+                ses.getMaxConcordantFragmentSize(),
+                ses.getMaxReadLength(),
+                ses.getMaxReadMappedLength(),
+                SAMEvidenceSource.EvidenceSortOrder.SAMRecordStartPosition,
+                10,
+                21,
+                100,
+                false,
+                threadpool);
+        return Streams.stream(deeci)
+                .map(e -> e.getEvidenceID() + " " + e.getUnderlyingSAMRecord().getReadString())
+                .collect(Collectors.toList());
+    }
+    @Test
+    public void parallel_error_correction_should_match_single_threaded() throws IOException {
+        File dir = new File("src/test/resources/anchor_misassembly/");
+        File ref = new File(dir, "ref.fa");
+        ReferenceLookup rl = new TwoBitBufferedReferenceSequenceFile(new IndexedFastaSequenceFile(ref));
+        FileSystemContext fsc = new FileSystemContext(dir, 500000);
+        ProcessingContext pc = new ProcessingContext(fsc, ref, rl, new ArrayList<Header>(), getConfig());
+        pc.registerCategory("test");
+        SAMEvidenceSource ses = new SAMEvidenceSource(pc, new File(dir, "anchor_misassembly.bam"), null, 0);
+        List<String> expected = errorCorrectedReads(ses, null);
+        ExecutorService threadpool = Executors.newFixedThreadPool(4);
+        try {
+            Assert.assertEquals(expected, errorCorrectedReads(ses, threadpool));
+        } finally {
+            threadpool.shutdown();
+        }
+    }
+}
@@ -4,6 +4,7 @@ import au.edu.wehi.idsv.alignment.StubFastqAligner;
 import au.edu.wehi.idsv.bed.IntervalBed;
 import au.edu.wehi.idsv.configuration.GridssConfiguration;
 import au.edu.wehi.idsv.picard.SynchronousReferenceLookupAdapter;
+import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Ordering;
 import com.google.common.io.Files;
@@ -79,6 +80,27 @@ public class SAMEvidenceSourceTest extends IntermediateFilesTest {
 		assertEquals(8, list.size()); // 1 SC + 3 * 2 DP + 1 OEA
 	}
 	@Test
+	public void parallel_evidence_conversion_should_match_sequential_conversion() {
+		List<SAMRecord> in = new ArrayList<>();
+		for (int i = 1; i < 500; i++) {
+			in.add(Read(1, i, "5S5M"));
+			in.add(Read(1, i, "5M2I5M"));
+			in.add(Read(1, i, "5M5S"));
+			Collections.addAll(in, RP(0, i, i + 10, 5));
+			Collections.addAll(in, OEA(1, i, "5M", true));
+			Collections.addAll(in, DP(1, i, "5M", true, 0, 1, "5M", false));
+		}
+		createInput(in);
+		ProcessingContext pc = getCommandlineContext();
+		SAMEvidenceSource source = new SAMEvidenceSource(pc, input, null, 0);
+		List<String> sequential = Lists.newArrayList(Iterators.transform(source.iterator(SAMEvidenceSource.EvidenceSortOrder.SAMRecordStartPosition), e -> e.getEvidenceID()));
+		pc.setWorkerThreadCount(4);
+		source = new SAMEvidenceSource(pc, input, null, 0);
+		List<String> parallel = Lists.newArrayList(Iterators.transform(source.iterator(SAMEvidenceSource.EvidenceSortOrder.SAMRecordStartPosition), e -> e.getEvidenceID()));
+		assertEquals(sequential, parallel);
+		assertTrue(sequential.size() > 1000);
+	}
+	@Test
 	public void iterator_filter_to_breakends_overlapping_query_interval() {
 		List<SAMRecord> in = new ArrayList<>();
 		for (int i = 1; i < 100; i++) {
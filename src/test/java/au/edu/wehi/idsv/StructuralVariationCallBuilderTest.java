@@ -891,6 +891,34 @@ public class StructuralVariationCallBuilderTest extends TestHelper {
 		Assert.assertEquals(var.getAttributeAsInt("BUM", -1234), var.getGenotypes().stream().mapToInt(g -> (int)g.getExtendedAttribute("BUM", -1000)).sum());
 	}
 	@Test
+	public void should_calculate_per_sample_support_for_large_cohorts() {
+		ProcessingContext pc = getContext();
+		for (int i = pc.getCategoryCount(); i < 256; i++) {
+			pc.registerCategory("cohort" + i);
+		}
+		MockSAMEvidenceSource ses17 = new MockSAMEvidenceSource(pc);
+		ses17.category = 17;
+		MockSAMEvidenceSource ses203 = new MockSAMEvidenceSource(pc);
+		ses203.category = 203;
+		StructuralVariationCallBuilder cb = new StructuralVariationCallBuilder(pc, new CalledBreakpointPositionLookup(), (VariantContextDirectedEvidence)minimalBreakend()
+				.breakend(new BreakendSummary(0, BWD, 1, 1, 10), "").make());
+		cb.addEvidence(SCE(BWD, ses17, withReadName("r1", Read(0, 5, "1S2M"))[0]));
+		cb.addEvidence(SCE(BWD, ses203, withReadName("r2", Read(0, 4, "3S4M"))[0]));
+		cb.addEvidence(SCE(BWD, ses203, withReadName("r3", Read(0, 3, "5S6M"))[0]));
+		VariantContextDirectedEvidence be = cb.make();
+		Assert.assertEquals(256, be.getGenotypes().size());
+		Assert.assertEquals(3, be.getAttributeAsInt("BSC", -1));
+		for (int i = 0; i < 256; i++) {
+			int expected = i == 17 ? 1 : i == 203 ? 2 : 0;
+			Assert.assertEquals(expected, (int)be.getGenotype(i).getExtendedAttribute("BSC", -1));
+			Assert.assertEquals(expected, (int)be.getGenotype(i).getExtendedAttribute("BVF", -1));
+			if (expected == 0) {
+				Assert.assertEquals(0, (double)be.getGenotype(i).getExtendedAttribute("BSCQ", -1), 0);
+			}
+		}
+		Assert.assertEquals(be.getAttributeAsDouble("BSCQ", -1234), be.getGenotypes().stream().mapToDouble(g -> (double)g.getExtendedAttribute("BSCQ", -1000)).sum(), 0.00001);
+	}
+	@Test
 	public void should_count_indel_assembly_based_on_originating_direction_local() {
 		ProcessingContext pc = getContext();
 		AssemblyEvidenceSource aes = AES(pc);
@@ -315,8 +315,11 @@ public class TestHelper {
 		return defaultConfig;
 	}
 	public static GridssConfiguration getConfig(File workingDirectory) {
+		return getConfig(getDefaultConfig(), workingDirectory);
+	}
+	public static GridssConfiguration getConfig(Configuration baseConfig, File workingDirectory) {
 		GridssConfiguration config;
-		config = new GridssConfiguration(getDefaultConfig(), workingDirectory);
+		config = new GridssConfiguration(baseConfig, workingDirectory);
 		config.minAnchorShannonEntropy = 0;
 		config.minMapq = 10;
 		config.getAssembly().minReads = 2;
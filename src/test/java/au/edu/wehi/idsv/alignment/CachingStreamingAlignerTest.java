@@ -0,0 +1,147 @@
+package au.edu.wehi.idsv.alignment;
+
+import au.edu.wehi.idsv.TestHelper;
+import au.edu.wehi.idsv.sam.SAMRecordUtil;
+import htsjdk.samtools.SAMFileHeader;
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.fastq.FastqRecord;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class CachingStreamingAlignerTest extends TestHelper {
+	/**
+	 * Reverse complements each read and adds a hard clipped supplementary record
+	 */
+	private static class StubAligner implements StreamingAligner {
+		private final SAMFileHeader header = getHeader();
+		private final Queue<SAMRecord> buffer = new ArrayDeque<>();
+		private final Queue<SAMRecord> delayed = new ArrayDeque<>();
+		private int alignCount = 0;
+		@Override
+		public void asyncAlign(FastqRecord fq) {
+			alignCount++;
+			SAMRecord r = SAMRecordUtil.createSAMRecord(header, fq, true);
+			r.setReferenceIndex(0);
+			r.setAlignmentStart(1);
+			r.setCigarString(fq.getReadLength() + "M");
+			r.setReadNegativeStrandFlag(true);
+			SAMRecord supp = SAMRecordUtil.createSAMRecord(header, fq, false);
+			supp.setReadBases(B(fq.getReadString().substring(1, 3)));
+			supp.setBaseQualities(B(fq.getBaseQualityString().substring(1, 3)));
+			supp.setReferenceIndex(0);
+			supp.setAlignmentStart(100);
+			supp.setCigarString("1H2M" + (fq.getReadLength() - 3) + "H");
+			supp.setSupplementaryAlignmentFlag(true);
+			delayed.add(r);
+			delayed.add(supp);
+		}
+		@Override
+		public void flush() {
+			buffer.addAll(delayed);
+			delayed.clear();
+		}
+		@Override
+		public int processedAlignmentRecords() {
+			return buffer.size();
+		}
+		@Override
+		public int outstandingAlignmentRecord() {
+			return delayed.size() / 2;
+		}
+		@Override
+		public SAMRecord getAlignment() {
+			return buffer.remove();
+		}
+		@Override
+		public void close() {
+		}
+	}
+	private static List<SAMRecord> drain(StreamingAligner aligner) {
+		List<SAMRecord> list = new ArrayList<>();
+		while (aligner.processedAlignmentRecords() > 0) {
+			list.add(aligner.getAlignment());
+		}
+		return list;
+	}
+	@Test
+	public void should_align_identical_sequences_once() throws IOException {
+		StubAligner stub = new StubAligner();
+		CachingStreamingAligner aligner = new CachingStreamingAligner(stub, 10);
+		aligner.asyncAlign(new FastqRecord("r1", "ACGTN", "", "ABCDE"));
+		aligner.asyncAlign(new FastqRecord("r2", "ACGTN", "", "FGHIJ"));
+		aligner.flush();
+		aligner.asyncAlign(new FastqRecord("r3", "ACGTN", "", "KLMNO"));
+		assertEquals(1, stub.alignCount);
+		assertEquals(3, aligner.getRequestCount());
+		assertEquals(2, aligner.getCacheHitCount());
+		List<SAMRecord> list = drain(aligner);
+		assertEquals(6, list.size());
+		assertEquals("r1", list.get(0).getReadName());
+		assertEquals("r1", list.get(1).getReadName());
+		assertEquals("r2", list.get(2).getReadName());
+		assertEquals("r3", list.get(4).getReadName());
+	}
+	@Test
+	public void should_return_alignments_in_request_order() throws IOException {
+		StubAligner stub = new StubAligner();
+		CachingStreamingAligner aligner = new CachingStreamingAligner(stub, 10);
+		aligner.asyncAlign(new FastqRecord("r1", "AAAAA", "", "ABCDE"));
+		aligner.asyncAlign(new FastqRecord("r2", "CCCCC", "", "ABCDE"));
+		aligner.asyncAlign(new FastqRecord("r3", "AAAAA", "", "ABCDE"));
+		aligner.asyncAlign(new FastqRecord("r4", "GGGGG", "", "ABCDE"));
+		assertEquals(4, aligner.outstandingAlignmentRecord());
+		assertEquals(0, aligner.processedAlignmentRecords());
+		aligner.flush();
+		assertEquals(0, aligner.outstandingAlignmentRecord());
+		List<SAMRecord> list = drain(aligner);
+		assertEquals(8, list.size());
+		assertEquals("r1", list.get(0).getReadName());
+		assertEquals("r2", list.get(2).getReadName());
+		assertEquals("r3", list.get(4).getReadName());
+		assertEquals("r4", list.get(6).getReadName());
+		assertEquals(3, stub.alignCount);
+	}
+	@Test
+	public void should_restore_request_base_qualities() throws IOException {
+		StubAligner stub = new StubAligner();
+		CachingStreamingAligner aligner = new CachingStreamingAligner(stub, 10);
+		aligner.asyncAlign(new FastqRecord("r1", "ACGTN", "", "ABCDE"));
+		aligner.asyncAlign(new FastqRecord("r2", "ACGTN", "", "FGHIJ"));
+		aligner.flush();
+		List<SAMRecord> list = drain(aligner);
+		assertArrayEquals(B("EDCBA"), list.get(0).getBaseQualityString().getBytes());
+		assertArrayEquals(B("JIHGF"), list.get(2).getBaseQualityString().getBytes());
+		// hard clipped
+		assertArrayEquals(B("GH"), list.get(3).getBaseQualityString().getBytes());
+		assertEquals("r2", list.get(3).getReadName());
+	}
+	@Test
+	public void should_return_copies_of_cached_alignments() throws IOException {
+		StubAligner stub = new StubAligner();
+		CachingStreamingAligner aligner = new CachingStreamingAligner(stub, 10);
+		aligner.asyncAlign(new FastqRecord("r1", "ACGTN", "", "ABCDE"));
+		aligner.flush();
+		drain(aligner).get(0).setAlignmentStart(50);
+		aligner.asyncAlign(new FastqRecord("r2", "ACGTN", "", "ABCDE"));
+		assertEquals(1, drain(aligner).get(0).getAlignmentStart());
+	}
+	@Test
+	public void should_evict_least_recently_used_sequence() throws IOException {
+		StubAligner stub = new StubAligner();
+		CachingStreamingAligner aligner = new CachingStreamingAligner(stub, 1);
+		aligner.asyncAlign(new FastqRecord("r1", "AAAAA", "", "ABCDE"));
+		aligner.asyncAlign(new FastqRecord("r2", "CCCCC", "", "ABCDE"));
+		aligner.asyncAlign(new FastqRecord("r3", "AAAAA", "", "ABCDE"));
+		aligner.flush();
+		assertEquals(6, drain(aligner).size());
+		assertEquals(3, stub.alignCount);
+	}
+}
@@ -0,0 +1,81 @@
+package au.edu.wehi.idsv.alignment;
+
+import au.edu.wehi.idsv.TestHelper;
+import com.google.common.collect.ImmutableList;
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.SamReaderFactory;
+import htsjdk.samtools.ValidationStringency;
+import htsjdk.samtools.fastq.FastqRecord;
+import org.apache.commons.lang3.SystemUtils;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class ExternalProcessStreamingAlignerPoolTest extends TestHelper {
+	/**
+	 * Stub aligner reporting every read as unmapped, followed by a secondary record for every even-numbered read
+	 */
+	private static final List<String> AWK_COMMAND_LINE = ImmutableList.of(
+			"awk",
+			"NR%%4==1{n=substr($1,2)} NR%%4==2{s=$0} NR%%4==0{print n \"\t4\t*\t0\t0\t*\t*\t0\t0\t\" s \"\t\" $0; if (n%%2==0) print n \"\t260\t*\t0\t0\t*\t*\t0\t0\t*\t*\"}",
+			"%1$s");
+	@Before
+	public void requireAwk() {
+		Assume.assumeFalse(SystemUtils.IS_OS_WINDOWS);
+	}
+	private ExternalProcessStreamingAlignerPool createPool(int processes, int batchSize) {
+		return new ExternalProcessStreamingAlignerPool(
+				SamReaderFactory.makeDefault().validationStringency(ValidationStringency.SILENT),
+				AWK_COMMAND_LINE, SMALL_FA_FILE, 4, SMALL_FA.getSequenceDictionary(), processes, batchSize);
+	}
+	private static FastqRecord fq(int i) {
+		return new FastqRecord(Integer.toString(i), "ACGT", "", "ABCD");
+	}
+	private static List<SAMRecord> drain(StreamingAligner aligner) {
+		List<SAMRecord> list = new ArrayList<>();
+		while (aligner.processedAlignmentRecords() > 0) {
+			list.add(aligner.getAlignment());
+		}
+		return list;
+	}
+	@Test
+	public void should_return_alignments_in_request_order() throws IOException {
+		int count = 1000;
+		ExternalProcessStreamingAlignerPool pool = createPool(3, 7);
+		for (int i = 0; i < count; i++) {
+			pool.asyncAlign(fq(i));
+		}
+		pool.flush();
+		assertEquals(0, pool.outstandingAlignmentRecord());
+		List<SAMRecord> list = drain(pool);
+		assertEquals(count + count / 2, list.size());
+		int offset = 0;
+		for (int i = 0; i < count; i++) {
+			assertEquals(Integer.toString(i), list.get(offset++).getReadName());
+			if (i % 2 == 0) {
+				SAMRecord secondary = list.get(offset++);
+				assertEquals(Integer.toString(i), secondary.getReadName());
+				assertEquals(true, secondary.isSecondaryAlignment());
+			}
+		}
+		pool.close();
+	}
+	@Test
+	public void should_allow_alignment_after_flush() throws IOException {
+		ExternalProcessStreamingAlignerPool pool = createPool(2, 1);
+		for (int i = 0; i < 4; i++) {
+			pool.asyncAlign(fq(2 * i + 1));
+			pool.flush();
+			List<SAMRecord> list = drain(pool);
+			assertEquals(1, list.size());
+			assertEquals(Integer.toString(2 * i + 1), list.get(0).getReadName());
+		}
+		pool.close();
+	}
+}
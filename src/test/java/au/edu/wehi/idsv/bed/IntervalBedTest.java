@@ -1,6 +1,11 @@
 package au.edu.wehi.idsv.bed;
 
+import au.edu.wehi.idsv.LinearGenomicCoordinate;
 import au.edu.wehi.idsv.TestHelper;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Range;
+import com.google.common.collect.RangeSet;
+import com.google.common.collect.TreeRangeSet;
 import htsjdk.samtools.QueryInterval;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
@@ -8,6 +13,7 @@ import org.junit.rules.TemporaryFolder;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
+import java.util.Random;
 
 import static org.junit.Assert.*;
 
@@ -116,4 +122,58 @@ public class IntervalBedTest extends TestHelper {
 			assertEquals(qi[i].end, result[i].end);
 		}
 	}
+	@Test
+	public void should_match_range_set_semantics() {
+		LinearGenomicCoordinate linear = getContext().getLinear();
+		Random rng = new Random(0);
+		for (int iteration = 0; iteration < 100; iteration++) {
+			IntervalBed bed = new IntervalBed(linear);
+			IntervalBed other = new IntervalBed(linear);
+			RangeSet<Long> expected = TreeRangeSet.create();
+			RangeSet<Long> expectedOther = TreeRangeSet.create();
+			for (int i = 0; i < 20; i++) {
+				int referenceIndex = rng.nextInt(2);
+				int start = 1 + rng.nextInt(200);
+				int end = start + rng.nextInt(20);
+				bed.addInterval(referenceIndex, start, end);
+				IntervalBed.addInterval(linear, expected, referenceIndex, start, end);
+				start = 1 + rng.nextInt(200);
+				end = start + rng.nextInt(20);
+				other.addInterval(referenceIndex, start, end);
+				IntervalBed.addInterval(linear, expectedOther, referenceIndex, start, end);
+			}
+			assertEquals(expected, bed.asRangeSet());
+			assertEquals(expected.asRanges().size(), bed.size());
+			for (int referenceIndex = 0; referenceIndex < 2; referenceIndex++) {
+				for (int start = 0; start < 230; start++) {
+					for (int end = start; end < start + 5; end++) {
+						Range<Long> r = Range.closed(linear.getLinearCoordinate(referenceIndex, start), linear.getLinearCoordinate(referenceIndex, end));
+						assertEquals(expected.intersects(r), bed.overlaps(referenceIndex, start, end));
+						assertEquals(expected.intersects(r), bed.overlaps(r));
+					}
+				}
+			}
+			RangeSet<Long> expectedMerge = TreeRangeSet.create(expected);
+			expectedMerge.addAll(expectedOther);
+			assertEquals(expectedMerge, IntervalBed.merge(linear, ImmutableList.of(bed, other)).asRangeSet());
+			expected.removeAll(expectedOther);
+			bed.remove(other);
+			assertEquals(expected, bed.asRangeSet());
+		}
+	}
+	@Test
+	public void expandIntervals_should_merge_overlapping_intervals() {
+		IntervalBed bed = new IntervalBed(getContext().getLinear());
+		bed.addInterval(0, 10, 20);
+		bed.addInterval(0, 30, 40);
+		bed.addInterval(1, 5, 10);
+		QueryInterval[] qi = bed.expandIntervals(5, 5).asQueryInterval();
+		assertEquals(2, qi.length);
+		assertEquals(0, qi[0].referenceIndex);
+		assertEquals(5, qi[0].start);
+		assertEquals(45, qi[0].end);
+		assertEquals(1, qi[1].referenceIndex);
+		assertEquals(1, qi[1].start);
+		assertEquals(15, qi[1].end);
+	}
 }
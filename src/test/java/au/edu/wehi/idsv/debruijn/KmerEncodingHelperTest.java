@@ -448,4 +448,47 @@ public class KmerEncodingHelperTest extends TestHelper {
 			}
 		}
 	}
+	@Test
+	public void kmers_should_match_individual_encoding() {
+		String seq = S(RANDOM).substring(0, 100) + "NRacgt";
+		for (int k = 1; k <= 32; k++) {
+			long[] kmers = new long[seq.length()];
+			int count = KmerEncodingHelper.kmers(k, B(seq), kmers);
+			assertEquals(seq.length() - k + 1, count);
+			for (int i = 0; i < count; i++) {
+				assertEquals(KmerEncodingHelper.picardBaseToEncoded(k, B(seq.substring(i, i + k))), kmers[i]);
+			}
+		}
+	}
+	@Test
+	public void kmers_should_return_no_kmers_for_short_sequences() {
+		assertEquals(0, KmerEncodingHelper.kmers(4, B("ACG"), new long[0]));
+		assertEquals(0, KmerEncodingHelper.kmers(4, B(""), new long[0]));
+	}
+	@Test
+	public void kmers_should_reverse_and_complement() {
+		String seq = S(RANDOM).substring(0, 70);
+		PackedSequence rc = new PackedSequence(B(seq), true, true);
+		long[] kmers = new long[seq.length()];
+		int count = KmerEncodingHelper.kmers(25, B(seq), true, true, kmers);
+		for (int i = 0; i < count; i++) {
+			assertEquals(rc.getKmer(i, 25), kmers[i]);
+		}
+	}
+	@Test
+	public void reverseComplementKmers_should_match_kmers_of_reverse_complement() {
+		String seq = S(RANDOM).substring(0, 70);
+		for (int k = 1; k <= 32; k++) {
+			long[] kmers = new long[seq.length()];
+			long[] expected = new long[seq.length()];
+			long[] rcKmers = new long[seq.length()];
+			int count = KmerEncodingHelper.kmers(k, B(seq), kmers);
+			KmerEncodingHelper.kmers(k, B(seq), true, true, expected);
+			KmerEncodingHelper.reverseComplementKmers(k, kmers, count, rcKmers);
+			for (int i = 0; i < count; i++) {
+				assertEquals(expected[i], rcKmers[i]);
+				assertEquals(KmerEncodingHelper.reverseComplement(k, kmers[count - 1 - i]), rcKmers[i]);
+			}
+		}
+	}
 }
@@ -221,4 +221,18 @@ public class PackedSequenceTest extends TestHelper {
 		Assert.assertEquals(0, ps.kmers(3));
 		Assert.assertEquals(0, ps.kmers(4));
 	}
+	@Test
+	public void getKmers_should_match_getKmer() {
+		for (int length = 1; length <= 97; length++) {
+			String seq = S(RANDOM).substring(0, length);
+			PackedSequence ps = new PackedSequence(B(seq), false, false);
+			for (int k = 1; k <= Math.min(32, length); k++) {
+				long[] kmers = new long[ps.kmers(k)];
+				assertEquals(ps.kmers(k), ps.getKmers(k, kmers));
+				for (int i = 0; i < kmers.length; i++) {
+					assertEquals(ps.getKmer(i, k), kmers[i]);
+				}
+			}
+		}
+	}
 }
@@ -9,6 +9,10 @@ import org.junit.Test;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
 
 public class ReadErrorCorrectorTest extends TestHelper {
     private static final String SEQ = S(RANDOM).substring(0, 100);
@@ -196,4 +200,32 @@ public class ReadErrorCorrectorTest extends TestHelper {
             Assert.assertEquals("AAAAAAAAAAAAAAAAAAAAAAAAA", reads.get(0).getReadString());
         }
     }
+    private List<DirectedEvidence> readsWithErrors(MockSAMEvidenceSource ses, int n) {
+        Random rng = new Random(0);
+        List<DirectedEvidence> evidence = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            byte[] bases = B(SEQ);
+            int offset = rng.nextInt(bases.length);
+            bases[offset] = (byte)(bases[offset] == 'T' ? 'A' : 'T');
+            evidence.add(SCE(FWD, ses, withName("read" + i, withSequence(bases, Read(0, 1, "50M50S")))[0]));
+        }
+        return evidence;
+    }
+    @Test
+    public void parallel_error_correction_should_match_single_threaded() {
+        MockSAMEvidenceSource ses = SES();
+        List<DirectedEvidence> sequential = readsWithErrors(ses, 2000);
+        List<DirectedEvidence> parallel = readsWithErrors(ses, 2000);
+        ReadErrorCorrector.errorCorrect(21, 5, 100, false, sequential);
+        ExecutorService threadpool = Executors.newFixedThreadPool(4);
+        try {
+            ReadErrorCorrector.errorCorrectAsync(21, 5, 100, false, parallel, threadpool).join();
+        } finally {
+            threadpool.shutdown();
+        }
+        List<String> expected = sequential.stream().map(e -> e.getUnderlyingSAMRecord().getReadString()).collect(Collectors.toList());
+        List<String> actual = parallel.stream().map(e -> e.getUnderlyingSAMRecord().getReadString()).collect(Collectors.toList());
+        Assert.assertEquals(expected, actual);
+        Assert.assertTrue(actual.stream().allMatch(s -> s.equals(SEQ)));
+    }
 }
@@ -9,6 +9,7 @@ import org.junit.Test;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.stream.Collectors;
@@ -146,4 +147,36 @@ public class EvidenceTrackerTest extends TestHelper {
 				.forEach(ksn -> tracker.track(ksn));
 		tracker.remove(ImmutableSet.of(e, e2));
 	}
+	@Test
+	public void should_reuse_storage_after_removal() {
+		int k = 4;
+		MockSAMEvidenceSource ses = SES();
+		EvidenceTracker tracker = new EvidenceTracker();
+		for (int round = 0; round < 3; round++) {
+			List<KmerEvidence> list = new ArrayList<>();
+			for (int i = 0; i < 200; i++) {
+				KmerEvidence e = KmerEvidence.create(k, SCE(FWD, ses, withReadName("read" + round + "_" + i, Read(0, 1, "7M1S"))));
+				list.add(e);
+				for (int j = 0; j < e.length(); j++) {
+					tracker.track(e.node(j));
+				}
+			}
+			assertEquals(200, tracker.tracking_evidenceActive());
+			assertEquals(200 * 5, tracker.tracking_supportNodeCount());
+			assertEquals(200 * 5, tracker.tracking_maxKmerSupportNodesCount());
+			assertEquals(1, tracker.tracking_kmerCount());
+			tracker.sanityCheck();
+			Set<KmerEvidence> removed = tracker.remove(new HashSet<>(list.subList(0, 100)));
+			assertEquals(100, removed.size());
+			assertEquals(100, tracker.tracking_evidenceActive());
+			assertEquals(100 * 5, tracker.tracking_supportNodeCount());
+			tracker.sanityCheck();
+			Set<KmerEvidence> untracked = tracker.untrack(ImmutableList.of(new KmerPathSubnode(KPN(k, "AAAA", 1, 5, true))));
+			assertEquals(ImmutableSet.copyOf(list.subList(100, 200)), untracked);
+			assertEquals(0, tracker.tracking_supportNodeCount());
+			assertEquals(0, tracker.tracking_kmerCount());
+			assertEquals(0, tracker.getTrackedEvidence().size());
+		}
+		assertEquals(600, tracker.tracking_evidenceTotal());
+	}
 }
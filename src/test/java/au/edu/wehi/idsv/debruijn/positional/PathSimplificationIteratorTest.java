@@ -1,11 +1,14 @@
 package au.edu.wehi.idsv.debruijn.positional;
 
 import au.edu.wehi.idsv.TestHelper;
+import au.edu.wehi.idsv.debruijn.KmerEncodingHelper;
 import com.google.common.collect.Lists;
 import org.junit.Test;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Random;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
@@ -119,4 +122,45 @@ public class PathSimplificationIteratorTest extends TestHelper {
 		List<KmerPathNode> list = Lists.newArrayList(new PathSimplificationIterator(in.iterator(), 64, 64));
 		assertEquals(2, list.size());
 	}
+	/**
+	 * Creates a path node graph consisting of copies of a small number of sequences
+	 * tiled across adjacent support intervals
+	 */
+	private static List<KmerPathNode> repetitiveGraph(int k, long seed, int copies, int width, int length) {
+		Random rng = new Random(seed);
+		byte[][] pool = new byte[4][];
+		for (int i = 0; i < pool.length; i++) {
+			int offset = rng.nextInt(RANDOM.length - length - k);
+			pool[i] = Arrays.copyOfRange(RANDOM, offset, offset + length + k - 1);
+		}
+		List<KmerNode> in = new ArrayList<>();
+		for (int c = 0; c < copies; c++) {
+			byte[] seq = pool[rng.nextInt(pool.length)];
+			int weight = 1 + rng.nextInt(2);
+			for (int i = 0; i < length; i++) {
+				long kmer = KmerEncodingHelper.picardBaseToEncoded(k, Arrays.copyOfRange(seq, i, i + k));
+				in.add(new ImmutableKmerNode(kmer, c * width + i, c * width + width - 1 + i, false, weight));
+			}
+		}
+		in.sort(KmerNodeUtil.ByLastStart);
+		return Lists.newArrayList(new PathNodeIterator(in.iterator(), length, k));
+	}
+	@Test
+	public void should_preserve_repetitive_graph() {
+		int k = 25;
+		int maxPathLength = 20;
+		int maxSupportWidth = 64;
+		for (int seed = 0; seed < 8; seed++) {
+			List<KmerPathNode> expected = repetitiveGraph(k, seed, 100, 8, maxPathLength);
+			List<KmerPathNode> in = repetitiveGraph(k, seed, 100, 8, maxPathLength);
+			List<KmerPathNode> list = Lists.newArrayList(new PathSimplificationIterator(in.iterator(), maxPathLength, maxSupportWidth));
+			assertSameNodes(expected, list);
+			assertTrue(list.size() < expected.size());
+			assertTrue(KmerNodeUtil.ByFirstStart.isOrdered(list));
+			for (KmerPathNode pn : list) {
+				pn.sanityCheck(k, maxSupportWidth, maxPathLength);
+			}
+			PathNodeIteratorTest.assertCompleteGraph(list, k);
+		}
+	}
 }
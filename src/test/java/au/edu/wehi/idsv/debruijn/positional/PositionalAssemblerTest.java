@@ -2,15 +2,20 @@ package au.edu.wehi.idsv.debruijn.positional;
 
 import au.edu.wehi.idsv.*;
 import au.edu.wehi.idsv.bed.IntervalBed;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Lists;
 import htsjdk.samtools.SAMRecord;
+import org.apache.commons.configuration.CompositeConfiguration;
+import org.apache.commons.configuration.MapConfiguration;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
@@ -174,4 +179,105 @@ public class PositionalAssemblerTest extends TestHelper {
 				.collect(Collectors.toList());
 		Assert.assertNotEquals(sequences.stream().distinct().count(), assembledReads.size()); // make sure we assembled fewer reads
 	}
+	private Set<String> assembledEvidenceIDs(ProcessingContext pc, IntervalBed excluded) {
+		String seq = S(RANDOM).substring(1, 51) + S(RANDOM).substring(100, 150);
+		List<String> sequences = allSequencesWithinEditDistance(seq, 1);
+		AtomicInteger index = new AtomicInteger();
+		MockSAMEvidenceSource ses = SES(pc);
+		List<DirectedEvidence> e = Lists.newArrayList(sequences.stream()
+				.map(s -> (DirectedEvidence)SCE(FWD, ses, withName(s + index.incrementAndGet(), withSequence(s, Read(2, 1, "50M50S")))[0]))
+				.collect(Collectors.toList()));
+		for (int i = 1; i < 200; i++) {
+			e.add(SCE(FWD, ses, withName("background" + i, Read(2, i * 100, "50M50S"))[0]));
+		}
+		AssemblyEvidenceSource aes = AES(pc);
+		ArrayList<SAMRecord> output = Lists.newArrayList(new PositionalAssembler(pc, aes, new SequentialIdGenerator("asm"), e.iterator(), BreakendDirection.Forward, excluded, null));
+		return output.stream()
+				.flatMap(a -> new AssemblyAttributes(a).getEvidenceIDs(null, null, null, aes).stream())
+				.collect(Collectors.toSet());
+	}
+	private static ProcessingContext getSpillContext() {
+		CompositeConfiguration config = new CompositeConfiguration();
+		config.addConfiguration(new MapConfiguration(ImmutableMap.of(
+				"assembly.positional.spillDenseRegions", "true",
+				"assembly.positional.spillWindowSize", "64")));
+		config.addConfiguration(getDefaultConfig());
+		ProcessingContext pc = new ProcessingContext(getFSContext(), SMALL_FA_FILE, SMALL_FA, new ArrayList<>(),
+				getConfig(config, new File(System.getProperty("java.io.tmpdir"))));
+		pc.registerCategory("Normal");
+		pc.registerCategory("Tumour");
+		pc.getAssemblyParameters().positional.maximumNodeDensity = 0.05f;
+		return pc;
+	}
+	@Test
+	public void should_spill_and_assemble_all_evidence_at_complexity_threshold() {
+		ProcessingContext pc = getContext();
+		pc.getAssemblyParameters().positional.maximumNodeDensity = 0.05f;
+		IntervalBed excluded = new IntervalBed(pc.getLinear());
+		Set<String> downsampled = assembledEvidenceIDs(pc, excluded);
+		Assert.assertNotEquals(0, excluded.size());
+
+		pc = getSpillContext();
+		excluded = new IntervalBed(pc.getLinear());
+		Set<String> spilled = assembledEvidenceIDs(pc, excluded);
+		assertEquals(0, excluded.size());
+		assertTrue(spilled.containsAll(downsampled));
+		assertTrue(spilled.size() > downsampled.size());
+	}
+	@Test
+	public void should_assemble_evidence_before_spilled_region() {
+		ProcessingContext pc = getSpillContext();
+		MockSAMEvidenceSource ses = SES(pc);
+		List<DirectedEvidence> e = new ArrayList<>();
+		// assemblable evidence immediately before the dense region
+		String beforeSeq = S(RANDOM).substring(200, 300);
+		List<DirectedEvidence> before = new ArrayList<>();
+		for (int i = 0; i < 4; i++) {
+			before.add(SCE(FWD, ses, withName("before" + i, withSequence(beforeSeq, Read(2, 500 + i, "50M50S")))[0]));
+		}
+		e.addAll(before);
+		String seq = S(RANDOM).substring(1, 51) + S(RANDOM).substring(100, 150);
+		AtomicInteger index = new AtomicInteger();
+		allSequencesWithinEditDistance(seq, 1).stream()
+				.map(s -> (DirectedEvidence)SCE(FWD, ses, withName(s + index.incrementAndGet(), withSequence(s, Read(2, 1001, "50M50S")))[0]))
+				.forEach(e::add);
+		for (int i = 11; i < 200; i++) {
+			e.add(SCE(FWD, ses, withName("background" + i, Read(2, i * 100, "50M50S"))[0]));
+		}
+		e.sort(DirectedEvidenceOrder.ByNatural);
+		IntervalBed excluded = new IntervalBed(pc.getLinear());
+		AssemblyEvidenceSource aes = AES(pc);
+		List<SAMRecord> output = Lists.newArrayList(new PositionalAssembler(pc, aes, new SequentialIdGenerator("asm"), e.iterator(), BreakendDirection.Forward, excluded, null));
+		Set<String> assembled = output.stream()
+				.flatMap(a -> new AssemblyAttributes(a).getEvidenceIDs(null, null, null, aes).stream())
+				.collect(Collectors.toSet());
+		assertEquals(0, excluded.size());
+		for (DirectedEvidence de : before) {
+			assertTrue(assembled.contains(de.getEvidenceID()));
+		}
+	}
+	private List<String> assembleRepetitiveInput(ProcessingContext pc) {
+		MockSAMEvidenceSource ses = new MockSAMEvidenceSource(pc, 300, 400);
+		List<DirectedEvidence> e = new ArrayList<>();
+		for (int i = 0; i < 50; i++) {
+			String seq = S(RANDOM).substring(100 * (i % 3), 100 * (i % 3) + 100);
+			e.add(NRRP(ses, withSequence(seq, DP(2, 1000 + 33 * i, "100M", true, 1, 1, "100M", false))));
+			e.add(SCE(FWD, ses, withSequence(seq, Read(2, 1000 + 33 * i, "60M40S"))[0]));
+		}
+		e.sort(DirectedEvidenceOrder.ByNatural);
+		AssemblyEvidenceSource aes = AES(pc);
+		return Lists.newArrayList(new PositionalAssembler(pc, aes, new SequentialIdGenerator("asm"), e.iterator(), BreakendDirection.Forward, null, null)).stream()
+				.map(r -> r.getAlignmentStart() + r.getCigarString() + r.getReadString())
+				.sorted()
+				.collect(Collectors.toList());
+	}
+	@Test
+	public void path_simplification_should_not_change_assembly() {
+		ProcessingContext pc = getContext();
+		List<String> expected = assembleRepetitiveInput(pc);
+		pc.getAssemblyParameters().positional.simplifyPaths = true;
+		List<String> simplified = assembleRepetitiveInput(pc);
+		assertNotEquals(0, expected.size());
+		assertEquals(expected, simplified);
+	}
 }
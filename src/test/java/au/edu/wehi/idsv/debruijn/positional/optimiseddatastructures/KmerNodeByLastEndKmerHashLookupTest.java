@@ -0,0 +1,69 @@
+package au.edu.wehi.idsv.debruijn.positional.optimiseddatastructures;
+
+import au.edu.wehi.idsv.debruijn.positional.ImmutableKmerNode;
+import au.edu.wehi.idsv.debruijn.positional.KmerNode;
+import org.apache.commons.lang3.tuple.Pair;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class KmerNodeByLastEndKmerHashLookupTest {
+    @Test
+    public void should_lookup_by_last_kmer_and_end() {
+        KmerNodeByLastEndKmerHashLookup<KmerNode> lookup = new KmerNodeByLastEndKmerHashLookup<>();
+        KmerNode n1 = new ImmutableKmerNode(1, 1, 10, false, 1);
+        KmerNode n2 = new ImmutableKmerNode(1, 11, 20, false, 1);
+        KmerNode n3 = new ImmutableKmerNode(2, 1, 10, false, 1);
+        lookup.add(n1);
+        lookup.add(n2);
+        lookup.add(n3);
+        assertEquals(3, lookup.size());
+        assertSame(n1, lookup.get(1, 10));
+        assertSame(n2, lookup.get(1, 20));
+        assertSame(n3, lookup.get(2, 10));
+        assertNull(lookup.get(2, 20));
+        assertNull(lookup.get(1, 1));
+        assertTrue(lookup.remove(n1));
+        assertFalse(lookup.remove(n1));
+        assertNull(lookup.get(1, 10));
+        assertSame(n2, lookup.get(1, 20));
+        assertEquals(2, lookup.size());
+    }
+    @Test
+    public void should_match_hash_map() {
+        Random rng = new Random(0);
+        KmerNodeByLastEndKmerHashLookup<KmerNode> lookup = new KmerNodeByLastEndKmerHashLookup<>();
+        Map<Pair<Long, Integer>, KmerNode> expected = new HashMap<>();
+        List<KmerNode> nodes = new ArrayList<>();
+        for (int i = 0; i < 100000; i++) {
+            if (nodes.isEmpty() || rng.nextInt(3) != 0) {
+                long kmer = rng.nextInt(16);
+                int end = rng.nextInt(1000);
+                KmerNode node = new ImmutableKmerNode(kmer, end, end, false, 1);
+                if (!expected.containsKey(Pair.of(kmer, end))) {
+                    lookup.add(node);
+                    expected.put(Pair.of(kmer, end), node);
+                    nodes.add(node);
+                }
+            } else {
+                KmerNode node = nodes.remove(rng.nextInt(nodes.size()));
+                assertTrue(lookup.remove(node));
+                expected.remove(Pair.of(node.lastKmer(), node.lastEnd()));
+            }
+            long kmer = rng.nextInt(16);
+            int end = rng.nextInt(1000);
+            assertSame(expected.get(Pair.of(kmer, end)), lookup.get(kmer, end));
+            assertEquals(expected.size(), lookup.size());
+        }
+        for (KmerNode node : nodes) {
+            assertSame(node, lookup.get(node.lastKmer(), node.lastEnd()));
+        }
+        assertEquals(nodes.size(), lookup.stream().count());
+    }
+}
@@ -0,0 +1,68 @@
+package au.edu.wehi.idsv.debruijn.positional.optimiseddatastructures;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class KmerOffsetIntervalLookupTest {
+    @Test
+    public void should_return_overlapping_offsets() {
+        KmerOffsetIntervalLookup lookup = new KmerOffsetIntervalLookup(1);
+        lookup.add(1, 10, 20, 0);
+        lookup.add(2, 10, 20, 1);
+        lookup.add(1, 1, 100, 2);
+        lookup.add(1, 30, 40, 3);
+        IntArrayList result = new IntArrayList();
+        assertEquals(2, lookup.forEachOverlapping(1, 20, 25, result::add));
+        assertEquals(IntArrayList.wrap(new int[] { 2, 0 }), result);
+        result.clear();
+        assertEquals(1, lookup.forEachOverlapping(2, 5, 10, result::add));
+        assertEquals(IntArrayList.wrap(new int[] { 1 }), result);
+        result.clear();
+        assertEquals(0, lookup.forEachOverlapping(3, 0, 100, result::add));
+        assertEquals(0, lookup.forEachOverlapping(2, 21, 100, result::add));
+        assertEquals(0, lookup.forEachOverlapping(1, 101, 200, result::add));
+    }
+    @Test(expected = IllegalStateException.class)
+    public void should_not_allow_add_after_lookup() {
+        KmerOffsetIntervalLookup lookup = new KmerOffsetIntervalLookup();
+        lookup.add(1, 1, 1, 0);
+        lookup.forEachOverlapping(1, 1, 1, x -> { });
+        lookup.add(1, 1, 1, 0);
+    }
+    @Test
+    public void should_match_brute_force_lookup() {
+        Random rng = new Random(0);
+        int n = 500;
+        long[] kmer = new long[n];
+        int[] start = new int[n];
+        int[] end = new int[n];
+        KmerOffsetIntervalLookup lookup = new KmerOffsetIntervalLookup();
+        for (int i = 0; i < n; i++) {
+            kmer[i] = rng.nextInt(8);
+            start[i] = rng.nextInt(1000);
+            end[i] = start[i] + rng.nextInt(100);
+            lookup.add(kmer[i], start[i], end[i], i);
+        }
+        for (int q = 0; q < 1000; q++) {
+            long k = rng.nextInt(10);
+            int s = rng.nextInt(1100);
+            int e = s + rng.nextInt(50);
+            boolean[] found = new boolean[n];
+            int count = lookup.forEachOverlapping(k, s, e, i -> {
+                assertFalse(found[i]);
+                found[i] = true;
+            });
+            int expectedCount = 0;
+            for (int i = 0; i < n; i++) {
+                boolean expected = kmer[i] == k && start[i] <= e && end[i] >= s;
+                assertEquals(expected, found[i]);
+                if (expected) expectedCount++;
+            }
+            assertEquals(expectedCount, count);
+        }
+    }
+}
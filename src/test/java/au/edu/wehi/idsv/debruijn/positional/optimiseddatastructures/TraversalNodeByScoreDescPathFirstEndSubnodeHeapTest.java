@@ -0,0 +1,66 @@
+package au.edu.wehi.idsv.debruijn.positional.optimiseddatastructures;
+
+import au.edu.wehi.idsv.debruijn.positional.KmerPathNode;
+import au.edu.wehi.idsv.debruijn.positional.KmerPathSubnode;
+import au.edu.wehi.idsv.debruijn.positional.TraversalNode;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import static org.junit.Assert.*;
+
+public class TraversalNodeByScoreDescPathFirstEndSubnodeHeapTest {
+    private static List<TraversalNode> nodes() {
+        ArrayList<TraversalNode> list = new ArrayList<>();
+        for(int score = 0; score < 8; score++) {
+            for (int pathStart = 0; pathStart < 8; pathStart++) {
+                for (int pathEnd = pathStart; pathEnd <= pathStart + 1; pathEnd++) {
+                    KmerPathNode kpn = new KmerPathNode(list.size(), pathStart, pathEnd, false, score);
+                    KmerPathSubnode kps = new KmerPathSubnode(kpn, pathStart, pathEnd);
+                    list.add(new TraversalNode(kps, score));
+                }
+            }
+        }
+        return list;
+    }
+    @Test
+    public void should_match_sortedset() {
+        List<TraversalNode> list = nodes();
+        SortedSet<TraversalNode> ss = new TreeSet<>(TraversalNode.ByScoreDescPathFirstEndSubnode);
+        TraversalNodeByScoreDescPathFirstEndSubnodeHeap heap = new TraversalNodeByScoreDescPathFirstEndSubnodeHeap(1);
+        Random rng = new Random(0);
+        for (int i = 0; i < 10000; i++) {
+            TraversalNode tn = list.get(rng.nextInt(list.size()));
+            if (rng.nextBoolean()) {
+                assertEquals(ss.add(tn), heap.add(tn));
+            } else {
+                assertEquals(ss.remove(tn), heap.remove(tn));
+            }
+            assertEquals(ss.size(), heap.size());
+            assertEquals(ss.contains(tn), heap.contains(tn));
+            if (!ss.isEmpty()) {
+                assertSame(ss.first(), heap.first());
+            }
+            assertTrue(heap.sanityCheck());
+        }
+        assertEquals(ss.removeAll(list), heap.removeAll(list));
+        assertTrue(heap.isEmpty());
+    }
+    @Test
+    public void should_drain_in_score_order() {
+        List<TraversalNode> list = nodes();
+        SortedSet<TraversalNode> ss = new TreeSet<>(TraversalNode.ByScoreDescPathFirstEndSubnode);
+        TraversalNodeByScoreDescPathFirstEndSubnodeHeap heap = new TraversalNodeByScoreDescPathFirstEndSubnodeHeap();
+        ss.addAll(list);
+        list.forEach(heap::add);
+        for (TraversalNode tn : ss) {
+            assertSame(tn, heap.first());
+            assertTrue(heap.remove(tn));
+        }
+        assertTrue(heap.isEmpty());
+    }
+}
@@ -0,0 +1,56 @@
+package au.edu.wehi.idsv.debruijn.positional.optimiseddatastructures;
+
+import au.edu.wehi.idsv.debruijn.positional.KmerPathNode;
+import au.edu.wehi.idsv.debruijn.positional.KmerPathSubnode;
+import au.edu.wehi.idsv.debruijn.positional.TraversalNode;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TraversalNodeMemoizationTableTest {
+    private static TraversalNode tn(KmerPathNode kpn, int start, int end) {
+        return new TraversalNode(new KmerPathSubnode(kpn, start, end), 0);
+    }
+    @Test
+    public void should_keep_paths_sorted_by_end() {
+        KmerPathNode kpn = new KmerPathNode(0, 1, 100, false, 1);
+        TraversalNodeMemoizationTable table = new TraversalNodeMemoizationTable();
+        int id = table.getOrCreateId(kpn);
+        TraversalNode tn1 = tn(kpn, 1, 10);
+        TraversalNode tn2 = tn(kpn, 11, 20);
+        TraversalNode tn3 = tn(kpn, 21, 30);
+        table.put(id, tn3);
+        table.put(id, tn1);
+        table.put(id, tn2);
+        assertEquals(3, table.size(id));
+        assertSame(tn1, table.get(id, 0));
+        assertSame(tn2, table.get(id, 1));
+        assertSame(tn3, table.get(id, 2));
+        assertEquals(1, table.firstEndingAtOrAfter(id, 11));
+        assertEquals(1, table.firstEndingAtOrAfter(id, 20));
+        assertEquals(2, table.firstEndingAtOrAfter(id, 21));
+        assertEquals(3, table.firstEndingAtOrAfter(id, 31));
+        assertSame(tn2, table.removeByEnd(id, 20));
+        assertNull(table.removeByEnd(id, 20));
+        assertFalse(table.containsPath(tn2));
+        assertTrue(table.containsPath(tn3));
+        assertEquals(2, table.paths(id).size());
+    }
+    @Test
+    public void should_reuse_ids_of_removed_nodes() {
+        KmerPathNode kpn1 = new KmerPathNode(0, 1, 100, false, 1);
+        KmerPathNode kpn2 = new KmerPathNode(1, 1, 100, false, 1);
+        TraversalNodeMemoizationTable table = new TraversalNodeMemoizationTable();
+        int id1 = table.getOrCreateId(kpn1);
+        table.put(id1, tn(kpn1, 1, 10));
+        assertEquals(id1, table.getOrCreateId(kpn1));
+        table.remove(id1);
+        assertFalse(table.contains(kpn1));
+        assertTrue(table.id(kpn1) < 0);
+        int id2 = table.getOrCreateId(kpn2);
+        assertEquals(id1, id2);
+        assertEquals(0, table.size(id2));
+        assertEquals(1, table.nodeCount());
+        assertEquals(1, table.ids().count());
+    }
+}
@@ -1,6 +1,7 @@
 package au.edu.wehi.idsv.metrics;
 
 import au.edu.wehi.idsv.TestHelper;
+import au.edu.wehi.idsv.util.MathUtil;
 import gridss.analysis.CigarDetailMetrics;
 import gridss.analysis.IdsvMetrics;
 import gridss.analysis.InsertSizeDistribution;
@@ -35,6 +36,24 @@ public class IdsvSamFileMetricsTest extends TestHelper {
 		InsertSizeMetrics metrics = IdsvSamFileMetrics.getInsertSizeMetrics(new File("src/test/resources/multiple.idsv.metrics.insertsize.txt"), false);
 		assertEquals(PairOrientation.FR, metrics.PAIR_ORIENTATION);
 	}
+	@Test
+	public void getReadPairPhred_should_match_insert_size_distribution() {
+		IdsvMetrics im = new IdsvMetrics();
+		im.READ_PAIRS_BOTH_MAPPED = 2000;
+		int[] fragSize = new int[] { 100, 101, 103, 110, 150, 200 };
+		double[] counts = new double[] { 10, 50, 200, 600, 100, 40 };
+		InsertSizeDistribution isd = new InsertSizeDistribution(fragSize, counts);
+		IdsvSamFileMetrics metrics = new IdsvSamFileMetrics(new InsertSizeMetrics(), im, new MapqMetrics(), isd, new ArrayList<>());
+		for (int i = -10; i < 300; i++) {
+			double pairs = 0;
+			if (i > 0 && i >= 100 && i <= 200) {
+				pairs = Math.min(1.0 - isd.cumulativeProbability(i - 1), isd.cumulativeProbability(i)) * isd.getTotalMappedPairs();
+			}
+			double expected = Math.min(1, (im.READ_PAIRS_BOTH_MAPPED - isd.getTotalMappedPairs() + pairs) / im.READ_PAIRS_BOTH_MAPPED);
+			assertEquals(expected, metrics.readPairFoldedCumulativeDistribution(i), 1e-12);
+			assertEquals(MathUtil.prToPhred(expected), metrics.getReadPairPhred(i), 1e-9);
+		}
+	}
 	/*
 	@Test
 	public void shouldUseMADforStdDev() {
@@ -0,0 +1,118 @@
+package au.edu.wehi.idsv.sam;
+
+import htsjdk.samtools.SAMFileHeader;
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.SAMSequenceDictionary;
+import htsjdk.samtools.SAMSequenceRecord;
+import htsjdk.samtools.SAMTag;
+import htsjdk.samtools.TextCigarCodec;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+
+public class ParsedSATagTest {
+	private static final String SA = "chr18,107870,-,8817S631M318S,30,39;chr18,108695,-,7874S237M1D203M1I5M2D215M1D40M1191S,0,48;chrUn_gl000216,155097,+,927S271M8568S,19,12;chr2,89875994,+,4240S52M5474H,30,;";
+	@Test
+	public void should_match_chimeric_alignment_parsing() {
+		ParsedSATag sa = ParsedSATag.parse(SA);
+		assertEquals(4, sa.size());
+		for (int i = 0; i < sa.size(); i++) {
+			ChimericAlignment expected = new ChimericAlignment(SA.split(";")[i]);
+			assertEquals(expected, sa.chimericAlignment(i));
+			assertEquals(expected.nm, sa.chimericAlignment(i).nm);
+			assertEquals(expected.rname, sa.referenceName(i));
+			assertEquals(expected.pos, sa.pos(i));
+			assertEquals(expected.isNegativeStrand, sa.isNegativeStrand(i));
+			assertEquals(expected.mapq, sa.mapq(i));
+			assertEquals(expected.getFirstAlignedBaseReadOffset(), sa.firstAlignedBaseReadOffset(i));
+			assertEquals(expected.getLastAlignedBaseReadOffset(), sa.lastAlignedBaseReadOffset(i));
+			assertEquals(CigarUtil.readLengthIncludingHardClipping(expected.cigar.getCigarElements()), sa.readLength(i));
+			assertEquals(expected.cigar.getReferenceLength(), sa.referenceLength(i));
+		}
+		assertFalse(sa.hasNm(3));
+	}
+	@Test
+	public void should_ignore_null_empty() {
+		assertEquals(0, ParsedSATag.parse(null).size());
+		assertEquals(0, ParsedSATag.parse("").size());
+		assertEquals(0, ParsedSATag.parse(" ; ").size());
+	}
+	@Test
+	public void should_default_missing_mapq() {
+		ParsedSATag sa = ParsedSATag.parse("chr1,100,+,10M");
+		assertEquals(SAMRecord.UNKNOWN_MAPPING_QUALITY, sa.mapq(0));
+		assertFalse(sa.hasNm(0));
+	}
+	@Test(expected = IllegalArgumentException.class)
+	public void should_reject_malformed_alignment() {
+		ParsedSATag.parse("chr1,100,+");
+	}
+	@Test
+	public void should_resolve_reference_index() {
+		SAMSequenceDictionary dict = new SAMSequenceDictionary();
+		dict.addSequence(new SAMSequenceRecord("chr2", 100000000));
+		ParsedSATag sa = ParsedSATag.parse(SA, dict);
+		assertEquals(-1, sa.referenceIndex(0));
+		assertEquals(0, sa.referenceIndex(3));
+	}
+	@Test
+	public void should_cache_on_record() {
+		SAMRecord r = new SAMRecord(new SAMFileHeader());
+		r.setAttribute(SAMTag.SA.name(), SA);
+		ParsedSATag sa = ParsedSATag.get(r);
+		assertSame(sa, ParsedSATag.get(r));
+		assertSame(sa.chimericAlignment(0), ChimericAlignment.getChimericAlignments(r).get(0));
+	}
+	@Test
+	public void should_reparse_when_tag_changes() {
+		SAMRecord r = new SAMRecord(new SAMFileHeader());
+		r.setAttribute(SAMTag.SA.name(), SA);
+		assertEquals(4, ParsedSATag.get(r).size());
+		r.setAttribute(SAMTag.SA.name(), "chr1,100,+,10M,0,0");
+		assertEquals(1, ParsedSATag.get(r).size());
+		r.setAttribute(SAMTag.SA.name(), null);
+		assertEquals(0, ParsedSATag.get(r).size());
+	}
+	@Test
+	public void getChimericAlignments_should_return_modifiable_list() {
+		SAMRecord r = new SAMRecord(new SAMFileHeader());
+		r.setAttribute(SAMTag.SA.name(), SA);
+		List<ChimericAlignment> list = ChimericAlignment.getChimericAlignments(r);
+		list.clear();
+		assertEquals(4, ChimericAlignment.getChimericAlignments(r).size());
+	}
+	@Test
+	public void should_find_adjacent_alignments_by_read_offset() {
+		// read offsets 1, 7, 3
+		ParsedSATag sa = ParsedSATag.parse("chr1,1,+,1S2M7S,0,0;chr1,1,-,1S2M7S,0,0;chr1,1,+,3S2M5S,0,0");
+		assertEquals(2, sa.predecessorByReadOffset(5));
+		assertEquals(1, sa.successorByReadOffset(5));
+		assertEquals(-1, sa.predecessorByReadOffset(1));
+		assertEquals(-1, sa.successorByReadOffset(7));
+	}
+	@Test
+	public void interval_arithmetic_should_match_range_sets() {
+		String str = "chr1,1,+,1S2M7S,0,0;chr1,1,+,2S2M6S,0,0;chr1,1,-,1S2M7S,0,0";
+		ParsedSATag sa = ParsedSATag.parse(str);
+		List<ChimericAlignment> list = ChimericAlignment.getChimericAlignments(str);
+		assertArrayEquals(new int[] { 1, 4, 7, 9 }, sa.getAlignedIntervals());
+		assertArrayEquals(new int[] { 0, 1, 4, 7, 9, 10 }, sa.getUnalignedIntervals());
+		assertEquals("[[1..4), [7..9)]", ChimericAlignment.getAlignedIntervals(list).toString());
+		assertEquals("[[0..1), [4..7), [9..10)]", ChimericAlignment.getUnalignedIntervals(list).toString());
+	}
+	@Test
+	public void complement_should_clip_to_bounds() {
+		assertArrayEquals(new int[] { 0, 10 }, ParsedSATag.complement(new int[0], 0, 10));
+		assertArrayEquals(new int[] { 2, 5 }, ParsedSATag.complement(new int[] { 0, 2, 5, 20 }, 0, 10));
+		assertArrayEquals(new int[] { }, ParsedSATag.complement(new int[] { 0, 20 }, 0, 10));
+	}
+	@Test
+	public void should_handle_unaligned_cigar() {
+		ParsedSATag sa = ParsedSATag.parse("chr1,1,+,*,0,0");
+		assertEquals(TextCigarCodec.decode("*"), sa.chimericAlignment(0).cigar);
+		assertEquals(0, sa.readLength(0));
+	}
+}
@@ -2,9 +2,10 @@ package au.edu.wehi.idsv.sam;
 
 import au.edu.wehi.idsv.IntermediateFilesTest;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Ordering;
+import htsjdk.samtools.*;
 import htsjdk.samtools.SAMFileHeader.SortOrder;
-import htsjdk.samtools.SAMRecord;
 import org.junit.Test;
 
 import java.io.File;
@@ -64,4 +65,22 @@ public class SAMFileUtilTest extends IntermediateFilesTest {
 				withReadName("2", Read(1, 5, "1M"))[0]);
 		SAMFileUtil.merge(ImmutableList.of(input, output), output);
 	}
+	@Test
+	public void setRecordFilter_should_skip_records_before_decoding() throws IOException {
+		createBAM(input, SortOrder.coordinate,
+				withReadName("unmapped", Unmapped(10))[0],
+				withReadName("clipped", Read(0, 1, "5S5M"))[0],
+				withReadName("mapped", Read(0, 2, "10M"))[0],
+				withReadName("lowmapq", withMapq(1, Read(0, 3, "10M")))[0]);
+		BAMRecordFilter filter = (record, length) ->
+				(BAMRecordFilter.getFlags(record) & SAMFlag.READ_UNMAPPED.intValue()) != 0
+				|| BAMRecordFilter.getMappingQuality(record) < 10
+				|| BAMRecordFilter.getCigarOperator(record, 0) != CigarOperator.SOFT_CLIP;
+		try (SamReader reader = SamReaderFactory.makeDefault().open(input)) {
+			assertTrue(SAMFileUtil.setRecordFilter(reader, filter));
+			List<SAMRecord> list = Lists.newArrayList(reader.iterator());
+			assertEquals(1, list.size());
+			assertEquals("clipped", list.get(0).getReadName());
+		}
+	}
 }
@@ -0,0 +1,60 @@
+package au.edu.wehi.idsv.sam;
+
+import au.edu.wehi.idsv.IntermediateFilesTest;
+import com.google.common.collect.Lists;
+import htsjdk.samtools.SAMFileHeader.SortOrder;
+import htsjdk.samtools.SAMRecord;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class SortingSAMFileWriterTest extends IntermediateFilesTest {
+	private List<SAMRecord> sort(SortOrder sortOrder, int maxRecordsInRam, SAMRecord... records) {
+		SortingSAMFileWriter writer = new SortingSAMFileWriter(getHeader(), sortOrder, maxRecordsInRam, testFolder.getRoot());
+		for (SAMRecord r : records) {
+			writer.addAlignment(r);
+		}
+		writer.close();
+		assertEquals(records.length, writer.size());
+		List<SAMRecord> result = Lists.newArrayList(writer.iterator());
+		writer.cleanup();
+		return result;
+	}
+	@Test
+	public void should_sort_by_coordinate() {
+		List<SAMRecord> result = sort(SortOrder.coordinate, 100, Read(1, 1, "1M"), Read(0, 3, "1M"), Read(0, 2, "1M"));
+		assertEquals(2, result.get(0).getAlignmentStart());
+		assertEquals(3, result.get(1).getAlignmentStart());
+		assertEquals(1, (int)result.get(2).getReferenceIndex());
+	}
+	@Test
+	public void should_sort_by_queryname() {
+		SAMRecord[] in = new SAMRecord[] { Read(0, 1, "1M"), Read(0, 2, "1M"), Read(0, 3, "1M") };
+		in[0].setReadName("c");
+		in[1].setReadName("a");
+		in[2].setReadName("b");
+		List<SAMRecord> result = sort(SortOrder.queryname, 100, in);
+		assertEquals("a", result.get(0).getReadName());
+		assertEquals("b", result.get(1).getReadName());
+		assertEquals("c", result.get(2).getReadName());
+	}
+	@Test
+	public void should_spill_to_disk() {
+		SAMRecord[] in = new SAMRecord[100];
+		for (int i = 0; i < in.length; i++) {
+			in[i] = Read(0, in.length - i, "1M");
+		}
+		List<SAMRecord> result = sort(SortOrder.coordinate, 8, in);
+		for (int i = 0; i < in.length; i++) {
+			assertEquals(i + 1, result.get(i).getAlignmentStart());
+		}
+	}
+	@Test(expected = IllegalStateException.class)
+	public void should_require_close_before_iteration() {
+		SortingSAMFileWriter writer = new SortingSAMFileWriter(getHeader(), SortOrder.coordinate, 100, testFolder.getRoot());
+		writer.addAlignment(Read(0, 1, "1M"));
+		writer.iterator();
+	}
+}
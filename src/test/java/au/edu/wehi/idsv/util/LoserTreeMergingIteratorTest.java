@@ -0,0 +1,59 @@
+package au.edu.wehi.idsv.util;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Ordering;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+
+public class LoserTreeMergingIteratorTest {
+	@Test
+	public void should_merge_in_order() {
+		Random rng = new Random(0);
+		for (int k = 0; k <= 17; k++) {
+			List<List<Integer>> input = new ArrayList<>();
+			List<Integer> expected = new ArrayList<>();
+			for (int i = 0; i < k; i++) {
+				List<Integer> list = new ArrayList<>();
+				int n = rng.nextInt(20);
+				for (int j = 0; j < n; j++) {
+					list.add(rng.nextInt(50));
+				}
+				list.sort(Ordering.natural());
+				input.add(list);
+				expected.addAll(list);
+			}
+			expected.sort(Ordering.natural());
+			List<Iterator<Integer>> its = Lists.transform(input, List::iterator);
+			assertEquals(expected, Lists.newArrayList(new LoserTreeMergingIterator<>(its, Ordering.natural())));
+		}
+	}
+	@Test
+	public void should_return_ties_in_iterator_order() {
+		List<Integer[]> a = ImmutableList.of(new Integer[] { 1, 0 }, new Integer[] { 2, 0 });
+		List<Integer[]> b = ImmutableList.of(new Integer[] { 1, 1 }, new Integer[] { 2, 1 });
+		List<Integer[]> c = ImmutableList.of(new Integer[] { 1, 2 });
+		List<Integer[]> result = Lists.newArrayList(new LoserTreeMergingIterator<Integer[]>(
+				ImmutableList.of(c.iterator(), a.iterator(), b.iterator()),
+				Ordering.natural().onResultOf((Integer[] x) -> x[0])));
+		assertEquals(5, result.size());
+		assertEquals(2, (int)result.get(0)[1]);
+		assertEquals(0, (int)result.get(1)[1]);
+		assertEquals(1, (int)result.get(2)[1]);
+		assertEquals(0, (int)result.get(3)[1]);
+		assertEquals(1, (int)result.get(4)[1]);
+	}
+	@Test
+	public void should_handle_no_iterators() {
+		assertFalse(new LoserTreeMergingIterator<Integer>(ImmutableList.of(), Ordering.natural()).hasNext());
+		assertFalse(new LoserTreeMergingIterator<Integer>(ImmutableList.of(ImmutableList.<Integer>of().iterator()), Ordering.natural()).hasNext());
+	}
+}
@@ -11,6 +11,7 @@ import java.util.concurrent.Executors;
 import java.util.function.Function;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
 
 
 public class ParallelTransformIteratorTest {
@@ -54,4 +55,21 @@ public class ParallelTransformIteratorTest {
 		for (int i = 32; i > 0; i--) assertEquals(i, (int)it.next());
 		threadpool.shutdown();
 	}
+	@Test
+	public void should_rethrow_transform_exception() {
+		ExecutorService threadpool = Executors.newFixedThreadPool(4);
+		CIT cit = new CIT(32);
+		ParallelTransformIterator<Integer, Integer> it = new ParallelTransformIterator<Integer, Integer>(cit, n -> {
+			if (n == 16) throw new IllegalStateException("transform failure");
+			return n;
+		}, 4, threadpool);
+		for (int i = 32; i > 16; i--) assertEquals(i, (int)it.next());
+		try {
+			it.next();
+			fail();
+		} catch (IllegalStateException e) {
+			assertEquals("transform failure", e.getMessage());
+		}
+		threadpool.shutdown();
+	}
 }
@@ -0,0 +1,73 @@
+package au.edu.wehi.idsv.util;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+
+public class PartitioningIterableTest {
+	@Test
+	public void should_route_records_to_partition() {
+		List<Integer> list = ImmutableList.of(0, 1, 2, 3, 4, 5, 6, 7, 8);
+		PartitioningIterable<Integer> pi = new PartitioningIterable<>(3, list.iterator(), x -> x % 3, 2, 4);
+		List<Iterator<Integer>> its = ImmutableList.of(pi.iterator(), pi.iterator(), pi.iterator());
+		// consume in reverse order to ensure partitions are independent
+		assertEquals(ImmutableList.of(2, 5, 8), Lists.newArrayList(its.get(2)));
+		assertEquals(ImmutableList.of(1, 4, 7), Lists.newArrayList(its.get(1)));
+		assertEquals(ImmutableList.of(0, 3, 6), Lists.newArrayList(its.get(0)));
+	}
+	@Test
+	public void should_drop_negative_partition() {
+		List<Integer> list = ImmutableList.of(0, 1, 2, 3, 4, 5, 6, 7);
+		PartitioningIterable<Integer> pi = new PartitioningIterable<>(1, list.iterator(), x -> x % 2 == 0 ? 0 : -1, 3, 1);
+		assertEquals(ImmutableList.of(0, 2, 4, 6), Lists.newArrayList(pi.iterator()));
+	}
+	@Test
+	public void should_allow_empty_partitions() {
+		List<Integer> list = ImmutableList.of(0, 1, 2);
+		PartitioningIterable<Integer> pi = new PartitioningIterable<>(2, list.iterator(), x -> 0, 1, 1);
+		Iterator<Integer> it0 = pi.iterator();
+		Iterator<Integer> it1 = pi.iterator();
+		assertEquals(list, Lists.newArrayList(it0));
+		assertFalse(it1.hasNext());
+	}
+	@Test
+	public void should_return_all_records_with_concurrent_consumers() throws InterruptedException {
+		List<Integer> list = new ArrayList<>();
+		for (int i = 0; i < 10000; i++) {
+			list.add(i);
+		}
+		int n = 4;
+		PartitioningIterable<Integer> pi = new PartitioningIterable<>(n, list.iterator(), x -> x % n, 16, 2);
+		List<List<Integer>> result = new ArrayList<>();
+		List<Thread> threads = new ArrayList<>();
+		for (int i = 0; i < n; i++) {
+			List<Integer> out = new ArrayList<>();
+			Iterator<Integer> it = pi.iterator();
+			result.add(out);
+			threads.add(new Thread(() -> it.forEachRemaining(out::add)));
+		}
+		threads.forEach(Thread::start);
+		for (Thread t : threads) {
+			t.join();
+		}
+		for (int i = 0; i < n; i++) {
+			assertEquals(list.size() / n, result.get(i).size());
+			for (int x : result.get(i)) {
+				assertEquals(i, x % n);
+			}
+		}
+	}
+	@Test(expected=RuntimeException.class)
+	public void should_propagate_underlying_exception() {
+		PartitioningIterable<Integer> pi = new PartitioningIterable<>(1, new ErrorIterator<>(), x -> 0, 1, 1);
+		Lists.newArrayList(pi.iterator());
+	}
+}
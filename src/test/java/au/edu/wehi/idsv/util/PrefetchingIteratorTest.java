@@ -0,0 +1,60 @@
+package au.edu.wehi.idsv.util;
+
+import com.google.common.collect.Iterators;
+import com.google.common.collect.Lists;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+
+public class PrefetchingIteratorTest {
+	private ExecutorService threadpool;
+	@Before
+	public void setup() {
+		threadpool = Executors.newFixedThreadPool(2);
+	}
+	@After
+	public void teardown() {
+		threadpool.shutdown();
+	}
+	@Test
+	public void should_return_underlying_records_in_order() {
+		List<Integer> list = new ArrayList<>();
+		for (int i = 0; i < 1000; i++) {
+			list.add(i);
+		}
+		assertEquals(list, Lists.newArrayList(new PrefetchingIterator<>(list.iterator(), threadpool, 2, 7)));
+		assertEquals(list, Lists.newArrayList(new PrefetchingIterator<>(list.iterator(), threadpool, 1, 1)));
+	}
+	@Test
+	public void should_share_threads_between_iterators() {
+		List<PrefetchingIterator<Integer>> its = new ArrayList<>();
+		for (int i = 0; i < 16; i++) {
+			its.add(new PrefetchingIterator<>(new AsyncBufferedIteratorTest.CIT(100), threadpool, 2, 8));
+		}
+		for (PrefetchingIterator<Integer> it : its) {
+			assertEquals(100, Iterators.size(it));
+		}
+	}
+	@Test
+	public void should_close_underlying() {
+		AsyncBufferedIteratorTest.CIT it = new AsyncBufferedIteratorTest.CIT(100);
+		PrefetchingIterator<Integer> pit = new PrefetchingIterator<>(it, threadpool, 2, 8);
+		pit.next();
+		pit.close();
+		assertTrue(it.isClosed);
+	}
+	@Test(expected=RuntimeException.class)
+	public void should_rethrow_underlying_exception() {
+		PrefetchingIterator<Integer> pit = new PrefetchingIterator<>(Iterators.transform(Iterators.forArray(1, 2, 0), x -> 1 / x), threadpool, 2, 1);
+		Iterators.size(pit);
+	}
+}
@@ -0,0 +1,55 @@
+package au.edu.wehi.idsv.util;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Ordering;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+
+public class WindowedSortingIteratorTest {
+	private static List<Long> sort(List<Long> list, long windowSize) {
+		return Lists.newArrayList(new WindowedSortingIterator<Long>(list.iterator(), x -> x, windowSize));
+	}
+	@Test
+	public void should_sort_within_window() {
+		assertEquals(ImmutableList.of(1L, 2L, 3L, 4L, 5L), sort(ImmutableList.of(2L, 1L, 3L, 5L, 4L), 1));
+		assertEquals(ImmutableList.of(1L, 1L, 2L, 2L), sort(ImmutableList.of(2L, 1L, 2L, 1L), 1));
+		assertEquals(ImmutableList.of(7L, 7L, 7L), sort(ImmutableList.of(7L, 7L, 7L), 0));
+	}
+	@Test
+	public void should_sort_across_large_coordinate_gaps() {
+		assertEquals(ImmutableList.of(1L, 2L, 1000000000L, 1000000001L, 5000000000L),
+				sort(ImmutableList.of(2L, 1L, 1000000001L, 1000000000L, 5000000000L), 10));
+	}
+	@Test
+	public void should_match_full_sort_for_bounded_disorder() {
+		Random rng = new Random(0);
+		for (long windowSize : new long[] { 0, 1, 5, 100, 10000, 100000 }) {
+			List<Long> list = new ArrayList<>();
+			long pos = 0;
+			for (int i = 0; i < 5000; i++) {
+				pos += rng.nextInt(rng.nextInt(10) == 0 ? 1000 : 10);
+				list.add(pos + (windowSize == 0 ? 0 : (long)rng.nextInt((int)Math.min(windowSize, Integer.MAX_VALUE))));
+			}
+			List<Long> expected = Ordering.natural().sortedCopy(list);
+			// disorder is bounded by windowSize since each record is at most windowSize after its sorted position
+			assertEquals(expected, sort(list, windowSize));
+		}
+	}
+	@Test
+	public void should_use_sort_order_for_records_at_same_coordinate() {
+		List<long[]> list = ImmutableList.of(new long[] { 1, 3 }, new long[] { 1, 2 }, new long[] { 0, 9 }, new long[] { 1, 1 });
+		List<long[]> result = Lists.newArrayList(new WindowedSortingIterator<long[]>(list.iterator(), x -> x[0], 1,
+				Ordering.natural().onResultOf((long[] x) -> x[0]).compound(Ordering.natural().onResultOf((long[] x) -> x[1]))));
+		assertEquals(9, result.get(0)[1]);
+		assertEquals(1, result.get(1)[1]);
+		assertEquals(2, result.get(2)[1]);
+		assertEquals(3, result.get(3)[1]);
+	}
+}
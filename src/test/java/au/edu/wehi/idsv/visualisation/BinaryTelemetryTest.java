@@ -0,0 +1,182 @@
+package au.edu.wehi.idsv.visualisation;
+
+import au.edu.wehi.idsv.BreakendDirection;
+import au.edu.wehi.idsv.TestHelper;
+import au.edu.wehi.idsv.visualisation.BinaryTelemetry.ColumnType;
+import au.edu.wehi.idsv.visualisation.BinaryTelemetry.TelemetryStream;
+import com.google.common.collect.ImmutableList;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+
+public class BinaryTelemetryTest extends TestHelper {
+	@Rule
+	public TemporaryFolder testFolder = new TemporaryFolder();
+	private static List<String> lines(File file) throws IOException {
+		return Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+	}
+	@Test
+	public void should_round_trip_all_column_types() throws IOException {
+		File file = testFolder.newFile("telemetry.bin");
+		try (BinaryTelemetry telemetry = new BinaryTelemetry(file)) {
+			TelemetryStream stream = telemetry.createStream("test.csv", "a,b,c", ColumnType.LONG, ColumnType.STRING, ColumnType.BOOLEAN);
+			stream.record(new long[] { 1, telemetry.intern("x"), 1 });
+			stream.record(new long[] { -5, telemetry.intern("y"), 0 });
+			stream.record(new long[] { BinaryTelemetry.EMPTY, telemetry.intern("x"), BinaryTelemetry.EMPTY });
+		}
+		File out = testFolder.newFolder("out");
+		assertEquals(0, BinaryTelemetryReader.convert(file, out));
+		assertEquals(ImmutableList.of("a,b,c", "1,x,true", "-5,y,false", ",x,"), lines(new File(out, "test.csv")));
+	}
+	@Test
+	public void should_write_one_file_per_stream_name() throws IOException {
+		File file = testFolder.newFile("telemetry.bin");
+		try (BinaryTelemetry telemetry = new BinaryTelemetry(file)) {
+			TelemetryStream s1 = telemetry.createStream("s1.csv", null, ColumnType.LONG);
+			TelemetryStream s2 = telemetry.createStream("s2.csv", "h", ColumnType.LONG);
+			telemetry.createStream("unused.csv", null, ColumnType.LONG);
+			s1.record(new long[] { 1 });
+			s2.record(new long[] { 2 });
+			s1.record(new long[] { 3 });
+		}
+		File out = testFolder.newFolder("out");
+		BinaryTelemetryReader.convert(file, out);
+		assertEquals(ImmutableList.of("1", "3"), lines(new File(out, "s1.csv")));
+		assertEquals(ImmutableList.of("h", "2"), lines(new File(out, "s2.csv")));
+		assertFalse(new File(out, "unused.csv").exists());
+	}
+	@Test
+	public void should_record_from_multiple_threads() throws Exception {
+		File file = testFolder.newFile("telemetry.bin");
+		int threads = 4;
+		int n = 10000;
+		try (BinaryTelemetry telemetry = new BinaryTelemetry(file, 1 << 20)) {
+			TelemetryStream stream = telemetry.createStream("threads.csv", null, ColumnType.LONG, ColumnType.LONG);
+			List<Thread> workers = new ArrayList<>();
+			for (int t = 0; t < threads; t++) {
+				long threadId = t;
+				workers.add(new Thread(() -> {
+					long[] row = new long[2];
+					for (int i = 0; i < n; i++) {
+						row[0] = threadId;
+						row[1] = i;
+						stream.record(row);
+					}
+				}));
+			}
+			for (Thread t : workers) t.start();
+			for (Thread t : workers) t.join();
+		}
+		long[] count = new long[threads];
+		try (BinaryTelemetryReader reader = new BinaryTelemetryReader(file)) {
+			reader.read((stream, row, strings) -> {
+				// records from each thread are in order
+				assertEquals(count[(int)row[0]], row[1]);
+				count[(int)row[0]]++;
+			});
+			assertEquals(0, reader.getDroppedCount());
+		}
+		for (int t = 0; t < threads; t++) {
+			assertEquals(n, count[t]);
+		}
+	}
+	@Test
+	public void should_count_dropped_records() throws IOException {
+		File file = testFolder.newFile("telemetry.bin");
+		try (BinaryTelemetry telemetry = new BinaryTelemetry(file, 4)) {
+			TelemetryStream stream = telemetry.createStream("dropped.csv", null, ColumnType.LONG, ColumnType.LONG);
+			for (int i = 0; i < 10; i++) {
+				stream.record(new long[] { i, i });
+			}
+			assertEquals(9, telemetry.getDroppedCount());
+		}
+		File out = testFolder.newFolder("out");
+		assertEquals(9, BinaryTelemetryReader.convert(file, out));
+		assertEquals(ImmutableList.of("0,0"), lines(new File(out, "dropped.csv")));
+	}
+	@Test
+	public void assembly_telemetry_should_match_text_format() throws IOException {
+		File file = testFolder.newFile("telemetry.bin");
+		try (BinaryTelemetry telemetry = new BinaryTelemetry(file)) {
+			AssemblyTelemetry at = new AssemblyTelemetry(telemetry, "assembly.telemetry.csv", getSequenceDictionary());
+			AssemblyTelemetry.AssemblyChunkTelemetry ct = at.getTelemetry(3, BreakendDirection.Backward);
+			ct.loadGraph(1, 10, 20, 5, true, 12345);
+			ct.flushContigs(1, 10, 15, 2, 2000);
+			ct.flushReferenceNodes(2, 1, 2, 3, 999);
+			at.close();
+		}
+		File out = testFolder.newFolder("out");
+		BinaryTelemetryReader.convert(file, out);
+		assertEquals(ImmutableList.of(
+				"3,b,load,polyACGT,10,20,5,true,12",
+				"3,b,flushContigs,polyACGT,10,15,2,,2",
+				"3,b,flushReferenceNodes,random,1,2,3,,0"), lines(new File(out, "assembly.telemetry.csv")));
+	}
+	@Test
+	public void state_tracker_should_match_text_format() throws IOException {
+		File file = testFolder.newFile("telemetry.bin");
+		File text = new File(testFolder.getRoot(), "maxclique.csv");
+		TrackedState ts = new TrackedState() {
+			private int i = 0;
+			@Override
+			public String[] trackedNames() {
+				return new String[] { "chr", "pos", "flag" };
+			}
+			@Override
+			public Object[] trackedState() {
+				i++;
+				return new Object[] { "chr" + i, i, i % 2 == 0 ? null : true };
+			}
+			@Override
+			public Collection<TrackedState> trackedObjects() {
+				return ImmutableList.of(this);
+			}
+		};
+		try (BinaryTelemetry telemetry = new BinaryTelemetry(file)) {
+			StateTracker tracker = new StateTracker(telemetry, text.getName());
+			tracker.writeHeader(ImmutableList.of(ts));
+			tracker.track(ImmutableList.of(ts));
+			tracker.track(ImmutableList.of(ts));
+			tracker.close();
+		}
+		File out = testFolder.newFolder("out");
+		BinaryTelemetryReader.convert(file, out);
+		List<String> result = lines(new File(out, text.getName()));
+		assertEquals("nsElapsedTime,chr,pos,flag", result.get(0));
+		assertTrue(result.get(1).endsWith(",chr1,1,true"));
+		assertTrue(result.get(2).endsWith(",chr2,2,"));
+	}
+	@Test(expected = IOException.class)
+	public void reader_should_reject_non_telemetry_file() throws IOException {
+		File file = testFolder.newFile("not.bin");
+		Files.write(file.toPath(), "not telemetry".getBytes(StandardCharsets.UTF_8));
+		new BinaryTelemetryReader(file);
+	}
+	@Test
+	public void reader_should_stop_at_truncated_section() throws IOException {
+		File file = testFolder.newFile("telemetry.bin");
+		try (BinaryTelemetry telemetry = new BinaryTelemetry(file)) {
+			telemetry.createStream("t.csv", null, ColumnType.LONG).record(new long[] { 1 });
+		}
+		byte[] bytes = Files.readAllBytes(file.toPath());
+		byte[] truncated = new byte[bytes.length + 2];
+		System.arraycopy(bytes, 0, truncated, 0, bytes.length);
+		truncated[bytes.length] = 'B';
+		truncated[bytes.length + 1] = 0;
+		Files.write(file.toPath(), truncated);
+		File out = testFolder.newFolder("out");
+		BinaryTelemetryReader.convert(file, out);
+		assertEquals(ImmutableList.of("1"), lines(new File(out, "t.csv")));
+	}
+}
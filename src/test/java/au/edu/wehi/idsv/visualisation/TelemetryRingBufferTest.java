@@ -0,0 +1,86 @@
+package au.edu.wehi.idsv.visualisation;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+
+public class TelemetryRingBufferTest {
+	private static List<long[]> drain(TelemetryRingBuffer ring) {
+		List<long[]> result = new ArrayList<>();
+		ring.drain((streamId, values, length) -> {
+			long[] r = new long[length + 1];
+			r[0] = streamId;
+			System.arraycopy(values, 0, r, 1, length);
+			result.add(r);
+		});
+		return result;
+	}
+	@Test(expected = IllegalArgumentException.class)
+	public void should_require_power_of_two_capacity() {
+		new TelemetryRingBuffer(12);
+	}
+	@Test
+	public void should_round_trip_records() {
+		TelemetryRingBuffer ring = new TelemetryRingBuffer(16);
+		assertTrue(ring.offer(1, new long[] { 5, 6 }, 2));
+		assertTrue(ring.offer(2, new long[] { 7, 8, 9 }, 1));
+		assertFalse(ring.isEmpty());
+		List<long[]> result = drain(ring);
+		assertEquals(2, result.size());
+		assertArrayEquals(new long[] { 1, 5, 6 }, result.get(0));
+		assertArrayEquals(new long[] { 2, 7 }, result.get(1));
+		assertTrue(ring.isEmpty());
+	}
+	@Test
+	public void should_drop_instead_of_blocking_when_full() {
+		TelemetryRingBuffer ring = new TelemetryRingBuffer(8);
+		long[] values = new long[] { 1, 2, 3 };
+		assertTrue(ring.offer(0, values, 3));
+		assertTrue(ring.offer(0, values, 3));
+		assertFalse(ring.offer(0, values, 3));
+		assertEquals(1, ring.getDroppedCount());
+		assertEquals(2, drain(ring).size());
+		assertTrue(ring.offer(0, values, 3));
+		assertEquals(1, drain(ring).size());
+	}
+	@Test
+	public void should_wrap_records() {
+		TelemetryRingBuffer ring = new TelemetryRingBuffer(8);
+		for (int i = 0; i < 100; i++) {
+			assertTrue(ring.offer(i, new long[] { i, -i, Long.MIN_VALUE }, 3));
+			List<long[]> result = drain(ring);
+			assertEquals(1, result.size());
+			assertArrayEquals(new long[] { i, i, -i, Long.MIN_VALUE }, result.get(0));
+		}
+	}
+	@Test
+	public void should_not_lose_records_between_threads() throws InterruptedException {
+		TelemetryRingBuffer ring = new TelemetryRingBuffer(1024);
+		int n = 100000;
+		Thread producer = new Thread(() -> {
+			long[] values = new long[2];
+			for (int i = 0; i < n; i++) {
+				values[0] = i;
+				values[1] = 2 * i;
+				while (!ring.offer(1, values, 2)) {
+					Thread.yield();
+				}
+			}
+		});
+		producer.start();
+		long[] expected = new long[] { 0 };
+		while (expected[0] < n) {
+			ring.drain((streamId, values, length) -> {
+				assertEquals(expected[0], values[0]);
+				assertEquals(2 * expected[0], values[1]);
+				expected[0]++;
+			});
+		}
+		producer.join();
+		assertTrue(ring.isEmpty());
+	}
+}
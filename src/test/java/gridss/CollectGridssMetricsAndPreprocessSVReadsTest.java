@@ -0,0 +1,142 @@
+package gridss;
+
+import au.edu.wehi.idsv.IntermediateFilesTest;
+import com.google.common.collect.Lists;
+import gridss.cmdline.CommandLineProgramHelper;
+import htsjdk.samtools.*;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+public class CollectGridssMetricsAndPreprocessSVReadsTest extends IntermediateFilesTest {
+	private List<SAMRecord> createSVInput() {
+		String ref = S(RANDOM);
+		List<SAMRecord> reads = new ArrayList<>();
+		// soft clip that realigns elsewhere on the contig
+		reads.add(withName("split", withSequence(ref.substring(99, 149) + ref.substring(599, 649), Read(2, 100, "50M50S")))[0]);
+		// soft clip too short to realign
+		reads.add(withName("shortclip", withSequence(ref.substring(1099, 1189) + S(POLY_A).substring(0, 10), Read(2, 1100, "90M10S")))[0]);
+		reads.add(withName("indel", withSequence(ref.substring(1999, 2049) + ref.substring(2059, 2109), Read(2, 2000, "50M10D50M")))[0]);
+		SAMRecord[] dp = withName("discordant", DP(2, 3000, "100M", true, 2, 7000, "100M", true));
+		withSequence(ref.substring(2999, 3099), dp[0]);
+		withSequence(ref.substring(6999, 7099), dp[1]);
+		reads.addAll(Lists.newArrayList(dp));
+		SAMRecord[] rp = withName("concordant", RP(2, 4000, 4200, 100));
+		withSequence(ref.substring(3999, 4099), rp[0]);
+		withSequence(ref.substring(4199, 4299), rp[1]);
+		reads.addAll(Lists.newArrayList(rp));
+		reads.add(withName("unclipped", withSequence(ref.substring(4999, 5099), Read(2, 5000, "100M")))[0]);
+		return reads;
+	}
+	private void addCommonArgs(CommandLineProgramHelper cmd, String prefix) {
+		cmd.addArg("INPUT", input);
+		cmd.addArg("OUTPUT", prefix);
+		cmd.addArg("REFERENCE_SEQUENCE", reference);
+		cmd.addArg("TMP_DIR", testFolder.getRoot());
+		cmd.addArg("THRESHOLD_COVERAGE", 1000);
+		cmd.addArg("READ_PAIR_CONCORDANT_PERCENT", "null");
+		cmd.addArg("UNMAPPED_READS", false);
+		cmd.addArg("MIN_CLIP_LENGTH", 5);
+		cmd.addArg("INCLUDE_DUPLICATES", true);
+	}
+	/**
+	 * Tags are compared in name order as the pipelines do not necessarily write them in the same order
+	 */
+	private static String asComparableString(SAMRecord r) {
+		SAMRecord copy = r.deepCopy();
+		copy.clearAttributes();
+		r.getAttributes().stream()
+				.sorted(Comparator.comparing(tv -> tv.tag))
+				.forEach(tv -> copy.setAttribute(tv.tag, tv.value));
+		return copy.getSAMString();
+	}
+	private static List<String> asComparableStrings(List<SAMRecord> records) {
+		return records.stream()
+				.map(r -> asComparableString(r))
+				.sorted()
+				.collect(Collectors.toList());
+	}
+	private List<SAMRecord> runSeparatePipeline() throws IOException {
+		File extracted = new File(testFolder.getRoot(), "separate.extracted.bam");
+		CommandLineProgramHelper cmd = new CommandLineProgramHelper(new CollectGridssMetricsAndExtractSVReads());
+		addCommonArgs(cmd, new File(testFolder.getRoot(), "separate").getAbsolutePath());
+		cmd.addArg("SV_OUTPUT", extracted);
+		assertEquals(0, cmd.run());
+
+		List<SAMRecord> extractedRecords = new ArrayList<>(getRecords(extracted));
+		extractedRecords.sort(new SAMRecordQueryNameComparator());
+		File nameSorted = new File(testFolder.getRoot(), "separate.namesorted.bam");
+		createBAM(nameSorted, SAMFileHeader.SortOrder.queryname, extractedRecords);
+
+		File tagged = new File(testFolder.getRoot(), "separate.tagged.bam");
+		cmd = new CommandLineProgramHelper(new ComputeSamTags());
+		cmd.addArg("INPUT", nameSorted);
+		cmd.addArg("OUTPUT", tagged);
+		cmd.addArg("REFERENCE_SEQUENCE", reference);
+		cmd.addArg("ASSUME_SORTED", true);
+		cmd.addArg("REMOVE_TAGS", "aa");
+		assertEquals(0, cmd.run());
+
+		File coordinateSorted = new File(testFolder.getRoot(), "separate.coordinate.bam");
+		createBAM(coordinateSorted, SAMFileHeader.SortOrder.coordinate, getRecords(tagged));
+
+		File split = new File(testFolder.getRoot(), "separate.sv.bam");
+		cmd = new CommandLineProgramHelper(new SoftClipsToSplitReads());
+		cmd.addArg("INPUT", coordinateSorted);
+		cmd.addArg("OUTPUT", split);
+		cmd.addArg("REFERENCE_SEQUENCE", reference);
+		cmd.addArg("ALIGNER", SoftClipsToSplitReads.Aligner.BWAMEM);
+		cmd.addArg("WORKER_THREADS", 1);
+		assertEquals(0, cmd.run());
+		return getRecords(split);
+	}
+	@Test
+	public void should_match_separate_extract_tag_and_realignment_steps() throws IOException {
+		createInput(createSVInput());
+		List<SAMRecord> expected = runSeparatePipeline();
+
+		File svOutput = new File(testFolder.getRoot(), "combined.sv.bam");
+		CommandLineProgramHelper cmd = new CommandLineProgramHelper(new CollectGridssMetricsAndPreprocessSVReads());
+		addCommonArgs(cmd, new File(testFolder.getRoot(), "combined").getAbsolutePath());
+		cmd.addArg("SV_OUTPUT", svOutput);
+		cmd.addArg("WORKER_THREADS", 1);
+		assertEquals(0, cmd.run());
+		List<SAMRecord> actual = getRecords(svOutput);
+
+		assertEquals(asComparableStrings(expected), asComparableStrings(actual));
+		// sanity check that we actually extracted, tagged and realigned
+		assertTrue(actual.stream().anyMatch(r -> r.getReadName().equals("split") && r.getSupplementaryAlignmentFlag()));
+		assertTrue(actual.stream().anyMatch(r -> r.getReadName().equals("split") && r.getAttribute("SA") != null));
+		assertTrue(actual.stream().anyMatch(r -> r.getReadName().equals("discordant")));
+		assertTrue(actual.stream().anyMatch(r -> r.getReadName().equals("indel")));
+		assertFalse(actual.stream().anyMatch(r -> r.getReadName().equals("concordant")));
+		assertFalse(actual.stream().anyMatch(r -> r.getReadName().equals("unclipped")));
+	}
+	@Test
+	public void should_write_coordinate_sorted_indexed_output() throws IOException {
+		createInput(createSVInput());
+		File svOutput = new File(testFolder.getRoot(), "combined.sv.bam");
+		CommandLineProgramHelper cmd = new CommandLineProgramHelper(new CollectGridssMetricsAndPreprocessSVReads());
+		addCommonArgs(cmd, new File(testFolder.getRoot(), "combined").getAbsolutePath());
+		cmd.addArg("SV_OUTPUT", svOutput);
+		cmd.addArg("WORKER_THREADS", 1);
+		assertEquals(0, cmd.run());
+		assertTrue(new File(testFolder.getRoot(), "combined.sv.bai").exists());
+		try (SamReader reader = SamReaderFactory.makeDefault().open(svOutput)) {
+			assertEquals(SAMFileHeader.SortOrder.coordinate, reader.getFileHeader().getSortOrder());
+			assertTrue(reader.hasIndex());
+			List<SAMRecord> records = Lists.newArrayList(reader);
+			assertNotEquals(0, records.size());
+			List<SAMRecord> sorted = new ArrayList<>(records);
+			sorted.sort(new SAMRecordCoordinateComparator());
+			assertEquals(sorted, records);
+		}
+	}
+}
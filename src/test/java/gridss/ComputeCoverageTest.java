@@ -13,6 +13,7 @@ import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 
 import static org.junit.Assert.assertEquals;
 
@@ -95,4 +96,34 @@ public class ComputeCoverageTest extends IntermediateFilesTest {
 		expectBin("polyA", 21, 30, 50, list.get(2));
 		expectBin("polyA", 31, 40, 0, list.get(3));
 	}
+	@Test
+	public void sharded_coverage_should_match_single_threaded_coverage() throws IOException {
+		createInput(
+				RP(0, 5, 21, 5),
+				RP(0, 55, 121, 20),
+				RP(0, 60, 200, 10),
+				RP(0, 127, 300, 30));
+		List<List<BEDFeature>> results = new ArrayList<>();
+		for (int threads : new int[] { 1, 4 }) {
+			File out = new File(testFolder.getRoot(), "out" + threads + ".bed");
+			String[] args = new String[] {
+					"INPUT=" + input.toString(),
+					"REFERENCE_SEQUENCE=" + reference.toString(),
+					"OUTPUT=" + out.toString(),
+					"TMP_DIR=" + super.testFolder.getRoot().toString(),
+					"BIN_SIZE=1",
+					"WORKER_THREADS=" + threads,
+			};
+			assertEquals(0, new ComputeCoverage().instanceMain(args));
+			results.add(getBed(out));
+		}
+		assertEquals(results.get(0).size(), results.get(1).size());
+		for (int i = 0; i < results.get(0).size(); i++) {
+			BEDFeature expected = results.get(0).get(i);
+			expectBin(expected.getContig(), expected.getStart(), expected.getEnd(), expected.getScore(), results.get(1).get(i));
+		}
+		// reads spanning the 64-base shard boundary
+		expectBin("polyA", 64, 64, 2, results.get(1).get(63));
+		expectBin("polyA", 65, 65, 2, results.get(1).get(64));
+	}
 }
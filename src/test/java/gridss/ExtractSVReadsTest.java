@@ -6,9 +6,11 @@ import au.edu.wehi.idsv.IntermediateFilesTest;
 import au.edu.wehi.idsv.picard.ReferenceLookup;
 import au.edu.wehi.idsv.picard.SynchronousReferenceLookupAdapter;
 import au.edu.wehi.idsv.sam.ChimericAlignment;
+import au.edu.wehi.idsv.sam.SortingSAMFileWriter;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
 import com.google.common.io.Files;
+import htsjdk.samtools.SAMFileHeader.SortOrder;
 import htsjdk.samtools.SAMRecord;
 import htsjdk.samtools.SamReader;
 import htsjdk.samtools.SamReaderFactory;
@@ -63,6 +65,21 @@ public class ExtractSVReadsTest extends IntermediateFilesTest {
 		List<SAMRecord> out = getRecords(output);
 		assertEquals(1, out.size());
 	}
+	@Test
+	public void should_write_to_output_writer() {
+		ExtractSVReads extract = new ExtractSVReads();
+		extract.INPUT = input;
+		SortingSAMFileWriter writer = new SortingSAMFileWriter(getHeader(), SortOrder.queryname, 100, testFolder.getRoot());
+		extract.setOutputWriter(writer);
+		extract.setup(getHeader(), extract.INPUT);
+		extract.acceptFragment(ImmutableList.of(Read(0, 1, "50M50S")), null);
+		extract.acceptFragment(ImmutableList.of(Read(0, 1, "100M")), null);
+		extract.finish();
+		assertEquals(1, writer.size());
+		assertEquals(1, Lists.newArrayList(writer.iterator()).size());
+		assertFalse(output.exists());
+		writer.cleanup();
+	}
 	/*
 	@Test
 	public void should_not_extract_unclipped_alignment_overlapping_blacklist() {
@@ -0,0 +1,138 @@
+package gridss;
+
+import au.edu.wehi.idsv.IntermediateFilesTest;
+import au.edu.wehi.idsv.ProcessingContext;
+import com.google.common.io.Files;
+import gridss.cmdline.ResidentResources;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class GridssDaemonTest extends IntermediateFilesTest {
+    private Thread daemonThread;
+    private int port;
+    private String token;
+    @Before
+    public void startDaemon() throws IOException, InterruptedException {
+        File portFile = new File(testFolder.getRoot(), "daemon.port");
+        daemonThread = new Thread(() -> new GridssDaemon().instanceMain(new String[] { "PORT_FILE=" + portFile.getAbsolutePath() }));
+        daemonThread.start();
+        for (int i = 0; i < 300 && !portFile.exists(); i++) {
+            Thread.sleep(100);
+        }
+        List<String> lines = Files.readLines(portFile, StandardCharsets.US_ASCII);
+        String[] split = lines.get(0).split(" ");
+        port = Integer.parseInt(split[0]);
+        token = split[1];
+    }
+    @After
+    public void stopDaemon() throws IOException, InterruptedException {
+        if (daemonThread.isAlive()) {
+            request(token, GridssDaemon.SHUTDOWN_COMMAND);
+        }
+        daemonThread.join(10000);
+        assertFalse(daemonThread.isAlive());
+    }
+    private String request(String token, String... args) throws IOException {
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+            PrintStream out = new PrintStream(socket.getOutputStream(), true, StandardCharsets.UTF_8.name());
+            out.println(token);
+            out.println(System.getProperty("user.dir"));
+            out.println(args.length);
+            for (String arg : args) {
+                out.println(arg);
+            }
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            StringBuilder sb = new StringBuilder();
+            String line;
+            while ((line = in.readLine()) != null) {
+                sb.append(line);
+                sb.append('\n');
+            }
+            return sb.toString();
+        }
+    }
+    private static int exitStatus(String response) {
+        String[] lines = response.split("\n");
+        String last = lines[lines.length - 1];
+        assertTrue(last.startsWith(GridssDaemon.EXIT_STATUS_PREFIX));
+        return Integer.parseInt(last.substring(GridssDaemon.EXIT_STATUS_PREFIX.length()));
+    }
+    @Test
+    public void should_reject_invalid_token() throws IOException {
+        assertEquals(1, exitStatus(request("invalid", "gridss.PrepareReference")));
+    }
+    @Test
+    public void should_reject_non_gridss_programs() throws IOException {
+        assertEquals(1, exitStatus(request(token, "java.lang.String")));
+        assertEquals(1, exitStatus(request(token, "gridss.Echo")));
+        assertEquals(1, exitStatus(request(token, "gridss.GridssDaemon")));
+    }
+    @Test
+    public void should_shutdown() throws IOException, InterruptedException {
+        assertEquals(0, exitStatus(request(token, GridssDaemon.SHUTDOWN_COMMAND)));
+        daemonThread.join(10000);
+        assertFalse(daemonThread.isAlive());
+    }
+    @Test
+    public void should_run_program() throws IOException {
+        File fa = testFolder.newFile("test.fa");
+        File dict = new File(testFolder.getRoot(), "test.fa.dict");
+        Files.copy(SMALL_FA_FILE, fa);
+        String response = request(token, "gridss.PrepareReference",
+                "R=" + fa.getAbsolutePath(),
+                "CREATE_BWA_INDEX_IMAGE=false",
+                "CREATE_GRIDSS_REFERENCE_CACHE=false");
+        assertEquals(response, 0, exitStatus(response));
+        assertTrue(dict.exists());
+    }
+    @Test
+    public void should_return_program_error_status() throws IOException {
+        String response = request(token, "gridss.PrepareReference");
+        assertNotEquals(0, exitStatus(response));
+        // daemon is still running
+        assertEquals(1, exitStatus(request("invalid", "gridss.PrepareReference")));
+    }
+    @Test
+    public void should_keep_reference_resident_between_invocations() throws IOException {
+        File fa = new File(testFolder.getRoot(), "resident.fa");
+        Files.copy(SMALL_FA_FILE, fa);
+        Files.copy(new File(SMALL_FA_FILE.getAbsolutePath() + ".fai"), new File(fa.getAbsolutePath() + ".fai"));
+        Files.copy(new File(SMALL_FA_FILE.getAbsolutePath() + ".dict"), new File(fa.getAbsolutePath() + ".dict"));
+        createInput(Read(0, 1, "50M50S"));
+        String response = request(token, "gridss.ComputeSamTags",
+                "R=" + fa.getAbsolutePath(),
+                "I=" + input.getAbsolutePath(),
+                "O=" + new File(testFolder.getRoot(), "tags1.bam").getAbsolutePath(),
+                "ASSUME_SORTED=true");
+        assertEquals(response, 0, exitStatus(response));
+        assertTrue(response.contains("Loading resident reference genome"));
+        response = request(token, "gridss.ExtractSVReads",
+                "R=" + fa.getAbsolutePath(),
+                "I=" + input.getAbsolutePath(),
+                "O=" + new File(testFolder.getRoot(), "sv.bam").getAbsolutePath());
+        assertEquals(response, 0, exitStatus(response));
+        assertFalse(response.contains("Loading resident reference genome"));
+        response = request(token, "gridss.ComputeSamTags",
+                "R=" + fa.getAbsolutePath(),
+                "I=" + input.getAbsolutePath(),
+                "O=" + new File(testFolder.getRoot(), "tags2.bam").getAbsolutePath(),
+                "ASSUME_SORTED=true");
+        assertEquals(response, 0, exitStatus(response));
+        assertFalse(response.contains("Loading resident reference genome"));
+        // processing contexts share the same resident reference as the command line programs
+        setReference(fa);
+        try (ProcessingContext pc = getCommandlineContext()) {
+            Assert.assertSame(ResidentResources.getReference(fa), pc.getReference());
+        }
+    }
+}